@@ -0,0 +1,108 @@
+package de.fu_berlin.inf.dpp.concurrent.jupiter;
+
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.DeleteOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.InsertOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.SplitOperation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible sequences of operations that resemble the edits of a user. All operations
+ * of a trace are valid when applied in order to a document with the given initial length.
+ */
+public final class EditTraces {
+
+  private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz ;(){}\n\t";
+
+  private EditTraces() {
+    // NOP
+  }
+
+  /**
+   * Returns a trace of single character edits. The user mostly types at the cursor position,
+   * sometimes corrects the last character and now and then moves the cursor to another position.
+   */
+  public static List<Operation> typing(long seed, int initialLength, int operations) {
+    final Random random = new Random(seed);
+    final StringBuilder document = createDocument(random, initialLength);
+    final List<Operation> trace = new ArrayList<Operation>(operations);
+
+    int cursor = document.length() / 2;
+
+    while (trace.size() < operations) {
+      final int action = random.nextInt(100);
+
+      if (action < 5) {
+        cursor = random.nextInt(document.length() + 1);
+        continue;
+      }
+
+      if (action < 15 && cursor > 0) {
+        final String text = document.substring(cursor - 1, cursor);
+        document.deleteCharAt(--cursor);
+        trace.add(new DeleteOperation(cursor, text));
+        continue;
+      }
+
+      final String text = String.valueOf(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+      document.insert(cursor, text);
+      trace.add(new InsertOperation(cursor++, text));
+    }
+
+    return trace;
+  }
+
+  /**
+   * Returns a trace of block edits, i.e. pasting (larger) blocks of text and cutting out whole
+   * regions as well as replacing a selection which results in a {@link SplitOperation}.
+   */
+  public static List<Operation> pasting(long seed, int initialLength, int operations) {
+    final Random random = new Random(seed);
+    final StringBuilder document = createDocument(random, initialLength);
+    final List<Operation> trace = new ArrayList<Operation>(operations);
+
+    while (trace.size() < operations) {
+      final int action = random.nextInt(100);
+      final int position = random.nextInt(document.length() + 1);
+
+      if (action < 25 && document.length() > position) {
+        final int end = Math.min(document.length(), position + 1 + random.nextInt(256));
+        final String text = document.substring(position, end);
+        document.delete(position, end);
+        trace.add(new DeleteOperation(position, text));
+        continue;
+      }
+
+      final String text = createText(random, 16 + random.nextInt(2048));
+
+      if (action < 50 && document.length() > position) {
+        final int end = Math.min(document.length(), position + 1 + random.nextInt(64));
+        final String replaced = document.substring(position, end);
+        document.replace(position, end, text);
+        trace.add(
+            new SplitOperation(
+                new DeleteOperation(position, replaced), new InsertOperation(position, text)));
+        continue;
+      }
+
+      document.insert(position, text);
+      trace.add(new InsertOperation(position, text));
+    }
+
+    return trace;
+  }
+
+  private static StringBuilder createDocument(Random random, int length) {
+    return new StringBuilder(createText(random, length));
+  }
+
+  private static String createText(Random random, int length) {
+    final StringBuilder text = new StringBuilder(length);
+
+    for (int i = 0; i < length; i++)
+      text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+
+    return text.toString();
+  }
+}
@@ -0,0 +1,125 @@
+package de.fu_berlin.inf.dpp.concurrent.jupiter.internal;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+
+import de.fu_berlin.inf.dpp.activities.JupiterActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.EditTraces;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.Operation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.TransformationException;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.session.User;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the costs of the client side {@link Jupiter} algorithm if the local user has made a
+ * number of changes which are not yet acknowledged by the server, e.g. because of a high latency
+ * connection. Every remote activity has to be transformed against all of these changes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JupiterBenchmark {
+
+  private static final int RECEIVED_ACTIVITIES = 100;
+
+  @Param({"1", "10", "100", "1000"})
+  public int unacknowledged;
+
+  @Param({"typing", "pasting"})
+  public String trace;
+
+  private final User alice = JupiterTestCase.createUser("alice");
+
+  private final User host = JupiterTestCase.createUser("host");
+
+  private SPath path;
+
+  private List<Operation> remoteOperations;
+
+  private int[] indices;
+
+  private Jupiter jupiter;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    final IProject project = createMock(IProject.class);
+    replay(project);
+
+    path = new SPath(project, new PathFake("src/Main.java"));
+
+    // remote operations are replayed cyclically, use enough to avoid patterns
+    remoteOperations = createTrace(42, 1024);
+
+    // e.g. the selections and viewports of a few users
+    indices = new int[] {0, 17, 512, 4096, 16384, 65536};
+  }
+
+  /** Starts every iteration with the same unacknowledged operations. */
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    jupiter = new Jupiter(true);
+    next = 0;
+
+    for (final Operation op : createTrace(7, unacknowledged))
+      jupiter.generateJupiterActivity(op, alice, path);
+  }
+
+  /*
+   * Every received activity changes the unacknowledged operations (e.g.
+   * deletions are split by remote insertions), so measure a fixed number of
+   * received activities starting from the initial state.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5, batchSize = RECEIVED_ACTIVITIES)
+  @Measurement(iterations = 10, batchSize = RECEIVED_ACTIVITIES)
+  public Operation receiveJupiterActivity() throws TransformationException {
+    final Operation op = remoteOperations.get(next++ % remoteOperations.size());
+
+    /*
+     * The server did not receive any of the local operations yet, but
+     * already sent all the remote operations that were received before.
+     */
+    final JupiterVectorTime timestamp = new JupiterVectorTime(getRemoteOperationCount(), 0);
+
+    return jupiter.receiveJupiterActivity(new JupiterActivity(timestamp, op, host, path));
+  }
+
+  @Benchmark
+  public int[] transformIndices() throws TransformationException {
+    return jupiter.transformIndices(new JupiterVectorTime(getRemoteOperationCount(), 0), indices);
+  }
+
+  private int getRemoteOperationCount() {
+    return jupiter.getTimestamp().getComponents()[1];
+  }
+
+  private List<Operation> createTrace(long seed, int operations) {
+    if ("pasting".equals(trace)) return EditTraces.pasting(seed, 65536, operations);
+
+    return EditTraces.typing(seed, 65536, operations);
+  }
+}
@@ -0,0 +1,95 @@
+package de.fu_berlin.inf.dpp.concurrent.jupiter.internal;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+
+import de.fu_berlin.inf.dpp.activities.JupiterActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.EditTraces;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.Operation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.TransformationException;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.session.User;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the fan-out of a {@link JupiterDocumentServer}, i.e. the costs of transforming an
+ * activity of one user for all other users of the session.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JupiterDocumentServerBenchmark {
+
+  @Param({"2", "4", "8", "16", "32"})
+  public int proxies;
+
+  @Param({"typing", "pasting"})
+  public String trace;
+
+  private SPath path;
+
+  private List<Operation> operations;
+
+  private User source;
+
+  private Jupiter client;
+
+  private JupiterDocumentServer server;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    final IProject project = createMock(IProject.class);
+    replay(project);
+
+    path = new SPath(project, new PathFake("src/Main.java"));
+
+    operations =
+        "pasting".equals(trace)
+            ? EditTraces.pasting(42, 65536, 1024)
+            : EditTraces.typing(42, 65536, 1024);
+  }
+
+  /*
+   * The proxies keep all generated activities as they are never
+   * acknowledged, so start every iteration with a fresh server.
+   */
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    server = new JupiterDocumentServer(path);
+
+    for (int i = 0; i < proxies; i++) server.addProxyClient(JupiterTestCase.createUser("user" + i));
+
+    source = JupiterTestCase.createUser("user0");
+    client = new Jupiter(true);
+    next = 0;
+  }
+
+  @Benchmark
+  public Map<User, JupiterActivity> transformJupiterActivity() throws TransformationException {
+    final Operation op = operations.get(next++ % operations.size());
+
+    return server.transformJupiterActivity(client.generateJupiterActivity(op, source, path));
+  }
+}
@@ -0,0 +1,92 @@
+package de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text;
+
+import de.fu_berlin.inf.dpp.concurrent.jupiter.EditTraces;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.Operation;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link GOTOInclusionTransformation} of (balanced) {@link SplitOperation} trees as
+ * they are created by replacing selections or by compound edits like formatting a file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GOTOInclusionTransformationBenchmark {
+
+  /** The depth of the split operation trees, i.e. a tree contains 2^depth text operations. */
+  @Param({"0", "2", "4", "8"})
+  public int depth;
+
+  @Param({"typing", "pasting"})
+  public String trace;
+
+  private final GOTOInclusionTransformation inclusion = new GOTOInclusionTransformation();
+
+  private Operation local;
+
+  private Operation replace;
+
+  private Operation keystroke;
+
+  @Setup
+  public void setUp() {
+    final int operations = 1 << depth;
+
+    local = createTree(createTrace(7, operations), 0, operations);
+    keystroke = new InsertOperation(1024, "a");
+
+    // a remote user replaces the selected text
+    replace =
+        new SplitOperation(new DeleteOperation(2048, "select"), new InsertOperation(2048, "paste"));
+  }
+
+  @Benchmark
+  public Operation transformTreeAgainstOperation() {
+    return inclusion.transform(local, keystroke, Boolean.TRUE);
+  }
+
+  @Benchmark
+  public Operation transformOperationAgainstTree() {
+    return inclusion.transform(keystroke, local, Boolean.FALSE);
+  }
+
+  /*
+   * Note: transforming a tree against another (large) tree is exponential
+   * in the depth of the trees, so only the common case of a small remote
+   * tree is measured.
+   */
+  @Benchmark
+  public Operation transformTreeAgainstReplace() {
+    return inclusion.transform(local, replace, Boolean.TRUE);
+  }
+
+  private List<Operation> createTrace(long seed, int operations) {
+    if ("pasting".equals(trace)) return EditTraces.pasting(seed, 65536, operations);
+
+    return EditTraces.typing(seed, 65536, operations);
+  }
+
+  private static Operation createTree(List<Operation> operations, int from, int to) {
+    if (to - from == 1) return operations.get(from);
+
+    final int middle = (from + to) >>> 1;
+
+    return new SplitOperation(
+        createTree(operations, from, middle), createTree(operations, middle, to));
+  }
+}
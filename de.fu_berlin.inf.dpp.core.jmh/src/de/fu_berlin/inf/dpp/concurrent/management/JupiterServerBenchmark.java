@@ -0,0 +1,140 @@
+package de.fu_berlin.inf.dpp.concurrent.management;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import de.fu_berlin.inf.dpp.activities.JupiterActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.TransformationException;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.Jupiter;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.InsertOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.session.User;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the {@link JupiterServer} when several threads are transforming typing
+ * activities at the same time. The threads are distributed evenly over the active documents, so the
+ * throughput should scale with the number of documents as long as there are enough cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class JupiterServerBenchmark {
+
+  /** A document that is edited by a single client. */
+  private static final class Document {
+
+    private final SPath path;
+
+    private final User source;
+
+    private final Jupiter client = new Jupiter(true);
+
+    private int length;
+
+    private Document(SPath path, User source) {
+      this.path = path;
+      this.source = source;
+    }
+
+    /*
+     * Generating and transforming must be atomic as the server expects the
+     * activities of a client in the order they were generated.
+     */
+    private synchronized Map<User, JupiterActivity> type(JupiterServer server)
+        throws TransformationException {
+
+      final JupiterActivity activity =
+          client.generateJupiterActivity(new InsertOperation(length++, "a"), source, path);
+
+      return server.transform(activity);
+    }
+  }
+
+  /** Assigns every benchmark thread to one of the active documents. */
+  @State(Scope.Thread)
+  public static class Typist {
+
+    private Document document;
+
+    @Setup(Level.Iteration)
+    public void setUp(JupiterServerBenchmark benchmark) {
+      document =
+          benchmark.documents[benchmark.typists.getAndIncrement() % benchmark.activeDocuments];
+    }
+  }
+
+  @Param({"1", "2", "4", "8"})
+  public int activeDocuments;
+
+  private final User host = JupiterTestCase.createUser("host");
+
+  private final User alice = JupiterTestCase.createUser("alice");
+
+  private final User bob = JupiterTestCase.createUser("bob");
+
+  private final AtomicInteger typists = new AtomicInteger();
+
+  private JupiterServer server;
+
+  private Document[] documents;
+
+  /*
+   * The server keeps all activities until they are acknowledged which never
+   * happens in this benchmark, so start with a fresh server every iteration.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    final IProject project = createMock(IProject.class);
+
+    final ISarosSession session = createMock(ISarosSession.class);
+    expect(session.getHost()).andStubReturn(host);
+    expect(session.userHasProject(anyObject(User.class), anyObject(IProject.class)))
+        .andStubReturn(true);
+
+    replay(project, session);
+
+    server = new JupiterServer(session);
+    server.addUser(host);
+    server.addUser(alice);
+    server.addUser(bob);
+
+    documents = new Document[activeDocuments];
+
+    for (int i = 0; i < activeDocuments; i++)
+      documents[i] =
+          new Document(new SPath(project, new PathFake("src/File" + i + ".java")), alice);
+
+    typists.set(0);
+  }
+
+  @Benchmark
+  public Map<User, JupiterActivity> transform(Typist typist) throws TransformationException {
+    return typist.document.type(server);
+  }
+}
@@ -0,0 +1,189 @@
+package de.fu_berlin.inf.dpp.misc.binary;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import de.fu_berlin.inf.dpp.activities.EditorActivity;
+import de.fu_berlin.inf.dpp.activities.IActivity;
+import de.fu_berlin.inf.dpp.activities.JupiterActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.communication.extensions.ActivitiesExtension;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.EditTraces;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.Operation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.JupiterVectorTime;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.filesystem.IPath;
+import de.fu_berlin.inf.dpp.filesystem.IPathFactory;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.misc.xstream.SPathConverter;
+import de.fu_berlin.inf.dpp.misc.xstream.UserConverter;
+import de.fu_berlin.inf.dpp.net.xmpp.JID;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.session.User;
+import de.fu_berlin.inf.dpp.versioning.VersionManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the XML and the binary representation of activity packets that contain the operations of
+ * an edit trace and an editor activity, i.e. packets which peers without support for version 2 of
+ * the {@link ActivitiesCodec} receive as XML. The sizes of both representations are logged once per
+ * trial.
+ *
+ * <p>{@link #encodeBinary()} encodes the packet with a new codec, {@link #encodeBinaryCached()}
+ * with a codec that already encoded the activities, i.e. the packet is sent to another recipient.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ActivitiesCodecBenchmark {
+
+  private static final Logger LOG = Logger.getLogger(ActivitiesCodecBenchmark.class);
+
+  private static final int OPERATIONS_PER_PACKET = 16;
+
+  @Param({"typing", "pasting"})
+  public String trace;
+
+  private final User alice = JupiterTestCase.createUser("alice");
+
+  private ISarosSession session;
+
+  private IPathFactory pathFactory;
+
+  private VersionManager versionManager;
+
+  private ActivitiesCodec codec;
+
+  private UserConverter userConverter;
+
+  private SPathConverter pathConverter;
+
+  private ActivitiesExtension packet;
+
+  private String xml;
+
+  private byte[] binary;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final IProject project = createMock(IProject.class);
+    replay(project);
+
+    final PathFake main = new PathFake("src/Main.java");
+
+    pathFactory = createMock(IPathFactory.class);
+    expect(pathFactory.fromPath(anyObject(IPath.class))).andStubReturn("src/Main.java");
+    expect(pathFactory.fromString("src/Main.java")).andStubReturn(main);
+
+    session = createMock(ISarosSession.class);
+    expect(session.getProjectID(project)).andStubReturn("ABC");
+    expect(session.getProject("ABC")).andStubReturn(project);
+    expect(session.getUser(alice.getJID())).andStubReturn(alice);
+
+    versionManager = createMock(VersionManager.class);
+    expect(versionManager.getActivityCodecVersion(anyObject(JID.class)))
+        .andStubReturn(ActivitiesCodec.VERSION);
+
+    replay(pathFactory, session, versionManager);
+
+    codec = new ActivitiesCodec(session, pathFactory, versionManager);
+
+    userConverter = new UserConverter(session);
+    pathConverter = new SPathConverter(session, pathFactory);
+    userConverter.start();
+    pathConverter.start();
+
+    final SPath path = new SPath(project, main);
+
+    final List<Operation> operations =
+        "pasting".equals(trace)
+            ? EditTraces.pasting(42, 65536, OPERATIONS_PER_PACKET)
+            : EditTraces.typing(42, 65536, OPERATIONS_PER_PACKET);
+
+    final List<IActivity> activities = new ArrayList<IActivity>();
+
+    for (int i = 0; i < operations.size(); i++)
+      activities.add(
+          new JupiterActivity(new JupiterVectorTime(i, 0), operations.get(i), alice, path));
+
+    activities.add(new EditorActivity(alice, EditorActivity.Type.SAVED, path));
+
+    packet = new ActivitiesExtension("4711", activities, 1);
+
+    xml = encodeXML();
+    binary = encode(codec);
+
+    LOG.info(
+        "packet size ("
+            + trace
+            + "): XML "
+            + xml.getBytes("UTF-8").length
+            + " bytes, binary "
+            + binary.length
+            + " bytes");
+  }
+
+  private byte[] encode(ActivitiesCodec activitiesCodec) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+    activitiesCodec.encode(packet, new DataOutputStream(out));
+    return out.toByteArray();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    userConverter.stop();
+    pathConverter.stop();
+  }
+
+  @Benchmark
+  public String encodeXML() {
+    return ActivitiesExtension.PROVIDER.create(packet).toXML();
+  }
+
+  @Benchmark
+  public byte[] encodeBinary() throws IOException {
+    return encode(new ActivitiesCodec(session, pathFactory, versionManager));
+  }
+
+  @Benchmark
+  public byte[] encodeBinaryCached() throws IOException {
+    return encode(codec);
+  }
+
+  @Benchmark
+  public ActivitiesExtension decodeXML() throws IOException {
+    return ActivitiesExtension.PROVIDER.parseString(xml);
+  }
+
+  @Benchmark
+  public ActivitiesExtension decodeBinary() throws IOException {
+    return codec.decode(new DataInputStream(new ByteArrayInputStream(binary)));
+  }
+}
@@ -80,6 +80,11 @@ public abstract class AbstractActivityReceiver implements IActivityReceiver {
     // do nothing
   }
 
+  @Override
+  public void receive(RecoveryTextEditActivity recoveryTextEditActivity) {
+    // do nothing
+  }
+
   @Override
   public void receive(StartFollowingActivity startFollowingActivity) {
     // do nothing
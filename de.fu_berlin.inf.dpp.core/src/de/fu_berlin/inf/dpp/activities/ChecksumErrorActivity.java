@@ -23,6 +23,7 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 import com.thoughtworks.xstream.annotations.XStreamImplicit;
 import de.fu_berlin.inf.dpp.session.User;
+import java.util.Collections;
 import java.util.List;
 import org.apache.commons.lang.ObjectUtils;
 
@@ -32,6 +33,10 @@ import org.apache.commons.lang.ObjectUtils;
  *
  * <p>The host will reply with a ChecksumError of the same recoveryID after having sent the last
  * FileActivity (with {@link FileActivity#isRecovery()} being set related to this checksum recovery.
+ *
+ * <p>The user may attach {@linkplain DocumentDigest digests} of the inconsistent documents. In this
+ * case the host may only send the inconsistent parts of these documents as {@link
+ * RecoveryTextEditActivity RecoveryTextEditActivities}.
  */
 @XStreamAlias("checksumErrorActivity")
 public class ChecksumErrorActivity extends AbstractActivity implements ITargetedActivity {
@@ -42,7 +47,25 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
 
   @XStreamImplicit protected List<SPath> paths;
 
+  @XStreamImplicit protected List<DocumentDigest> digests;
+
   public ChecksumErrorActivity(User source, User target, List<SPath> paths, String recoveryID) {
+    this(source, target, paths, null, recoveryID);
+  }
+
+  /**
+   * @param source the user who requests the recovery
+   * @param target the host
+   * @param paths the paths of the inconsistent documents
+   * @param digests the digests of (some of) the inconsistent documents or <code>null</code>
+   * @param recoveryID the ID of the recovery
+   */
+  public ChecksumErrorActivity(
+      User source,
+      User target,
+      List<SPath> paths,
+      List<DocumentDigest> digests,
+      String recoveryID) {
 
     super(source);
 
@@ -50,6 +73,7 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
 
     this.target = target;
     this.paths = paths;
+    this.digests = digests;
     this.recoveryID = recoveryID;
   }
 
@@ -62,6 +86,22 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
     return paths;
   }
 
+  /** Returns the attached digests of the inconsistent documents, may be empty. */
+  public List<DocumentDigest> getDigests() {
+    return digests == null ? Collections.<DocumentDigest>emptyList() : digests;
+  }
+
+  /**
+   * Returns the attached digest of the document with the given path.
+   *
+   * @return the digest or <code>null</code> if no digest is attached for the document
+   */
+  public DocumentDigest getDigest(SPath path) {
+    for (DocumentDigest digest : getDigests()) if (digest.getPath().equals(path)) return digest;
+
+    return null;
+  }
+
   /** Each ChecksumError has a unique ID, which should be used to identify a recovery session */
   public String getRecoveryID() {
     return recoveryID;
@@ -77,6 +117,7 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
     final int prime = 31;
     int result = super.hashCode();
     result = prime * result + ObjectUtils.hashCode(paths);
+    result = prime * result + ObjectUtils.hashCode(digests);
     result = prime * result + ObjectUtils.hashCode(recoveryID);
     result = prime * result + ObjectUtils.hashCode(target);
     return result;
@@ -92,6 +133,7 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
 
     if (!ObjectUtils.equals(this.recoveryID, other.recoveryID)) return false;
     if (!ObjectUtils.equals(this.paths, other.paths)) return false;
+    if (!ObjectUtils.equals(this.digests, other.digests)) return false;
     if (!ObjectUtils.equals(this.target, other.target)) return false;
 
     return true;
@@ -105,6 +147,8 @@ public class ChecksumErrorActivity extends AbstractActivity implements ITargeted
         + target
         + ", paths: "
         + paths
+        + ", digests: "
+        + getDigests().size()
         + ", recoveryID: "
         + recoveryID
         + ")";
@@ -0,0 +1,127 @@
+package de.fu_berlin.inf.dpp.activities;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import java.util.Arrays;
+import org.apache.commons.lang.ObjectUtils;
+
+/**
+ * A DocumentDigest describes the content of a document by the hash codes of its chunks. It is sent
+ * along with a {@link ChecksumErrorActivity} so that the host is able to determine which part of
+ * the document is inconsistent.
+ *
+ * <p>The document is divided into chunks of {@link #getChunkSize()} characters twice: once starting
+ * at the beginning of the document ({@link #getHeadHashes()}) and once starting at the end of the
+ * document ({@link #getTailHashes()}). The last chunk of each sequence may be shorter. All hash
+ * codes are calculated like {@link String#hashCode()}.
+ *
+ * @valueObject Instances of this class should be treated as value objects and should be treated as
+ *     immutable.
+ */
+@XStreamAlias("documentDigest")
+public class DocumentDigest {
+
+  @XStreamAlias("p")
+  private final SPath path;
+
+  @XStreamAsAttribute private final int length;
+
+  @XStreamAsAttribute private final int hash;
+
+  @XStreamAsAttribute private final int chunkSize;
+
+  private final int[] headHashes;
+
+  private final int[] tailHashes;
+
+  /**
+   * @param path the path of the document
+   * @param length the length of the document's content
+   * @param hash the hash code of the document's content
+   * @param chunkSize the number of characters per chunk
+   * @param headHashes the hash codes of the chunks starting at the beginning of the document
+   * @param tailHashes the hash codes of the chunks starting at the end of the document
+   */
+  public DocumentDigest(
+      SPath path, int length, int hash, int chunkSize, int[] headHashes, int[] tailHashes) {
+
+    if (path == null) throw new IllegalArgumentException("path must not be null");
+    if (chunkSize <= 0) throw new IllegalArgumentException("chunk size must be positive");
+
+    this.path = path;
+    this.length = length;
+    this.hash = hash;
+    this.chunkSize = chunkSize;
+    this.headHashes = headHashes;
+    this.tailHashes = tailHashes;
+  }
+
+  public SPath getPath() {
+    return path;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public int getHash() {
+    return hash;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public int[] getHeadHashes() {
+    return headHashes.clone();
+  }
+
+  public int[] getTailHashes() {
+    return tailHashes.clone();
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ObjectUtils.hashCode(path);
+    result = prime * result + length;
+    result = prime * result + hash;
+    result = prime * result + chunkSize;
+    result = prime * result + Arrays.hashCode(headHashes);
+    result = prime * result + Arrays.hashCode(tailHashes);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!(obj instanceof DocumentDigest)) return false;
+
+    DocumentDigest other = (DocumentDigest) obj;
+
+    if (!ObjectUtils.equals(this.path, other.path)) return false;
+    if (this.length != other.length) return false;
+    if (this.hash != other.hash) return false;
+    if (this.chunkSize != other.chunkSize) return false;
+    if (!Arrays.equals(this.headHashes, other.headHashes)) return false;
+    if (!Arrays.equals(this.tailHashes, other.tailHashes)) return false;
+
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "DocumentDigest(path: "
+        + path
+        + ", length: "
+        + length
+        + ", hash: "
+        + hash
+        + ", chunkSize: "
+        + chunkSize
+        + ", chunks: "
+        + headHashes.length
+        + ")";
+  }
+}
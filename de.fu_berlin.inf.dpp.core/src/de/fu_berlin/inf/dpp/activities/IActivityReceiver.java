@@ -43,6 +43,8 @@ public interface IActivityReceiver {
 
   void receive(ProgressActivity progressActivity);
 
+  void receive(RecoveryTextEditActivity recoveryTextEditActivity);
+
   void receive(StartFollowingActivity startFollowingActivity);
 
   void receive(StopActivity stopActivity);
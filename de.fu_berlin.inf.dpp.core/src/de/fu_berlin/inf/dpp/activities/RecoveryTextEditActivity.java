@@ -0,0 +1,178 @@
+package de.fu_berlin.inf.dpp.activities;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import de.fu_berlin.inf.dpp.session.User;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A RecoveryTextEditActivity is sent by the host to recover an inconsistent document of a single
+ * user by replacing only the inconsistent part of the document instead of sending the whole file.
+ *
+ * <p>As the host does not know the inconsistent content of the target user, the activity only
+ * contains the length of the replaced text. The edit can only be applied to the content that the
+ * target user described with the {@link DocumentDigest} attached to its {@link
+ * ChecksumErrorActivity}. This content is identified by {@link #getBaseLength()} and {@link
+ * #getBaseHash()}.
+ *
+ * <p>Like a {@link TargetedFileActivity} with {@link FileActivity.Purpose#RECOVERY}, this activity
+ * implies that the Jupiter state of the document was reset on the host side.
+ */
+@XStreamAlias("recoveryTextEditActivity")
+public class RecoveryTextEditActivity extends AbstractResourceActivity
+    implements ITargetedActivity {
+
+  @XStreamAsAttribute private final User target;
+
+  @XStreamAsAttribute private final int offset;
+
+  @XStreamAsAttribute private final int replacedLength;
+
+  @XStreamAsAttribute private final int baseLength;
+
+  @XStreamAsAttribute private final int baseHash;
+
+  private final String text;
+
+  /**
+   * @param source the user who is the source (originator) of this Activity
+   * @param target the user whose document is recovered
+   * @param path the path of the recovered document
+   * @param offset the offset of the replaced text
+   * @param replacedLength the length of the replaced text
+   * @param text the text which replaces the inconsistent text
+   * @param baseLength the length of the content the edit has to be applied to
+   * @param baseHash the hash code of the content the edit has to be applied to
+   */
+  public RecoveryTextEditActivity(
+      User source,
+      User target,
+      SPath path,
+      int offset,
+      int replacedLength,
+      String text,
+      int baseLength,
+      int baseHash) {
+
+    super(source, path);
+
+    if (target == null) throw new IllegalArgumentException("target must not be null");
+    if (path == null) throw new IllegalArgumentException("path must not be null");
+    if (text == null) throw new IllegalArgumentException("text must not be null");
+
+    this.target = target;
+    this.offset = offset;
+    this.replacedLength = replacedLength;
+    this.text = text;
+    this.baseLength = baseLength;
+    this.baseHash = baseHash;
+  }
+
+  @Override
+  public boolean isValid() {
+    return super.isValid() && (target != null) && (getPath() != null) && (text != null);
+  }
+
+  @Override
+  public User getTarget() {
+    return target;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public int getReplacedLength() {
+    return replacedLength;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public int getBaseLength() {
+    return baseLength;
+  }
+
+  public int getBaseHash() {
+    return baseHash;
+  }
+
+  /**
+   * Returns whether this edit can be applied to the given content, i.e. whether the given content
+   * is the content the edit was created for.
+   *
+   * @param content the current content of the document, may be <code>null</code>
+   */
+  public boolean isApplicableTo(String content) {
+    return content != null && content.length() == baseLength && content.hashCode() == baseHash;
+  }
+
+  /**
+   * Creates the {@link TextEditActivity} that performs this recovery on the given content.
+   *
+   * @param content the current content of the document, must be {@linkplain #isApplicableTo
+   *     applicable}
+   */
+  public TextEditActivity toTextEditActivity(String content) {
+    return new TextEditActivity(
+        getSource(), offset, text, content.substring(offset, offset + replacedLength), getPath());
+  }
+
+  @Override
+  public void dispatch(IActivityReceiver receiver) {
+    receiver.receive(this);
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = super.hashCode();
+    result = prime * result + ObjectUtils.hashCode(target);
+    result = prime * result + offset;
+    result = prime * result + replacedLength;
+    result = prime * result + ObjectUtils.hashCode(text);
+    result = prime * result + baseLength;
+    result = prime * result + baseHash;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!super.equals(obj)) return false;
+    if (!(obj instanceof RecoveryTextEditActivity)) return false;
+
+    RecoveryTextEditActivity other = (RecoveryTextEditActivity) obj;
+
+    if (!ObjectUtils.equals(this.target, other.target)) return false;
+    if (this.offset != other.offset) return false;
+    if (this.replacedLength != other.replacedLength) return false;
+    if (!ObjectUtils.equals(this.text, other.text)) return false;
+    if (this.baseLength != other.baseLength) return false;
+    if (this.baseHash != other.baseHash) return false;
+
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "RecoveryTextEditActivity(target: "
+        + target
+        + ", path: "
+        + getPath()
+        + ", offset: "
+        + offset
+        + ", replaced: "
+        + replacedLength
+        + ", new: '"
+        + StringEscapeUtils.escapeJava(StringUtils.abbreviate(text, 150))
+        + "', base: ["
+        + baseLength
+        + ","
+        + baseHash
+        + "])";
+  }
+}
@@ -25,6 +25,7 @@ import com.thoughtworks.xstream.annotations.XStreamImplicit;
 import de.fu_berlin.inf.dpp.activities.ChangeColorActivity;
 import de.fu_berlin.inf.dpp.activities.ChecksumActivity;
 import de.fu_berlin.inf.dpp.activities.ChecksumErrorActivity;
+import de.fu_berlin.inf.dpp.activities.DocumentDigest;
 import de.fu_berlin.inf.dpp.activities.EditorActivity;
 import de.fu_berlin.inf.dpp.activities.FileActivity;
 import de.fu_berlin.inf.dpp.activities.FolderCreatedActivity;
@@ -35,6 +36,7 @@ import de.fu_berlin.inf.dpp.activities.JupiterActivity;
 import de.fu_berlin.inf.dpp.activities.NOPActivity;
 import de.fu_berlin.inf.dpp.activities.PermissionActivity;
 import de.fu_berlin.inf.dpp.activities.ProgressActivity;
+import de.fu_berlin.inf.dpp.activities.RecoveryTextEditActivity;
 import de.fu_berlin.inf.dpp.activities.SPath;
 import de.fu_berlin.inf.dpp.activities.StartFollowingActivity;
 import de.fu_berlin.inf.dpp.activities.StopActivity;
@@ -48,6 +50,8 @@ import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.InsertOperation;
 import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.NoOperation;
 import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.SplitOperation;
 import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.TimestampOperation;
+import de.fu_berlin.inf.dpp.misc.binary.ActivitiesCodec;
+import de.fu_berlin.inf.dpp.misc.binary.BinaryExtensionProvider;
 import de.fu_berlin.inf.dpp.net.xmpp.JID;
 import de.fu_berlin.inf.dpp.session.User;
 import java.util.List;
@@ -58,6 +62,15 @@ public class ActivitiesExtension extends SarosSessionPacketExtension {
 
   public static final Provider PROVIDER = new Provider();
 
+  /**
+   * Provider for the compact binary representation of this extension. Received binary extensions
+   * are converted to extensions of {@link #PROVIDER}.
+   *
+   * @see ActivitiesCodec
+   */
+  public static final BinaryExtensionProvider<ActivitiesExtension> BINARY_PROVIDER =
+      new BinaryExtensionProvider<ActivitiesExtension>("adosb", PROVIDER);
+
   @XStreamImplicit private final List<IActivity> activities;
 
   @XStreamAlias("seq")
@@ -139,6 +152,9 @@ public class ActivitiesExtension extends SarosSessionPacketExtension {
           // SPATH
           SPath.class,
 
+          // Recovery
+          DocumentDigest.class,
+
           // Activities
           ChangeColorActivity.class,
           ChecksumActivity.class,
@@ -152,6 +168,7 @@ public class ActivitiesExtension extends SarosSessionPacketExtension {
           NOPActivity.class,
           PermissionActivity.class,
           ProgressActivity.class,
+          RecoveryTextEditActivity.class,
           TargetedFileActivity.class,
           StartFollowingActivity.class,
           StopActivity.class,
@@ -2,7 +2,7 @@ package de.fu_berlin.inf.dpp.communication.extensions;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
-import org.jivesoftware.smack.filter.AndFilter;
+import de.fu_berlin.inf.dpp.net.ExtensionPacketFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.Packet;
 
@@ -27,20 +27,20 @@ public abstract class InvitationExtension extends SarosPacketExtension {
       super(elementName, classes);
     }
 
-    public PacketFilter getPacketFilter(final String invitationID) {
+    public ExtensionPacketFilter getPacketFilter(final String invitationID) {
 
-      return new AndFilter(
-          super.getPacketFilter(),
-          new PacketFilter() {
-            @Override
-            public boolean accept(Packet packet) {
-              InvitationExtension extension = getPayload(packet);
+      return super.getPacketFilter()
+          .and(
+              new PacketFilter() {
+                @Override
+                public boolean accept(Packet packet) {
+                  InvitationExtension extension = getPayload(packet);
 
-              if (extension == null) return false;
+                  if (extension == null) return false;
 
-              return invitationID.equals(extension.getNegotiationID());
-            }
-          });
+                  return invitationID.equals(extension.getNegotiationID());
+                }
+              });
     }
   }
 }
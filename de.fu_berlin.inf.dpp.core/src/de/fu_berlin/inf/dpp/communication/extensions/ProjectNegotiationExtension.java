@@ -2,7 +2,7 @@ package de.fu_berlin.inf.dpp.communication.extensions;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
-import org.jivesoftware.smack.filter.AndFilter;
+import de.fu_berlin.inf.dpp.net.ExtensionPacketFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.Packet;
 
@@ -34,20 +34,21 @@ public abstract class ProjectNegotiationExtension extends SarosSessionPacketExte
      * <p>It might be necessary to extends the packet filter so here is the basic example how to
      * extend it properly.
      */
-    public PacketFilter getPacketFilter(final String sessionID, final String negotiationID) {
+    public ExtensionPacketFilter getPacketFilter(
+        final String sessionID, final String negotiationID) {
 
-      return new AndFilter(
-          super.getPacketFilter(sessionID),
-          new PacketFilter() {
-            @Override
-            public boolean accept(Packet packet) {
-              ProjectNegotiationExtension extension = getPayload(packet);
+      return super.getPacketFilter(sessionID)
+          .and(
+              new PacketFilter() {
+                @Override
+                public boolean accept(Packet packet) {
+                  ProjectNegotiationExtension extension = getPayload(packet);
 
-              if (extension == null) return false;
+                  if (extension == null) return false;
 
-              return negotiationID.equals(extension.getNegotiationID());
-            }
-          });
+                  return negotiationID.equals(extension.getNegotiationID());
+                }
+              });
     }
   }
 }
@@ -1,8 +1,11 @@
 package de.fu_berlin.inf.dpp.communication.extensions;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
+import de.fu_berlin.inf.dpp.negotiation.FileDelta;
 import de.fu_berlin.inf.dpp.negotiation.FileList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @XStreamAlias(/* ProjectNegotiationMissingFiles */ "PNMF")
 public class ProjectNegotiationMissingFilesExtension extends ProjectNegotiationExtension {
@@ -11,16 +14,34 @@ public class ProjectNegotiationMissingFilesExtension extends ProjectNegotiationE
 
   private final List<FileList> fileLists;
 
+  /** Signatures of the local versions of altered files, see {@link FileDelta} */
+  private final Map<String, byte[]> signatures;
+
   public ProjectNegotiationMissingFilesExtension(
-      String sessionID, String negotiationID, List<FileList> fileLists) {
+      String sessionID,
+      String negotiationID,
+      List<FileList> fileLists,
+      Map<String, byte[]> signatures) {
     super(sessionID, negotiationID);
     this.fileLists = fileLists;
+    this.signatures = signatures;
   }
 
   public List<FileList> getFileLists() {
     return fileLists;
   }
 
+  /**
+   * Returns the signatures of the files the invitee would like to receive as deltas.
+   *
+   * @return map of <code>projectID:path</code> to signature, never <code>null</code>
+   */
+  public Map<String, byte[]> getSignatures() {
+    if (signatures == null) return Collections.emptyMap();
+
+    return signatures;
+  }
+
   public static class Provider
       extends ProjectNegotiationExtension.Provider<ProjectNegotiationMissingFilesExtension> {
 
@@ -3,7 +3,7 @@ package de.fu_berlin.inf.dpp.communication.extensions;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 import de.fu_berlin.inf.dpp.misc.xstream.XStreamExtensionProvider;
-import org.jivesoftware.smack.filter.AndFilter;
+import de.fu_berlin.inf.dpp.net.ExtensionPacketFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.Packet;
 
@@ -39,18 +39,18 @@ public abstract class SarosPacketExtension {
     }
 
     @Override
-    public PacketFilter getPacketFilter() {
-
-      return new AndFilter(
-          super.getPacketFilter(),
-          new PacketFilter() {
-            @Override
-            public boolean accept(Packet packet) {
-              SarosPacketExtension extension = getPayload(packet);
-
-              return extension != null && VERSION.equals(extension.version);
-            }
-          });
+    public ExtensionPacketFilter getPacketFilter() {
+
+      return super.getPacketFilter()
+          .and(
+              new PacketFilter() {
+                @Override
+                public boolean accept(Packet packet) {
+                  SarosPacketExtension extension = getPayload(packet);
+
+                  return extension != null && VERSION.equals(extension.version);
+                }
+              });
     }
   }
 }
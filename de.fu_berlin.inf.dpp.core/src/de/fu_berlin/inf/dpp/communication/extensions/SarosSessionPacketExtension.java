@@ -2,7 +2,7 @@ package de.fu_berlin.inf.dpp.communication.extensions;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
-import org.jivesoftware.smack.filter.AndFilter;
+import de.fu_berlin.inf.dpp.net.ExtensionPacketFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.Packet;
 
@@ -33,20 +33,21 @@ public abstract class SarosSessionPacketExtension extends SarosPacketExtension {
       super(elementName, classes);
     }
 
-    public PacketFilter getPacketFilter(final String sessionID) {
+    public ExtensionPacketFilter getPacketFilter(final String sessionID) {
 
-      return new AndFilter(
-          super.getPacketFilter(),
-          new PacketFilter() {
-            @Override
-            public boolean accept(Packet packet) {
-              SarosSessionPacketExtension extension = getPayload(packet);
+      return super.getPacketFilter()
+          .forSession(
+              sessionID,
+              new PacketFilter() {
+                @Override
+                public boolean accept(Packet packet) {
+                  SarosSessionPacketExtension extension = getPayload(packet);
 
-              if (extension == null) return false;
+                  if (extension == null) return false;
 
-              return sessionID.equals(extension.getSessionID());
-            }
-          });
+                  return sessionID.equals(extension.getSessionID());
+                }
+              });
     }
   }
 }
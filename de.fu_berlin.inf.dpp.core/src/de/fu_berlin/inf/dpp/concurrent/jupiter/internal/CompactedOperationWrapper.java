@@ -0,0 +1,304 @@
+package de.fu_berlin.inf.dpp.concurrent.jupiter.internal;
+
+import de.fu_berlin.inf.dpp.concurrent.jupiter.Operation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.Jupiter.OperationWrapper;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.DeleteOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.ITextOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.InsertOperation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An OperationWrapper that represents a run of consecutive local operations as a single operation,
+ * e.g. the keystrokes of a typed word as one {@link InsertOperation} or the keystrokes of repeated
+ * backspaces as one {@link DeleteOperation}.
+ *
+ * <p>Transforming a remote operation against the run yields the same result as transforming it
+ * against all operations of the run as long as the remote operation does not touch the region of
+ * the run. In this case the run is only shifted and still consists of the same text. Otherwise the
+ * run has to be {@linkplain #expand() expanded} into its original operations before the
+ * transformation.
+ *
+ * @valueObject Instances of this class should be treated as value objects and should be treated as
+ *     immutable.
+ */
+final class CompactedOperationWrapper extends OperationWrapper {
+
+  private enum Kind {
+    /** Consecutive insertions, each one directly after the previous one. */
+    INSERT,
+    /** Deletions at the same position, i.e. using the delete key. */
+    DELETE_FORWARD,
+    /** Deletions directly before the previous one, i.e. using the backspace key. */
+    DELETE_BACKWARD
+  }
+
+  private final Kind kind;
+
+  /** The text lengths of the original operations. */
+  private final int[] lengths;
+
+  /** The origins of the original operations, only used for insertions. */
+  private final int[] origins;
+
+  private CompactedOperationWrapper(
+      ITextOperation op, int count, Kind kind, int[] lengths, int[] origins) {
+    super(op, count);
+    this.kind = kind;
+    this.lengths = lengths;
+    this.origins = origins;
+  }
+
+  /**
+   * Tries to append the given operation to the given (last) entry of the acknowledgement list.
+   *
+   * @param last the last entry of the acknowledgement list
+   * @param op the operation that was generated after the operation(s) of the last entry
+   * @param count the local operation count of the given operation
+   * @return the combined entry or <code>null</code> if the operation can not be combined with the
+   *     last entry
+   */
+  static CompactedOperationWrapper append(OperationWrapper last, Operation op, int count) {
+
+    if (last == null || !isCompactable(op) || !isCompactable(last.getOperation())) return null;
+
+    final ITextOperation previous = (ITextOperation) last.getOperation();
+    final ITextOperation next = (ITextOperation) op;
+
+    final boolean isRun = last instanceof CompactedOperationWrapper;
+
+    if (isRun && ((CompactedOperationWrapper) last).getLastLocalOperationCount() + 1 != count)
+      return null;
+
+    if (!isRun && last.getLocalOperationCount() + 1 != count) return null;
+
+    final Kind kind = getKind(previous, next);
+
+    if (kind == null || (isRun && ((CompactedOperationWrapper) last).kind != kind)) return null;
+
+    final int[] lengths;
+    final int[] origins;
+
+    if (isRun) {
+      final CompactedOperationWrapper run = (CompactedOperationWrapper) last;
+      lengths = Arrays.copyOf(run.lengths, run.lengths.length + 1);
+      origins = Arrays.copyOf(run.origins, run.origins.length + 1);
+    } else {
+      lengths = new int[2];
+      origins = new int[2];
+      lengths[0] = previous.getTextLength();
+      origins[0] = getOrigin(previous);
+    }
+
+    lengths[lengths.length - 1] = next.getTextLength();
+    origins[origins.length - 1] = getOrigin(next);
+
+    final ITextOperation combined;
+
+    switch (kind) {
+      case INSERT:
+        combined =
+            new InsertOperation(
+                previous.getPosition(), previous.getText() + next.getText(), origins[0]);
+        break;
+      case DELETE_FORWARD:
+        combined = new DeleteOperation(previous.getPosition(), previous.getText() + next.getText());
+        break;
+      default:
+        combined = new DeleteOperation(next.getPosition(), next.getText() + previous.getText());
+        break;
+    }
+
+    return new CompactedOperationWrapper(
+        combined, last.getLocalOperationCount(), kind, lengths, origins);
+  }
+
+  /**
+   * Returns a copy of this run that uses the given operation, which must be the result of
+   * transforming the operation of this run against a remote operation that does not {@linkplain
+   * #isTouchedBy touch} this run.
+   */
+  CompactedOperationWrapper withOperation(Operation op) {
+    assert isCompactable(op)
+            && ((ITextOperation) op).getText().equals(getTextOperation().getText())
+            && op.getClass() == getOperation().getClass()
+        : "run was not shifted: " + getOperation() + " -> " + op;
+
+    return new CompactedOperationWrapper(
+        (ITextOperation) op, getLocalOperationCount(), kind, lengths, origins);
+  }
+
+  /** Returns the local operation count of the last operation of this run. */
+  int getLastLocalOperationCount() {
+    return getLocalOperationCount() + lengths.length - 1;
+  }
+
+  /**
+   * Returns whether transforming the given remote operation against this run (or vice versa) may
+   * yield a different result than the transformation against the original operations of this run.
+   * The check is conservative, i.e. it may return <code>true</code> although the results would be
+   * the same.
+   */
+  boolean isTouchedBy(Operation op) {
+    final List<ITextOperation> ops = op.getTextOperations();
+
+    if (ops.isEmpty()) return false;
+
+    long start = Long.MAX_VALUE;
+    long end = Long.MIN_VALUE;
+    long length = 0;
+
+    for (final ITextOperation textOp : ops) {
+      start = Math.min(start, textOp.getPosition());
+      end = Math.max(end, textOp.getPosition() + textOp.getTextLength());
+      length += textOp.getTextLength();
+    }
+
+    /*
+     * The operations of a split operation are applied one after another so
+     * their positions may be shifted by the length of the other operations.
+     */
+    if (ops.size() > 1) {
+      start -= length;
+      end += length;
+    }
+
+    final ITextOperation run = getTextOperation();
+
+    final long runStart = run.getPosition();
+    final long runEnd = runStart + run.getTextLength();
+
+    return start <= runEnd && end >= runStart;
+  }
+
+  /**
+   * Returns a run containing the operations of this run that are not acknowledged by the given
+   * remote operation count. The run must contain at least one operation that is acknowledged and
+   * one that is not.
+   */
+  OperationWrapper discardAcknowledged(int remoteOperationCount) {
+    final int acknowledged = remoteOperationCount - getLocalOperationCount();
+
+    assert acknowledged > 0 && acknowledged < lengths.length;
+
+    final ITextOperation run = getTextOperation();
+
+    final String text = run.getText();
+    final int position = run.getPosition();
+
+    int acknowledgedLength = 0;
+
+    for (int i = 0; i < acknowledged; i++) acknowledgedLength += lengths[i];
+
+    final ITextOperation op;
+
+    switch (kind) {
+      case INSERT:
+        op =
+            new InsertOperation(
+                position + acknowledgedLength,
+                text.substring(acknowledgedLength),
+                origins[acknowledged]);
+        break;
+      case DELETE_FORWARD:
+        op = new DeleteOperation(position, text.substring(acknowledgedLength));
+        break;
+      default:
+        op = new DeleteOperation(position, text.substring(0, text.length() - acknowledgedLength));
+        break;
+    }
+
+    if (acknowledged == lengths.length - 1) return new OperationWrapper(op, remoteOperationCount);
+
+    return new CompactedOperationWrapper(
+        op,
+        remoteOperationCount,
+        kind,
+        Arrays.copyOfRange(lengths, acknowledged, lengths.length),
+        Arrays.copyOfRange(origins, acknowledged, origins.length));
+  }
+
+  /**
+   * Returns the original operations of this run (with respect to the current position of the run).
+   */
+  List<OperationWrapper> expand() {
+    final ITextOperation run = getTextOperation();
+
+    final String text = run.getText();
+    final int position = run.getPosition();
+
+    final List<OperationWrapper> result = new ArrayList<OperationWrapper>(lengths.length);
+
+    int offset = 0;
+
+    for (int i = 0; i < lengths.length; i++) {
+      final int count = getLocalOperationCount() + i;
+      final int length = lengths[i];
+
+      final Operation op;
+
+      switch (kind) {
+        case INSERT:
+          op =
+              new InsertOperation(
+                  position + offset, text.substring(offset, offset + length), origins[i]);
+          break;
+        case DELETE_FORWARD:
+          op = new DeleteOperation(position, text.substring(offset, offset + length));
+          break;
+        default:
+          final int end = text.length() - offset;
+          op = new DeleteOperation(position + end - length, text.substring(end - length, end));
+          break;
+      }
+
+      result.add(new OperationWrapper(op, count));
+      offset += length;
+    }
+
+    return result;
+  }
+
+  private ITextOperation getTextOperation() {
+    return (ITextOperation) getOperation();
+  }
+
+  private static boolean isCompactable(Operation op) {
+    return (op instanceof InsertOperation || op instanceof DeleteOperation)
+        && ((ITextOperation) op).getTextLength() > 0;
+  }
+
+  private static int getOrigin(ITextOperation op) {
+    return op instanceof InsertOperation ? ((InsertOperation) op).getOrigin() : 0;
+  }
+
+  private static Kind getKind(ITextOperation previous, ITextOperation next) {
+    if (previous instanceof InsertOperation && next instanceof InsertOperation) {
+      return next.getPosition() == previous.getPosition() + previous.getTextLength()
+          ? Kind.INSERT
+          : null;
+    }
+
+    if (previous instanceof DeleteOperation && next instanceof DeleteOperation) {
+      if (next.getPosition() == previous.getPosition()) return Kind.DELETE_FORWARD;
+
+      if (next.getPosition() + next.getTextLength() == previous.getPosition())
+        return Kind.DELETE_BACKWARD;
+    }
+
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    return ("CompactedOperationWrapper("
+        + getOperation()
+        + ", "
+        + getLocalOperationCount()
+        + "-"
+        + getLastLocalOperationCount()
+        + ")");
+  }
+}
@@ -33,8 +33,8 @@ import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.NoOperation;
 import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.TimestampOperation;
 import de.fu_berlin.inf.dpp.session.User;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import org.apache.log4j.Logger;
@@ -44,6 +44,14 @@ public class Jupiter implements Algorithm {
 
   private static final Logger log = Logger.getLogger(Jupiter.class);
 
+  /**
+   * Whether consecutive local operations are combined in the {@link #ackJupiterActivityList}, see
+   * {@link CompactedOperationWrapper}.
+   */
+  private static final boolean COMPACT_OPERATIONS =
+      Boolean.parseBoolean(
+          System.getProperty("de.fu_berlin.inf.dpp.concurrent.jupiter.COMPACT_OPERATIONS", "true"));
+
   /** The inclusion transformation function used to transform operations. */
   protected InclusionTransformation inclusion;
 
@@ -63,15 +71,34 @@ public class Jupiter implements Algorithm {
    */
   protected final List<OperationWrapper> ackJupiterActivityList;
 
+  /**
+   * Flag indicating whether consecutive operations (e.g. typing a word) are combined in the {@link
+   * #ackJupiterActivityList} so that remote operations are transformed against edited regions
+   * instead of single keystrokes.
+   */
+  protected final boolean compactOperations;
+
   /**
    * Class constructor that creates a new Jupiter algorithm.
    *
    * @param isClientSide true if the algorithm resides on the client side
    */
   public Jupiter(boolean isClientSide) {
+    this(isClientSide, COMPACT_OPERATIONS);
+  }
+
+  /**
+   * Class constructor that creates a new Jupiter algorithm.
+   *
+   * @param isClientSide true if the algorithm resides on the client side
+   * @param compactOperations true if consecutive local operations should be combined while waiting
+   *     for their acknowledgement
+   */
+  public Jupiter(boolean isClientSide, boolean compactOperations) {
     this.inclusion = new GOTOInclusionTransformation();
     this.vectorTime = new JupiterVectorTime(0, 0);
     this.isClientSide = isClientSide;
+    this.compactOperations = compactOperations;
     this.ackJupiterActivityList = new ArrayList<OperationWrapper>();
   }
 
@@ -82,8 +109,7 @@ public class Jupiter implements Algorithm {
     JupiterActivity jupiterActivity = new JupiterActivity(this.vectorTime, op, source, editor);
 
     // add(op, myMsgs) to outgoing;
-    this.ackJupiterActivityList.add(
-        new OperationWrapper(op, this.vectorTime.getLocalOperationCount()));
+    addOperation(op, this.vectorTime.getLocalOperationCount());
 
     // myMsgs = myMsgs + 1;
     this.vectorTime = this.vectorTime.incrementLocalOperationCount();
@@ -91,6 +117,27 @@ public class Jupiter implements Algorithm {
     return jupiterActivity;
   }
 
+  /**
+   * Adds the given local operation to the {@link #ackJupiterActivityList}. The operation is
+   * combined with the last entry of the list if possible.
+   */
+  private void addOperation(Operation op, int localOperationCount) {
+    final int size = this.ackJupiterActivityList.size();
+
+    if (compactOperations && size > 0) {
+      final OperationWrapper compacted =
+          CompactedOperationWrapper.append(
+              this.ackJupiterActivityList.get(size - 1), op, localOperationCount);
+
+      if (compacted != null) {
+        this.ackJupiterActivityList.set(size - 1, compacted);
+        return;
+      }
+    }
+
+    this.ackJupiterActivityList.add(new OperationWrapper(op, localOperationCount));
+  }
+
   /**
    * Returns whether the local user represented by this Jupiter instance has not modified the
    * document locally.
@@ -205,12 +252,23 @@ public class Jupiter implements Algorithm {
    * @param time the remote JupiterVectorTime
    */
   protected void discardAcknowledgedOperations(JupiterVectorTime time) {
-    Iterator<OperationWrapper> iter = this.ackJupiterActivityList.iterator();
+    ListIterator<OperationWrapper> iter = this.ackJupiterActivityList.listIterator();
     while (iter.hasNext()) {
       OperationWrapper wrap = iter.next();
-      if (wrap.getLocalOperationCount() < time.getRemoteOperationCount()) {
-        iter.remove();
+      if (wrap.getLocalOperationCount() >= time.getRemoteOperationCount()) {
+        break;
       }
+
+      if (wrap instanceof CompactedOperationWrapper
+          && ((CompactedOperationWrapper) wrap).getLastLocalOperationCount()
+              >= time.getRemoteOperationCount()) {
+        // only a part of the combined operations was acknowledged
+        iter.set(
+            ((CompactedOperationWrapper) wrap).discardAcknowledged(time.getRemoteOperationCount()));
+        break;
+      }
+
+      iter.remove();
     }
     // ASSERT msg.myMsgs == otherMsgs
     assert time.getLocalOperationCount() == this.vectorTime.getRemoteOperationCount()
@@ -230,6 +288,20 @@ public class Jupiter implements Algorithm {
         ackJupiterActivityListCnt < this.ackJupiterActivityList.size();
         ackJupiterActivityListCnt++) {
       OperationWrapper wrap = this.ackJupiterActivityList.get(ackJupiterActivityListCnt);
+
+      if (wrap instanceof CompactedOperationWrapper
+          && ((CompactedOperationWrapper) wrap).isTouchedBy(newOp)) {
+        /*
+         * the combined operation can not be used for this transformation,
+         * replace it by the operations it consists of
+         */
+        this.ackJupiterActivityList.remove(ackJupiterActivityListCnt);
+        this.ackJupiterActivityList.addAll(
+            ackJupiterActivityListCnt, ((CompactedOperationWrapper) wrap).expand());
+
+        wrap = this.ackJupiterActivityList.get(ackJupiterActivityListCnt);
+      }
+
       Operation existingOp = wrap.getOperation();
 
       Operation transformedOp;
@@ -241,9 +313,15 @@ public class Jupiter implements Algorithm {
         transformedOp = this.inclusion.transform(newOp, existingOp, Boolean.FALSE);
         existingOp = this.inclusion.transform(existingOp, newOp, Boolean.TRUE);
       }
-      this.ackJupiterActivityList.set(
-          ackJupiterActivityListCnt,
-          new OperationWrapper(existingOp, wrap.getLocalOperationCount()));
+      if (wrap instanceof CompactedOperationWrapper) {
+        this.ackJupiterActivityList.set(
+            ackJupiterActivityListCnt,
+            ((CompactedOperationWrapper) wrap).withOperation(existingOp));
+      } else {
+        this.ackJupiterActivityList.set(
+            ackJupiterActivityListCnt,
+            new OperationWrapper(existingOp, wrap.getLocalOperationCount()));
+      }
 
       newOp = transformedOp;
     }
@@ -15,6 +15,9 @@ import org.apache.log4j.Logger;
 /**
  * The JupiterDocumentServer is the host side component managing all server Jupiter instances.
  *
+ * <p>All methods of this class are synchronized, i.e. activities of the same document are
+ * transformed one after another while different documents can be handled concurrently.
+ *
  * <p>TODO [CO] Document and review this class
  */
 public class JupiterDocumentServer {
@@ -42,9 +45,8 @@ public class JupiterDocumentServer {
     return proxies.remove(user) != null;
   }
 
-  // FIXME why is this not synchronized ?!
-  public Map<User, JupiterActivity> transformJupiterActivity(final JupiterActivity activity)
-      throws TransformationException {
+  public synchronized Map<User, JupiterActivity> transformJupiterActivity(
+      final JupiterActivity activity) throws TransformationException {
 
     final Map<User, JupiterActivity> result = new HashMap<User, JupiterActivity>();
 
@@ -105,7 +107,7 @@ public class JupiterDocumentServer {
     if (removeProxyClient(user)) addProxyClient(user);
   }
 
-  public Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
+  public synchronized Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
       throws TransformationException {
 
     final Map<User, ChecksumActivity> result = new HashMap<User, ChecksumActivity>();
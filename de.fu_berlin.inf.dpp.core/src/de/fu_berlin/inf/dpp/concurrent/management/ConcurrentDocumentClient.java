@@ -6,10 +6,12 @@ import de.fu_berlin.inf.dpp.activities.FileActivity;
 import de.fu_berlin.inf.dpp.activities.IActivity;
 import de.fu_berlin.inf.dpp.activities.IActivityReceiver;
 import de.fu_berlin.inf.dpp.activities.JupiterActivity;
+import de.fu_berlin.inf.dpp.activities.RecoveryTextEditActivity;
 import de.fu_berlin.inf.dpp.activities.SPath;
 import de.fu_berlin.inf.dpp.activities.TextEditActivity;
 import de.fu_berlin.inf.dpp.concurrent.jupiter.Operation;
 import de.fu_berlin.inf.dpp.concurrent.jupiter.TransformationException;
+import de.fu_berlin.inf.dpp.editor.IEditorManager;
 import de.fu_berlin.inf.dpp.session.ISarosSession;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,9 +35,12 @@ public class ConcurrentDocumentClient {
 
   private final JupiterClient jupiterClient;
 
-  public ConcurrentDocumentClient(ISarosSession sarosSession) {
+  private final IEditorManager editorManager;
+
+  public ConcurrentDocumentClient(ISarosSession sarosSession, IEditorManager editorManager) {
 
     this.sarosSession = sarosSession;
+    this.editorManager = editorManager;
     this.jupiterClient = new JupiterClient(sarosSession);
   }
 
@@ -99,6 +104,8 @@ public class ConcurrentDocumentClient {
 
       } else if (activity instanceof ChecksumActivity) {
         activities.add(receiveChecksum((ChecksumActivity) activity));
+      } else if (activity instanceof RecoveryTextEditActivity) {
+        activities.addAll(receiveRecovery((RecoveryTextEditActivity) activity));
       } else {
         activities.add(activity);
       }
@@ -124,6 +131,35 @@ public class ConcurrentDocumentClient {
     return activity;
   }
 
+  /**
+   * Resets the JupiterClient of the recovered document as it was already reset on the host side and
+   * transforms the recovery into a TextEditActivity which can be executed locally. The recovery is
+   * dropped if the local content is not the one the host created the recovery for. In this case the
+   * document stays inconsistent and has to be recovered again.
+   *
+   * @client
+   */
+  private List<IActivity> receiveRecovery(RecoveryTextEditActivity recovery) {
+
+    List<IActivity> activities = new ArrayList<IActivity>();
+
+    reset(recovery.getPath());
+
+    activities.add(recovery);
+
+    String content = editorManager.getContent(recovery.getPath());
+
+    if (recovery.isApplicableTo(content)) {
+      activities.add(recovery.toTextEditActivity(content));
+    } else {
+      log.warn(
+          "dropping recovery as the document changed since the recovery was requested: "
+              + recovery);
+    }
+
+    return activities;
+  }
+
   /** Used to remove JupiterClientDocuments for deleted files */
   private final IActivityReceiver clientReceiver =
       new AbstractActivityReceiver() {
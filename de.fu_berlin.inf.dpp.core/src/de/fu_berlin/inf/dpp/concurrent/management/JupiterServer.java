@@ -7,15 +7,23 @@ import de.fu_berlin.inf.dpp.concurrent.jupiter.TransformationException;
 import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.JupiterDocumentServer;
 import de.fu_berlin.inf.dpp.session.ISarosSession;
 import de.fu_berlin.inf.dpp.session.User;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * A JupiterServer manages Jupiter server instances for a number of users AND number of paths.
  *
  * <p>(in contrast to a JupiterDocumentServer which only handles a single path)
+ *
+ * <p>Activities for different paths can be transformed concurrently as every JupiterDocumentServer
+ * is guarded by its own lock. Adding and removing users is mutually exclusive with all
+ * transformations so that every JupiterDocumentServer always contains the same set of users.
  */
 public class JupiterServer {
 
@@ -24,33 +32,57 @@ public class JupiterServer {
    *
    * @host
    */
-  private final HashMap<SPath, JupiterDocumentServer> concurrentDocuments =
-      new HashMap<SPath, JupiterDocumentServer>();
+  private final ConcurrentMap<SPath, JupiterDocumentServer> concurrentDocuments =
+      new ConcurrentHashMap<SPath, JupiterDocumentServer>();
 
+  /** Guarded by the write lock of {@link #clientsLock}. */
   private final Set<User> currentClients = new HashSet<User>();
 
+  /**
+   * The read lock must be held while accessing the JupiterDocumentServers, the write lock while
+   * changing the current clients.
+   */
+  private final ReadWriteLock clientsLock = new ReentrantReadWriteLock();
+
   private final ISarosSession sarosSession;
 
   public JupiterServer(final ISarosSession sarosSession) {
     this.sarosSession = sarosSession;
   }
 
-  public synchronized void removePath(final SPath path) {
+  public void removePath(final SPath path) {
     concurrentDocuments.remove(path);
   }
 
-  public synchronized void addUser(final User user) {
-    currentClients.add(user);
+  public void addUser(final User user) {
+    final Lock lock = clientsLock.writeLock();
+
+    lock.lock();
+
+    try {
+      currentClients.add(user);
 
-    for (final JupiterDocumentServer server : concurrentDocuments.values())
-      server.addProxyClient(user);
+      for (final JupiterDocumentServer server : concurrentDocuments.values())
+        server.addProxyClient(user);
+
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public synchronized void removeUser(final User user) {
-    currentClients.remove(user);
+  public void removeUser(final User user) {
+    final Lock lock = clientsLock.writeLock();
+
+    lock.lock();
+
+    try {
+      currentClients.remove(user);
+
+      for (final JupiterDocumentServer server : concurrentDocuments.values())
+        server.removeProxyClient(user);
 
-    for (final JupiterDocumentServer server : concurrentDocuments.values()) {
-      server.removeProxyClient(user);
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -58,6 +90,8 @@ public class JupiterServer {
    * Retrieves the JupiterDocumentServer for a given path. If no JupiterDocumentServer exists for
    * this path, a new one is created and returned afterwards.
    *
+   * <p>The caller must hold the read lock of {@link #clientsLock}.
+   *
    * @host
    */
   /*
@@ -66,49 +100,69 @@ public class JupiterServer {
    * SarosSessionMapper to also track the resources and not just the projects
    * that are already shared for every user individually.
    */
-  private synchronized JupiterDocumentServer getServer(final SPath path) {
+  private JupiterDocumentServer getServer(final SPath path) {
 
     JupiterDocumentServer docServer = concurrentDocuments.get(path);
 
-    if (docServer == null) {
+    if (docServer != null) return docServer;
 
-      docServer = new JupiterDocumentServer(path);
+    docServer = new JupiterDocumentServer(path);
 
-      for (final User client : currentClients) {
-        /*
-         * Make sure that we only add clients that already have the
-         * resources in question. Other clients that haven't accepted
-         * the Project yet will be added later.
-         */
-        if (sarosSession.userHasProject(client, path.getProject())) {
-          docServer.addProxyClient(client);
-        }
+    for (final User client : currentClients) {
+      /*
+       * Make sure that we only add clients that already have the
+       * resources in question. Other clients that haven't accepted
+       * the Project yet will be added later.
+       */
+      if (sarosSession.userHasProject(client, path.getProject())) {
+        docServer.addProxyClient(client);
       }
+    }
 
-      docServer.addProxyClient(sarosSession.getHost());
+    docServer.addProxyClient(sarosSession.getHost());
 
-      concurrentDocuments.put(path, docServer);
-    }
-    return docServer;
+    final JupiterDocumentServer current = concurrentDocuments.putIfAbsent(path, docServer);
+
+    return current != null ? current : docServer;
   }
 
-  public synchronized void reset(final SPath path, final User user) {
-    getServer(path).reset(user);
+  public void reset(final SPath path, final User user) {
+    final Lock lock = clientsLock.readLock();
+
+    lock.lock();
+
+    try {
+      getServer(path).reset(user);
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public synchronized Map<User, JupiterActivity> transform(final JupiterActivity activity)
+  public Map<User, JupiterActivity> transform(final JupiterActivity activity)
       throws TransformationException {
 
-    final JupiterDocumentServer docServer = getServer(activity.getPath());
+    final Lock lock = clientsLock.readLock();
+
+    lock.lock();
 
-    return docServer.transformJupiterActivity(activity);
+    try {
+      return getServer(activity.getPath()).transformJupiterActivity(activity);
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public synchronized Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
+  public Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
       throws TransformationException {
 
-    final JupiterDocumentServer docServer = getServer(activity.getPath());
+    final Lock lock = clientsLock.readLock();
 
-    return docServer.withTimestamp(activity);
+    lock.lock();
+
+    try {
+      return getServer(activity.getPath()).withTimestamp(activity);
+    } finally {
+      lock.unlock();
+    }
   }
 }
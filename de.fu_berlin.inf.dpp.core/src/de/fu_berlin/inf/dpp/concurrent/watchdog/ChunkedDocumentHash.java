@@ -0,0 +1,197 @@
+package de.fu_berlin.inf.dpp.concurrent.watchdog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains the {@link String#hashCode() string hash code} of a document whose content is changed
+ * by text edits, without hashing the whole content again after every edit.
+ *
+ * <p>The content is split into chunks of about {@link #CHUNK_SIZE} characters, each caching its own
+ * hash code. As the string hash code is a polynomial over the characters, the hash code of the
+ * concatenation <code>a + b</code> is <code>hash(a) * 31^length(b) + hash(b)</code>. Thus an edit
+ * only has to rehash the chunks it touches, and the hash code of the document is combined from the
+ * chunk hash codes.
+ *
+ * <p>This class is <b>not</b> thread safe.
+ */
+final class ChunkedDocumentHash {
+
+  static final int CHUNK_SIZE = 4096;
+
+  private static final class Chunk {
+    private final StringBuilder text;
+    private boolean valid;
+    private int hash;
+    private int power;
+
+    private Chunk(CharSequence text) {
+      this.text = new StringBuilder(text);
+    }
+
+    private int length() {
+      return text.length();
+    }
+
+    private void invalidate() {
+      valid = false;
+    }
+
+    private void validate() {
+      if (valid) return;
+
+      int h = 0;
+
+      for (int i = 0; i < text.length(); i++) h = 31 * h + text.charAt(i);
+
+      hash = h;
+      power = power(text.length());
+      valid = true;
+    }
+  }
+
+  private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+  private int length;
+
+  /**
+   * Creates a ChunkedDocumentHash for the given content.
+   *
+   * @param content the current content of the document
+   */
+  ChunkedDocumentHash(String content) {
+    for (int i = 0; i < content.length(); i += CHUNK_SIZE)
+      chunks.add(new Chunk(content.substring(i, Math.min(content.length(), i + CHUNK_SIZE))));
+
+    length = content.length();
+  }
+
+  /** Returns the length of the content. */
+  int getLength() {
+    return length;
+  }
+
+  /** Returns the same value as {@link String#hashCode()} of the content. */
+  int getHash() {
+    int h = 0;
+
+    for (final Chunk chunk : chunks) {
+      chunk.validate();
+      h = h * chunk.power + chunk.hash;
+    }
+
+    return h;
+  }
+
+  /**
+   * Replaces the text at the given offset.
+   *
+   * @param offset the offset of the replaced text
+   * @param replacedText the text that is replaced, must match the current content at the given
+   *     offset
+   * @param text the inserted text
+   * @return <code>true</code> if the edit was applied, <code>false</code> if the replaced text does
+   *     not match the content in which case the content is not changed
+   */
+  boolean replace(int offset, String replacedText, String text) {
+    if (offset < 0 || offset + replacedText.length() > length) return false;
+
+    if (chunks.isEmpty()) chunks.add(new Chunk(""));
+
+    int index = 0;
+    int local = offset;
+
+    while (local > chunks.get(index).length()) {
+      local -= chunks.get(index).length();
+      index++;
+    }
+
+    if (!matches(index, local, replacedText)) return false;
+
+    int remaining = replacedText.length();
+    int current = index;
+    int from = local;
+
+    while (remaining > 0) {
+      final Chunk chunk = chunks.get(current);
+      final int deleted = Math.min(remaining, chunk.length() - from);
+
+      chunk.text.delete(from, from + deleted);
+      chunk.invalidate();
+      remaining -= deleted;
+
+      if (chunk.length() == 0 && current != index) {
+        chunks.remove(current);
+      } else {
+        current++;
+        from = 0;
+      }
+    }
+
+    final Chunk chunk = chunks.get(index);
+
+    chunk.text.insert(local, text);
+    chunk.invalidate();
+
+    if (chunk.length() == 0) chunks.remove(index);
+    else if (chunk.length() > 2 * CHUNK_SIZE) split(index);
+    else if (chunk.length() < CHUNK_SIZE / 2 && index + 1 < chunks.size()) merge(index);
+
+    length += text.length() - replacedText.length();
+
+    return true;
+  }
+
+  /** For testing purposes only. */
+  int getChunkCount() {
+    return chunks.size();
+  }
+
+  private boolean matches(int index, int local, String replacedText) {
+    int position = 0;
+
+    while (position < replacedText.length()) {
+      final StringBuilder chunk = chunks.get(index).text;
+
+      for (; local < chunk.length() && position < replacedText.length(); local++, position++)
+        if (chunk.charAt(local) != replacedText.charAt(position)) return false;
+
+      index++;
+      local = 0;
+    }
+
+    return true;
+  }
+
+  /** Merges the chunk at the given index with its successor to avoid fragmentation. */
+  private void merge(int index) {
+    final Chunk chunk = chunks.get(index);
+
+    chunk.text.append(chunks.remove(index + 1).text);
+    chunk.invalidate();
+
+    if (chunk.length() > 2 * CHUNK_SIZE) split(index);
+  }
+
+  private void split(int index) {
+    final String text = chunks.remove(index).text.toString();
+
+    for (int i = 0; i < text.length(); i += CHUNK_SIZE, index++)
+      chunks.add(index, new Chunk(text.substring(i, Math.min(text.length(), i + CHUNK_SIZE))));
+  }
+
+  /** Returns <code>31^exponent</code> with the same overflow semantics as the string hash code. */
+  private static int power(int exponent) {
+    int result = 1;
+    int base = 31;
+
+    while (exponent > 0) {
+      if ((exponent & 1) != 0) result *= base;
+
+      base *= base;
+      exponent >>= 1;
+    }
+
+    return result;
+  }
+}
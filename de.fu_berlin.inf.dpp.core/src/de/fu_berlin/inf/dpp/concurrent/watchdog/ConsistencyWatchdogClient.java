@@ -2,7 +2,9 @@ package de.fu_berlin.inf.dpp.concurrent.watchdog;
 
 import de.fu_berlin.inf.dpp.activities.ChecksumActivity;
 import de.fu_berlin.inf.dpp.activities.ChecksumErrorActivity;
+import de.fu_berlin.inf.dpp.activities.DocumentDigest;
 import de.fu_berlin.inf.dpp.activities.FileActivity;
+import de.fu_berlin.inf.dpp.activities.RecoveryTextEditActivity;
 import de.fu_berlin.inf.dpp.activities.SPath;
 import de.fu_berlin.inf.dpp.annotations.Component;
 import de.fu_berlin.inf.dpp.editor.IEditorManager;
@@ -74,6 +76,12 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
 
   private final Set<SPath> pathsWithWrongChecksums = new CopyOnWriteArraySet<SPath>();
 
+  /**
+   * The paths for which a partial recovery was requested in the last recovery. If such a path is
+   * still inconsistent, the next recovery requests the whole file.
+   */
+  private final Set<SPath> partiallyRecoveredPaths = new HashSet<SPath>();
+
   private final RemoteProgressManager remoteProgressManager;
 
   private final ISarosSession session;
@@ -110,6 +118,15 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
         public void receive(FileActivity fileActivity) {
           if (!fileActivity.isRecovery()) return;
 
+          fileRecovered();
+        }
+
+        @Override
+        public void receive(RecoveryTextEditActivity recoveryTextEditActivity) {
+          fileRecovered();
+        }
+
+        private void fileRecovered() {
           int currentValue;
           while ((currentValue = filesRemaining.get()) > 0) {
             if (filesRemaining.compareAndSet(currentValue, currentValue - 1)) {
@@ -212,6 +229,7 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
               currentSession.getLocalUser(),
               currentSession.getHost(),
               pathsOfHandledFiles,
+              createDigests(pathsOfHandledFiles),
               recoveryID));
 
       try {
@@ -248,6 +266,33 @@ public class ConsistencyWatchdogClient extends AbstractActivityProducer implemen
     }
   }
 
+  /**
+   * Creates the digests for a partial recovery of the given files. Files which were already
+   * recovered partially in the last recovery are excluded, so that the host sends the whole file if
+   * the partial recovery did not succeed.
+   */
+  private List<DocumentDigest> createDigests(List<SPath> paths) {
+    final List<DocumentDigest> digests = new ArrayList<DocumentDigest>();
+
+    final Set<SPath> lastPartiallyRecoveredPaths = new HashSet<SPath>(partiallyRecoveredPaths);
+
+    partiallyRecoveredPaths.clear();
+
+    for (SPath path : paths) {
+      if (lastPartiallyRecoveredPaths.contains(path)) continue;
+
+      final DocumentDigest digest =
+          PartialRecovery.createDigest(path, editorManager.getContent(path));
+
+      if (digest == null) continue;
+
+      digests.add(digest);
+      partiallyRecoveredPaths.add(path);
+    }
+
+    return digests;
+  }
+
   private String getNextRecoveryID() {
     return Long.toHexString(RANDOM.nextLong());
   }
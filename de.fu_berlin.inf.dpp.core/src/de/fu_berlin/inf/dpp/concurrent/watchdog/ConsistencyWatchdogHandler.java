@@ -2,8 +2,10 @@ package de.fu_berlin.inf.dpp.concurrent.watchdog;
 
 import de.fu_berlin.inf.dpp.activities.ChecksumActivity;
 import de.fu_berlin.inf.dpp.activities.ChecksumErrorActivity;
+import de.fu_berlin.inf.dpp.activities.DocumentDigest;
 import de.fu_berlin.inf.dpp.activities.FileActivity.Purpose;
 import de.fu_berlin.inf.dpp.activities.FileActivity.Type;
+import de.fu_berlin.inf.dpp.activities.RecoveryTextEditActivity;
 import de.fu_berlin.inf.dpp.activities.SPath;
 import de.fu_berlin.inf.dpp.activities.TargetedFileActivity;
 import de.fu_berlin.inf.dpp.annotations.Component;
@@ -100,6 +102,12 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
 
     try {
 
+      /*
+       * All users have to be stopped: text edits of other users may already
+       * be transformed by the Jupiter server but not yet be applied to the
+       * local document when the Jupiter state is reset and the content is
+       * captured (see recoverFile).
+       */
       startHandles = session.getStopManager().stop(session.getUsers(), "Consistency recovery");
 
       recoverFiles(checksumError);
@@ -140,7 +148,7 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
 
             for (final SPath path : checksumError.getPaths()) {
 
-              recoverFile(checksumError.getSource(), path);
+              recoverFile(checksumError.getSource(), path, checksumError.getDigest(path));
 
               // Tell the user that we sent all files
               fireActivity(
@@ -156,9 +164,10 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
 
   /**
    * Recover a single file for the given user (that is either send the file or tell the user to
-   * remove it).
+   * remove it). If the user attached a digest of the file, only the inconsistent part of the file
+   * is sent if possible.
    */
-  private void recoverFile(final User from, final SPath path) {
+  private void recoverFile(final User from, final SPath path, final DocumentDigest digest) {
 
     final IFile file = path.getFile();
 
@@ -182,6 +191,21 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
       return;
     }
 
+    if (digest != null) {
+      final String text = editorManager.getContent(path);
+
+      final RecoveryTextEditActivity recovery =
+          text == null ? null : PartialRecovery.createRecovery(user, from, digest, text);
+
+      if (recovery != null) {
+        LOG.debug("recovering " + recovery.getReplacedLength() + " characters of file: " + file);
+
+        fireActivity(recovery);
+        fireChecksum(user, path, text);
+        return;
+      }
+    }
+
     String charset = null;
 
     try {
@@ -217,6 +241,10 @@ public final class ConsistencyWatchdogHandler extends AbstractActivityProducer
      * side can verify the recovered file.
      */
 
+    fireChecksum(user, path, text);
+  }
+
+  private void fireChecksum(final User user, final SPath path, final String text) {
     DocumentChecksum checksum = new DocumentChecksum(path);
     checksum.update(text);
 
@@ -84,15 +84,16 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
   private ISharedEditorListener sharedEditorListener =
       new AbstractSharedEditorListener() {
         /**
-         * Marks checksums as dirty as soon as their associated documents are modified. With this
-         * information, checksum calculation can be avoided when the document hasn't changed between
-         * checksum iterations.
+         * Applies the text edits to the checksums of their associated documents. With this, the
+         * checksums stay up-to-date without having to read and hash the whole document content in
+         * every checksum iteration. If a text edit cannot be applied, the checksum is marked as
+         * dirty and will be recalculated from the document content in the next iteration.
          */
         @Override
         public void textEdited(TextEditActivity textEdit) {
           DocumentChecksum checksum = documentChecksums.get(textEdit.getPath());
 
-          if (checksum != null) checksum.markDirty();
+          if (checksum != null) checksum.applyTextEdit(textEdit);
         }
       };
 
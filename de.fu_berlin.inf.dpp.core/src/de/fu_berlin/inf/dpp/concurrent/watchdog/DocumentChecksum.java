@@ -1,10 +1,15 @@
 package de.fu_berlin.inf.dpp.concurrent.watchdog;
 
 import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
 
 /**
  * Represents a checksum of a document in the workspace. It consists of the document's
  * project-relative path, the content length and the content's string hash code.
+ *
+ * <p>After the checksum was calculated from the document's content once, it can be kept up-to-date
+ * by {@linkplain #applyTextEdit(TextEditActivity) applying the text edits} of the document, which
+ * is much cheaper than recalculating it from the whole content.
  */
 public class DocumentChecksum {
 
@@ -19,6 +24,14 @@ public class DocumentChecksum {
   private int hash;
   private boolean dirty;
 
+  /** The content of the last full update, <code>null</code> once a text edit was applied. */
+  private String content;
+
+  /** Maintains the hash code after text edits, created on the first text edit. */
+  private ChunkedDocumentHash chunkedHash;
+
+  private boolean hashOutdated;
+
   /**
    * Creates a new DocumentChecksum.
    *
@@ -60,6 +73,11 @@ public class DocumentChecksum {
    *     #NOT_AVAILABLE} if not available
    */
   public int getHash() {
+    if (hashOutdated) {
+      hash = chunkedHash.getHash();
+      hashOutdated = false;
+    }
+
     return hash;
   }
 
@@ -69,8 +87,8 @@ public class DocumentChecksum {
    * associated document's current content.
    *
    * <p>Note that this determines whether {@link #update(String)} actually does any checksum
-   * calculations, so make sure to call {@link #markDirty()} to notify the checksum whenever the
-   * document changes.
+   * calculations, so make sure to call {@link #applyTextEdit(TextEditActivity)} or {@link
+   * #markDirty()} to notify the checksum whenever the document changes.
    *
    * <p>A DocumentChecksum is automatically marked as dirty when it created.
    *
@@ -83,10 +101,13 @@ public class DocumentChecksum {
 
   /**
    * Tells the checksum that its content length and hash code are out-of-date because the associated
-   * document changed.
+   * document changed in a way that is not described by a text edit.
    */
   public void markDirty() {
     dirty = true;
+    content = null;
+    chunkedHash = null;
+    hashOutdated = false;
   }
 
   /**
@@ -108,11 +129,51 @@ public class DocumentChecksum {
       hash = documentContent.hashCode();
     }
 
+    content = documentContent;
+    chunkedHash = null;
+    hashOutdated = false;
     dirty = false;
   }
 
+  /**
+   * Updates the checksum's content length and hash code by applying the given text edit of the
+   * associated document. The costs of this operation depend on the size of the text edit, not on
+   * the size of the document.
+   *
+   * <p>If the checksum is {@linkplain #isDirty() dirty}, the document is not available, or the text
+   * edit does not match the content the checksum was calculated for, the checksum is marked as
+   * dirty and has to be {@linkplain #update(String) recalculated} from the document's content.
+   *
+   * @param textEdit a text edit of the associated document that was not applied to the checksum yet
+   * @return <code>true</code> if the checksum is up-to-date, <code>false</code> if it is dirty
+   */
+  public boolean applyTextEdit(TextEditActivity textEdit) {
+    if (dirty) return false;
+
+    if (chunkedHash == null) {
+      if (content == null) {
+        markDirty();
+        return false;
+      }
+
+      chunkedHash = new ChunkedDocumentHash(content);
+      content = null;
+    }
+
+    if (!chunkedHash.replace(
+        textEdit.getOffset(), textEdit.getReplacedText(), textEdit.getText())) {
+      markDirty();
+      return false;
+    }
+
+    length = chunkedHash.getLength();
+    hashOutdated = true;
+
+    return true;
+  }
+
   @Override
   public String toString() {
-    return path.toString() + " [" + this.length + "," + this.hash + "]";
+    return path.toString() + " [" + this.length + "," + getHash() + "]";
   }
 }
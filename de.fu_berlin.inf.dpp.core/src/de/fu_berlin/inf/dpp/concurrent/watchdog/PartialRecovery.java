@@ -0,0 +1,130 @@
+package de.fu_berlin.inf.dpp.concurrent.watchdog;
+
+import de.fu_berlin.inf.dpp.activities.DocumentDigest;
+import de.fu_berlin.inf.dpp.activities.RecoveryTextEditActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.session.User;
+
+/**
+ * Creates the {@linkplain DocumentDigest digests} of inconsistent documents on the client side and
+ * the {@linkplain RecoveryTextEditActivity edits} which recover these documents on the host side.
+ *
+ * <p>The host compares the chunk hashes of the digest with its own content, starting at the
+ * beginning and at the end of the document, to find the longest common prefix and suffix (in
+ * multiples of the chunk size). Only the text between them is sent to the client. This works well
+ * for the typical inconsistency that is caused by a single lost or misapplied text edit.
+ */
+final class PartialRecovery {
+
+  /** Documents shorter than this are always recovered by sending the whole file. */
+  static final int MIN_DOCUMENT_LENGTH = 16 * 1024;
+
+  /** The minimal number of characters per chunk. */
+  static final int MIN_CHUNK_SIZE = 1024;
+
+  /** The maximal number of chunks per direction, i.e. the size of the digest is bounded. */
+  static final int MAX_CHUNKS = 256;
+
+  private PartialRecovery() {
+    // NOP
+  }
+
+  /**
+   * Creates the digest of the given document content.
+   *
+   * @param path the path of the document
+   * @param content the current content of the document, may be <code>null</code>
+   * @return the digest or <code>null</code> if the document should be recovered by sending the
+   *     whole file
+   */
+  static DocumentDigest createDigest(SPath path, String content) {
+    if (content == null || content.length() < MIN_DOCUMENT_LENGTH) return null;
+
+    final int length = content.length();
+    final int chunkSize = Math.max(MIN_CHUNK_SIZE, (length + MAX_CHUNKS - 1) / MAX_CHUNKS);
+    final int chunks = (length + chunkSize - 1) / chunkSize;
+
+    final int[] headHashes = new int[chunks];
+    final int[] tailHashes = new int[chunks];
+
+    for (int i = 0; i < chunks; i++) {
+      headHashes[i] = hash(content, i * chunkSize, Math.min(length, (i + 1) * chunkSize));
+      tailHashes[i] =
+          hash(content, Math.max(0, length - (i + 1) * chunkSize), length - i * chunkSize);
+    }
+
+    return new DocumentDigest(path, length, content.hashCode(), chunkSize, headHashes, tailHashes);
+  }
+
+  /**
+   * Creates the edit that transforms the content described by the given digest into the given
+   * content of the host.
+   *
+   * @param source the local user (the host)
+   * @param target the user who sent the digest
+   * @param digest the digest of the inconsistent document of the target user
+   * @param content the current content of the document on the host
+   * @return the recovery edit or <code>null</code> if sending the inconsistent part is not
+   *     significantly cheaper than sending the whole file
+   */
+  static RecoveryTextEditActivity createRecovery(
+      User source, User target, DocumentDigest digest, String content) {
+
+    final int chunkSize = digest.getChunkSize();
+    final int remoteLength = digest.getLength();
+    final int localLength = content.length();
+
+    final int[] headHashes = digest.getHeadHashes();
+    final int[] tailHashes = digest.getTailHashes();
+
+    int prefix = 0;
+
+    for (int i = 0; i < headHashes.length; i++) {
+      final int start = i * chunkSize;
+      final int end = Math.min(remoteLength, start + chunkSize);
+
+      if (end > localLength || hash(content, start, end) != headHashes[i]) break;
+
+      prefix = end;
+    }
+
+    int suffix = 0;
+
+    for (int i = 0; i < tailHashes.length; i++) {
+      final int end = remoteLength - i * chunkSize;
+      final int start = Math.max(0, end - chunkSize);
+      final int localEnd = localLength - i * chunkSize;
+      final int localStart = localEnd - (end - start);
+
+      if (localStart < 0 || hash(content, localStart, localEnd) != tailHashes[i]) break;
+
+      suffix = remoteLength - start;
+    }
+
+    // the prefix and the suffix must not overlap in any of both documents
+    suffix = Math.min(suffix, Math.min(remoteLength, localLength) - prefix);
+
+    final String text = content.substring(prefix, localLength - suffix);
+
+    if (text.length() > localLength / 2) return null;
+
+    return new RecoveryTextEditActivity(
+        source,
+        target,
+        digest.getPath(),
+        prefix,
+        remoteLength - prefix - suffix,
+        text,
+        remoteLength,
+        digest.getHash());
+  }
+
+  /** Returns the same value as {@link String#hashCode()} of the given range of the content. */
+  private static int hash(String content, int start, int end) {
+    int h = 0;
+
+    for (int i = start; i < end; i++) h = 31 * h + content.charAt(i);
+
+    return h;
+  }
+}
@@ -1,12 +1,20 @@
 package de.fu_berlin.inf.dpp.filesystem;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.zip.Adler32;
 import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
 
 /**
  * Utility class offering static methods to perform file and folder manipulation. If not stated
@@ -15,8 +23,21 @@ import org.apache.commons.io.IOUtils;
  */
 public class FileSystem {
 
+  private static final Logger LOG = Logger.getLogger(FileSystem.class);
+
   private static final int BUFFER_SIZE = 32 * 1024;
 
+  private static final int DIRECT_BUFFER_SIZE = 256 * 1024;
+
+  /** Reused by every thread that calculates checksums of local files. */
+  private static final ThreadLocal<ByteBuffer> DIRECT_BUFFER =
+      new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+          return ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+      };
+
   private FileSystem() {
     // NOP
   }
@@ -24,11 +45,25 @@ public class FileSystem {
   /**
    * Calculate Adler32 checksum for given file.
    *
+   * <p>If the file is stored in the local file system, it is read directly through a {@link
+   * FileChannel} into a large direct buffer, otherwise its {@linkplain IFile#getContents()
+   * contents} are read.
+   *
    * @return checksum of file
    * @throws IOException if an I/O error occurred
    */
   public static long checksum(IFile file) throws IOException {
 
+    final Path localFile = getLocalFile(file);
+
+    if (localFile != null) {
+      try {
+        return checksum(localFile);
+      } catch (IOException e) {
+        LOG.debug("could not read " + localFile + " directly, reading contents of " + file, e);
+      }
+    }
+
     InputStream in;
 
     try {
@@ -52,6 +87,48 @@ public class FileSystem {
     return adler.getValue();
   }
 
+  private static long checksum(Path path) throws IOException {
+    final ByteBuffer buffer = DIRECT_BUFFER.get();
+
+    final Adler32 adler = new Adler32();
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer.clear();
+
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        adler.update(buffer);
+        buffer.clear();
+      }
+    }
+
+    return adler.getValue();
+  }
+
+  /**
+   * Returns the location of the given file in the local file system if it can be read directly,
+   * i.e. if it exists and has the size reported by the file.
+   */
+  private static Path getLocalFile(IFile file) {
+    final IPath location = file.getLocation();
+
+    if (location == null) return null;
+
+    final File localFile = location.toFile();
+
+    if (localFile == null) return null;
+
+    try {
+      final Path path = localFile.toPath();
+
+      if (!Files.isRegularFile(path) || Files.size(path) != file.getSize()) return null;
+
+      return path;
+    } catch (IOException | InvalidPathException e) {
+      return null;
+    }
+  }
+
   /**
    * Creates the folder for the given file, including any necessary but nonexistent parent folders.
    * Note that if this operation fails it may have succeeded in creating some of the necessary
@@ -0,0 +1,282 @@
+package de.fu_berlin.inf.dpp.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.log4j.Logger;
+import org.picocontainer.Startable;
+
+/**
+ * Checksum cache {@link IChecksumCache implementation} that keeps its checksums across restarts by
+ * storing them in a file, e.g. in the state location of the workspace.
+ *
+ * <p>Every checksum is stored together with the size and modification time the file had when the
+ * checksum was added. A checksum is only returned if the file still has this size and modification
+ * time, so changes that were made while the application was not running (and therefore could not be
+ * {@linkplain IFileContentChangedNotifier notified}) invalidate the checksum, too. Checksums of
+ * files that were modified shortly before the checksum was added are not stored, as further
+ * modifications within the resolution of the file system's time stamps would go unnoticed.
+ *
+ * <p>Only files that are stored in the local file system (see {@link IResource#getLocation()}) are
+ * cached. Lookups do not acquire any locks.
+ *
+ * <p>The checksums are read from the file when the cache is {@linkplain #start() started} and
+ * written back when it is {@linkplain #stop() stopped}.
+ */
+public final class PersistentChecksumCache implements IChecksumCache, Startable {
+
+  private static final Logger LOG = Logger.getLogger(PersistentChecksumCache.class);
+
+  private static final int MAGIC = 0x53434b53; // SCKS
+
+  private static final int VERSION = 1;
+
+  /**
+   * Checksums of files that were modified less than this many milliseconds before the checksum was
+   * added are not stored, as the resolution of modification times is as coarse as two seconds on
+   * some file systems.
+   */
+  private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+
+  private static final class Entry {
+    final long size;
+    final long modificationTime;
+    final long checksum;
+    final boolean persistent;
+
+    Entry(long size, long modificationTime, long checksum, boolean persistent) {
+      this.size = size;
+      this.modificationTime = modificationTime;
+      this.checksum = checksum;
+      this.persistent = persistent;
+    }
+  }
+
+  /** Marks the checksum of a file whose content was changed. */
+  private static final Entry INVALID = new Entry(-1, -1, 0, false);
+
+  private final IFileContentChangedListener fileContentChangedListener =
+      new IFileContentChangedListener() {
+        @Override
+        public void fileContentChanged(IFile file) {
+          final String path = getKey(file);
+
+          if (LOG.isTraceEnabled()) LOG.trace("invalidating checksum for file: " + path);
+
+          entries.put(path, INVALID);
+        }
+      };
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  private final IFileContentChangedNotifier fileContentChangedNotifier;
+
+  private final File storeFile;
+
+  /**
+   * Creates a PersistentChecksumCache.
+   *
+   * @param fileContentChangedNotifier notifier that tracks file changes in the currently used file
+   *     system
+   * @param storeFile the file the checksums are stored in
+   */
+  public PersistentChecksumCache(
+      IFileContentChangedNotifier fileContentChangedNotifier, File storeFile) {
+    this.fileContentChangedNotifier = fileContentChangedNotifier;
+    this.storeFile = storeFile;
+
+    fileContentChangedNotifier.addFileContentChangedListener(fileContentChangedListener);
+  }
+
+  @Override
+  public void start() {
+    try {
+      load();
+    } catch (IOException e) {
+      LOG.warn("could not load checksums from " + storeFile + ", starting with an empty cache", e);
+    }
+  }
+
+  @Override
+  public void stop() {
+    fileContentChangedNotifier.removeFileContentChangedListener(fileContentChangedListener);
+
+    try {
+      save();
+    } catch (IOException e) {
+      LOG.warn("could not store checksums in " + storeFile, e);
+    }
+  }
+
+  @Override
+  public Long getChecksum(IFile file) {
+    final String path = getKey(file);
+
+    final Entry entry = entries.get(path);
+
+    if (entry == null || entry == INVALID) {
+      logNoValidChecksum(path);
+      return null;
+    }
+
+    final BasicFileAttributes attributes = readAttributes(file);
+
+    if (attributes == null
+        || attributes.size() != entry.size
+        || attributes.lastModifiedTime().toMillis() != entry.modificationTime) {
+      logNoValidChecksum(path);
+      return null;
+    }
+
+    if (LOG.isTraceEnabled())
+      LOG.trace("found valid checksum for file: " + path + " [" + entry.checksum + "]");
+
+    return entry.checksum;
+  }
+
+  @Override
+  public boolean addChecksum(IFile file, long checksum) {
+    final String path = getKey(file);
+
+    final BasicFileAttributes attributes = readAttributes(file);
+
+    final Entry previous;
+
+    if (attributes == null) {
+      previous = entries.remove(path);
+    } else {
+      final long modificationTime = attributes.lastModifiedTime().toMillis();
+
+      final boolean persistent =
+          System.currentTimeMillis() - modificationTime >= MODIFICATION_TIME_RESOLUTION;
+
+      previous =
+          entries.put(path, new Entry(attributes.size(), modificationTime, checksum, persistent));
+    }
+
+    return previous == INVALID;
+  }
+
+  /** Reads the stored checksums. Checksums that were added in the meantime take precedence. */
+  private void load() throws IOException {
+    final DataInputStream in;
+
+    try {
+      in =
+          new DataInputStream(
+              new BufferedInputStream(Files.newInputStream(storeFile.toPath()), 64 * 1024));
+    } catch (NoSuchFileException e) {
+      return;
+    }
+
+    int count = 0;
+
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        LOG.warn("ignoring checksums in " + storeFile + " as the file format is not supported");
+        return;
+      }
+
+      final int size = in.readInt();
+
+      for (; count < size; count++) {
+        final String path = in.readUTF();
+        final Entry entry = new Entry(in.readLong(), in.readLong(), in.readLong(), true);
+
+        entries.putIfAbsent(path, entry);
+      }
+    } catch (EOFException e) {
+      LOG.warn("checksums in " + storeFile + " are incomplete, loaded " + count + " checksums");
+    } finally {
+      in.close();
+    }
+
+    LOG.debug("loaded " + count + " checksums from " + storeFile);
+  }
+
+  /** Writes the valid checksums to a temporary file which then replaces the store file. */
+  private void save() throws IOException {
+    final List<Map.Entry<String, Entry>> snapshot = new ArrayList<Map.Entry<String, Entry>>();
+
+    for (Map.Entry<String, Entry> entry : entries.entrySet())
+      if (entry.getValue().persistent) snapshot.add(entry);
+
+    final Path target = storeFile.toPath().toAbsolutePath();
+
+    Files.createDirectories(target.getParent());
+
+    final Path temp = Files.createTempFile(target.getParent(), "checksums", null);
+
+    try {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(snapshot.size());
+
+        for (Map.Entry<String, Entry> mapEntry : snapshot) {
+          final Entry entry = mapEntry.getValue();
+
+          out.writeUTF(mapEntry.getKey());
+          out.writeLong(entry.size);
+          out.writeLong(entry.modificationTime);
+          out.writeLong(entry.checksum);
+        }
+      }
+
+      try {
+        Files.move(
+            temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+
+    LOG.debug("stored " + snapshot.size() + " checksums in " + storeFile);
+  }
+
+  private static String getKey(IFile file) {
+    return file.getFullPath().toPortableString();
+  }
+
+  /**
+   * Returns the attributes of the given file in the local file system, or <code>null</code> if the
+   * file is not stored in the local file system or cannot be accessed.
+   */
+  private static BasicFileAttributes readAttributes(IFile file) {
+    final IPath location = file.getLocation();
+
+    if (location == null) return null;
+
+    try {
+      final BasicFileAttributes attributes =
+          Files.readAttributes(location.toFile().toPath(), BasicFileAttributes.class);
+
+      return attributes.isRegularFile() ? attributes : null;
+    } catch (IOException | InvalidPathException e) {
+      return null;
+    }
+  }
+
+  private static void logNoValidChecksum(String path) {
+    if (LOG.isTraceEnabled()) LOG.trace("no valid checksum found for file: " + path);
+  }
+}
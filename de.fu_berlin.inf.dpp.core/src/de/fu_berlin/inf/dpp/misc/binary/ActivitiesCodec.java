@@ -0,0 +1,477 @@
+package de.fu_berlin.inf.dpp.misc.binary;
+
+import de.fu_berlin.inf.dpp.activities.IActivity;
+import de.fu_berlin.inf.dpp.activities.IResourceActivity;
+import de.fu_berlin.inf.dpp.activities.JupiterActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextSelectionActivity;
+import de.fu_berlin.inf.dpp.activities.ViewportActivity;
+import de.fu_berlin.inf.dpp.annotations.Component;
+import de.fu_berlin.inf.dpp.communication.extensions.ActivitiesExtension;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.Operation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.JupiterVectorTime;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.DeleteOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.InsertOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.NoOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.SplitOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.TimestampOperation;
+import de.fu_berlin.inf.dpp.filesystem.IPathFactory;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.net.xmpp.JID;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.session.User;
+import de.fu_berlin.inf.dpp.versioning.VersionManager;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import org.picocontainer.Startable;
+
+/**
+ * Binary codec for {@link ActivitiesExtension activity packets}. The activity types which are
+ * generated while typing, i.e {@link JupiterActivity}, {@link TextSelectionActivity} and {@link
+ * ViewportActivity}, are written field by field, the text of the operations as plain UTF-8. All
+ * other activities are embedded as XML, so a packet that mixes them with typing activities does not
+ * force the text of the operations into the URL encoded XML representation.
+ *
+ * <p>Packets that only contain typing activities are written in version 1 of the format, which can
+ * be decoded by all peers supporting the codec. Packets containing other activities are written in
+ * version 2 and are only sent to peers supporting this version, all other peers receive XML.
+ *
+ * <p>The format is versioned and does not use reflection. All numbers are written as variable
+ * length integers and every {@link User} and {@link SPath} is written only once per packet. The
+ * activities refer to them by their index in the user and path table.
+ *
+ * <pre>
+ * byte    version
+ * int     sequence number (fixed size)
+ * string  session id
+ * varint  user count, { string jid }
+ * varint  path count, { string project id, string project relative path }
+ * varint  activity count, { byte type, varint user index, varint path index + 1, ... }
+ *                         | { byte 0, string XML of the activity } (version 2)
+ * </pre>
+ *
+ * Strings are written as the varint length of their UTF-8 representation followed by the UTF-8
+ * bytes.
+ *
+ * <p>The fields of an activity that follow its type, user and path index do not depend on the
+ * packet. They are cached per activity instance, so an activity that is sent to several recipients
+ * is only serialized once, no matter how the activities are batched for each recipient.
+ */
+@Component
+public class ActivitiesCodec
+    implements BinaryExtensionProvider.Codec<ActivitiesExtension>, Startable {
+
+  private static final Logger LOG = Logger.getLogger(ActivitiesCodec.class);
+
+  /** The current version of the binary format. */
+  public static final int VERSION = 2;
+
+  /** The version of the binary format which only supports typing activities. */
+  private static final int VERSION_TYPING = 1;
+
+  private static final int TYPE_XML = 0;
+  private static final int TYPE_JUPITER = 1;
+  private static final int TYPE_TEXT_SELECTION = 2;
+  private static final int TYPE_VIEWPORT = 3;
+
+  private static final int OP_NO = 0;
+  private static final int OP_TIMESTAMP = 1;
+  private static final int OP_INSERT = 2;
+  private static final int OP_DELETE = 3;
+  private static final int OP_SPLIT = 4;
+
+  /** Maximum number of activities whose encoded fields are cached. */
+  private static final int MAX_CACHED_ACTIVITIES = 256;
+
+  /**
+   * Activities whose encoded fields exceed this size (in bytes) are not cached to avoid holding
+   * large file contents in memory.
+   */
+  private static final int MAX_CACHED_ACTIVITY_SIZE = 16 * 1024;
+
+  /** Identifies an activity by its instance as most activities do not implement equals. */
+  private static final class ActivityKey {
+    private final IActivity activity;
+
+    private ActivityKey(IActivity activity) {
+      this.activity = activity;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(activity);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof ActivityKey && ((ActivityKey) obj).activity == activity;
+    }
+  }
+
+  private final ISarosSession session;
+  private final IPathFactory pathFactory;
+  private final VersionManager versionManager;
+
+  private final Map<ActivityKey, byte[]> encodedActivities =
+      new LinkedHashMap<ActivityKey, byte[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ActivityKey, byte[]> eldest) {
+          return size() > MAX_CACHED_ACTIVITIES;
+        }
+      };
+
+  private long encodedActivityCount;
+
+  public ActivitiesCodec(
+      ISarosSession session, IPathFactory pathFactory, VersionManager versionManager) {
+    this.session = session;
+    this.pathFactory = pathFactory;
+    this.versionManager = versionManager;
+  }
+
+  @Override
+  public void start() {
+    ActivitiesExtension.BINARY_PROVIDER.setCodec(this);
+  }
+
+  @Override
+  public void stop() {
+    ActivitiesExtension.BINARY_PROVIDER.unsetCodec(this);
+
+    synchronized (encodedActivities) {
+      encodedActivities.clear();
+    }
+  }
+
+  @Override
+  public boolean canEncode(JID recipient, ActivitiesExtension extension) {
+    final int version = versionManager.getActivityCodecVersion(recipient);
+
+    if (version >= VERSION) return true;
+
+    if (version < VERSION_TYPING) return false;
+
+    for (IActivity activity : extension.getActivities()) if (!isTyping(activity)) return false;
+
+    return true;
+  }
+
+  /** Returns whether the given activity is written field by field instead of as XML. */
+  private static boolean isTyping(IActivity activity) {
+    if (activity instanceof JupiterActivity)
+      return ((JupiterActivity) activity).getTimestamp() instanceof JupiterVectorTime;
+
+    return activity instanceof TextSelectionActivity || activity instanceof ViewportActivity;
+  }
+
+  @Override
+  public void encode(ActivitiesExtension extension, DataOutputStream out) throws IOException {
+
+    final List<IActivity> activities = extension.getActivities();
+
+    final Map<User, Integer> users = new LinkedHashMap<User, Integer>();
+    final Map<SPath, Integer> paths = new LinkedHashMap<SPath, Integer>();
+
+    int version = VERSION_TYPING;
+
+    for (IActivity activity : activities) {
+      if (!isTyping(activity)) {
+        version = VERSION;
+        continue;
+      }
+
+      intern(users, activity.getSource());
+
+      SPath path = ((IResourceActivity) activity).getPath();
+
+      if (path != null) intern(paths, path);
+    }
+
+    out.writeByte(version);
+    out.writeInt(extension.getSequenceNumber());
+    writeString(out, extension.getSessionID());
+
+    writeVarInt(out, users.size());
+
+    for (User user : users.keySet()) writeString(out, user.getJID().toString());
+
+    writeVarInt(out, paths.size());
+
+    for (SPath path : paths.keySet()) {
+      String projectID = session.getProjectID(path.getProject());
+
+      if (projectID == null)
+        throw new IOException("no project id available for project: " + path.getProject());
+
+      writeString(out, projectID);
+      writeString(out, pathFactory.fromPath(path.getProjectRelativePath()));
+    }
+
+    writeVarInt(out, activities.size());
+
+    for (IActivity activity : activities) {
+      if (!isTyping(activity)) {
+        out.writeByte(TYPE_XML);
+        out.write(getEncodedFields(extension.getSessionID(), activity));
+        continue;
+      }
+
+      SPath path = ((IResourceActivity) activity).getPath();
+
+      final int type;
+
+      if (activity instanceof JupiterActivity) type = TYPE_JUPITER;
+      else if (activity instanceof TextSelectionActivity) type = TYPE_TEXT_SELECTION;
+      else type = TYPE_VIEWPORT;
+
+      out.writeByte(type);
+      writeVarInt(out, users.get(activity.getSource()));
+      writeVarInt(out, path == null ? 0 : paths.get(path) + 1);
+      out.write(getEncodedFields(extension.getSessionID(), activity));
+    }
+
+    out.flush();
+  }
+
+  @Override
+  public ActivitiesExtension decode(DataInputStream in) throws IOException {
+
+    final int version = in.readUnsignedByte();
+
+    if (version < VERSION_TYPING || version > VERSION)
+      throw new IOException("unsupported codec version: " + version);
+
+    final int sequenceNumber = in.readInt();
+    final String sessionID = readString(in);
+
+    final User[] users = new User[readVarInt(in)];
+
+    for (int i = 0; i < users.length; i++) users[i] = session.getUser(new JID(readString(in)));
+
+    final SPath[] paths = new SPath[readVarInt(in)];
+
+    for (int i = 0; i < paths.length; i++) {
+      String projectID = readString(in);
+      String path = readString(in);
+
+      IProject project = session.getProject(projectID);
+
+      if (project == null) {
+        LOG.error(
+            "Could not create SPath because there is no shared project for id '" + projectID + "'");
+        continue;
+      }
+
+      paths[i] = new SPath(project, pathFactory.fromString(path));
+    }
+
+    final int activityCount = readVarInt(in);
+    final List<IActivity> activities = new ArrayList<IActivity>(activityCount);
+
+    for (int i = 0; i < activityCount; i++) {
+      final int type = in.readUnsignedByte();
+
+      if (type == TYPE_XML && version >= VERSION) {
+        activities.add(fromXML(readString(in)));
+        continue;
+      }
+
+      final User source = users[readVarInt(in)];
+      final int pathIndex = readVarInt(in);
+      final SPath path = pathIndex == 0 ? null : paths[pathIndex - 1];
+
+      switch (type) {
+        case TYPE_JUPITER:
+          JupiterVectorTime timestamp = new JupiterVectorTime(readVarInt(in), readVarInt(in));
+          activities.add(new JupiterActivity(timestamp, readOperation(in), source, path));
+          break;
+        case TYPE_TEXT_SELECTION:
+          activities.add(new TextSelectionActivity(source, readVarInt(in), readVarInt(in), path));
+          break;
+        case TYPE_VIEWPORT:
+          activities.add(new ViewportActivity(source, readVarInt(in), readVarInt(in), path));
+          break;
+        default:
+          throw new IOException("unknown activity type: " + type);
+      }
+    }
+
+    return new ActivitiesExtension(sessionID, activities, sequenceNumber);
+  }
+
+  /**
+   * Returns the encoded fields of the given activity that follow its type, user and path index. The
+   * result is taken from the cache if the activity was already encoded.
+   */
+  private byte[] getEncodedFields(String sessionID, IActivity activity) throws IOException {
+    final ActivityKey key = new ActivityKey(activity);
+
+    byte[] fields;
+
+    synchronized (encodedActivities) {
+      fields = encodedActivities.get(key);
+    }
+
+    if (fields != null) return fields;
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+    final DataOutputStream out = new DataOutputStream(bytes);
+
+    if (!isTyping(activity)) {
+      writeString(out, toXML(sessionID, activity));
+    } else if (activity instanceof JupiterActivity) {
+      JupiterActivity jupiterActivity = (JupiterActivity) activity;
+      JupiterVectorTime timestamp = (JupiterVectorTime) jupiterActivity.getTimestamp();
+      writeVarInt(out, timestamp.getLocalOperationCount());
+      writeVarInt(out, timestamp.getRemoteOperationCount());
+      writeOperation(out, jupiterActivity.getOperation());
+    } else if (activity instanceof TextSelectionActivity) {
+      TextSelectionActivity selection = (TextSelectionActivity) activity;
+      writeVarInt(out, selection.getOffset());
+      writeVarInt(out, selection.getLength());
+    } else {
+      ViewportActivity viewport = (ViewportActivity) activity;
+      writeVarInt(out, viewport.getStartLine());
+      writeVarInt(out, viewport.getNumberOfLines());
+    }
+
+    out.flush();
+
+    fields = bytes.toByteArray();
+
+    synchronized (encodedActivities) {
+      encodedActivityCount++;
+
+      if (fields.length <= MAX_CACHED_ACTIVITY_SIZE) encodedActivities.put(key, fields);
+    }
+
+    return fields;
+  }
+
+  /**
+   * For testing purposes only.
+   *
+   * @return the number of times the fields of an activity were encoded
+   */
+  long getEncodedActivityCount() {
+    synchronized (encodedActivities) {
+      return encodedActivityCount;
+    }
+  }
+
+  /** Returns the XML representation of a packet only containing the given activity. */
+  private static String toXML(String sessionID, IActivity activity) {
+    return ActivitiesExtension.PROVIDER
+        .create(new ActivitiesExtension(sessionID, Collections.singletonList(activity), 0))
+        .toXML();
+  }
+
+  private static IActivity fromXML(String xml) throws IOException {
+    final List<IActivity> activities =
+        ActivitiesExtension.PROVIDER.parseString(xml).getActivities();
+
+    if (activities == null || activities.size() != 1)
+      throw new IOException("malformed embedded activity: " + xml);
+
+    return activities.get(0);
+  }
+
+  private static <K> void intern(Map<K, Integer> table, K key) {
+    if (!table.containsKey(key)) table.put(key, table.size());
+  }
+
+  private static void writeOperation(DataOutputStream out, Operation operation) throws IOException {
+
+    if (operation instanceof InsertOperation) {
+      InsertOperation insert = (InsertOperation) operation;
+      out.writeByte(OP_INSERT);
+      writeVarInt(out, insert.getPosition());
+      writeVarInt(out, insert.getOrigin());
+      writeString(out, insert.getText());
+    } else if (operation instanceof DeleteOperation) {
+      DeleteOperation delete = (DeleteOperation) operation;
+      out.writeByte(OP_DELETE);
+      writeVarInt(out, delete.getPosition());
+      writeString(out, delete.getText());
+    } else if (operation instanceof SplitOperation) {
+      SplitOperation split = (SplitOperation) operation;
+      out.writeByte(OP_SPLIT);
+      writeOperation(out, split.getFirst());
+      writeOperation(out, split.getSecond());
+    } else if (operation instanceof TimestampOperation) {
+      out.writeByte(OP_TIMESTAMP);
+    } else if (operation instanceof NoOperation) {
+      out.writeByte(OP_NO);
+    } else {
+      throw new IOException("unsupported operation: " + operation);
+    }
+  }
+
+  private static Operation readOperation(DataInputStream in) throws IOException {
+    final int type = in.readUnsignedByte();
+
+    switch (type) {
+      case OP_INSERT:
+        int position = readVarInt(in);
+        int origin = readVarInt(in);
+        return new InsertOperation(position, readString(in), origin);
+      case OP_DELETE:
+        return new DeleteOperation(readVarInt(in), readString(in));
+      case OP_SPLIT:
+        return new SplitOperation(readOperation(in), readOperation(in));
+      case OP_TIMESTAMP:
+        return new TimestampOperation();
+      case OP_NO:
+        return new NoOperation();
+      default:
+        throw new IOException("unknown operation type: " + type);
+    }
+  }
+
+  /** Writes a non negative integer using 7 bits per byte, least significant group first. */
+  static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    if (value < 0) throw new IOException("cannot encode negative value: " + value);
+
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+
+    out.writeByte(value);
+  }
+
+  static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+
+    for (int shift = 0; shift < 32; shift += 7) {
+      final int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+
+      if ((b & 0x80) == 0) return value;
+    }
+
+    throw new IOException("malformed variable length integer");
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    final byte[] bytes = value.getBytes("UTF-8");
+    writeVarInt(out, bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[readVarInt(in)];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+}
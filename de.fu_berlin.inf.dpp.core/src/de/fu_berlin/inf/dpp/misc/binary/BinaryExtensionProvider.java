@@ -0,0 +1,222 @@
+package de.fu_berlin.inf.dpp.misc.binary;
+
+import de.fu_berlin.inf.dpp.misc.xstream.XStreamExtensionProvider;
+import de.fu_berlin.inf.dpp.net.xmpp.JID;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.log4j.Logger;
+import org.jivesoftware.smack.packet.PacketExtension;
+import org.jivesoftware.smack.provider.PacketExtensionProvider;
+import org.jivesoftware.smack.provider.ProviderManager;
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * Extension provider that serializes its payload with a compact binary {@link Codec} instead of
+ * XML.
+ *
+ * <p>Received payloads are always handed out as packet extensions of the given {@link
+ * XStreamExtensionProvider}. Filters and listeners therefore do not need to know which wire format
+ * was used by the sender. If no codec is installed or the codec is not able to encode a payload for
+ * a specific recipient the XML representation is used instead.
+ *
+ * <p>The binary form is intended to be sent over the direct stream connections. If the extension is
+ * sent over the XMPP connection the binary data is transmitted as Base64 encoded element text.
+ */
+public class BinaryExtensionProvider<T> implements PacketExtensionProvider {
+
+  private static final Logger LOG = Logger.getLogger(BinaryExtensionProvider.class);
+
+  /** Codec that converts a payload to its binary representation and vice versa. */
+  public interface Codec<T> {
+
+    /**
+     * Returns whether the given payload can be encoded for the given recipient, i.e the recipient
+     * understands the binary format and all data of the payload is covered by the format.
+     *
+     * @param recipient the recipient of the payload
+     * @param payload the payload to encode
+     */
+    public boolean canEncode(JID recipient, T payload);
+
+    public void encode(T payload, DataOutputStream out) throws IOException;
+
+    public T decode(DataInputStream in) throws IOException;
+  }
+
+  private final String namespace;
+
+  private final String elementName;
+
+  private final XStreamExtensionProvider<T> xmlProvider;
+
+  private volatile Codec<T> codec;
+
+  private final AtomicLong decodedPayloads = new AtomicLong();
+
+  /**
+   * Creates a new provider and registers it at the {@link ProviderManager} using the given element
+   * name and the namespace of the given XML provider.
+   *
+   * @param elementName the element name of the binary extension, must differ from the element name
+   *     of the XML provider
+   * @param xmlProvider provider which is used for the XML fallback and for creating the packet
+   *     extensions of received payloads
+   */
+  public BinaryExtensionProvider(String elementName, XStreamExtensionProvider<T> xmlProvider) {
+
+    if (elementName.equals(xmlProvider.getElementName()))
+      throw new IllegalArgumentException(
+          "element name must differ from the XML element name: " + elementName);
+
+    this.elementName = elementName;
+    this.namespace = xmlProvider.getNamespace();
+    this.xmlProvider = xmlProvider;
+
+    ProviderManager.getInstance().addExtensionProvider(elementName, namespace, this);
+  }
+
+  /**
+   * Installs the codec that should be used to encode and decode payloads. This is useful if a codec
+   * cannot be used isolatedly, e.g. because it requires a running Saros session.
+   *
+   * @param codec the codec to use or <code>null</code> to only use the XML representation
+   */
+  public void setCodec(Codec<T> codec) {
+    this.codec = codec;
+  }
+
+  /**
+   * Removes the given codec if it is the currently installed one.
+   *
+   * @param codec the codec to remove
+   */
+  public void unsetCodec(Codec<T> codec) {
+    if (this.codec == codec) this.codec = null;
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  public String getElementName() {
+    return elementName;
+  }
+
+  /**
+   * Creates a packet extension for the given payload that should be sent to the given recipient.
+   * The binary representation is used if the current codec is able to encode the payload for the
+   * recipient, otherwise the XML representation is used.
+   *
+   * @param recipient the recipient of the payload
+   * @param payload the payload to send
+   * @return a packet extension containing the payload
+   */
+  public PacketExtension create(JID recipient, T payload) {
+    final Codec<T> currentCodec = codec;
+
+    if (currentCodec == null || !currentCodec.canEncode(recipient, payload))
+      return xmlProvider.create(payload);
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+
+    try {
+      currentCodec.encode(payload, new DataOutputStream(bytes));
+    } catch (IOException e) {
+      LOG.warn("binary encoding failed, falling back to XML: " + e.getMessage());
+      return xmlProvider.create(payload);
+    }
+
+    return new BinaryPacketExtension(bytes.toByteArray());
+  }
+
+  /**
+   * Decodes the given binary data and returns a packet extension of the XML provider containing the
+   * decoded payload.
+   *
+   * @param data the binary representation of the payload
+   * @throws IOException if no codec is installed or the data is malformed
+   */
+  public PacketExtension parseBinary(byte[] data) throws IOException {
+    final Codec<T> currentCodec = codec;
+
+    if (currentCodec == null)
+      throw new IOException("no codec installed for extension " + elementName);
+
+    final T payload;
+
+    decodedPayloads.incrementAndGet();
+
+    try {
+      payload = currentCodec.decode(new DataInputStream(new ByteArrayInputStream(data)));
+    } catch (RuntimeException e) {
+      throw new IOException("malformed binary extension " + elementName, e);
+    }
+
+    return xmlProvider.create(payload);
+  }
+
+  /** Returns the number of binary payloads that were decoded by this provider so far. */
+  public long getDecodedPayloadCount() {
+    return decodedPayloads.get();
+  }
+
+  @Override
+  public PacketExtension parseExtension(XmlPullParser parser) throws Exception {
+    return parseBinary(Base64.decodeBase64(parser.nextText().getBytes("US-ASCII")));
+  }
+
+  /** Packet extension containing the binary representation of a payload. */
+  public class BinaryPacketExtension implements PacketExtension {
+
+    private final byte[] data;
+
+    private BinaryPacketExtension(byte[] data) {
+      this.data = data;
+    }
+
+    /**
+     * Returns the binary representation of the payload. <b>Note:</b>The returned byte array <b>must
+     * not</b> be modified.
+     */
+    public byte[] getData() {
+      return data;
+    }
+
+    @Override
+    public String getElementName() {
+      return elementName;
+    }
+
+    @Override
+    public String getNamespace() {
+      return namespace;
+    }
+
+    @Override
+    public String toXML() {
+      StringBuilder buf = new StringBuilder(64 + data.length * 4 / 3);
+
+      try {
+        buf.append("<")
+            .append(getElementName())
+            .append(" xmlns=\"")
+            .append(getNamespace())
+            .append("\">")
+            .append(new String(Base64.encodeBase64(data), "US-ASCII"))
+            .append("</")
+            .append(getElementName())
+            .append(">");
+      } catch (IOException e) {
+        // cannot happen, US-ASCII is always supported
+        throw new IllegalStateException(e);
+      }
+
+      return buf.toString();
+    }
+  }
+}
@@ -0,0 +1,11 @@
+/**
+ * Compact binary representations for packet extensions that are sent very frequently, e.g.
+ * activities. These are used instead of the XStream based XML representations when both sides
+ * support them, see {@link de.fu_berlin.inf.dpp.versioning.VersionManager}.
+ *
+ * <ul>
+ *   <li>BinaryExtensionProvider
+ *   <li>ActivitiesCodec
+ * </ul>
+ */
+package de.fu_berlin.inf.dpp.misc.binary;
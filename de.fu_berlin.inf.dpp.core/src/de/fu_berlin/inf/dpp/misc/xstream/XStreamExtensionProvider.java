@@ -26,13 +26,14 @@ import com.thoughtworks.xstream.converters.Converter;
 import com.thoughtworks.xstream.converters.SingleValueConverter;
 import com.thoughtworks.xstream.converters.basic.BooleanConverter;
 import com.thoughtworks.xstream.io.xml.CompactWriter;
+import de.fu_berlin.inf.dpp.net.ExtensionPacketFilter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.log4j.Logger;
-import org.jivesoftware.smack.filter.PacketExtensionFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.IQ;
 import org.jivesoftware.smack.packet.Packet;
@@ -59,6 +60,8 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider, IQP
 
   private final XStream xstream;
 
+  private final AtomicLong decodedPayloads = new AtomicLong();
+
   private Map<Class<? extends Converter>, ReplaceableConverter> replaceables;
   private Map<Class<? extends SingleValueConverter>, ReplaceableSingleValueConverter>
       replaceableSingles;
@@ -265,8 +268,8 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider, IQP
    * PacketFilter for Packets which contain a PacketExtension matching the {@link
    * XStreamExtensionProvider#elementName} and {@link XStreamExtensionProvider#namespace}.
    */
-  public PacketFilter getPacketFilter() {
-    return new PacketExtensionFilter(getElementName(), getNamespace());
+  public ExtensionPacketFilter getPacketFilter() {
+    return new ExtensionPacketFilter(getNamespace(), getElementName());
   }
 
   public String getNamespace() {
@@ -291,6 +294,8 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider, IQP
   @Override
   @SuppressWarnings("unchecked")
   public PacketExtension parseExtension(XmlPullParser parser) {
+    decodedPayloads.incrementAndGet();
+
     try {
       XStreamPacketExtension<T> result =
           (XStreamPacketExtension<T>) xstream.unmarshal(new XppReader(parser));
@@ -309,6 +314,10 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider, IQP
    *
    * <p>If the packet contains no matching data (or if the packet is null), null is returned.
    *
+   * <p>The payload is only decoded once when the packet is received, calling this method does not
+   * decode it again. It is therefore fine to call this method from several filters and listeners
+   * for the same packet.
+   *
    * @throws ClassCastException if somebody has registered a PacketExtension under our {@link
    *     XStreamExtensionProvider#elementName}
    */
@@ -340,6 +349,8 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider, IQP
 
   @SuppressWarnings("unchecked")
   public T parseString(String string) throws IOException {
+    decodedPayloads.incrementAndGet();
+
     try {
       return ((XStreamPacketExtension<T>) xstream.fromXML(string)).getPayload();
     } catch (Exception e) {
@@ -347,6 +358,14 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider, IQP
     }
   }
 
+  /**
+   * Returns the number of payloads that were decoded by this provider so far, i.e. the number of
+   * received packet extensions and IQ packets plus the number of parsed strings.
+   */
+  public long getDecodedPayloadCount() {
+    return decodedPayloads.get();
+  }
+
   public XStreamPacketExtension<T> create(T t) {
     return new XStreamPacketExtension<T>(this, t);
   }
@@ -358,6 +377,8 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider, IQP
   @Override
   @SuppressWarnings("unchecked")
   public IQ parseIQ(XmlPullParser parser) throws Exception {
+    decodedPayloads.incrementAndGet();
+
     try {
       XStreamPacketExtension<T> result =
           (XStreamPacketExtension<T>) xstream.unmarshal(new XppReader(parser));
@@ -6,6 +6,7 @@ import de.fu_berlin.inf.dpp.exceptions.LocalCancellationException;
 import de.fu_berlin.inf.dpp.exceptions.SarosCancellationException;
 import de.fu_berlin.inf.dpp.filesystem.FileSystem;
 import de.fu_berlin.inf.dpp.filesystem.IChecksumCache;
+import de.fu_berlin.inf.dpp.filesystem.IFile;
 import de.fu_berlin.inf.dpp.filesystem.IFolder;
 import de.fu_berlin.inf.dpp.filesystem.IProject;
 import de.fu_berlin.inf.dpp.filesystem.IResource;
@@ -23,12 +24,16 @@ import de.fu_berlin.inf.dpp.session.ISarosSession;
 import de.fu_berlin.inf.dpp.session.ISarosSessionManager;
 import de.fu_berlin.inf.dpp.session.SessionEndReason;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.packet.Packet;
 import org.jivesoftware.smackx.filetransfer.FileTransferListener;
@@ -59,6 +64,9 @@ public abstract class AbstractIncomingProjectNegotiation extends ProjectNegotiat
   /** used to handle file transmissions * */
   protected TransferListener transferListener = null;
 
+  /** Restores files that are received as deltas, available after the file lists were exchanged */
+  protected DeltaDecoder deltaDecoder = null;
+
   public AbstractIncomingProjectNegotiation(
       final JID peer, //
       final TransferType transferType, //
@@ -120,12 +128,18 @@ public abstract class AbstractIncomingProjectNegotiation extends ProjectNegotiat
     createCollectors();
 
     try {
+      startPhase("setup");
       checkCancellation(CancelOption.NOTIFY_PEER);
       setup(monitor);
 
-      List<FileList> missingFiles =
-          synchronizeProjectStructures(
-              projectMapping, computeLocalVsRemoteDiff(projectMapping, monitor));
+      startPhase("diff");
+      final Map<String, FileListDiff> diffs = computeLocalVsRemoteDiff(projectMapping, monitor);
+
+      startPhase("signatures");
+      final Map<String, byte[]> signatures = createSignatures(projectMapping, diffs, monitor);
+
+      startPhase("synchronize structures");
+      List<FileList> missingFiles = synchronizeProjectStructures(projectMapping, diffs);
 
       monitor.subTask("");
 
@@ -133,12 +147,16 @@ public abstract class AbstractIncomingProjectNegotiation extends ProjectNegotiat
           ISarosSession.SESSION_CONNECTION_ID,
           getPeer(),
           ProjectNegotiationMissingFilesExtension.PROVIDER.create(
-              new ProjectNegotiationMissingFilesExtension(getSessionID(), getID(), missingFiles)));
+              new ProjectNegotiationMissingFilesExtension(
+                  getSessionID(), getID(), missingFiles, signatures)));
 
+      startPhase("transfer");
       transfer(monitor, projectMapping, missingFiles);
 
       checkCancellation(CancelOption.NOTIFY_PEER);
 
+      startPhase("add resources");
+
       /*
        * We are finished with the negotiation. Add all projects resources
        * to the session.
@@ -168,6 +186,7 @@ public abstract class AbstractIncomingProjectNegotiation extends ProjectNegotiat
     } catch (Exception e) {
       exception = e;
     } finally {
+      startPhase("cleanup");
       cleanup(monitor, projectMapping);
     }
 
@@ -347,6 +366,70 @@ public abstract class AbstractIncomingProjectNegotiation extends ProjectNegotiat
     return result;
   }
 
+  /**
+   * Creates the {@linkplain FileDelta#createSignature(byte[]) signatures} of the local versions of
+   * all altered files that should be received as deltas and initializes the {@link #deltaDecoder}
+   * accordingly.
+   *
+   * @param localProjectMapping the local project mapping to use
+   * @param diffs the differences between the local and the remote side
+   * @param monitor
+   * @return map of <code>projectID:path</code> to signature
+   * @throws SarosCancellationException
+   * @throws IOException
+   */
+  protected Map<String, byte[]> createSignatures(
+      final Map<String, IProject> localProjectMapping,
+      final Map<String, FileListDiff> diffs,
+      final IProgressMonitor monitor)
+      throws SarosCancellationException, IOException {
+
+    final Map<String, byte[]> signatures = new HashMap<String, byte[]>();
+
+    monitor.beginTask("Calculating file signatures...", IProgressMonitor.UNKNOWN);
+
+    for (final Entry<String, IProject> entry : localProjectMapping.entrySet()) {
+
+      final String id = entry.getKey();
+      final IProject project = entry.getValue();
+
+      final ProjectNegotiationData data = getProjectNegotiationData(id);
+
+      if (!data.isDeltaSupported()) continue;
+
+      for (final String path : diffs.get(id).getAlteredFiles()) {
+        final IFile file = project.getFile(path);
+
+        if (!FileDelta.isApplicable(file.getSize())) continue;
+
+        final byte[] content;
+
+        InputStream in = null;
+
+        try {
+          in = file.getContents();
+          content = IOUtils.toByteArray(in);
+        } finally {
+          IOUtils.closeQuietly(in);
+        }
+
+        final String key = DeltaEncoder.getKey(id, path);
+
+        signatures.put(key, FileDelta.createSignature(content));
+
+        checkCancellation(CancelOption.NOTIFY_PEER);
+      }
+    }
+
+    LOG.debug(this + " : requesting " + signatures.size() + " file(s) as delta");
+
+    deltaDecoder = new DeltaDecoder(new HashSet<String>(signatures.keySet()));
+
+    monitor.done();
+
+    return signatures;
+  }
+
   /**
    * Synchronize the project structures, deleting files and folders that are not present on the
    * remote side and creating empty folders that do not exists and the local side.
@@ -487,28 +570,20 @@ public abstract class AbstractIncomingProjectNegotiation extends ProjectNegotiat
   }
 
   /**
-   * Checks continuously, if the host started a FileTransferRequest. Returns when a request was
-   * received.
+   * Waits until the host started a FileTransferRequest. Returns when a request was received.
    *
    * @throws SarosCancellationException on user cancellation
    */
   protected void awaitTransferRequest() throws SarosCancellationException {
     LOG.debug(this + ": waiting for incoming transfer request");
-    try {
-      while (!transferListener.hasReceived()) {
-        checkCancellation(CancelOption.NOTIFY_PEER);
-        Thread.sleep(200);
-      }
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      throw new LocalCancellationException();
-    }
+    await(transferListener.received, Long.MAX_VALUE);
   }
 
   /** Listens to FileTransferRequests and checks if they meet the provided description. */
   protected static class TransferListener implements FileTransferListener {
     private String description;
     private volatile FileTransferRequest request;
+    private final CountDownLatch received = new CountDownLatch(1);
 
     public TransferListener(String description) {
       this.description = description;
@@ -518,6 +593,7 @@ public abstract class AbstractIncomingProjectNegotiation extends ProjectNegotiat
     public void fileTransferRequest(FileTransferRequest request) {
       if (request.getDescription().equals(description)) {
         this.request = request;
+        received.countDown();
       }
     }
 
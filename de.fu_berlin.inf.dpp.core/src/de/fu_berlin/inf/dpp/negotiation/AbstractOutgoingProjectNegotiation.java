@@ -6,9 +6,11 @@ import de.fu_berlin.inf.dpp.communication.extensions.StartActivityQueuingRequest
 import de.fu_berlin.inf.dpp.communication.extensions.StartActivityQueuingResponse;
 import de.fu_berlin.inf.dpp.editor.IEditorManager;
 import de.fu_berlin.inf.dpp.exceptions.LocalCancellationException;
+import de.fu_berlin.inf.dpp.exceptions.OperationCanceledException;
 import de.fu_berlin.inf.dpp.exceptions.SarosCancellationException;
 import de.fu_berlin.inf.dpp.filesystem.IChecksumCache;
 import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.filesystem.IResource;
 import de.fu_berlin.inf.dpp.filesystem.IWorkspace;
 import de.fu_berlin.inf.dpp.monitoring.IProgressMonitor;
 import de.fu_berlin.inf.dpp.monitoring.SubProgressMonitor;
@@ -47,6 +49,12 @@ public abstract class AbstractOutgoingProjectNegotiation extends ProjectNegotiat
 
   protected final IEditorManager editorManager;
 
+  /** Shares artifacts with concurrent negotiations, <code>null</code> if not available */
+  protected final NegotiationArtifactCache artifactCache;
+
+  /** Encodes the files to send, available after the remote file list was received */
+  protected DeltaEncoder deltaEncoder = null;
+
   private PacketCollector remoteFileListResponseCollector;
 
   private PacketCollector startActivityQueuingResponseCollector;
@@ -79,6 +87,8 @@ public abstract class AbstractOutgoingProjectNegotiation extends ProjectNegotiat
     this.projects = projects;
 
     this.editorManager = editorManager;
+
+    this.artifactCache = session.getComponent(NegotiationArtifactCache.class);
   }
 
   public Status run(IProgressMonitor monitor) {
@@ -89,22 +99,32 @@ public abstract class AbstractOutgoingProjectNegotiation extends ProjectNegotiat
 
     Exception exception = null;
 
+    if (artifactCache != null) artifactCache.acquire();
+
     try {
+      startPhase("setup");
       setup(monitor);
 
+      startPhase("file list");
       sendFileList(createProjectNegotiationDataList(projects, monitor), monitor);
 
       monitor.subTask("");
 
+      startPhase("remote file list");
       List<FileList> fileLists = getRemoteFileList(monitor);
       monitor.subTask("");
 
+      startPhase("prepare transfer");
       prepareTransfer(monitor, fileLists);
 
       checkCancellation(CancelOption.NOTIFY_PEER);
 
+      startPhase("transfer");
       transfer(monitor, fileLists);
 
+      LOG.debug(this + " : transfer finished, " + deltaEncoder);
+
+      startPhase("finish");
       User user = session.getUser(getPeer());
       if (user == null) throw new LocalCancellationException(null, CancelOption.DO_NOT_NOTIFY_PEER);
 
@@ -112,7 +132,10 @@ public abstract class AbstractOutgoingProjectNegotiation extends ProjectNegotiat
     } catch (Exception e) {
       exception = e;
     } finally {
+      startPhase("cleanup");
       cleanup(monitor);
+
+      if (artifactCache != null) artifactCache.release();
     }
 
     return terminate(exception);
@@ -220,8 +243,12 @@ public abstract class AbstractOutgoingProjectNegotiation extends ProjectNegotiat
           "received no response from " + getPeer() + " while waiting for the file list",
           CancelOption.DO_NOT_NOTIFY_PEER);
 
-    List<FileList> remoteFileLists =
-        ProjectNegotiationMissingFilesExtension.PROVIDER.getPayload(packet).getFileLists();
+    final ProjectNegotiationMissingFilesExtension payload =
+        ProjectNegotiationMissingFilesExtension.PROVIDER.getPayload(packet);
+
+    List<FileList> remoteFileLists = payload.getFileLists();
+
+    deltaEncoder = new DeltaEncoder(payload.getSignatures());
 
     LOG.debug(this + " : remote file list has been received");
 
@@ -318,16 +345,18 @@ public abstract class AbstractOutgoingProjectNegotiation extends ProjectNegotiat
          */
         if (editorManager != null) editorManager.saveEditors(project);
 
+        final List<IResource> resources = session.getSharedResources(project);
+
+        final IProgressMonitor subMonitor =
+            new SubProgressMonitor(
+                monitor,
+                1 * scale,
+                SubProgressMonitor.SUPPRESS_BEGINTASK | SubProgressMonitor.SUPPRESS_SETTASKNAME);
+
         FileList projectFileList =
-            FileListFactory.createFileList(
-                project,
-                session.getSharedResources(project),
-                checksumCache,
-                new SubProgressMonitor(
-                    monitor,
-                    1 * scale,
-                    SubProgressMonitor.SUPPRESS_BEGINTASK
-                        | SubProgressMonitor.SUPPRESS_SETTASKNAME));
+            artifactCache != null
+                ? artifactCache.getFileList(project, resources, checksumCache, subMonitor)
+                : FileListFactory.createFileList(project, resources, checksumCache, subMonitor);
 
         boolean partial = !session.isCompletelyShared(project);
 
@@ -335,7 +364,8 @@ public abstract class AbstractOutgoingProjectNegotiation extends ProjectNegotiat
         projectFileList.setProjectID(projectID);
 
         ProjectNegotiationData data =
-            new ProjectNegotiationData(projectID, project.getName(), partial, projectFileList);
+            new ProjectNegotiationData(
+                projectID, project.getName(), partial, projectFileList, FileDelta.ENABLED);
 
         negData.add(data);
 
@@ -348,6 +378,11 @@ public abstract class AbstractOutgoingProjectNegotiation extends ProjectNegotiat
         localCancel(e.getMessage(), CancelOption.DO_NOT_NOTIFY_PEER);
         // throw to LOG this error in the Negotiation class
         throw new IOException(e.getMessage(), e);
+      } catch (OperationCanceledException e) {
+        LocalCancellationException canceled =
+            new LocalCancellationException(null, CancelOption.DO_NOT_NOTIFY_PEER);
+        canceled.initCause(e);
+        throw canceled;
       }
     }
 
@@ -148,7 +148,8 @@ public class ArchiveIncomingProjectNegotiation extends AbstractIncomingProjectNe
       projectMapping.put(entry.getKey(), entry.getValue());
 
     final DecompressArchiveTask decompressTask =
-        new DecompressArchiveTask(archiveFile, projectMapping, PATH_DELIMITER, monitor);
+        new DecompressArchiveTask(
+            archiveFile, projectMapping, PATH_DELIMITER, deltaDecoder, monitor);
 
     long startTime = System.currentTimeMillis();
 
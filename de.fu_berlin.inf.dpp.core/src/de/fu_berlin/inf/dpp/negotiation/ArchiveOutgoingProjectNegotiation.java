@@ -9,6 +9,7 @@ import de.fu_berlin.inf.dpp.filesystem.IFile;
 import de.fu_berlin.inf.dpp.filesystem.IProject;
 import de.fu_berlin.inf.dpp.filesystem.IResource;
 import de.fu_berlin.inf.dpp.filesystem.IWorkspace;
+import de.fu_berlin.inf.dpp.filesystem.IWorkspaceRunnable;
 import de.fu_berlin.inf.dpp.monitoring.IProgressMonitor;
 import de.fu_berlin.inf.dpp.negotiation.NegotiationTools.CancelOption;
 import de.fu_berlin.inf.dpp.net.IReceiver;
@@ -183,9 +184,14 @@ public class ArchiveOutgoingProjectNegotiation extends AbstractOutgoingProjectNe
 
     try {
       tempArchive = File.createTempFile("saros_" + getID(), ".zip");
-      workspace.run(
-          new CreateArchiveTask(tempArchive, filesToCompress, fileAlias, monitor),
-          projectsToLock.toArray(new IResource[0]));
+      final IWorkspaceRunnable archiveTask =
+          artifactCache != null
+              ? artifactCache.createArchiveTask(
+                  tempArchive, filesToCompress, fileAlias, deltaEncoder, monitor)
+              : new CreateArchiveTask(
+                  tempArchive, filesToCompress, fileAlias, deltaEncoder, monitor);
+
+      workspace.run(archiveTask, projectsToLock.toArray(new IResource[0]));
     } catch (OperationCanceledException e) {
       LocalCancellationException canceled = new LocalCancellationException();
       canceled.initCause(e);
@@ -30,6 +30,7 @@ public class CreateArchiveTask implements IWorkspaceRunnable {
   private final File archive;
   private final List<IFile> files;
   private final List<String> alias;
+  private final DeltaEncoder encoder;
   private final IProgressMonitor monitor;
 
   public CreateArchiveTask(
@@ -37,9 +38,23 @@ public class CreateArchiveTask implements IWorkspaceRunnable {
       final List<IFile> files,
       final List<String> alias,
       final IProgressMonitor monitor) {
+    this(archive, files, alias, null, monitor);
+  }
+
+  /**
+   * @param encoder encoder for the contents of the files or <code>null</code> to add the files
+   *     unchanged, requires the alias names
+   */
+  public CreateArchiveTask(
+      final File archive,
+      final List<IFile> files,
+      final List<String> alias,
+      final DeltaEncoder encoder,
+      final IProgressMonitor monitor) {
     this.archive = archive;
     this.files = files;
     this.alias = alias;
+    this.encoder = encoder;
     this.monitor = monitor;
   }
 
@@ -97,7 +112,7 @@ public class CreateArchiveTask implements IWorkspaceRunnable {
 
           int read = 0;
 
-          in = file.getContents();
+          in = encoder != null ? encoder.getContents(file, entryName) : file.getContents();
 
           while ((read = in.read(buffer)) > 0) {
 
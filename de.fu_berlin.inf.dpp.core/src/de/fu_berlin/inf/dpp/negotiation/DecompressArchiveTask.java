@@ -26,6 +26,7 @@ public class DecompressArchiveTask implements IWorkspaceRunnable {
   private final IProgressMonitor monitor;
   private final Map<String, IProject> idToProjectMapping;
   private final String delimiter;
+  private final DeltaDecoder decoder;
 
   /**
    * Creates a decompress task for an archive file that can be executed by {@link IWorkspace#run}.
@@ -43,9 +44,26 @@ public class DecompressArchiveTask implements IWorkspaceRunnable {
       final Map<String, IProject> idToProjectMapping,
       final String delimiter,
       final IProgressMonitor monitor) {
+    this(file, idToProjectMapping, delimiter, null, monitor);
+  }
+
+  /**
+   * Creates a decompress task for an archive file whose entries may be encoded by a {@link
+   * DeltaEncoder}.
+   *
+   * @param decoder decoder for the entries or <code>null</code> if the entries are not encoded
+   * @see #DecompressArchiveTask(File, Map, String, IProgressMonitor)
+   */
+  public DecompressArchiveTask(
+      final File file,
+      final Map<String, IProject> idToProjectMapping,
+      final String delimiter,
+      final DeltaDecoder decoder,
+      final IProgressMonitor monitor) {
     this.file = file;
     this.idToProjectMapping = idToProjectMapping;
     this.delimiter = delimiter;
+    this.decoder = decoder;
     this.monitor = monitor;
   }
 
@@ -109,8 +127,11 @@ public class DecompressArchiveTask implements IWorkspaceRunnable {
         in = new CancelableInputStream(inZip, monitor);
 
         try {
-          if (!decompressedFile.exists()) decompressedFile.create(in, false);
-          else decompressedFile.setContents(in, false, true);
+          final InputStream contents =
+              decoder != null ? decoder.getContents(decompressedFile, entryName, in) : in;
+
+          if (!decompressedFile.exists()) decompressedFile.create(contents, false);
+          else decompressedFile.setContents(contents, false, true);
         } catch (IOException e) {
           /* if triggered by check in CancelableInputStream */
           if (monitor.isCanceled()) {
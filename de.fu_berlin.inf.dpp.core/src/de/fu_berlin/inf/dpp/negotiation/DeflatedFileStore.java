@@ -0,0 +1,509 @@
+package de.fu_berlin.inf.dpp.negotiation;
+
+import de.fu_berlin.inf.dpp.exceptions.OperationCanceledException;
+import de.fu_berlin.inf.dpp.filesystem.IFile;
+import de.fu_berlin.inf.dpp.filesystem.IPath;
+import de.fu_berlin.inf.dpp.monitoring.IProgressMonitor;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Stores the deflated contents of files in a temporary spool file, so zip archives containing the
+ * same files can be created without compressing the files again.
+ *
+ * <p>A deflated file is reused as long as the file in the local file system still has the size and
+ * modification time it had when it was compressed. Files that are not stored in the local file
+ * system, or that were modified shortly before they were compressed, are compressed every time.
+ *
+ * <p>The archives are written without ZIP64 extensions, i.e. {@link #writeArchive} fails with a
+ * {@link LimitExceededException} for archives with more than 65535 files or of 4 GiB or more.
+ */
+final class DeflatedFileStore {
+
+  private static final Logger LOG = Logger.getLogger(DeflatedFileStore.class);
+
+  private static final int BUFFER_SIZE = 32 * 1024;
+
+  /** See {@link de.fu_berlin.inf.dpp.filesystem.PersistentChecksumCache}. */
+  private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+
+  private static final long MAX_ZIP32_VALUE = 0xFFFFFFFFL;
+
+  private static final int MAX_ZIP32_ENTRIES = 0xFFFF;
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+  private static final int VERSION = 20;
+
+  /** General purpose flag: the entry names are encoded in UTF-8. */
+  private static final int UTF8_FLAG = 0x0800;
+
+  private static final int DEFLATED = 8;
+
+  /** Thrown if an archive cannot be written without ZIP64 extensions. */
+  static final class LimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    LimitExceededException(String message) {
+      super(message);
+    }
+  }
+
+  private static final class Chunk {
+    final long offset;
+    final long compressedSize;
+    final long size;
+    final long crc;
+    final int dosTime;
+
+    /** The size and modification time of the file when it was compressed. */
+    final long fileSize;
+
+    final long lastModified;
+
+    Chunk(
+        long offset,
+        long compressedSize,
+        long size,
+        long crc,
+        int dosTime,
+        long fileSize,
+        long lastModified) {
+      this.offset = offset;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.crc = crc;
+      this.dosTime = dosTime;
+      this.fileSize = fileSize;
+      this.lastModified = lastModified;
+    }
+  }
+
+  private final Path spoolFile;
+
+  private final FileChannel spool;
+
+  private final ConcurrentMap<String, Chunk> chunks = new ConcurrentHashMap<String, Chunk>();
+
+  private long hits;
+
+  private long misses;
+
+  /**
+   * Creates a DeflatedFileStore backed by a new temporary file.
+   *
+   * @throws IOException if the temporary file could not be created
+   */
+  DeflatedFileStore() throws IOException {
+    spoolFile = Files.createTempFile("saros_deflated", ".spool");
+
+    try {
+      spool =
+          FileChannel.open(
+              spoolFile,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.DELETE_ON_CLOSE);
+    } catch (IOException e) {
+      Files.deleteIfExists(spoolFile);
+      throw e;
+    }
+  }
+
+  /**
+   * Forgets the deflated content of the given file, e.g. because it was changed.
+   *
+   * @param file the file
+   */
+  void invalidate(IFile file) {
+    chunks.remove(getKey(file));
+  }
+
+  /** Forgets the deflated contents of all files. */
+  void invalidateAll() {
+    chunks.clear();
+  }
+
+  /** Closes and deletes the spool file. */
+  synchronized void close() {
+    chunks.clear();
+
+    try {
+      spool.close();
+    } catch (IOException e) {
+      LOG.warn("could not delete spool file " + spoolFile, e);
+    }
+
+    LOG.debug("closed deflated file store, hits: " + hits + ", misses: " + misses);
+  }
+
+  /**
+   * Writes a zip archive containing the given files. Files that were already compressed are not
+   * compressed again, except files that are {@linkplain DeltaEncoder#isEncoded(String) encoded} for
+   * the receiver, as their content differs for every receiver.
+   *
+   * @param archive the archive to write
+   * @param files the files to add
+   * @param names the entry names of the files
+   * @param encoder the encoder for the contents of the files or <code>null</code>
+   * @param monitor monitor to report the progress to, can be canceled
+   * @throws IOException if an I/O error occurred
+   * @throws LimitExceededException if the archive cannot be written without ZIP64 extensions
+   * @throws OperationCanceledException if the monitor was canceled
+   */
+  void writeArchive(
+      File archive,
+      List<IFile> files,
+      List<String> names,
+      DeltaEncoder encoder,
+      IProgressMonitor monitor)
+      throws IOException, OperationCanceledException {
+
+    if (files.size() > MAX_ZIP32_ENTRIES)
+      throw new LimitExceededException("too many files: " + files.size());
+
+    final long totalSize = getTotalFileSize(files);
+
+    final List<Chunk> entries = new ArrayList<Chunk>(files.size());
+    final List<byte[]> entryNames = new ArrayList<byte[]>(files.size());
+
+    final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    boolean cleanup = true;
+
+    long written = 0;
+    long read = 0;
+    int lastWorked = 0;
+
+    monitor.beginTask("Compressing files...", 100 /* percent */);
+
+    final OutputStream out = new BufferedOutputStream(new FileOutputStream(archive), BUFFER_SIZE);
+
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        final IFile file = files.get(i);
+
+        if (monitor.isCanceled())
+          throw new OperationCanceledException(
+              "compressing of file '" + file.getFullPath() + "' was canceled");
+
+        monitor.subTask("compressing file: " + file.getFullPath());
+
+        final Chunk chunk =
+            encoder != null && encoder.isEncoded(names.get(i))
+                ? deflate(
+                    file,
+                    encoder.getContents(file, names.get(i)),
+                    -1,
+                    System.currentTimeMillis(),
+                    monitor)
+                : getChunk(file, monitor);
+
+        final byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+
+        if (written + 30 + name.length + chunk.compressedSize > MAX_ZIP32_VALUE)
+          throw new LimitExceededException("archive is too large");
+
+        buffer.clear();
+        buffer.putInt(LOCAL_HEADER_SIGNATURE);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) UTF8_FLAG);
+        buffer.putShort((short) DEFLATED);
+        buffer.putInt(chunk.dosTime);
+        buffer.putInt((int) chunk.crc);
+        buffer.putInt((int) chunk.compressedSize);
+        buffer.putInt((int) chunk.size);
+        buffer.putShort((short) name.length);
+        buffer.putShort((short) 0);
+        out.write(buffer.array(), 0, buffer.position());
+        out.write(name);
+
+        final Chunk entry =
+            new Chunk(
+                written,
+                chunk.compressedSize,
+                chunk.size,
+                chunk.crc,
+                chunk.dosTime,
+                chunk.fileSize,
+                chunk.lastModified);
+
+        written += buffer.position() + name.length;
+
+        copy(chunk, out, buffer);
+
+        written += chunk.compressedSize;
+
+        entries.add(entry);
+        entryNames.add(name);
+
+        read += chunk.size;
+
+        if (totalSize > 0) {
+          final int worked = (int) Math.min(100, read * 100L / totalSize);
+
+          if (worked > lastWorked) {
+            monitor.worked(worked - lastWorked);
+            lastWorked = worked;
+          }
+        }
+      }
+
+      final long centralDirectoryOffset = written;
+
+      for (int i = 0; i < entries.size(); i++) {
+        final Chunk entry = entries.get(i);
+        final byte[] name = entryNames.get(i);
+
+        buffer.clear();
+        buffer.putInt(CENTRAL_HEADER_SIGNATURE);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) UTF8_FLAG);
+        buffer.putShort((short) DEFLATED);
+        buffer.putInt(entry.dosTime);
+        buffer.putInt((int) entry.crc);
+        buffer.putInt((int) entry.compressedSize);
+        buffer.putInt((int) entry.size);
+        buffer.putShort((short) name.length);
+        buffer.putShort((short) 0); // extra field length
+        buffer.putShort((short) 0); // comment length
+        buffer.putShort((short) 0); // disk number
+        buffer.putShort((short) 0); // internal attributes
+        buffer.putInt(0); // external attributes
+        buffer.putInt((int) entry.offset);
+        out.write(buffer.array(), 0, buffer.position());
+        out.write(name);
+
+        written += buffer.position() + name.length;
+      }
+
+      if (written > MAX_ZIP32_VALUE) throw new LimitExceededException("archive is too large");
+
+      buffer.clear();
+      buffer.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+      buffer.putShort((short) 0);
+      buffer.putShort((short) 0);
+      buffer.putShort((short) entries.size());
+      buffer.putShort((short) entries.size());
+      buffer.putInt((int) (written - centralDirectoryOffset));
+      buffer.putInt((int) centralDirectoryOffset);
+      buffer.putShort((short) 0);
+      out.write(buffer.array(), 0, buffer.position());
+
+      out.close();
+      cleanup = false;
+    } finally {
+      IOUtils.closeQuietly(out);
+
+      if (cleanup && archive.exists() && !archive.delete())
+        LOG.warn("could not delete archive file: " + archive);
+
+      monitor.done();
+    }
+  }
+
+  /** Returns the deflated content of the given file, compressing it if necessary. */
+  private synchronized Chunk getChunk(IFile file, IProgressMonitor monitor)
+      throws IOException, OperationCanceledException {
+    final String key = getKey(file);
+
+    final BasicFileAttributes before = readAttributes(file);
+
+    final Chunk cached = chunks.get(key);
+
+    if (cached != null && matches(cached, before)) {
+      hits++;
+      return cached;
+    }
+
+    misses++;
+
+    final long lastModified =
+        before == null ? System.currentTimeMillis() : before.lastModifiedTime().toMillis();
+
+    final Chunk chunk =
+        deflate(
+            file, file.getContents(), before == null ? -1 : before.size(), lastModified, monitor);
+
+    final BasicFileAttributes after = readAttributes(file);
+
+    /*
+     * only reuse the content if the file was not modified while or
+     * shortly before it was read
+     */
+    if (after != null
+        && matches(chunk, after)
+        && System.currentTimeMillis() - lastModified >= MODIFICATION_TIME_RESOLUTION)
+      chunks.put(key, chunk);
+    else chunks.remove(key);
+
+    return chunk;
+  }
+
+  /**
+   * Compresses the given content of a file to the spool file. The returned chunk is not cached. The
+   * content stream is closed by this method.
+   */
+  private synchronized Chunk deflate(
+      IFile file, InputStream in, long fileSize, long lastModified, IProgressMonitor monitor)
+      throws IOException, OperationCanceledException {
+
+    final long offset = spool.size();
+
+    final CRC32 crc = new CRC32();
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+    final byte[] input = new byte[BUFFER_SIZE];
+    final byte[] output = new byte[BUFFER_SIZE];
+
+    long size = 0;
+    long position = offset;
+
+    try {
+      int read;
+
+      while ((read = in.read(input)) != -1) {
+        if (monitor.isCanceled())
+          throw new OperationCanceledException(
+              "compressing of file '" + file.getFullPath() + "' was canceled");
+
+        crc.update(input, 0, read);
+        size += read;
+
+        deflater.setInput(input, 0, read);
+
+        while (!deflater.needsInput()) position = writeDeflated(deflater, output, position);
+      }
+
+      deflater.finish();
+
+      while (!deflater.finished()) position = writeDeflated(deflater, output, position);
+
+    } finally {
+      IOUtils.closeQuietly(in);
+      deflater.end();
+    }
+
+    final long compressedSize = position - offset;
+
+    if (size > MAX_ZIP32_VALUE || compressedSize > MAX_ZIP32_VALUE)
+      throw new LimitExceededException("file is too large: " + file.getFullPath());
+
+    return new Chunk(
+        offset,
+        compressedSize,
+        size,
+        crc.getValue(),
+        toDosTime(lastModified),
+        fileSize,
+        lastModified);
+  }
+
+  private long writeDeflated(Deflater deflater, byte[] output, long position) throws IOException {
+    final int length = deflater.deflate(output);
+
+    final ByteBuffer data = ByteBuffer.wrap(output, 0, length);
+
+    while (data.hasRemaining()) position += spool.write(data, position);
+
+    return position;
+  }
+
+  private void copy(Chunk chunk, OutputStream out, ByteBuffer buffer) throws IOException {
+    long position = chunk.offset;
+    final long end = chunk.offset + chunk.compressedSize;
+
+    while (position < end) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), end - position));
+
+      final int read = spool.read(buffer, position);
+
+      if (read == -1) throw new IOException("spool file " + spoolFile + " is truncated");
+
+      out.write(buffer.array(), 0, read);
+      position += read;
+    }
+  }
+
+  private static boolean matches(Chunk chunk, BasicFileAttributes attributes) {
+    return attributes != null
+        && attributes.size() == chunk.fileSize
+        && attributes.lastModifiedTime().toMillis() == chunk.lastModified;
+  }
+
+  private static String getKey(IFile file) {
+    return file.getFullPath().toPortableString();
+  }
+
+  private static BasicFileAttributes readAttributes(IFile file) {
+    final IPath location = file.getLocation();
+
+    if (location == null) return null;
+
+    try {
+      final BasicFileAttributes attributes =
+          Files.readAttributes(location.toFile().toPath(), BasicFileAttributes.class);
+
+      return attributes.isRegularFile() ? attributes : null;
+    } catch (IOException | InvalidPathException e) {
+      return null;
+    }
+  }
+
+  private static long getTotalFileSize(List<IFile> files) {
+    long size = 0L;
+
+    for (IFile file : files) {
+      try {
+        size += file.getSize();
+      } catch (IOException e) {
+        LOG.warn("unable to retrieve file size for file: " + file.getFullPath(), e);
+      }
+    }
+
+    return size;
+  }
+
+  /** Converts the given time to the MS-DOS date and time format used by zip archives. */
+  private static int toDosTime(long time) {
+    final Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+
+    final int year = calendar.get(Calendar.YEAR);
+
+    if (year < 1980) return (1 << 21) | (1 << 16);
+
+    return (year - 1980) << 25
+        | (calendar.get(Calendar.MONTH) + 1) << 21
+        | calendar.get(Calendar.DAY_OF_MONTH) << 16
+        | calendar.get(Calendar.HOUR_OF_DAY) << 11
+        | calendar.get(Calendar.MINUTE) << 5
+        | calendar.get(Calendar.SECOND) >> 1;
+  }
+}
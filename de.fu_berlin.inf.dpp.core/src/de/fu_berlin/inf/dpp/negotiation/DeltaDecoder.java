@@ -0,0 +1,82 @@
+package de.fu_berlin.inf.dpp.negotiation;
+
+import de.fu_berlin.inf.dpp.filesystem.IFile;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.zip.Adler32;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Restores the contents of files received during a project negotiation. The content of every file
+ * for which a signature was sent starts with a marker byte: {@link DeltaEncoder#RAW} followed by
+ * the complete content or {@link DeltaEncoder#DELTA} followed by the checksum of the sent content
+ * and a {@linkplain FileDelta#createDelta(byte[], byte[]) delta} to the local version of the file.
+ * The content of all other files is passed through unchanged.
+ *
+ * <p>This class is thread safe.
+ */
+public class DeltaDecoder {
+
+  private final Set<String> keys;
+
+  /**
+   * @param keys the <code>projectID:path</code> keys of all files a signature was sent for, see
+   *     {@link DeltaEncoder#getKey(String, String)}
+   */
+  public DeltaDecoder(final Set<String> keys) {
+    this.keys = keys;
+  }
+
+  /**
+   * Returns the content to write for the given file. The caller is responsible for closing the
+   * returned stream and the received stream.
+   *
+   * @param file the local file which is going to be replaced
+   * @param key the key of the file, see {@link DeltaEncoder#getKey(String, String)}
+   * @param received the received content
+   * @return the content of the file
+   * @throws IOException if the received content is malformed or the local file could not be read or
+   *     was modified since its signature was created
+   */
+  public InputStream getContents(final IFile file, final String key, final InputStream received)
+      throws IOException {
+
+    if (!keys.contains(key)) return received;
+
+    final int marker = received.read();
+
+    if (marker == DeltaEncoder.RAW) return received;
+
+    if (marker != DeltaEncoder.DELTA)
+      throw new IOException("received malformed content for file " + file + ": " + marker);
+
+    final long expected = new DataInputStream(received).readLong();
+
+    final byte[] base;
+
+    InputStream in = null;
+
+    try {
+      in = file.getContents();
+      base = IOUtils.toByteArray(in);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+
+    final byte[] content = FileDelta.applyDelta(base, received);
+
+    final Adler32 adler = new Adler32();
+    adler.update(content, 0, content.length);
+
+    if (adler.getValue() != expected)
+      throw new IOException(
+          "checksum mismatch after applying delta to file "
+              + file
+              + ", the file was probably modified during the negotiation");
+
+    return new ByteArrayInputStream(content);
+  }
+}
@@ -0,0 +1,149 @@
+package de.fu_berlin.inf.dpp.negotiation;
+
+import de.fu_berlin.inf.dpp.filesystem.IFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Adler32;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Provides the contents of the files to send during a project negotiation. Files for which the
+ * remote side sent a {@linkplain FileDelta#createSignature(byte[]) signature} are sent as a delta
+ * if that is smaller than the file itself, see {@link DeltaDecoder} for the format. All other files
+ * are sent unchanged.
+ *
+ * <p>This class is thread safe.
+ */
+public class DeltaEncoder {
+
+  private static final Logger LOG = Logger.getLogger(DeltaEncoder.class);
+
+  /** Marks content that is sent completely. */
+  static final int RAW = 0;
+
+  /**
+   * Marks content that is sent as a delta. The marker is followed by the Adler32 checksum of the
+   * content as a long and the delta itself.
+   */
+  static final int DELTA = 1;
+
+  private final Map<String, byte[]> signatures;
+
+  private final AtomicLong fileBytes = new AtomicLong();
+
+  private final AtomicLong sentBytes = new AtomicLong();
+
+  /**
+   * @param signatures map of <code>projectID:path</code> to the signature of the remote version of
+   *     the file, see {@link #getKey(String, String)}
+   */
+  public DeltaEncoder(final Map<String, byte[]> signatures) {
+    this.signatures = signatures;
+  }
+
+  /**
+   * Returns the key which identifies a file in the signature map.
+   *
+   * @param projectID the session wide id of the project
+   * @param path the project relative path of the file
+   */
+  public static String getKey(final String projectID, final String path) {
+    return projectID + ProjectNegotiation.PATH_DELIMITER + path;
+  }
+
+  /**
+   * Returns whether the content of the given file is encoded.
+   *
+   * @param key the key of the file, see {@link #getKey(String, String)}
+   */
+  public boolean isEncoded(final String key) {
+    return signatures.containsKey(key);
+  }
+
+  /**
+   * Returns the content to send for the given file. The caller is responsible for closing the
+   * returned stream.
+   *
+   * @param file the file to send
+   * @param key the key of the file, see {@link #getKey(String, String)}
+   * @return the unchanged content of the file if the remote side has not sent a signature for it,
+   *     otherwise the encoded content
+   * @throws IOException if the file could not be read
+   */
+  public InputStream getContents(final IFile file, final String key) throws IOException {
+    final byte[] signature = signatures.get(key);
+
+    if (signature == null) return file.getContents();
+
+    final long size = file.getSize();
+
+    if (size > FileDelta.MAX_FILE_SIZE) return prepend(RAW, file.getContents());
+
+    final byte[] content;
+
+    InputStream in = null;
+
+    try {
+      in = file.getContents();
+      content = IOUtils.toByteArray(in);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+
+    final byte[] delta = FileDelta.createDelta(signature, content);
+
+    fileBytes.addAndGet(content.length);
+
+    if (delta.length >= content.length) {
+      sentBytes.addAndGet(content.length);
+      return prepend(RAW, new ByteArrayInputStream(content));
+    }
+
+    sentBytes.addAndGet(delta.length);
+
+    if (LOG.isTraceEnabled())
+      LOG.trace(
+          "sending delta of "
+              + delta.length
+              + " bytes for file "
+              + file
+              + " instead of "
+              + content.length
+              + " bytes");
+
+    final Adler32 adler = new Adler32();
+    adler.update(content, 0, content.length);
+
+    final ByteArrayOutputStream header = new ByteArrayOutputStream(9);
+    final DataOutputStream out = new DataOutputStream(header);
+
+    out.writeByte(DELTA);
+    out.writeLong(adler.getValue());
+    out.flush();
+
+    return new SequenceInputStream(
+        new ByteArrayInputStream(header.toByteArray()), new ByteArrayInputStream(delta));
+  }
+
+  @Override
+  public String toString() {
+    return "DeltaEncoder [files="
+        + signatures.size()
+        + ", fileBytes="
+        + fileBytes.get()
+        + ", sentBytes="
+        + sentBytes.get()
+        + "]";
+  }
+
+  private static InputStream prepend(final int marker, final InputStream in) {
+    return new SequenceInputStream(new ByteArrayInputStream(new byte[] {(byte) marker}), in);
+  }
+}
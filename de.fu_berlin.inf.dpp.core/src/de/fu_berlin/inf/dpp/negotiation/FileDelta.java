@@ -0,0 +1,350 @@
+package de.fu_berlin.inf.dpp.negotiation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Implements the rsync algorithm to transfer only the differences of files that already exist on
+ * the receiving side in an older version.
+ *
+ * <p>The receiver splits its version of a file into blocks and sends a {@linkplain
+ * #createSignature(byte[]) signature} consisting of a weak rolling checksum and a strong checksum
+ * for every block. The sender searches its version of the file for blocks with the same checksums
+ * at any offset and {@linkplain #createDelta(byte[], byte[]) sends} only copy instructions for
+ * these blocks and the remaining bytes literally. The receiver then {@linkplain #applyDelta(byte[],
+ * InputStream) reconstructs} the file from its version and the delta.
+ *
+ * <p>Signatures and deltas are only created for files that fit in memory, see {@link
+ * #isApplicable(long)}.
+ */
+public final class FileDelta {
+
+  /**
+   * Whether files are transferred as deltas if possible. Can be disabled with the system property
+   * {@code de.fu_berlin.inf.dpp.negotiation.DELTA_TRANSFER}.
+   */
+  public static final boolean ENABLED =
+      Boolean.valueOf(
+          System.getProperty("de.fu_berlin.inf.dpp.negotiation.DELTA_TRANSFER", "true"));
+
+  /** Files smaller than this are always transferred completely. */
+  static final long MIN_FILE_SIZE = 4 * 1024;
+
+  /** Files larger than this are always transferred completely. */
+  static final long MAX_FILE_SIZE = 32 * 1024 * 1024;
+
+  private static final int MIN_BLOCK_SIZE = 512;
+
+  private static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+  private static final byte END = 0;
+  private static final byte COPY = 1;
+  private static final byte LITERAL = 2;
+
+  private FileDelta() {
+    // NOP
+  }
+
+  /**
+   * Returns whether a file of the given size is transferred as a delta.
+   *
+   * @param size the size of the file in bytes
+   * @return <code>true</code> if a signature should be created for the file
+   */
+  public static boolean isApplicable(long size) {
+    return ENABLED && size >= MIN_FILE_SIZE && size <= MAX_FILE_SIZE;
+  }
+
+  /**
+   * Creates the signature of the given content, i.e. the checksums of all its complete blocks.
+   *
+   * @param content the content of the receiver's version of the file
+   * @return the signature
+   */
+  public static byte[] createSignature(byte[] content) {
+    final int blockSize = getBlockSize(content.length);
+    final int blockCount = content.length / blockSize;
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + blockCount * 12);
+    final DataOutputStream out = new DataOutputStream(bytes);
+
+    final MessageDigest digest = createDigest();
+
+    try {
+      out.writeInt(blockSize);
+      out.writeInt(blockCount);
+
+      for (int i = 0; i < blockCount; i++) {
+        final int offset = i * blockSize;
+
+        out.writeInt(weakChecksum(content, offset, blockSize));
+        out.writeLong(strongChecksum(digest, content, offset, blockSize));
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e); // cannot happen
+    }
+
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Creates the delta which transforms the receiver's version of a file, described by the given
+   * signature, into the given content.
+   *
+   * @param signature the signature of the receiver's version of the file
+   * @param content the content of the sender's version of the file
+   * @return the delta
+   * @throws IOException if the signature is malformed
+   */
+  public static byte[] createDelta(byte[] signature, byte[] content) throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(signature));
+
+    final int blockSize = in.readInt();
+    final int blockCount = in.readInt();
+
+    if (blockSize < 1 || blockCount < 0)
+      throw new IOException("malformed signature: " + blockSize + "/" + blockCount);
+
+    final int[] weak = new int[blockCount];
+    final long[] strong = new long[blockCount];
+
+    /* maps weak checksums to the first block index, further blocks are found by scanning */
+    final Map<Integer, Integer> blocks = new HashMap<Integer, Integer>(blockCount * 2);
+
+    for (int i = 0; i < blockCount; i++) {
+      weak[i] = in.readInt();
+      strong[i] = in.readLong();
+
+      if (!blocks.containsKey(weak[i])) blocks.put(weak[i], i);
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 8 + 64);
+    final DataOutputStream out = new DataOutputStream(bytes);
+
+    final MessageDigest digest = createDigest();
+
+    out.writeInt(blockSize);
+
+    int literalStart = 0;
+    int copyStart = -1;
+    int copyCount = 0;
+
+    int offset = 0;
+
+    if (blockCount > 0 && content.length >= blockSize) {
+      int a = 0;
+      int b = 0;
+
+      for (int i = 0; i < blockSize; i++) {
+        a += content[i] & 0xFF;
+        b += (blockSize - i) * (content[i] & 0xFF);
+      }
+
+      while (true) {
+        final int checksum = (b << 16) | (a & 0xFFFF);
+
+        int match = -1;
+
+        final Integer first = blocks.get(checksum);
+
+        if (first != null) {
+          final long hash = strongChecksum(digest, content, offset, blockSize);
+
+          /* prefer the block following the previous copy to extend it */
+          final int preferred = copyStart + copyCount;
+
+          if (copyStart >= 0
+              && preferred < blockCount
+              && weak[preferred] == checksum
+              && strong[preferred] == hash) {
+            match = preferred;
+          } else {
+            for (int i = first; i < blockCount; i++) {
+              if (weak[i] == checksum && strong[i] == hash) {
+                match = i;
+                break;
+              }
+            }
+          }
+        }
+
+        if (match != -1) {
+          if (literalStart < offset) {
+            flushCopy(out, copyStart, copyCount);
+            copyStart = -1;
+            copyCount = 0;
+
+            writeLiteral(out, content, literalStart, offset - literalStart);
+          }
+
+          if (copyStart >= 0 && match == copyStart + copyCount) {
+            copyCount++;
+          } else {
+            flushCopy(out, copyStart, copyCount);
+            copyStart = match;
+            copyCount = 1;
+          }
+
+          offset += blockSize;
+          literalStart = offset;
+
+          if (offset + blockSize > content.length) break;
+
+          a = 0;
+          b = 0;
+
+          for (int i = 0; i < blockSize; i++) {
+            a += content[offset + i] & 0xFF;
+            b += (blockSize - i) * (content[offset + i] & 0xFF);
+          }
+
+          continue;
+        }
+
+        if (offset + blockSize >= content.length) break;
+
+        /* roll the window one byte forward */
+        final int removed = content[offset] & 0xFF;
+        final int added = content[offset + blockSize] & 0xFF;
+
+        a = a - removed + added;
+        b = b - blockSize * removed + a;
+
+        offset++;
+      }
+    }
+
+    if (literalStart < content.length) {
+      flushCopy(out, copyStart, copyCount);
+      copyStart = -1;
+      copyCount = 0;
+
+      writeLiteral(out, content, literalStart, content.length - literalStart);
+    }
+
+    flushCopy(out, copyStart, copyCount);
+
+    out.writeByte(END);
+    out.flush();
+
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Reconstructs the sender's version of a file.
+   *
+   * @param base the content of the receiver's version of the file the signature was created for
+   * @param delta the delta created by the sender
+   * @return the content of the sender's version of the file
+   * @throws IOException if the delta is malformed or does not match the base
+   */
+  public static byte[] applyDelta(byte[] base, InputStream delta) throws IOException {
+    final DataInputStream in = new DataInputStream(delta);
+
+    final int blockSize = in.readInt();
+
+    if (blockSize < 1) throw new IOException("malformed delta, block size: " + blockSize);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(base.length + 1024);
+
+    while (true) {
+      final byte op = in.readByte();
+
+      switch (op) {
+        case END:
+          return out.toByteArray();
+
+        case COPY:
+          final long start = (long) in.readInt() * blockSize;
+          final long length = (long) in.readInt() * blockSize;
+
+          if (start < 0 || length < 0 || start + length > base.length)
+            throw new IOException("malformed delta, block range exceeds base");
+
+          out.write(base, (int) start, (int) length);
+          break;
+
+        case LITERAL:
+          final int literalLength = in.readInt();
+
+          if (literalLength < 0) throw new IOException("malformed delta, negative literal");
+
+          final byte[] literal = new byte[Math.min(literalLength, 64 * 1024)];
+
+          for (int remaining = literalLength; remaining > 0; ) {
+            final int read = Math.min(remaining, literal.length);
+            in.readFully(literal, 0, read);
+            out.write(literal, 0, read);
+            remaining -= read;
+          }
+          break;
+
+        default:
+          throw new IOException("malformed delta, unknown instruction: " + op);
+      }
+    }
+  }
+
+  private static void flushCopy(DataOutputStream out, int start, int count) throws IOException {
+    if (start < 0) return;
+
+    out.writeByte(COPY);
+    out.writeInt(start);
+    out.writeInt(count);
+  }
+
+  private static void writeLiteral(DataOutputStream out, byte[] content, int offset, int length)
+      throws IOException {
+    out.writeByte(LITERAL);
+    out.writeInt(length);
+    out.write(content, offset, length);
+  }
+
+  /** Returns a block size of about the square root of the file size, as suggested for rsync. */
+  private static int getBlockSize(long size) {
+    final int blockSize = (int) Math.sqrt(size) & ~7;
+
+    return Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, blockSize));
+  }
+
+  private static int weakChecksum(byte[] content, int offset, int length) {
+    int a = 0;
+    int b = 0;
+
+    for (int i = 0; i < length; i++) {
+      a += content[offset + i] & 0xFF;
+      b += (length - i) * (content[offset + i] & 0xFF);
+    }
+
+    return (b << 16) | (a & 0xFFFF);
+  }
+
+  private static long strongChecksum(MessageDigest digest, byte[] content, int offset, int length) {
+
+    digest.update(content, offset, length);
+
+    final byte[] hash = digest.digest();
+
+    long result = 0;
+
+    for (int i = 0; i < 8; i++) result = (result << 8) | (hash[i] & 0xFF);
+
+    return result;
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+}
@@ -10,10 +10,18 @@ import de.fu_berlin.inf.dpp.monitoring.IProgressMonitor;
 import de.fu_berlin.inf.dpp.monitoring.NullProgressMonitor;
 import de.fu_berlin.inf.dpp.negotiation.FileList.MetaData;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import org.apache.log4j.Logger;
 
 /**
@@ -24,11 +32,21 @@ import org.apache.log4j.Logger;
  *     {@link #createFileList(IProject, List, IChecksumCache, IProgressMonitor)}
  * <li>Or a cheap one which requires the caller to take care of the validity of input data:<br>
  *     {@link #createFileList(List)}
+ *
+ *     <p>The former calculates the checksums of the files in parallel by a pool of threads that is
+ *     shared by all file lists, so concurrent negotiations cannot use more than a bounded number of
+ *     threads for reading files.
  */
 public class FileListFactory {
 
   private static final Logger LOG = Logger.getLogger(FileListFactory.class);
 
+  /** The maximum number of files whose checksums are calculated at the same time. */
+  private static final int CHECKSUM_PARALLELISM =
+      Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+  private static ForkJoinPool checksumPool;
+
   private IChecksumCache checksumCache;
   private IProgressMonitor monitor;
 
@@ -72,6 +90,43 @@ public class FileListFactory {
     return new FileList();
   }
 
+  /**
+   * Checks whether the given file list, which was created by {@link #createFileList(IProject, List,
+   * IChecksumCache, IProgressMonitor)}, still matches the given resources of the project. The
+   * project is rescanned, but no file is read: the checksums of the files are taken from the given
+   * checksum cache, so a file whose checksum is not cached is considered to be modified.
+   *
+   * @param list the file list to check
+   * @param project the project
+   * @param resources the shared resources of the project or <code>null</code> if the project is
+   *     completely shared
+   * @param checksumCache the checksum cache, can be <code>null</code>
+   * @return <code>true</code> if the file list is up to date, <code>false</code> if it is outdated
+   *     or this cannot be decided without reading files
+   * @throws IOException if the project could not be scanned
+   */
+  public static boolean isUpToDate(
+      FileList list, IProject project, List<IResource> resources, IChecksumCache checksumCache)
+      throws IOException {
+
+    if (checksumCache == null) return false;
+
+    FileList current = new FileList();
+
+    if (resources == null) resources = Arrays.asList(project.members());
+
+    for (IFile file : addPaths(current, resources)) {
+      String path = file.getProjectRelativePath().toPortableString();
+
+      MetaData data = list.getMetaData(path);
+      Long checksum = checksumCache.getChecksum(file);
+
+      if (data == null || checksum == null || data.checksum != checksum) return false;
+    }
+
+    return new HashSet<String>(current.getPaths()).equals(new HashSet<String>(list.getPaths()));
+  }
+
   private FileList build(IProject project, List<IResource> resources) throws IOException {
 
     FileList list = new FileList();
@@ -91,11 +146,69 @@ public class FileListFactory {
 
     if (resources.size() == 0) return;
 
+    final List<IFile> files = addPaths(list, resources);
+
+    monitor.beginTask("Calculating checksums...", files.size());
+
+    final ForkJoinPool pool = getChecksumPool();
+    final List<ForkJoinTask<Long>> checksums = new ArrayList<ForkJoinTask<Long>>(files.size());
+
+    for (final IFile file : files) {
+      checksums.add(
+          pool.submit(
+              new Callable<Long>() {
+                @Override
+                public Long call() throws IOException {
+                  return checksum(file);
+                }
+              }));
+    }
+
+    // collect the results in order, so the monitor is only used by the calling thread
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        final IFile file = files.get(i);
+
+        monitor.subTask(file.getProject().getName() + ": " + file.getProjectRelativePath());
+
+        MetaData data = list.getMetaData(file.getProjectRelativePath().toPortableString());
+
+        try {
+          data.checksum = checksums.get(i).get();
+        } catch (ExecutionException e) {
+          final Throwable cause = e.getCause();
+
+          if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+
+          if (cause instanceof Error) throw (Error) cause;
+
+          LOG.error(cause);
+        }
+
+        monitor.worked(1);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while calculating checksums");
+    } finally {
+      for (ForkJoinTask<Long> checksum : checksums) checksum.cancel(false);
+    }
+  }
+
+  /**
+   * Adds the given resources and the members of the given folders to the given list, without
+   * checksums.
+   *
+   * @return the files that were added
+   */
+  private static List<IFile> addPaths(final FileList list, final List<IResource> resources)
+      throws IOException {
+
     Deque<IResource> stack = new LinkedList<IResource>();
 
     stack.addAll(resources);
 
-    List<IFile> files = new LinkedList<IFile>();
+    List<IFile> files = new ArrayList<IFile>();
 
     while (!stack.isEmpty()) {
       IResource resource = stack.pop();
@@ -122,32 +235,45 @@ public class FileListFactory {
       }
     }
 
-    monitor.beginTask("Calculating checksums...", files.size());
-
-    for (IFile file : files) {
-      try {
-        monitor.subTask(file.getProject().getName() + ": " + file.getProjectRelativePath());
-
-        MetaData data = list.getMetaData(file.getProjectRelativePath().toPortableString());
+    return files;
+  }
 
-        Long checksum = null;
+  private long checksum(final IFile file) throws IOException {
+    Long checksum = null;
 
-        if (checksumCache != null) checksum = checksumCache.getChecksum(file);
+    if (checksumCache != null) checksum = checksumCache.getChecksum(file);
 
-        data.checksum = checksum == null ? FileSystem.checksum(file) : checksum;
+    final long result = checksum == null ? FileSystem.checksum(file) : checksum;
 
-        if (checksumCache != null) {
-          boolean isInvalid = checksumCache.addChecksum(file, data.checksum);
+    if (checksumCache != null) {
+      boolean isInvalid = checksumCache.addChecksum(file, result);
 
-          if (isInvalid && checksum != null)
-            LOG.warn("calculated checksum on dirty data: " + file.getFullPath());
-        }
+      if (isInvalid && checksum != null)
+        LOG.warn("calculated checksum on dirty data: " + file.getFullPath());
+    }
 
-      } catch (IOException e) {
-        LOG.error(e);
-      }
+    return result;
+  }
 
-      monitor.worked(1);
+  private static synchronized ForkJoinPool getChecksumPool() {
+    if (checksumPool == null) {
+      checksumPool =
+          new ForkJoinPool(
+              CHECKSUM_PARALLELISM,
+              new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                @Override
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                  final ForkJoinWorkerThread thread =
+                      ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+
+                  thread.setName("dpp-checksum-" + thread.getPoolIndex());
+                  return thread;
+                }
+              },
+              null,
+              false);
     }
+
+    return checksumPool;
   }
 }
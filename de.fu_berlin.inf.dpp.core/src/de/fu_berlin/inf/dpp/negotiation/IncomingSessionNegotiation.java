@@ -146,6 +146,7 @@ public class IncomingSessionNegotiation extends SessionNegotiation {
        * acknowledgement (which indicates, that this client has been successfully added to the
        * session and will receive activities from now on).
        */
+      startPhase("session parameters");
       sendInvitationAccepted();
 
       InvitationParameterExchangeExtension clientSessionPreferences;
@@ -156,6 +157,7 @@ public class IncomingSessionNegotiation extends SessionNegotiation {
       InvitationParameterExchangeExtension actualSessionParameters;
       actualSessionParameters = awaitActualSessionParameters(monitor);
 
+      startPhase("session initialization");
       initializeSession(actualSessionParameters, monitor);
 
       /*
@@ -165,20 +167,24 @@ public class IncomingSessionNegotiation extends SessionNegotiation {
        * will trigger the ClientSessionTimeoutHandler which will just
        * terminate the session !
        */
+      startPhase("connection");
       monitor.setTaskName("Establishing connection...");
 
       connectionManager.connect(ISarosSession.SESSION_CONNECTION_ID, getPeer());
 
       sendConnectionEstablished();
 
+      startPhase("session start");
       startSession(monitor);
 
+      startPhase("completion");
       sendInvitationCompleted(monitor);
 
       awaitFinalAcknowledgement(monitor);
     } catch (Exception e) {
       exception = e;
     } finally {
+      startPhase("cleanup");
       monitor.done();
       deleteCollectors();
     }
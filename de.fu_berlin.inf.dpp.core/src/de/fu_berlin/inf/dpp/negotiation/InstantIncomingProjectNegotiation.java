@@ -16,6 +16,7 @@ import de.fu_berlin.inf.dpp.net.xmpp.XMPPConnectionService;
 import de.fu_berlin.inf.dpp.observables.FileReplacementInProgressObservable;
 import de.fu_berlin.inf.dpp.session.ISarosSession;
 import de.fu_berlin.inf.dpp.session.ISarosSessionManager;
+import de.fu_berlin.inf.dpp.versioning.VersionManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -31,6 +32,8 @@ public class InstantIncomingProjectNegotiation extends AbstractIncomingProjectNe
 
   private static final Logger log = Logger.getLogger(InstantIncomingProjectNegotiation.class);
 
+  private final VersionManager versionManager;
+
   public InstantIncomingProjectNegotiation(
       final JID peer, //
       final String negotiationID, //
@@ -40,6 +43,7 @@ public class InstantIncomingProjectNegotiation extends AbstractIncomingProjectNe
       final FileReplacementInProgressObservable fileReplacementInProgressObservable, //
       final IWorkspace workspace, //
       final IChecksumCache checksumCache, //
+      final VersionManager versionManager, //
       final XMPPConnectionService connectionService, //
       final ITransmitter transmitter, //
       final IReceiver receiver //
@@ -57,6 +61,8 @@ public class InstantIncomingProjectNegotiation extends AbstractIncomingProjectNe
         connectionService,
         transmitter,
         receiver);
+
+    this.versionManager = versionManager;
   }
 
   @Override
@@ -112,8 +118,12 @@ public class InstantIncomingProjectNegotiation extends AbstractIncomingProjectNe
     try {
       in = transfer.recieveFile();
 
+      /* older hosts only send the legacy format */
+      int version = versionManager.getStreamProtocolVersion(getPeer());
+      log.debug(this + ": using stream protocol version " + version);
+
       IncomingStreamProtocol isp;
-      isp = new IncomingStreamProtocol(in, session, monitor);
+      isp = new IncomingStreamProtocol(in, session, deltaDecoder, version, monitor);
       isp.receiveStream();
     } catch (XMPPException e) {
       throw new LocalCancellationException(e.getMessage(), CancelOption.NOTIFY_PEER);
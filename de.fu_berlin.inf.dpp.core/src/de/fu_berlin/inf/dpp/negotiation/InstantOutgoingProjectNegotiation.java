@@ -21,20 +21,23 @@ import de.fu_berlin.inf.dpp.session.ISarosSession;
 import de.fu_berlin.inf.dpp.session.ISarosSessionManager;
 import de.fu_berlin.inf.dpp.session.User;
 import de.fu_berlin.inf.dpp.synchronize.StartHandle;
+import de.fu_berlin.inf.dpp.versioning.VersionManager;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smackx.filetransfer.FileTransfer;
 import org.jivesoftware.smackx.filetransfer.OutgoingFileTransfer;
@@ -59,6 +62,8 @@ public class InstantOutgoingProjectNegotiation extends AbstractOutgoingProjectNe
         }
       };
 
+  private final VersionManager versionManager;
+
   private List<StartHandle> stoppedUsers = null;
   private User remoteUser = null;
 
@@ -70,6 +75,7 @@ public class InstantOutgoingProjectNegotiation extends AbstractOutgoingProjectNe
       final IEditorManager editorManager, //
       final IWorkspace workspace, //
       final IChecksumCache checksumCache, //
+      final VersionManager versionManager, //
       final XMPPConnectionService connectionService, //
       final ITransmitter transmitter, //
       final IReceiver receiver) //
@@ -86,6 +92,8 @@ public class InstantOutgoingProjectNegotiation extends AbstractOutgoingProjectNe
         connectionService,
         transmitter,
         receiver);
+
+    this.versionManager = versionManager;
   }
 
   @Override
@@ -141,26 +149,27 @@ public class InstantOutgoingProjectNegotiation extends AbstractOutgoingProjectNe
     String message = "Sending files to " + getPeer().getName() + "...";
     monitor.beginTask(message, transferList.size());
 
-    /* use piped stream to communicate with transfer thread */
-    PipedInputStream in = new PipedInputStream();
-    OutputStream out = new PipedOutputStream(in);
-
     String userID = getPeer().toString();
     OutgoingFileTransfer transfer;
     transfer = fileTransferManager.createOutgoingFileTransfer(userID);
 
-    try {
-      OutgoingStreamProtocol osp;
-      osp = new OutgoingStreamProtocol(out, session, monitor);
+    OutputStream out = null;
 
+    try {
       /* id in description needed to bypass SendFileAction handler */
       String streamName = TRANSFER_ID_PREFIX + getID();
-      transfer.sendStream(in, streamName, 0, streamName);
+      out = awaitNegotiation(transfer, streamName, monitor);
+
+      /* older clients only understand the legacy format */
+      int version = versionManager.getStreamProtocolVersion(getPeer());
+      log.debug(this + ": using stream protocol version " + version);
 
-      awaitNegotation(transfer, monitor);
+      OutgoingStreamProtocol osp;
+      osp = new OutgoingStreamProtocol(out, session, deltaEncoder, version, monitor);
 
-      sendProjectConfigFiles(osp);
-      sendRemainingPreferOpenedFirst(osp);
+      /* config files are sent first as they affect how other files are written */
+      osp.streamFiles(new ProjectConfigFileSource());
+      osp.streamFiles(new PreferOpenedFirstFileSource());
 
       osp.close();
     } finally {
@@ -213,10 +222,10 @@ public class InstantOutgoingProjectNegotiation extends AbstractOutgoingProjectNe
     }
   }
 
-  private void sendProjectConfigFiles(OutgoingStreamProtocol osp)
-      throws IOException, LocalCancellationException {
+  /** Supplies the project configuration files that have to be sent. */
+  private class ProjectConfigFileSource implements OutgoingStreamProtocol.FileSource {
     /* TODO should be configurable in future */
-    String[] eclipseProjFiles = {
+    private final String[] eclipseProjFiles = {
       ".settings/org.eclipse.core.resources.prefs" /* for file encoding! */,
       ".classpath",
       ".project",
@@ -225,46 +234,114 @@ public class InstantOutgoingProjectNegotiation extends AbstractOutgoingProjectNe
       ".settings/org.eclipse.jdt.ui.prefs"
     };
 
-    for (String string : eclipseProjFiles) {
-      for (IProject project : projects) {
+    private int next;
+
+    @Override
+    public synchronized SPath next() {
+      while (next < eclipseProjFiles.length * projects.size()) {
+        String string = eclipseProjFiles[next / projects.size()];
+        IProject project = projects.get(next % projects.size());
+        next++;
+
         SPath file = new SPath(project.getFile(string));
-        sendIfRequired(osp, file);
+        if (claimIfRequired(file)) return file;
       }
+
+      return null;
     }
   }
 
-  private void sendRemainingPreferOpenedFirst(OutgoingStreamProtocol osp)
-      throws IOException, LocalCancellationException {
-    for (SPath file : transferList) {
+  /** Supplies the remaining files, files opened in an editor first. */
+  private class PreferOpenedFirstFileSource implements OutgoingStreamProtocol.FileSource {
+    private final Iterator<SPath> remaining = transferList.iterator();
+
+    @Override
+    public synchronized SPath next() {
       while (!openedFiles.isEmpty()) {
         SPath openFile = openedFiles.poll();
         /* open files could be changed meanwhile */
         editorManager.saveEditors(openFile.getProject());
-        sendIfRequired(osp, openFile);
+        if (claimIfRequired(openFile)) return openFile;
+      }
+
+      while (remaining.hasNext()) {
+        SPath file = remaining.next();
+        if (claimIfRequired(file)) return file;
       }
 
-      sendIfRequired(osp, file);
+      return null;
     }
   }
 
-  private void sendIfRequired(OutgoingStreamProtocol osp, SPath file)
-      throws IOException, LocalCancellationException {
-    if (transferList.contains(file) && !transmittedFiles.contains(file)) {
-      osp.streamFile(file);
-      transmittedFiles.add(file);
+  /**
+   * Marks the given file as transmitted if it has to be sent and was not sent yet.
+   *
+   * @return <code>true</code> if the file has to be sent
+   */
+  private boolean claimIfRequired(SPath file) {
+    synchronized (transmittedFiles) {
+      return transferList.contains(file) && transmittedFiles.add(file);
     }
   }
 
-  private void awaitNegotation(OutgoingFileTransfer transfer, IProgressMonitor monitor)
-      throws SarosCancellationException {
-    while (transfer.getStatus() != FileTransfer.Status.in_progress) {
-      monitor.subTask("waiting for client to accept file transfer");
-      try {
-        checkCancellation(CancelOption.NOTIFY_PEER);
-        Thread.sleep(200);
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-        throw new LocalCancellationException();
+  /**
+   * Starts the file transfer and waits until the client accepted it.
+   *
+   * @return the stream to send the files to
+   */
+  private OutputStream awaitNegotiation(
+      OutgoingFileTransfer transfer, String streamName, IProgressMonitor monitor)
+      throws SarosCancellationException, IOException {
+
+    monitor.subTask("waiting for client to accept file transfer");
+
+    final CountDownLatch negotiated = new CountDownLatch(1);
+    final AtomicReference<OutputStream> stream = new AtomicReference<OutputStream>();
+    final AtomicReference<String> error = new AtomicReference<String>();
+
+    transfer.sendFile(
+        streamName,
+        0,
+        streamName,
+        new OutgoingFileTransfer.NegotiationProgress() {
+          @Override
+          public void statusUpdated(FileTransfer.Status oldStatus, FileTransfer.Status newStatus) {
+            if (newStatus == FileTransfer.Status.error
+                || newStatus == FileTransfer.Status.refused
+                || newStatus == FileTransfer.Status.cancelled) {
+              error.compareAndSet(null, "file transfer negotiation failed: " + newStatus);
+              negotiated.countDown();
+            }
+          }
+
+          @Override
+          public void outputStreamEstablished(OutputStream out) {
+            /* the negotiation may already have been given up */
+            if (!stream.compareAndSet(null, out)) IOUtils.closeQuietly(out);
+
+            negotiated.countDown();
+          }
+
+          @Override
+          public void errorEstablishingStream(Exception e) {
+            error.compareAndSet(null, "file transfer negotiation failed: " + e.getMessage());
+            negotiated.countDown();
+          }
+        });
+
+    boolean success = false;
+
+    try {
+      await(negotiated, Long.MAX_VALUE);
+
+      if (stream.get() == null) throw new IOException(error.get());
+
+      success = true;
+      return stream.get();
+    } finally {
+      if (!success) {
+        transfer.cancel();
+        IOUtils.closeQuietly(stream.getAndSet(NullOutputStream.NULL_OUTPUT_STREAM));
       }
     }
   }
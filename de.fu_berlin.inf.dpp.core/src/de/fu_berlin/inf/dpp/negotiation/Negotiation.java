@@ -12,7 +12,11 @@ import de.fu_berlin.inf.dpp.net.PacketCollector;
 import de.fu_berlin.inf.dpp.net.xmpp.JID;
 import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.packet.Packet;
 
@@ -35,6 +39,12 @@ abstract class Negotiation {
 
   private static final Logger log = Logger.getLogger(Negotiation.class);
 
+  /**
+   * Interval in which {@link #await} checks the observed monitor for cancellation. Cancellations by
+   * {@link #localCancel} or {@link #remoteCancel} wake up waiting threads immediately.
+   */
+  private static final long CANCELLATION_CHECK_INTERVAL = 200;
+
   private final String id;
 
   // FIMXE make this final (do not obtain the JID during the Negotiation !)
@@ -62,6 +72,18 @@ abstract class Negotiation {
 
   private final List<CancelListener> cancelListeners = new CopyOnWriteArrayList<CancelListener>();
 
+  /** Latches threads are waiting for in {@link #await}, released on cancellation */
+  private final Set<CountDownLatch> awaitedLatches = new CopyOnWriteArraySet<CountDownLatch>();
+
+  /** Wall times of the finished phases, guarded by this */
+  private final StringBuilder phaseTimes = new StringBuilder();
+
+  private String currentPhase;
+
+  private long currentPhaseStart;
+
+  private long firstPhaseStart;
+
   /**
    * Creates a Negotiation.
    *
@@ -150,6 +172,73 @@ abstract class Negotiation {
     return packet;
   }
 
+  /**
+   * Waits until the given latch is released. The wait is aborted if the negotiation is canceled.
+   *
+   * @param latch the latch to wait for, will be released if the negotiation is canceled
+   * @param timeout the maximum time to wait (in milliseconds), {@link Long#MAX_VALUE} to wait
+   *     without a timeout
+   * @return <code>true</code> if the latch was released, <code>false</code> if the timeout expired
+   * @throws SarosCancellationException if the process was canceled
+   */
+  protected final boolean await(CountDownLatch latch, long timeout)
+      throws SarosCancellationException {
+
+    final long start = System.nanoTime();
+    final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+    awaitedLatches.add(latch);
+
+    try {
+      while (true) {
+        checkCancellation(CancelOption.NOTIFY_PEER);
+
+        final long remaining = timeoutNanos - (System.nanoTime() - start);
+
+        if (remaining <= 0) return false;
+
+        if (latch.await(
+            Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(CANCELLATION_CHECK_INTERVAL)),
+            TimeUnit.NANOSECONDS)) {
+          checkCancellation(CancelOption.NOTIFY_PEER);
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LocalCancellationException();
+    } finally {
+      awaitedLatches.remove(latch);
+    }
+  }
+
+  /**
+   * Marks the beginning of the next phase of the negotiation, finishing the current one. The wall
+   * time of every phase is logged when the negotiation {@linkplain #terminate terminates}.
+   *
+   * @param phase the name of the phase
+   */
+  protected final synchronized void startPhase(String phase) {
+    finishPhase();
+
+    currentPhase = phase;
+    currentPhaseStart = System.nanoTime();
+
+    if (phaseTimes.length() == 0) firstPhaseStart = currentPhaseStart;
+  }
+
+  private synchronized void finishPhase() {
+    if (currentPhase == null) return;
+
+    phaseTimes
+        .append(currentPhase)
+        .append('=')
+        .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - currentPhaseStart))
+        .append(" ms, ");
+
+    currentPhase = null;
+  }
+
   /**
    * This method is called after {@link #terminate} decides to perform a cleanup because the
    * negotiation was canceled. Implementing classes should try a maximum effort to revert all the
@@ -274,7 +363,7 @@ abstract class Negotiation {
    * @param listener the listener to remove
    */
   public final void removeCancelListener(final CancelListener listener) {
-    cancelListeners.add(listener);
+    cancelListeners.remove(listener);
   }
 
   /**
@@ -370,6 +459,18 @@ abstract class Negotiation {
 
       if (exitStatus != Status.OK) errorMessage = generateErrorMessage();
 
+      finishPhase();
+
+      if (phaseTimes.length() > 0)
+        log.info(
+            "negotiation "
+                + this
+                + " phase times: "
+                + phaseTimes
+                + "total="
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstPhaseStart)
+                + " ms");
+
       status = exitStatus;
       cause = cancellationCause;
       terminated = true;
@@ -418,6 +519,8 @@ abstract class Negotiation {
 
     cancellationCause = cause;
 
+    for (final CountDownLatch latch : awaitedLatches) latch.countDown();
+
     return true;
   }
 
@@ -0,0 +1,355 @@
+package de.fu_berlin.inf.dpp.negotiation;
+
+import de.fu_berlin.inf.dpp.activities.FileActivity;
+import de.fu_berlin.inf.dpp.activities.IActivity;
+import de.fu_berlin.inf.dpp.activities.IFileSystemModificationActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
+import de.fu_berlin.inf.dpp.editor.AbstractSharedEditorListener;
+import de.fu_berlin.inf.dpp.editor.IEditorManager;
+import de.fu_berlin.inf.dpp.editor.ISharedEditorListener;
+import de.fu_berlin.inf.dpp.exceptions.OperationCanceledException;
+import de.fu_berlin.inf.dpp.filesystem.IChecksumCache;
+import de.fu_berlin.inf.dpp.filesystem.IFile;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.filesystem.IResource;
+import de.fu_berlin.inf.dpp.filesystem.IWorkspaceRunnable;
+import de.fu_berlin.inf.dpp.monitoring.IProgressMonitor;
+import de.fu_berlin.inf.dpp.session.IActivityConsumer;
+import de.fu_berlin.inf.dpp.session.IActivityConsumer.Priority;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.log4j.Logger;
+import org.picocontainer.Startable;
+
+/**
+ * Shares the artifacts of outgoing project negotiations that are running at the same time, e.g.
+ * when the host invites several users at once, so the shared projects are only scanned and
+ * compressed once instead of once per negotiation:
+ *
+ * <ul>
+ *   <li>The {@link FileList file list} of a project is created by the first negotiation that needs
+ *       it. Other negotiations wait for it and reuse it as long as the project was not modified in
+ *       the meantime. Remote modifications are tracked by an activity consumer, local ones are
+ *       detected by checking the file list against the project before reusing it.
+ *   <li>The files are compressed once into a {@link DeflatedFileStore}. As every user may miss a
+ *       different set of files, each negotiation still writes its own archive, but reuses the
+ *       compressed content of the files.
+ * </ul>
+ *
+ * Negotiations have to {@linkplain #acquire() acquire} the cache before using it and {@linkplain
+ * #release() release} it when they are done. All artifacts are discarded as soon as no negotiation
+ * holds the cache anymore.
+ *
+ * <p>This component is only available on the host side.
+ */
+public class NegotiationArtifactCache implements Startable {
+
+  private static final Logger LOG = Logger.getLogger(NegotiationArtifactCache.class);
+
+  /** Interval in which threads waiting for a file list check whether they were canceled. */
+  private static final long CANCELLATION_CHECK_INTERVAL = 500;
+
+  private static final class FileListEntry {
+    final Set<IResource> resources;
+    final long modificationCount;
+    final FutureTask<FileList> task;
+
+    FileListEntry(Set<IResource> resources, long modificationCount, FutureTask<FileList> task) {
+      this.resources = resources;
+      this.modificationCount = modificationCount;
+      this.task = task;
+    }
+  }
+
+  private final ISarosSession session;
+
+  private final IEditorManager editorManager;
+
+  private final ISharedEditorListener sharedEditorListener =
+      new AbstractSharedEditorListener() {
+        @Override
+        public void textEdited(TextEditActivity textEdit) {
+          modified(textEdit.getPath());
+        }
+      };
+
+  private final IActivityConsumer consumer =
+      new IActivityConsumer() {
+        @Override
+        public void exec(IActivity activity) {
+          if (!(activity instanceof IFileSystemModificationActivity)) return;
+
+          modified(((IFileSystemModificationActivity) activity).getPath());
+
+          if (activity instanceof FileActivity) modified(((FileActivity) activity).getOldPath());
+        }
+      };
+
+  // all fields below are guarded by this
+
+  private int references;
+
+  private final Map<IProject, FileListEntry> fileLists = new HashMap<IProject, FileListEntry>();
+
+  private final Map<IProject, Long> modificationCounts = new HashMap<IProject, Long>();
+
+  private DeflatedFileStore deflatedFileStore;
+
+  public NegotiationArtifactCache(ISarosSession session, IEditorManager editorManager) {
+    this.session = session;
+    this.editorManager = editorManager;
+  }
+
+  @Override
+  public void start() {
+    session.addActivityConsumer(consumer, Priority.PASSIVE);
+    editorManager.addSharedEditorListener(sharedEditorListener);
+  }
+
+  @Override
+  public void stop() {
+    session.removeActivityConsumer(consumer);
+    editorManager.removeSharedEditorListener(sharedEditorListener);
+
+    synchronized (this) {
+      references = 0;
+      clear();
+    }
+  }
+
+  /** Acquires the cache. Every call must be followed by a call to {@link #release()}. */
+  public synchronized void acquire() {
+    references++;
+  }
+
+  /** Releases the cache. If no negotiation holds the cache anymore, all artifacts are discarded. */
+  public synchronized void release() {
+    if (references == 0) {
+      LOG.warn("cache released more often than it was acquired");
+      return;
+    }
+
+    if (--references == 0) clear();
+  }
+
+  /**
+   * Returns the file list of the given project. The file list is created by the calling thread
+   * unless another negotiation already created or is creating a file list for the same resources of
+   * the project, which was not modified since. As only the modifications made by remote users are
+   * tracked, a file list created by another negotiation is checked against the project before it is
+   * reused, see {@link FileListFactory#isUpToDate(FileList, IProject, List, IChecksumCache)}.
+   *
+   * @param project the project
+   * @param resources the shared resources of the project or <code>null</code> if the project is
+   *     completely shared
+   * @param checksumCache the checksum cache to use when creating the file list
+   * @param monitor monitor to report the progress of the creation to, can be canceled
+   * @return the file list of the project
+   * @throws IOException if the file list could not be created
+   * @throws OperationCanceledException if the monitor was canceled while waiting for the file list
+   *     of another negotiation
+   * @throws IllegalStateException if the cache is not acquired
+   * @see FileListFactory#createFileList(IProject, List, IChecksumCache, IProgressMonitor)
+   */
+  public FileList getFileList(
+      final IProject project,
+      final List<IResource> resources,
+      final IChecksumCache checksumCache,
+      final IProgressMonitor monitor)
+      throws IOException, OperationCanceledException {
+
+    final Set<IResource> resourceSet = resources == null ? null : new HashSet<IResource>(resources);
+
+    final FileListEntry entry;
+    final boolean owner;
+
+    synchronized (this) {
+      if (references == 0) throw new IllegalStateException("cache is not acquired");
+
+      final long modificationCount = getModificationCount(project);
+      final FileListEntry cached = fileLists.get(project);
+
+      owner =
+          cached == null
+              || cached.modificationCount != modificationCount
+              || !equals(cached.resources, resourceSet);
+
+      if (owner) {
+        entry =
+            new FileListEntry(
+                resourceSet,
+                modificationCount,
+                new FutureTask<FileList>(
+                    new Callable<FileList>() {
+                      @Override
+                      public FileList call() throws IOException {
+                        return FileListFactory.createFileList(
+                            project, resources, checksumCache, monitor);
+                      }
+                    }));
+
+        fileLists.put(project, entry);
+      } else {
+        entry = cached;
+      }
+    }
+
+    if (owner) {
+      entry.task.run();
+    } else {
+      LOG.debug("reusing file list of project " + project.getName());
+      monitor.subTask("Waiting for the file list of project " + project.getName() + "...");
+    }
+
+    final FileList fileList;
+
+    try {
+      fileList = get(entry.task, monitor);
+
+      if (owner || FileListFactory.isUpToDate(fileList, project, resources, checksumCache))
+        return fileList;
+    } catch (IOException | OperationCanceledException | RuntimeException e) {
+      discard(project, entry);
+      throw e;
+    }
+
+    LOG.debug("file list of project " + project.getName() + " is outdated, creating it again");
+
+    discard(project, entry);
+
+    return getFileList(project, resources, checksumCache, monitor);
+  }
+
+  private synchronized void discard(IProject project, FileListEntry entry) {
+    if (fileLists.get(project) == entry) fileLists.remove(project);
+  }
+
+  /**
+   * Returns a runnable that creates a zip archive containing the given files, reusing the
+   * compressed content of files that were already compressed for other negotiations.
+   *
+   * @param archive the archive file to write
+   * @param files the files to add
+   * @param names the entry names of the files
+   * @param encoder the encoder for the contents of the files or <code>null</code>
+   * @param monitor monitor to report the progress to, can be canceled
+   * @return a runnable to execute while the projects of the files are locked
+   * @throws IllegalStateException if the cache is not acquired
+   * @see CreateArchiveTask
+   */
+  public IWorkspaceRunnable createArchiveTask(
+      final File archive,
+      final List<IFile> files,
+      final List<String> names,
+      final DeltaEncoder encoder,
+      final IProgressMonitor monitor) {
+
+    final DeflatedFileStore store;
+
+    synchronized (this) {
+      if (references == 0) throw new IllegalStateException("cache is not acquired");
+
+      store = getDeflatedFileStore();
+    }
+
+    if (store == null) return new CreateArchiveTask(archive, files, names, encoder, monitor);
+
+    return new IWorkspaceRunnable() {
+      @Override
+      public void run(IProgressMonitor unused) throws IOException, OperationCanceledException {
+        try {
+          store.writeArchive(archive, files, names, encoder, monitor);
+        } catch (DeflatedFileStore.LimitExceededException e) {
+          LOG.debug("falling back to uncached archive creation: " + e.getMessage());
+          new CreateArchiveTask(archive, files, names, encoder, monitor).run(monitor);
+        }
+      }
+    };
+  }
+
+  private DeflatedFileStore getDeflatedFileStore() {
+    if (deflatedFileStore != null) return deflatedFileStore;
+
+    try {
+      deflatedFileStore = new DeflatedFileStore();
+    } catch (IOException e) {
+      LOG.warn("could not create deflated file store, archives will not be cached", e);
+    }
+
+    return deflatedFileStore;
+  }
+
+  private void modified(SPath path) {
+    if (path == null) return;
+
+    final IProject project = path.getProject();
+
+    final DeflatedFileStore store;
+
+    synchronized (this) {
+      modificationCounts.put(project, getModificationCount(project) + 1);
+      store = deflatedFileStore;
+    }
+
+    if (store != null) store.invalidate(path.getFile());
+  }
+
+  private long getModificationCount(IProject project) {
+    final Long count = modificationCounts.get(project);
+    return count == null ? 0 : count;
+  }
+
+  private void clear() {
+    fileLists.clear();
+
+    if (deflatedFileStore != null) {
+      deflatedFileStore.close();
+      deflatedFileStore = null;
+    }
+  }
+
+  private static FileList get(FutureTask<FileList> task, IProgressMonitor monitor)
+      throws IOException, OperationCanceledException {
+
+    try {
+      while (true) {
+        try {
+          return task.get(CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          if (monitor.isCanceled())
+            throw new OperationCanceledException("waiting for the file list was canceled");
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting for the file list");
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+
+      if (cause instanceof IOException) throw (IOException) cause;
+
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+
+      if (cause instanceof Error) throw (Error) cause;
+
+      throw new IOException(cause);
+    }
+  }
+
+  private static boolean equals(Set<IResource> a, Set<IResource> b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
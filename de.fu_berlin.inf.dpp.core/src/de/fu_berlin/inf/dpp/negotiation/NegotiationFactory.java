@@ -160,6 +160,7 @@ public final class NegotiationFactory {
             context.getComponent(IEditorManager.class),
             workspace,
             checksumCache,
+            versionManager,
             connectionService,
             transmitter,
             receiver);
@@ -204,6 +205,7 @@ public final class NegotiationFactory {
             fileReplacementInProgressObservable,
             workspace,
             checksumCache,
+            versionManager,
             connectionService,
             transmitter,
             receiver);
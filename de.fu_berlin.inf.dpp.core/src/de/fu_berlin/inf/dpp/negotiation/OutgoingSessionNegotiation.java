@@ -158,16 +158,20 @@ public final class OutgoingSessionNegotiation extends SessionNegotiation {
        * <p>(11) Formally add client to the session so he will receive activities, then send final
        * acknowledgement to inform client about this.
        */
+      startPhase("availability and version check");
       checkAvailability(monitor);
 
       checkVersion(monitor);
 
+      startPhase("invitation offer");
       sendInvitationOffer(monitor);
 
       awaitAcknowledgement(monitor);
 
+      startPhase("acceptance");
       awaitAcceptance(monitor);
 
+      startPhase("session parameters");
       InvitationParameterExchangeExtension clientSessionPreferences;
       clientSessionPreferences = awaitClientSessionPreferences(monitor);
 
@@ -176,8 +180,10 @@ public final class OutgoingSessionNegotiation extends SessionNegotiation {
 
       sendSessionParameters(actualSessionParameters, monitor);
 
+      startPhase("connection");
       awaitConnectionEstablishment(monitor);
 
+      startPhase("completion");
       awaitCompletion(monitor);
 
       IPreferenceStore clientProperties = new PreferenceStore();
@@ -196,6 +202,7 @@ public final class OutgoingSessionNegotiation extends SessionNegotiation {
     } catch (Exception e) {
       exception = e;
     } finally {
+      startPhase("cleanup");
       deleteCollectors();
       monitor.done();
     }
@@ -22,6 +22,10 @@ public class ProjectNegotiationData {
   @XStreamAsAttribute
   private final boolean partial;
 
+  @XStreamAlias("delta")
+  @XStreamAsAttribute
+  private final boolean deltaSupported;
+
   @XStreamAlias("filelist")
   private final FileList fileList;
 
@@ -29,14 +33,21 @@ public class ProjectNegotiationData {
    * @param projectID Session wide ID of the project. This ID is the same for all users.
    * @param projectName Name of the project on inviter side.
    * @param fileList complete list of all files that are part of the sharing for the given project
+   * @param deltaSupported whether the inviter is able to send altered files as {@linkplain
+   *     FileDelta deltas}
    */
   public ProjectNegotiationData(
-      String projectID, String projectName, boolean partial, FileList fileList) {
+      String projectID,
+      String projectName,
+      boolean partial,
+      FileList fileList,
+      boolean deltaSupported) {
 
     this.fileList = fileList;
     this.projectName = projectName;
     this.projectID = projectID;
     this.partial = partial;
+    this.deltaSupported = deltaSupported;
   }
 
   public FileList getFileList() {
@@ -54,4 +65,8 @@ public class ProjectNegotiationData {
   public boolean isPartial() {
     return partial;
   }
+
+  public boolean isDeltaSupported() {
+    return deltaSupported;
+  }
 }
@@ -5,37 +5,56 @@ import de.fu_berlin.inf.dpp.monitoring.IProgressMonitor;
 import de.fu_berlin.inf.dpp.session.ISarosSession;
 
 /**
- * Stream consists of infinite Stream entries. Stream end is signaled by empty <em>projectID</em>.
+ * A stream consists of frames. Every frame starts with a {@code byte} denoting its type. The
+ * content of a file is split into data frames, so the frames of several files can be interleaved:
+ * the sender reads several files at the same time (see {@link #SUBSTREAMS}) and the receiver writes
+ * every file as soon as it is complete, so files may complete in a different order than they were
+ * started. All files of a stream section, which is ended by a {@link #SYNC} frame, are written
+ * before any file of the next section.
  *
- * <p><b>Stream entry</b>
+ * <p><b>Frames</b>
  *
  * <table>
  * <tr>
- * <th>byte count</th>
+ * <th>type</th>
  * <th>content</th>
  * </tr>
  * <tr>
- * <td>varying</td>
- * <td>{@code String} of <em>projectID</em> encoded via
- * {@link java.io.DataOutputStream#writeUTF(String)}. If {@code String} is
- * empty, signals stream end.</td>
+ * <td>{@link #FILE}</td>
+ * <td>{@code int} <em>fileID</em>, {@code String} <em>projectID</em> and {@code String}
+ * <em>fileName</em>, both encoded via {@link java.io.DataOutputStream#writeUTF(String)}. Starts a
+ * file, the <em>fileID</em> identifies the file in the following frames.</td>
  * </tr>
  * <tr>
- * <td>varying</td>
- * <td>{@code String} of <em>fileName</em> encoded via
- * {@link java.io.DataOutputStream#writeUTF(String)}.</td>
+ * <td>{@link #DATA}</td>
+ * <td>{@code int} <em>fileID</em>, {@code int} <em>length</em>, followed by <em>length</em> bytes
+ * of the file's content.</td>
  * </tr>
  * <tr>
- * <td>{@code long}</td>
- * <td>{@code long} of <em>fileSize</em></td>
+ * <td>{@link #FILE_END}</td>
+ * <td>{@code int} <em>fileID</em>. Completes the file.</td>
  * </tr>
  * <tr>
- * <td>defined by <em>fileSize</em></td>
- * <td>{@code bytestream} of <em>fileContent</em></td>
+ * <td>{@link #SYNC}</td>
+ * <td>Ends a stream section.</td>
+ * </tr>
+ * <tr>
+ * <td>{@link #END}</td>
+ * <td>Signals the stream end.</td>
  * </tr>
  * </table>
  *
- * <b>Handle of Character Encoding</b>
+ * <p><b>Legacy format</b>
+ *
+ * <p>Peers that do not announce a {@linkplain #VERSION stream protocol version} during the version
+ * exchange (see {@link de.fu_berlin.inf.dpp.versioning.VersionManager#getStreamProtocolVersion})
+ * only understand the legacy format, in which the files are sent one after another. Every file
+ * starts with its <em>projectID</em> and <em>fileName</em>, both encoded via {@link
+ * java.io.DataOutputStream#writeUTF(String)}, followed by the {@code long} <em>fileSize</em> and
+ * the file's content. An empty <em>projectID</em> signals the stream end. File contents are never
+ * delta encoded in the legacy format.
+ *
+ * <p><b>Handle of Character Encoding</b>
  *
  * <p>The used Character Encoding for a file is an IDE/Editor handled setting. Eclipse is using
  * <em>.settings/org.eclipse.core.resources.prefs</em> for this. Thats why it should be one of the
@@ -50,15 +69,51 @@ import de.fu_berlin.inf.dpp.session.ISarosSession;
  * set in the <em>pref</em> file and gets overwritten by the incoming <em>pref</em> file, if send
  * later.
  *
- * <p>Not forgetting to mention, this behavior is field tested in archive transfer mode.
+ * <p>Not forgetting to mention, this behavior is field tested in archive transfer mode. The project
+ * configuration files are therefore sent in a section of their own.
  */
-abstract class AbstractStreamProtocol {
+public abstract class AbstractStreamProtocol {
+
+  /**
+   * The version of the frame based stream format supported by this implementation. Version {@value
+   * #LEGACY_VERSION} denotes the legacy format.
+   */
+  public static final int VERSION = 1;
+
+  /** The version of the legacy format. */
+  public static final int LEGACY_VERSION = 0;
+
+  static final byte END = 0;
+  static final byte FILE = 1;
+  static final byte DATA = 2;
+  static final byte FILE_END = 3;
+  static final byte SYNC = 4;
+
+  /** Maximum number of bytes of a data frame. */
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  /** Number of files that are read by the sender respectively written by the receiver at once. */
+  static final int SUBSTREAMS =
+      Math.max(1, Integer.getInteger("de.fu_berlin.inf.dpp.negotiation.stream.SUBSTREAMS", 2));
+
+  /** Number of chunks respectively completed files that may be queued between the stages. */
+  static final int QUEUE_CAPACITY = 16;
+
+  /** Interval in milliseconds in which waiting stages check for cancellation and failures. */
+  static final long POLL_INTERVAL = 200;
 
   ISarosSession session;
   IProgressMonitor monitor;
 
-  public AbstractStreamProtocol(ISarosSession session, IProgressMonitor monitor) {
+  /** The negotiated version of the stream format. */
+  final int version;
+
+  AbstractStreamProtocol(ISarosSession session, int version, IProgressMonitor monitor) {
+    if (version < LEGACY_VERSION || version > VERSION)
+      throw new IllegalArgumentException("unsupported stream protocol version: " + version);
+
     this.session = session;
+    this.version = version;
     this.monitor = monitor;
   }
 
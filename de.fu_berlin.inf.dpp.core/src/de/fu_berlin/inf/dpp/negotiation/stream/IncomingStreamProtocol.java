@@ -4,25 +4,153 @@ import de.fu_berlin.inf.dpp.exceptions.LocalCancellationException;
 import de.fu_berlin.inf.dpp.filesystem.FileSystem;
 import de.fu_berlin.inf.dpp.filesystem.IFile;
 import de.fu_berlin.inf.dpp.monitoring.IProgressMonitor;
+import de.fu_berlin.inf.dpp.negotiation.DeltaDecoder;
+import de.fu_berlin.inf.dpp.negotiation.DeltaEncoder;
 import de.fu_berlin.inf.dpp.negotiation.NegotiationTools.CancelOption;
 import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.log4j.Logger;
 
-/** Implements Stream processing in {@link AbstractStreamProtocol} format. */
+/**
+ * Implements Stream processing in {@link AbstractStreamProtocol} format.
+ *
+ * <p>The calling thread reads the stream and assembles the files, while {@link
+ * AbstractStreamProtocol#SUBSTREAMS writer threads} write the completed files, so receiving and
+ * writing the files overlap. Files are assembled in memory, larger files are spooled to a temporary
+ * file. The writers are only handed completed files, as writing a file may block other threads of
+ * the IDE. Streams in the legacy format are received and written file by file on the calling
+ * thread.
+ */
 public class IncomingStreamProtocol extends AbstractStreamProtocol {
 
   private static final Logger log = Logger.getLogger(IncomingStreamProtocol.class);
 
+  /** Files larger than this are spooled to a temporary file while they are received. */
+  private static final int MEMORY_THRESHOLD = 1024 * 1024;
+
+  /** A file that is being received. */
+  private static final class IncomingFile {
+    final IFile file;
+    final String key;
+
+    byte[] data = new byte[0];
+    int size;
+
+    File spool;
+    OutputStream spoolOut;
+
+    IncomingFile(IFile file, String key) {
+      this.file = file;
+      this.key = key;
+    }
+
+    void append(DataInputStream in, int length) throws IOException {
+      if (spoolOut == null && size + length > MEMORY_THRESHOLD) {
+        spool = File.createTempFile("saros_stream", null);
+        spoolOut = new FileOutputStream(spool);
+        spoolOut.write(data, 0, size);
+        data = null;
+      }
+
+      if (spoolOut != null) {
+        final byte[] buffer = new byte[Math.min(length, CHUNK_SIZE)];
+
+        for (int remaining = length; remaining > 0; ) {
+          final int read = Math.min(remaining, buffer.length);
+          in.readFully(buffer, 0, read);
+          spoolOut.write(buffer, 0, read);
+          remaining -= read;
+        }
+
+        return;
+      }
+
+      if (size + length > data.length)
+        data = Arrays.copyOf(data, Math.max(size + length, data.length * 2));
+
+      in.readFully(data, size, length);
+      size += length;
+    }
+
+    void finish() throws IOException {
+      if (spoolOut != null) spoolOut.close();
+    }
+
+    InputStream getContents() throws IOException {
+      if (spool != null) return new BufferedInputStream(new FileInputStream(spool), CHUNK_SIZE);
+
+      return new ByteArrayInputStream(data, 0, size);
+    }
+
+    void discard() {
+      IOUtils.closeQuietly(spoolOut);
+
+      if (spool != null && spool.exists() && !spool.delete())
+        log.warn("could not delete temporary file: " + spool);
+
+      data = null;
+    }
+  }
+
+  /** Signals the writer threads to terminate. */
+  private static final IncomingFile NO_MORE_FILES = new IncomingFile(null, null);
+
   private DataInputStream in;
 
+  private final BlockingQueue<IncomingFile> completedFiles =
+      new ArrayBlockingQueue<IncomingFile>(QUEUE_CAPACITY);
+
+  private final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+
+  /** Number of queued respectively written files, guarded by {@link #completedFiles} */
+  private int queuedFileCount;
+
+  private int writtenFileCount;
+
+  private int reportedFileCount;
+
+  private final DeltaDecoder decoder;
+
   public IncomingStreamProtocol(InputStream in, ISarosSession session, IProgressMonitor monitor) {
-    super(session, monitor);
-    this.in = new DataInputStream(in);
+    this(in, session, null, VERSION, monitor);
+  }
+
+  /**
+   * @param decoder decoder for the contents of the files or <code>null</code> if the contents are
+   *     not encoded
+   * @param version the stream protocol version negotiated with the sender, see {@link
+   *     de.fu_berlin.inf.dpp.versioning.VersionManager#getStreamProtocolVersion}
+   */
+  public IncomingStreamProtocol(
+      InputStream in,
+      ISarosSession session,
+      DeltaDecoder decoder,
+      int version,
+      IProgressMonitor monitor) {
+    super(session, version, monitor);
+    this.in = new DataInputStream(new BufferedInputStream(in, CHUNK_SIZE));
+    this.decoder = decoder;
   }
 
   /**
@@ -33,6 +161,93 @@ public class IncomingStreamProtocol extends AbstractStreamProtocol {
    * @throws LocalCancellationException on local user cancellation
    */
   public void receiveStream() throws IOException, LocalCancellationException {
+    if (version == LEGACY_VERSION) receiveLegacyStream();
+    else receiveFrames();
+  }
+
+  private void receiveFrames() throws IOException, LocalCancellationException {
+    final Map<Integer, IncomingFile> files = new HashMap<Integer, IncomingFile>();
+
+    final ExecutorService writers =
+        Executors.newFixedThreadPool(SUBSTREAMS, new NamedThreadFactory("dpp-stream-writer-"));
+
+    for (int i = 0; i < SUBSTREAMS; i++)
+      writers.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              write();
+            }
+          });
+
+    try {
+      receive:
+      while (true) {
+        final byte type = in.readByte();
+
+        switch (type) {
+          case FILE:
+            final int fileID = in.readInt();
+            final String projectID = in.readUTF();
+            final String fileName = in.readUTF();
+
+            final IFile file = session.getProject(projectID).getFile(fileName);
+
+            String message = "receiving " + displayName(file);
+            log.debug(message);
+            monitor.subTask(message);
+
+            files.put(fileID, new IncomingFile(file, DeltaEncoder.getKey(projectID, fileName)));
+            break;
+
+          case DATA:
+            final IncomingFile incoming = getFile(files, in.readInt());
+            incoming.append(in, in.readInt());
+            break;
+
+          case FILE_END:
+            final IncomingFile completed = files.remove(in.readInt());
+
+            if (completed == null) throw new IOException("stream is corrupted: unknown file");
+
+            completed.finish();
+            queue(completed);
+            break;
+
+          case SYNC:
+            awaitWrittenFiles();
+            break;
+
+          case END:
+            break receive;
+
+          default:
+            throw new IOException("stream is corrupted: unknown frame type " + type);
+        }
+
+        checkState();
+      }
+
+      for (int i = 0; i < SUBSTREAMS; i++) queue(NO_MORE_FILES);
+
+      awaitWrittenFiles();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while receiving files");
+    } finally {
+      writers.shutdownNow();
+
+      for (IncomingFile file : files.values()) file.discard();
+
+      IncomingFile file;
+
+      while ((file = completedFiles.poll()) != null) file.discard();
+
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  private void receiveLegacyStream() throws IOException, LocalCancellationException {
     BoundedInputStream fileIn = null;
     try {
       while (true) {
@@ -73,4 +288,116 @@ public class IncomingStreamProtocol extends AbstractStreamProtocol {
       IOUtils.closeQuietly(in);
     }
   }
+
+  /** Writer stage: writes completed files until there are no more files. */
+  private void write() {
+    try {
+      while (true) {
+        final IncomingFile incoming = completedFiles.take();
+
+        if (incoming == NO_MORE_FILES) return;
+
+        InputStream received = null;
+        InputStream contents = null;
+
+        try {
+          final IFile file = incoming.file;
+
+          /*
+           * folder creation is already done after file exchange, but in
+           * case of future changes
+           */
+          FileSystem.createFolder(file);
+
+          received = incoming.getContents();
+
+          contents = decoder != null ? decoder.getContents(file, incoming.key, received) : received;
+
+          if (file.exists()) file.setContents(contents, false, true);
+          else file.create(contents, false);
+        } finally {
+          IOUtils.closeQuietly(contents);
+          IOUtils.closeQuietly(received);
+          incoming.discard();
+        }
+
+        synchronized (completedFiles) {
+          writtenFileCount++;
+          completedFiles.notifyAll();
+        }
+      }
+    } catch (IOException e) {
+      fail(e);
+    } catch (RuntimeException e) {
+      fail(new IOException(e));
+    } catch (InterruptedException e) {
+      // the receiving thread gave up
+    }
+  }
+
+  private void fail(IOException e) {
+    failure.compareAndSet(null, e);
+
+    synchronized (completedFiles) {
+      completedFiles.notifyAll();
+    }
+  }
+
+  private void queue(IncomingFile file)
+      throws IOException, LocalCancellationException, InterruptedException {
+
+    while (!completedFiles.offer(file, POLL_INTERVAL, TimeUnit.MILLISECONDS)) checkState();
+
+    if (file == NO_MORE_FILES) return;
+
+    synchronized (completedFiles) {
+      queuedFileCount++;
+    }
+  }
+
+  /** Waits until all queued files are written. */
+  private void awaitWrittenFiles()
+      throws IOException, LocalCancellationException, InterruptedException {
+
+    while (true) {
+      synchronized (completedFiles) {
+        if (writtenFileCount == queuedFileCount) break;
+
+        completedFiles.wait(POLL_INTERVAL);
+      }
+
+      checkState();
+    }
+
+    checkState();
+  }
+
+  /** Reports the progress and checks for cancellation and failed writers. */
+  private void checkState() throws IOException, LocalCancellationException {
+    final int written;
+
+    synchronized (completedFiles) {
+      written = writtenFileCount;
+    }
+
+    if (written > reportedFileCount) {
+      monitor.worked(written - reportedFileCount);
+      reportedFileCount = written;
+    }
+
+    if (failure.get() != null) throw failure.get();
+
+    if (monitor.isCanceled())
+      throw new LocalCancellationException("User canceled transmission", CancelOption.NOTIFY_PEER);
+  }
+
+  private static IncomingFile getFile(Map<Integer, IncomingFile> files, int fileID)
+      throws IOException {
+
+    final IncomingFile file = files.get(fileID);
+
+    if (file == null) throw new IOException("stream is corrupted: unknown file " + fileID);
+
+    return file;
+  }
 }
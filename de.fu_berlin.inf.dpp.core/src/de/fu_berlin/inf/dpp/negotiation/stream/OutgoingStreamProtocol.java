@@ -4,47 +4,224 @@ import de.fu_berlin.inf.dpp.activities.SPath;
 import de.fu_berlin.inf.dpp.exceptions.LocalCancellationException;
 import de.fu_berlin.inf.dpp.filesystem.IFile;
 import de.fu_berlin.inf.dpp.monitoring.IProgressMonitor;
+import de.fu_berlin.inf.dpp.negotiation.DeltaEncoder;
 import de.fu_berlin.inf.dpp.negotiation.NegotiationTools.CancelOption;
 import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 
-/** Implements Stream creation in {@link AbstractStreamProtocol} format. */
+/**
+ * Implements Stream creation in {@link AbstractStreamProtocol} format.
+ *
+ * <p>The files are read by {@link AbstractStreamProtocol#SUBSTREAMS reader threads} while the
+ * calling thread writes the read chunks to the stream, so reading the files and sending them
+ * overlap. In the legacy format the files are read and sent one after another by the calling
+ * thread.
+ */
 public class OutgoingStreamProtocol extends AbstractStreamProtocol {
 
   private static final Logger log = Logger.getLogger(OutgoingStreamProtocol.class);
 
-  private static final int BUFFER_SIZE = 8192;
-  /** used for copy operations between streams * */
-  private final byte[] buffer = new byte[BUFFER_SIZE];
+  /**
+   * Supplies the files to send. The source is queried by all reader threads, so implementations
+   * must be thread safe.
+   */
+  public interface FileSource {
+
+    /**
+     * Returns the next file to send.
+     *
+     * @return the next file or <code>null</code> if there are no more files to send
+     * @throws IOException if the next file could not be determined
+     */
+    public SPath next() throws IOException;
+  }
+
+  private static final class Frame {
+    final byte type;
+    final int fileID;
+    final SPath file;
+    final byte[] data;
+    final int length;
+
+    Frame(byte type, int fileID, SPath file, byte[] data, int length) {
+      this.type = type;
+      this.fileID = fileID;
+      this.file = file;
+      this.data = data;
+      this.length = length;
+    }
+  }
+
+  /** Signals that a reader thread terminated. */
+  private static final Frame DONE = new Frame(END, -1, null, null, 0);
+
+  private final DataOutputStream out;
+
+  private final AtomicInteger nextFileID = new AtomicInteger();
 
-  private DataOutputStream out;
+  private final DeltaEncoder encoder;
 
   public OutgoingStreamProtocol(OutputStream out, ISarosSession session, IProgressMonitor monitor) {
-    super(session, monitor);
-    this.out = new DataOutputStream(out);
+    this(out, session, null, VERSION, monitor);
   }
 
   /**
-   * Sends a File to {@code OutputStream out} via in {@link AbstractStreamProtocol} defined
-   * protocol.
+   * @param encoder encoder for the contents of the files or <code>null</code> to send the files
+   *     unchanged, the encoder is not used in the legacy format
+   * @param version the stream protocol version negotiated with the receiver, see {@link
+   *     de.fu_berlin.inf.dpp.versioning.VersionManager#getStreamProtocolVersion}
+   */
+  public OutgoingStreamProtocol(
+      OutputStream out,
+      ISarosSession session,
+      DeltaEncoder encoder,
+      int version,
+      IProgressMonitor monitor) {
+    super(session, version, monitor);
+    this.out = new DataOutputStream(new BufferedOutputStream(out, CHUNK_SIZE));
+    this.encoder = encoder;
+  }
+
+  /**
+   * Sends all files of the given source to {@code OutputStream out} via in {@link
+   * AbstractStreamProtocol} defined protocol. The files are sent as one stream section, i.e. the
+   * receiver has written all of them before it writes any file of a later call.
    *
-   * @param file the file to send
+   * @param source the files to send
    * @throws IOException if any file or stream operation fails
    * @throws LocalCancellationException on local user cancellation
    */
-  public void streamFile(SPath file) throws IOException, LocalCancellationException {
+  public void streamFiles(final FileSource source) throws IOException, LocalCancellationException {
+
+    if (version == LEGACY_VERSION) {
+      final byte[] buffer = new byte[CHUNK_SIZE];
+
+      SPath file;
+
+      while ((file = source.next()) != null) streamLegacyFile(file, buffer);
+
+      return;
+    }
+
+    final BlockingQueue<Frame> frames = new ArrayBlockingQueue<Frame>(QUEUE_CAPACITY + SUBSTREAMS);
+
+    /* the pool of chunk buffers bounds the amount of read but not yet sent data */
+    final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+
+    for (int i = 0; i < QUEUE_CAPACITY; i++) buffers.add(new byte[CHUNK_SIZE]);
+
+    final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+
+    final ExecutorService readers =
+        Executors.newFixedThreadPool(SUBSTREAMS, new NamedThreadFactory("dpp-stream-reader-"));
+
+    for (int i = 0; i < SUBSTREAMS; i++)
+      readers.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              read(source, frames, buffers, failure);
+            }
+          });
+
+    try {
+      int running = SUBSTREAMS;
+
+      while (running > 0) {
+        if (monitor.isCanceled())
+          throw new LocalCancellationException(
+              "transmission was canceled", CancelOption.NOTIFY_PEER);
+
+        final Frame frame = frames.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+
+        if (frame == null) continue;
+
+        if (frame == DONE) {
+          if (failure.get() != null) throw failure.get();
+
+          running--;
+          continue;
+        }
+
+        write(frame);
+
+        if (frame.type == DATA) buffers.add(frame.data);
+      }
+
+      out.writeByte(SYNC);
+      out.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      IOUtils.closeQuietly(out);
+      throw new InterruptedIOException("interrupted while sending files");
+    } catch (IOException e) {
+      IOUtils.closeQuietly(out);
+      throw e;
+    } catch (LocalCancellationException e) {
+      IOUtils.closeQuietly(out);
+      throw e;
+    } finally {
+      readers.shutdownNow();
+    }
+  }
+
+  private void write(Frame frame) throws IOException {
+    switch (frame.type) {
+      case FILE:
+        String message = "sending " + displayName(frame.file.getFile());
+        log.debug(message);
+        monitor.subTask(message);
+
+        out.writeByte(FILE);
+        out.writeInt(frame.fileID);
+        out.writeUTF(session.getProjectID(frame.file.getProject()));
+        out.writeUTF(frame.file.getProjectRelativePath().toPortableString());
+        break;
+
+      case DATA:
+        out.writeByte(DATA);
+        out.writeInt(frame.fileID);
+        out.writeInt(frame.length);
+        out.write(frame.data, 0, frame.length);
+        break;
+
+      case FILE_END:
+        out.writeByte(FILE_END);
+        out.writeInt(frame.fileID);
+        monitor.worked(1);
+        break;
+
+      default:
+        throw new IllegalStateException("unknown frame type: " + frame.type);
+    }
+  }
+
+  private void streamLegacyFile(SPath file, byte[] buffer)
+      throws IOException, LocalCancellationException {
     String message = "sending " + displayName(file.getFile());
     log.debug(message);
     monitor.subTask(message);
 
     IFile fileHandle = file.getFile();
 
-    writeHeader(file, fileHandle.getSize());
+    out.writeUTF(session.getProjectID(file.getProject()));
+    out.writeUTF(file.getProjectRelativePath().toPortableString());
+    out.writeLong(fileHandle.getSize());
 
     InputStream fileIn = null;
     try {
@@ -71,13 +248,64 @@ public class OutgoingStreamProtocol extends AbstractStreamProtocol {
     monitor.worked(1);
   }
 
-  private void writeHeader(SPath file, long fileSize) throws IOException {
-    String projectID = session.getProjectID(file.getProject());
-    String fileName = file.getProjectRelativePath().toPortableString();
+  /** Reader stage: reads the files of the source in chunks until the source is exhausted. */
+  private void read(
+      FileSource source,
+      BlockingQueue<Frame> frames,
+      BlockingQueue<byte[]> buffers,
+      AtomicReference<IOException> failure) {
+
+    try {
+      SPath file;
+
+      while ((file = source.next()) != null) {
+        final int fileID = nextFileID.getAndIncrement();
+
+        frames.put(new Frame(FILE, fileID, file, null, 0));
+
+        InputStream in = null;
 
-    out.writeUTF(projectID);
-    out.writeUTF(fileName);
-    out.writeLong(fileSize);
+        try {
+          if (encoder == null) in = file.getFile().getContents();
+          else
+            in =
+                encoder.getContents(
+                    file.getFile(),
+                    DeltaEncoder.getKey(
+                        session.getProjectID(file.getProject()),
+                        file.getProjectRelativePath().toPortableString()));
+
+          int length;
+
+          do {
+            final byte[] buffer = buffers.take();
+
+            length = readFully(in, buffer);
+
+            if (length > 0) frames.put(new Frame(DATA, fileID, null, buffer, length));
+            else buffers.add(buffer);
+
+          } while (length == CHUNK_SIZE);
+        } finally {
+          IOUtils.closeQuietly(in);
+        }
+
+        frames.put(new Frame(FILE_END, fileID, null, null, 0));
+      }
+    } catch (IOException e) {
+      failure.compareAndSet(null, e);
+    } catch (RuntimeException e) {
+      failure.compareAndSet(null, new IOException(e));
+    } catch (InterruptedException e) {
+      // the sending thread gave up
+      return;
+    }
+
+    try {
+      frames.put(DONE);
+    } catch (InterruptedException e) {
+      // the sending thread gave up
+    }
   }
 
   /**
@@ -88,9 +316,27 @@ public class OutgoingStreamProtocol extends AbstractStreamProtocol {
    */
   public void close() throws IOException {
     try {
-      out.writeUTF("");
+      if (version == LEGACY_VERSION) out.writeUTF("");
+      else out.writeByte(END);
+
+      out.flush();
     } finally {
       IOUtils.closeQuietly(out);
     }
   }
+
+  /** Reads until the buffer is full or the end of the stream is reached. */
+  private static int readFully(InputStream in, byte[] buffer) throws IOException {
+    int length = 0;
+
+    while (length < buffer.length) {
+      final int read = in.read(buffer, length, buffer.length - length);
+
+      if (read == -1) break;
+
+      length += read;
+    }
+
+    return length;
+  }
 }
@@ -0,0 +1,95 @@
+package de.fu_berlin.inf.dpp.net;
+
+import org.jivesoftware.smack.filter.AndFilter;
+import org.jivesoftware.smack.filter.PacketFilter;
+import org.jivesoftware.smack.packet.Packet;
+
+/**
+ * Filter for packets containing a packet extension with a specific element name and namespace and
+ * optionally belonging to a specific session. Further conditions can be added with {@link
+ * #and(PacketFilter)}.
+ *
+ * <p>Unlike other filters, the element name, namespace and session ID of this filter are known to
+ * the {@link IReceiver}, so the receiver is able to dispatch a packet directly to the listeners
+ * which may be interested in it instead of applying every registered filter.
+ */
+public final class ExtensionPacketFilter implements PacketFilter {
+
+  private final String namespace;
+  private final String elementName;
+  private final String sessionID;
+  private final PacketFilter condition;
+
+  /**
+   * Creates a filter which accepts all packets containing an extension with the given element name
+   * and namespace.
+   */
+  public ExtensionPacketFilter(String namespace, String elementName) {
+    this(namespace, elementName, null, null);
+  }
+
+  private ExtensionPacketFilter(
+      String namespace, String elementName, String sessionID, PacketFilter condition) {
+
+    if (namespace == null) throw new NullPointerException("namespace is null");
+
+    if (elementName == null) throw new NullPointerException("elementName is null");
+
+    this.namespace = namespace;
+    this.elementName = elementName;
+    this.sessionID = sessionID;
+    this.condition = condition;
+  }
+
+  /**
+   * Returns a filter which additionally requires the given condition to accept a packet.
+   *
+   * @param condition the additional condition
+   * @return a new filter
+   */
+  public ExtensionPacketFilter and(PacketFilter condition) {
+    return new ExtensionPacketFilter(namespace, elementName, sessionID, combine(condition));
+  }
+
+  /**
+   * Returns a filter which only accepts packets of the given session. The given condition has to
+   * check the session ID of the packet, the session ID itself is only used by the receiver to
+   * dispatch the packet.
+   *
+   * @param sessionID the ID of the session, if <code>null</code> the receiver has to apply the
+   *     condition to the packets of all sessions
+   * @param condition the condition checking the session ID of the packet
+   * @return a new filter
+   */
+  public ExtensionPacketFilter forSession(String sessionID, PacketFilter condition) {
+    return new ExtensionPacketFilter(namespace, elementName, sessionID, combine(condition));
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  public String getElementName() {
+    return elementName;
+  }
+
+  /**
+   * Returns the ID of the session the accepted packets belong to.
+   *
+   * @return the session ID or <code>null</code> if the filter accepts packets of all sessions
+   */
+  public String getSessionID() {
+    return sessionID;
+  }
+
+  @Override
+  public boolean accept(Packet packet) {
+    if (packet.getExtension(elementName, namespace) == null) return false;
+
+    return condition == null || condition.accept(packet);
+  }
+
+  private PacketFilter combine(PacketFilter other) {
+    return condition == null ? other : new AndFilter(condition, other);
+  }
+}
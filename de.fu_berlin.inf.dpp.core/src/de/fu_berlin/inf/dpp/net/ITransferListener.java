@@ -16,8 +16,11 @@ public interface ITransferListener {
    * @param sizeCompressed the compressed size of the data
    * @param sizeUncompressed the uncompressed size of the data
    * @param duration time in milliseconds it took to send the data
+   * @param codec name of the compression codec that was used, e.g <code>none</code> or <code>
+   *     deflate</code>
    */
-  public void sent(StreamMode mode, long sizeCompressed, long sizeUncompressed, long duration);
+  public void sent(
+      StreamMode mode, long sizeCompressed, long sizeUncompressed, long duration, String codec);
 
   /**
    * Gets called when data was received. The actual size of the real data that was received is the
@@ -27,6 +30,9 @@ public interface ITransferListener {
    * @param sizeCompressed the compressed size of the data
    * @param sizeUncompressed the uncompressed size of the data
    * @param duration time in milliseconds it took to receive the data
+   * @param codec name of the compression codec that was used, e.g <code>none</code> or <code>
+   *     deflate</code>
    */
-  public void received(StreamMode mode, long sizeCompressed, long sizeUncompressed, long duration);
+  public void received(
+      StreamMode mode, long sizeCompressed, long sizeUncompressed, long duration, String codec);
 }
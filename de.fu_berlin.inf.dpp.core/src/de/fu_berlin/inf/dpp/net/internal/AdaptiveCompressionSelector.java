@@ -0,0 +1,107 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the {@link ICompressionCodec codec} for compressible transfers based on the payload size
+ * and the compression ratio that was measured for previous payloads of the same packet extension
+ * type.
+ *
+ * <ul>
+ *   <li>Payloads that did not compress well in the past (e.g. archives or images) are sent
+ *       uncompressed. Every {@value #PROBE_INTERVAL}th payload is compressed anyway to detect if
+ *       the content changed.
+ *   <li>Large payloads are compressed with {@link CompressionCodecs#DEFLATE_FAST}.
+ *   <li>All other payloads are compressed with {@link CompressionCodecs#DEFLATE}.
+ * </ul>
+ *
+ * This class is thread safe.
+ */
+final class AdaptiveCompressionSelector {
+
+  /** Payloads with at least this size in bytes are compressed with the fast codec. */
+  static final int FAST_CODEC_THRESHOLD = 64 * 1024;
+
+  /** Ratio of compressed to uncompressed size above which compression is considered useless. */
+  static final double INCOMPRESSIBLE_RATIO = 0.9;
+
+  /** Number of payloads after which an incompressible payload type is compressed again. */
+  static final int PROBE_INTERVAL = 32;
+
+  /** Weight of the latest measurement in the moving average of the ratio. */
+  private static final double WEIGHT = 0.25;
+
+  private static class Statistic {
+    private volatile double ratio;
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    private Statistic(double ratio) {
+      this.ratio = ratio;
+    }
+  }
+
+  private final ConcurrentMap<String, Statistic> statistics =
+      new ConcurrentHashMap<String, Statistic>();
+
+  /**
+   * Returns the codec that should be used for a payload of the given type and size.
+   *
+   * @param description description of the transfer, the namespace and element name identify the
+   *     payload type
+   * @param size the uncompressed size of the payload
+   */
+  ICompressionCodec select(TransferDescription description, int size) {
+    final Statistic statistic = statistics.get(toKey(description));
+
+    if (statistic != null
+        && statistic.ratio > INCOMPRESSIBLE_RATIO
+        && statistic.skipped.incrementAndGet() % PROBE_INTERVAL != 0) return CompressionCodecs.NONE;
+
+    return size >= FAST_CODEC_THRESHOLD
+        ? CompressionCodecs.DEFLATE_FAST
+        : CompressionCodecs.DEFLATE;
+  }
+
+  /**
+   * Records the result of a compression.
+   *
+   * @param description description of the transfer
+   * @param codec the codec that was used
+   * @param compressedSize the size after compression
+   * @param uncompressedSize the size before compression
+   */
+  void update(
+      TransferDescription description,
+      ICompressionCodec codec,
+      long compressedSize,
+      long uncompressedSize) {
+
+    if (!codec.isCompressing() || uncompressedSize <= 0) return;
+
+    final double ratio = (double) compressedSize / uncompressedSize;
+    final String key = toKey(description);
+
+    Statistic statistic = statistics.get(key);
+
+    if (statistic == null) {
+      statistic = statistics.putIfAbsent(key, new Statistic(ratio));
+
+      if (statistic == null) return;
+    }
+
+    // lost updates are acceptable, this is only a heuristic
+    statistic.ratio = statistic.ratio * (1 - WEIGHT) + ratio * WEIGHT;
+  }
+
+  /** Returns the measured compression ratio for the given payload type or -1 if unknown. */
+  double getRatio(TransferDescription description) {
+    final Statistic statistic = statistics.get(toKey(description));
+    return statistic == null ? -1 : statistic.ratio;
+  }
+
+  private static String toKey(TransferDescription description) {
+    return description.getNamespace() + ":" + description.getElementName();
+  }
+}
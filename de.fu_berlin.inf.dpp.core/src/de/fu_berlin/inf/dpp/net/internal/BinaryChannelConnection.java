@@ -5,7 +5,6 @@ import de.fu_berlin.inf.dpp.net.stream.StreamMode;
 import de.fu_berlin.inf.dpp.net.xmpp.JID;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -47,7 +46,20 @@ public class BinaryChannelConnection implements IByteStreamConnection {
   }
 
   /** Max size of data chunks */
-  private static final int CHUNKSIZE = 32 * 1024 - 1;
+  static final int CHUNKSIZE = 32 * 1024 - 1;
+
+  /** Size of a transfer description frame */
+  private static final int TRANSFERDESCRIPTION_SIZE = 11;
+
+  /** Size of the header of a data frame */
+  private static final int DATA_HEADER_SIZE = 7;
+
+  /**
+   * Size of the output buffer. A transfer description and a full data frame fit into the buffer, so
+   * every data frame, including the transfer description of a packet in front of its first chunk,
+   * is passed to the underlying stream in one write call.
+   */
+  static final int OUTPUT_BUFFER_SIZE = TRANSFERDESCRIPTION_SIZE + DATA_HEADER_SIZE + CHUNKSIZE;
 
   private IByteStreamConnectionListener listener;
   private ReceiverThread receiveThread;
@@ -62,8 +74,8 @@ public class BinaryChannelConnection implements IByteStreamConnection {
   private boolean connected;
   private boolean initialized;
 
-  private Map<Integer, ByteArrayOutputStream> pendingFragmentedPackets =
-      new HashMap<Integer, ByteArrayOutputStream>();
+  private Map<Integer, FragmentBuffer> pendingFragmentedPackets =
+      new HashMap<Integer, FragmentBuffer>();
   private Map<Integer, BinaryXMPPExtension> pendingXMPPExtensions =
       new HashMap<Integer, BinaryXMPPExtension>();
 
@@ -122,7 +134,9 @@ public class BinaryChannelConnection implements IByteStreamConnection {
     this.stream.setReadTimeout(0); // keep connection alive
     this.mode = mode;
 
-    outputStream = new DataOutputStream(new BufferedOutputStream(stream.getOutputStream()));
+    outputStream =
+        new DataOutputStream(
+            new BufferedOutputStream(stream.getOutputStream(), OUTPUT_BUFFER_SIZE));
     inputStream = new DataInputStream(new BufferedInputStream(stream.getInputStream()));
   }
 
@@ -207,9 +221,11 @@ public class BinaryChannelConnection implements IByteStreamConnection {
       Integer namespaceId;
       Integer elementNameId;
 
+      /*
+       * the cache updates and the transfer description are not flushed,
+       * they are sent together with the next data frame
+       */
       synchronized (this) {
-        boolean sendUpdate = false;
-
         final String namespace = data.getNamespace();
         namespaceId = outNamespaceCache.get(namespace);
 
@@ -229,7 +245,6 @@ public class BinaryChannelConnection implements IByteStreamConnection {
           outputStream.write(Opcode.NAMESPACE_UPDATE);
           outputStream.write(namespaceId);
           outputStream.writeUTF(namespace);
-          sendUpdate = true;
         }
 
         final String elementName = data.getElementName();
@@ -251,10 +266,7 @@ public class BinaryChannelConnection implements IByteStreamConnection {
           outputStream.write(Opcode.ELEMENT_NAME_UPDATE);
           outputStream.writeShort(elementNameId);
           outputStream.writeUTF(elementName);
-          sendUpdate = true;
         }
-
-        if (sendUpdate) outputStream.flush();
       }
 
       assert content.length > 0;
@@ -316,6 +328,8 @@ public class BinaryChannelConnection implements IByteStreamConnection {
 
           final String elementName = inElementNameCache.get(Integer.valueOf(elementNameId));
 
+          final FragmentBuffer buffer = new FragmentBuffer(chunks, CHUNKSIZE);
+
           final TransferDescription transferDescription = TransferDescription.newDescription();
 
           transferDescription.setSender(remoteAddress);
@@ -330,6 +344,8 @@ public class BinaryChannelConnection implements IByteStreamConnection {
 
           if (oldTransferObject != null)
             throw new IOException("replaced a XMPP extension that is still transmitted");
+
+          pendingFragmentedPackets.put(fragmentId, buffer);
           break;
 
         case Opcode.DATA:
@@ -354,18 +370,14 @@ public class BinaryChannelConnection implements IByteStreamConnection {
                     + " <= "
                     + CHUNKSIZE);
 
-          byte[] payload = new byte[payloadLength];
-          inputStream.readFully(payload);
+          final FragmentBuffer packet = pendingFragmentedPackets.get(fragmentId);
 
-          ByteArrayOutputStream out = pendingFragmentedPackets.get(fragmentId);
+          if (packet == null)
+            throw new ProtocolException("received data for unknown fragment id: " + fragmentId);
 
-          if (out == null) {
-            out = new ByteArrayOutputStream(payloadLength * 2);
-            pendingFragmentedPackets.put(fragmentId, out);
-          }
-
-          out.write(payload);
-          out.flush();
+          // read the chunk directly into the reassembly buffer
+          inputStream.readFully(packet.reserve(payloadLength), packet.size(), payloadLength);
+          packet.advance(payloadLength);
 
           if (!pendingXMPPExtensions.get(fragmentId).isLastChunk()) break;
 
@@ -374,8 +386,7 @@ public class BinaryChannelConnection implements IByteStreamConnection {
           BinaryXMPPExtension fullyReceivedTransferObject =
               pendingXMPPExtensions.remove(fragmentId);
 
-          payload = out.toByteArray();
-          out = null; // help GC
+          final byte[] payload = packet.toByteArray();
 
           fullyReceivedTransferObject.setPayload(payload.length, payload);
 
@@ -452,7 +463,6 @@ public class BinaryChannelConnection implements IByteStreamConnection {
     outputStream.write(namespaceId);
     outputStream.writeShort(elementNameId);
     outputStream.write(compress ? 1 : 0);
-    outputStream.flush();
   }
 
   /** Splits the given data into chunks of CHUNKSIZE to send the BinaryPackets. */
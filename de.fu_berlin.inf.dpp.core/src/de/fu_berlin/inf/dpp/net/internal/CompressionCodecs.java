@@ -0,0 +1,189 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The available {@link ICompressionCodec codecs}.
+ *
+ * <p>All compressing codecs produce a zlib stream so the receiving side can always decompress the
+ * content with an {@link Inflater}, regardless of the compression level that was chosen by the
+ * sender. This keeps the wire format compatible with older versions which only know a single
+ * <i>compressed</i> flag. The receiving side can tell the codecs apart by the compression level
+ * that is recorded in the zlib header, see {@link #forCompressedData(byte[])}.
+ *
+ * <p>{@link Deflater} and {@link Inflater} instances allocate native memory which is only released
+ * on {@link Deflater#end()} or finalization. The codecs therefore keep a small pool of instances
+ * that are {@linkplain Deflater#reset() reset} and reused, surplus instances are ended immediately.
+ */
+final class CompressionCodecs {
+
+  /** Maximum number of pooled (de)compressors per codec. */
+  private static final int MAX_POOLED = 8;
+
+  /** Sends the data as is. */
+  static final ICompressionCodec NONE =
+      new ICompressionCodec() {
+
+        @Override
+        public String getName() {
+          return "none";
+        }
+
+        @Override
+        public boolean isCompressing() {
+          return false;
+        }
+
+        @Override
+        public byte[] compress(byte[] input) {
+          return input;
+        }
+
+        @Override
+        public byte[] decompress(byte[] input) {
+          return input;
+        }
+      };
+
+  /** Default zlib compression, best ratio for small and medium sized payloads. */
+  static final ICompressionCodec DEFLATE =
+      new DeflateCodec("deflate", Deflater.DEFAULT_COMPRESSION);
+
+  /**
+   * Fastest zlib compression. Used for large payloads where the compression time would otherwise
+   * dominate the transfer time.
+   */
+  static final ICompressionCodec DEFLATE_FAST =
+      new DeflateCodec("deflate-fast", Deflater.BEST_SPEED);
+
+  /** Bit offset of the FLEVEL field in the second byte (FLG) of a zlib header, see RFC 1950. */
+  private static final int ZLIB_FLEVEL_SHIFT = 6;
+
+  /** FLEVEL value of zlib streams that were written with the fastest compression level. */
+  private static final int ZLIB_FLEVEL_FASTEST = 0;
+
+  private CompressionCodecs() {
+    // NOP
+  }
+
+  /**
+   * Returns the codec that produced the given compressed data. As the codecs only differ in their
+   * compression level, the codec is determined by the level that is recorded in the zlib header.
+   * Streams of other senders are attributed to {@link #DEFLATE} unless they were written with the
+   * fastest level.
+   *
+   * @param data the compressed data
+   * @return {@link #DEFLATE_FAST} or {@link #DEFLATE}
+   */
+  static ICompressionCodec forCompressedData(byte[] data) {
+    if (data.length >= 2 && (data[1] & 0xFF) >>> ZLIB_FLEVEL_SHIFT == ZLIB_FLEVEL_FASTEST)
+      return DEFLATE_FAST;
+
+    return DEFLATE;
+  }
+
+  static final class DeflateCodec implements ICompressionCodec {
+
+    private final String name;
+
+    private final int level;
+
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<Deflater>(MAX_POOLED);
+
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<Inflater>(MAX_POOLED);
+
+    DeflateCodec(String name, int level) {
+      this.name = name;
+      this.level = level;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public boolean isCompressing() {
+      return true;
+    }
+
+    @Override
+    public byte[] compress(byte[] input) {
+      Deflater deflater = deflaters.poll();
+
+      if (deflater == null) deflater = new Deflater(level);
+
+      try {
+        deflater.setInput(input);
+        deflater.finish();
+
+        byte[] output = new byte[Math.max(64, input.length / 2)];
+        int length = 0;
+
+        while (!deflater.finished()) {
+          if (length == output.length) output = Arrays.copyOf(output, output.length * 2);
+
+          length += deflater.deflate(output, length, output.length - length);
+        }
+
+        return length == output.length ? output : Arrays.copyOf(output, length);
+      } finally {
+        release(deflater);
+      }
+    }
+
+    @Override
+    public byte[] decompress(byte[] input) throws IOException {
+      Inflater inflater = inflaters.poll();
+
+      if (inflater == null) inflater = new Inflater();
+
+      try {
+        inflater.setInput(input);
+
+        byte[] output = new byte[Math.max(64, input.length * 3)];
+        int length = 0;
+
+        while (!inflater.finished()) {
+          if (length == output.length) output = Arrays.copyOf(output, output.length * 2);
+
+          final int count = inflater.inflate(output, length, output.length - length);
+
+          if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+            throw new IOException("failed to inflate data, stream is truncated");
+
+          length += count;
+        }
+
+        return length == output.length ? output : Arrays.copyOf(output, length);
+      } catch (DataFormatException e) {
+        throw new IOException("failed to inflate data", e);
+      } finally {
+        release(inflater);
+      }
+    }
+
+    private void release(Deflater deflater) {
+      deflater.reset();
+
+      if (!deflaters.offer(deflater)) deflater.end();
+    }
+
+    private void release(Inflater inflater) {
+      inflater.reset();
+
+      if (!inflaters.offer(inflater)) inflater.end();
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
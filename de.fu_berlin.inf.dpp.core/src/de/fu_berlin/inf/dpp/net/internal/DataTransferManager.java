@@ -13,7 +13,6 @@ import de.fu_berlin.inf.dpp.net.stream.StreamMode;
 import de.fu_berlin.inf.dpp.net.xmpp.IConnectionListener;
 import de.fu_berlin.inf.dpp.net.xmpp.JID;
 import de.fu_berlin.inf.dpp.net.xmpp.XMPPConnectionService;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.ArrayList;
@@ -25,9 +24,6 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.zip.DataFormatException;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.Connection;
 import org.picocontainer.annotations.Nullable;
@@ -45,8 +41,6 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
 
   private static final Logger LOG = Logger.getLogger(DataTransferManager.class);
 
-  private static final int CHUNKSIZE = 16 * 1024;
-
   private static final String DEFAULT_CONNECTION_ID = "default";
 
   private static final String IN = "in";
@@ -79,6 +73,8 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
 
   private final List<IStreamService> streamServices = new CopyOnWriteArrayList<IStreamService>();
 
+  private final AdaptiveCompressionSelector compressionSelector = new AdaptiveCompressionSelector();
+
   private final IByteStreamConnectionListener byteStreamConnectionListener =
       new IByteStreamConnectionListener() {
 
@@ -104,12 +100,21 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
                     + extension.getTransferMode()
                     + "]");
 
-          if (extension.getTransferDescription().compressContent()) {
+          /*
+           * the transfer description only flags compressed content, the codec
+           * that was used is determined by the zlib header of the payload
+           */
+          final ICompressionCodec codec =
+              extension.getTransferDescription().compressContent()
+                  ? CompressionCodecs.forCompressedData(extension.getPayload())
+                  : CompressionCodecs.NONE;
+
+          if (codec.isCompressing()) {
             byte[] payload = extension.getPayload();
             long compressedPayloadLength = payload.length;
 
             try {
-              payload = inflate(payload);
+              payload = codec.decompress(payload);
             } catch (IOException e) {
               LOG.error("could not decompress extension payload", e);
               return;
@@ -122,7 +127,8 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
               extension.getTransferMode(),
               extension.getCompressedSize(),
               extension.getUncompressedSize(),
-              extension.getTransferDuration());
+              extension.getTransferDuration(),
+              codec.getName());
 
           receiver.processBinaryXMPPExtension(extension);
         }
@@ -286,7 +292,14 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
 
     long sizeUncompressed = payload.length;
 
-    if (description.compressContent()) payload = deflate(payload);
+    ICompressionCodec codec = CompressionCodecs.NONE;
+
+    if (description.compressContent()) {
+      codec = compressionSelector.select(description, payload.length);
+      payload = codec.compress(payload);
+      compressionSelector.update(description, codec, payload.length, sizeUncompressed);
+      description.setCompressContent(codec.isCompressing());
+    }
 
     final long transferStartTime = System.currentTimeMillis();
 
@@ -302,7 +315,8 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
         connection.getMode(),
         payload.length,
         sizeUncompressed,
-        System.currentTimeMillis() - transferStartTime);
+        System.currentTimeMillis() - transferStartTime,
+        codec.getName());
   }
 
   /** @deprecated */
@@ -578,11 +592,12 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
       final StreamMode mode,
       final long sizeCompressed,
       final long sizeUncompressed,
-      final long duration) {
+      final long duration,
+      final String codec) {
 
     for (final ITransferListener listener : transferListeners) {
       try {
-        listener.sent(mode, sizeCompressed, sizeUncompressed, duration);
+        listener.sent(mode, sizeCompressed, sizeUncompressed, duration, codec);
       } catch (RuntimeException e) {
         LOG.error("invoking sent() on listener: " + listener + " failed", e);
       }
@@ -593,53 +608,15 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
       final StreamMode mode,
       final long sizeCompressed,
       final long sizeUncompressed,
-      final long duration) {
+      final long duration,
+      final String codec) {
 
     for (final ITransferListener listener : transferListeners) {
       try {
-        listener.received(mode, sizeCompressed, sizeUncompressed, duration);
+        listener.received(mode, sizeCompressed, sizeUncompressed, duration, codec);
       } catch (RuntimeException e) {
         LOG.error("invoking received() on listener: " + listener + " failed", e);
       }
     }
   }
-
-  private static byte[] deflate(byte[] input) {
-
-    Deflater compressor = new Deflater(Deflater.DEFLATED);
-    compressor.setInput(input);
-    compressor.finish();
-
-    ByteArrayOutputStream bos = new ByteArrayOutputStream(input.length);
-
-    byte[] buf = new byte[CHUNKSIZE];
-
-    while (!compressor.finished()) {
-      int count = compressor.deflate(buf);
-      bos.write(buf, 0, count);
-    }
-
-    return bos.toByteArray();
-  }
-
-  private static byte[] inflate(byte[] input) throws IOException {
-
-    ByteArrayOutputStream bos;
-    Inflater decompressor = new Inflater();
-
-    decompressor.setInput(input, 0, input.length);
-    bos = new ByteArrayOutputStream(input.length);
-
-    byte[] buf = new byte[CHUNKSIZE];
-
-    try {
-      while (!decompressor.finished()) {
-        int count = decompressor.inflate(buf);
-        bos.write(buf, 0, count);
-      }
-      return bos.toByteArray();
-    } catch (DataFormatException e) {
-      throw new IOException("failed to inflate data", e);
-    }
-  }
 }
@@ -0,0 +1,57 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+/**
+ * Snapshot of the dispatch statistics of a single packet extension type, see {@link
+ * XMPPReceiver#getDispatchStatistics}.
+ *
+ * <p>The dispatch time of a packet is the time needed to determine the interested listeners and to
+ * invoke them, i.e it includes the time the listeners need to process the packet.
+ */
+public final class DispatchStatistics {
+
+  private final long dispatchedPackets;
+  private final long deliveries;
+  private final long maxDispatchTime;
+  private final long totalDispatchTime;
+
+  DispatchStatistics(
+      long dispatchedPackets, long deliveries, long maxDispatchTime, long totalDispatchTime) {
+    this.dispatchedPackets = dispatchedPackets;
+    this.deliveries = deliveries;
+    this.maxDispatchTime = maxDispatchTime;
+    this.totalDispatchTime = totalDispatchTime;
+  }
+
+  /** Returns the number of dispatched packets. */
+  public long getDispatchedPackets() {
+    return dispatchedPackets;
+  }
+
+  /** Returns the number of times a packet was passed to a listener. */
+  public long getDeliveries() {
+    return deliveries;
+  }
+
+  /** Returns the maximum dispatch time of all packets in microseconds. */
+  public long getMaxDispatchTime() {
+    return maxDispatchTime;
+  }
+
+  /** Returns the average dispatch time of all packets in microseconds. */
+  public long getAverageDispatchTime() {
+    return dispatchedPackets == 0 ? 0 : totalDispatchTime / dispatchedPackets;
+  }
+
+  @Override
+  public String toString() {
+    return "DispatchStatistics [dispatchedPackets="
+        + dispatchedPackets
+        + ", deliveries="
+        + deliveries
+        + ", maxDispatchTime="
+        + maxDispatchTime
+        + ", averageDispatchTime="
+        + getAverageDispatchTime()
+        + "]";
+  }
+}
@@ -0,0 +1,71 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import java.net.ProtocolException;
+import java.util.Arrays;
+
+/**
+ * Buffer in which the chunks of a fragmented packet are reassembled. The buffer is sized from the
+ * announced chunk count, but as the count is sent by the remote side only a bounded amount of
+ * memory is allocated in advance. The buffer grows as the chunks arrive.
+ *
+ * <p>This class is <b>not</b> thread safe.
+ */
+final class FragmentBuffer {
+
+  /** The maximum number of chunks memory is allocated for before they are received. */
+  static final int MAX_PREALLOCATED_CHUNKS = 32;
+
+  private final long limit;
+
+  private byte[] data;
+
+  private int size;
+
+  /**
+   * @param chunks the announced number of chunks of the packet
+   * @param chunkSize the maximum size of a chunk
+   * @throws ProtocolException if the chunk count is not positive or the packet could be larger than
+   *     the maximum array size
+   */
+  FragmentBuffer(int chunks, int chunkSize) throws ProtocolException {
+    if (chunks <= 0 || chunks > Integer.MAX_VALUE / chunkSize)
+      throw new ProtocolException("chunk count field contains corrupted value: " + chunks);
+
+    limit = (long) chunks * chunkSize;
+    data = new byte[Math.min(chunks, MAX_PREALLOCATED_CHUNKS) * chunkSize];
+  }
+
+  /**
+   * Ensures that the given number of bytes can be appended to the buffer.
+   *
+   * @return the array to write the bytes to, starting at {@link #size()}
+   * @throws ProtocolException if the packet would exceed its announced size
+   */
+  byte[] reserve(int length) throws ProtocolException {
+    final long required = (long) size + length;
+
+    if (required > limit) throw new ProtocolException("received more data than announced");
+
+    if (required > data.length)
+      data = Arrays.copyOf(data, (int) Math.min(limit, Math.max(required, data.length * 2L)));
+
+    return data;
+  }
+
+  /** Marks the given number of reserved bytes as written. */
+  void advance(int length) {
+    size += length;
+  }
+
+  /** Returns the number of bytes in the buffer. */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the content of the buffer. The internal array is returned if it is completely filled.
+   */
+  byte[] toByteArray() {
+    return size == data.length ? data : Arrays.copyOf(data, size);
+  }
+}
@@ -0,0 +1,39 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import java.io.IOException;
+
+/**
+ * A codec that is used to compress the payload of {@link TransferDescription#compressContent()
+ * compressible} transfers. Implementations <b>must</b> be thread safe.
+ */
+interface ICompressionCodec {
+
+  /**
+   * Returns the name of this codec as it is reported to the {@link
+   * de.fu_berlin.inf.dpp.net.ITransferListener transfer listeners}.
+   */
+  public String getName();
+
+  /**
+   * Returns whether the output of this codec has to be flagged as compressed content, i.e the
+   * receiver has to inflate it.
+   */
+  public boolean isCompressing();
+
+  /**
+   * Compresses the given data.
+   *
+   * @param input the data to compress, <b>must not</b> be modified
+   * @return the compressed data, may be the input array itself
+   */
+  public byte[] compress(byte[] input);
+
+  /**
+   * Decompresses the given data.
+   *
+   * @param input the data to decompress, <b>must not</b> be modified
+   * @return the decompressed data, may be the input array itself
+   * @throws IOException if the data is malformed
+   */
+  public byte[] decompress(byte[] input) throws IOException;
+}
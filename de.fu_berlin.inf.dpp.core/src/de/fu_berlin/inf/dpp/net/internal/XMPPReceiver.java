@@ -1,18 +1,28 @@
 package de.fu_berlin.inf.dpp.net.internal;
 
 import de.fu_berlin.inf.dpp.annotations.Component;
+import de.fu_berlin.inf.dpp.communication.extensions.SarosSessionPacketExtension;
+import de.fu_berlin.inf.dpp.misc.binary.BinaryExtensionProvider;
+import de.fu_berlin.inf.dpp.misc.xstream.XStreamExtensionProvider.XStreamPacketExtension;
 import de.fu_berlin.inf.dpp.net.ConnectionState;
 import de.fu_berlin.inf.dpp.net.DispatchThreadContext;
+import de.fu_berlin.inf.dpp.net.ExtensionPacketFilter;
 import de.fu_berlin.inf.dpp.net.IReceiver;
 import de.fu_berlin.inf.dpp.net.PacketCollector;
 import de.fu_berlin.inf.dpp.net.PacketCollector.CancelHook;
 import de.fu_berlin.inf.dpp.net.xmpp.IConnectionListener;
 import de.fu_berlin.inf.dpp.net.xmpp.XMPPConnectionService;
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.Connection;
 import org.jivesoftware.smack.PacketListener;
@@ -32,8 +42,102 @@ public class XMPPReceiver implements IReceiver {
 
   private final DispatchThreadContext dispatchThreadContext;
 
-  private Map<PacketListener, PacketFilter> listeners =
-      Collections.synchronizedMap(new HashMap<PacketListener, PacketFilter>());
+  /** Extension type of packets without any packet extension used for the statistics. */
+  private static final String NO_EXTENSION = "";
+
+  /** A registered listener together with its filter. */
+  private static final class Registration {
+    private final PacketListener listener;
+    private final PacketFilter filter;
+
+    private Registration(PacketListener listener, PacketFilter filter) {
+      this.listener = listener;
+      this.filter = filter;
+    }
+  }
+
+  /**
+   * Immutable index of the registered listeners. Listeners with an {@link ExtensionPacketFilter}
+   * are indexed by the namespace and element name of the extension and, if present, the session ID.
+   * All other filters have to be applied to every packet.
+   */
+  private static final class DispatchIndex {
+
+    private static final DispatchIndex EMPTY =
+        new DispatchIndex(Collections.<PacketListener, PacketFilter>emptyMap());
+
+    private final Map<String, List<Registration>> byExtension =
+        new HashMap<String, List<Registration>>();
+
+    private final Map<String, List<Registration>> bySession =
+        new HashMap<String, List<Registration>>();
+
+    private final List<Registration> unindexed = new ArrayList<Registration>();
+
+    private DispatchIndex(Map<PacketListener, PacketFilter> listeners) {
+      for (Entry<PacketListener, PacketFilter> entry : listeners.entrySet()) {
+        final Registration registration = new Registration(entry.getKey(), entry.getValue());
+
+        if (!(registration.filter instanceof ExtensionPacketFilter)) {
+          unindexed.add(registration);
+          continue;
+        }
+
+        final ExtensionPacketFilter filter = (ExtensionPacketFilter) registration.filter;
+
+        final String key = getKey(filter.getNamespace(), filter.getElementName());
+
+        if (filter.getSessionID() == null) add(byExtension, key, registration);
+        else add(bySession, getKey(key, filter.getSessionID()), registration);
+      }
+    }
+
+    private static void add(
+        Map<String, List<Registration>> index, String key, Registration registration) {
+
+      List<Registration> registrations = index.get(key);
+
+      if (registrations == null) {
+        registrations = new ArrayList<Registration>(1);
+        index.put(key, registrations);
+      }
+
+      registrations.add(registration);
+    }
+  }
+
+  /** Dispatch statistics of a single extension type. */
+  private static final class DispatchCounters {
+    private long dispatchedPackets;
+    private long deliveries;
+    private long maxDispatchTime;
+    private long totalDispatchTime;
+
+    private synchronized void record(int deliveredListeners, long dispatchTime) {
+      dispatchedPackets++;
+      deliveries += deliveredListeners;
+      totalDispatchTime += dispatchTime;
+      maxDispatchTime = Math.max(maxDispatchTime, dispatchTime);
+    }
+
+    private synchronized DispatchStatistics getStatistics() {
+      return new DispatchStatistics(
+          dispatchedPackets,
+          deliveries,
+          TimeUnit.NANOSECONDS.toMicros(maxDispatchTime),
+          TimeUnit.NANOSECONDS.toMicros(totalDispatchTime));
+    }
+  }
+
+  /** all registered listeners, guarded by itself */
+  private final Map<PacketListener, PacketFilter> listeners =
+      new HashMap<PacketListener, PacketFilter>();
+
+  /** copy of the listeners that is replaced on every registration change */
+  private volatile DispatchIndex index = DispatchIndex.EMPTY;
+
+  private final ConcurrentMap<String, DispatchCounters> dispatchCounters =
+      new ConcurrentHashMap<String, DispatchCounters>();
 
   private XmlPullParser parser;
 
@@ -75,12 +179,35 @@ public class XMPPReceiver implements IReceiver {
 
   @Override
   public void addPacketListener(PacketListener listener, PacketFilter filter) {
-    listeners.put(listener, filter);
+    synchronized (listeners) {
+      listeners.put(listener, filter);
+      index = new DispatchIndex(listeners);
+    }
   }
 
   @Override
   public void removePacketListener(PacketListener listener) {
-    listeners.remove(listener);
+    synchronized (listeners) {
+      if (!listeners.containsKey(listener)) return;
+
+      listeners.remove(listener);
+      index = new DispatchIndex(listeners);
+    }
+  }
+
+  /**
+   * Returns the dispatch statistics of all packet extension types that were received so far. The
+   * key is the element name of the first extension of the packets.
+   *
+   * @return a snapshot of the statistics per extension type
+   */
+  public Map<String, DispatchStatistics> getDispatchStatistics() {
+    final Map<String, DispatchStatistics> statistics = new HashMap<String, DispatchStatistics>();
+
+    for (Entry<String, DispatchCounters> entry : dispatchCounters.entrySet())
+      statistics.put(entry.getKey(), entry.getValue().getStatistics());
+
+    return statistics;
   }
 
   @Override
@@ -127,24 +254,88 @@ public class XMPPReceiver implements IReceiver {
   }
 
   /**
-   * Dispatches the packet to all registered listeners.
+   * Dispatches the packet to all registered listeners whose filter accepts the packet. Only the
+   * listeners which are indexed by one of the extensions of the packet and the listeners whose
+   * filter cannot be indexed are considered.
    *
    * @sarosThread must be called from the Dispatch Thread
    */
   private void forwardPacket(Packet packet) {
-    Map<PacketListener, PacketFilter> copy;
+    final long start = System.nanoTime();
 
-    synchronized (listeners) {
-      copy = new HashMap<PacketListener, PacketFilter>(listeners);
+    final DispatchIndex current = index;
+
+    int delivered = deliver(current.unindexed, packet);
+
+    final Collection<PacketExtension> extensions = packet.getExtensions();
+
+    String type = NO_EXTENSION;
+
+    // a packet rarely contains more than one extension
+    final List<String> dispatchedKeys = new ArrayList<String>(extensions.size());
+
+    for (PacketExtension extension : extensions) {
+      final String key = getKey(extension.getNamespace(), extension.getElementName());
+
+      if (dispatchedKeys.contains(key)) continue;
+
+      dispatchedKeys.add(key);
+
+      if (type == NO_EXTENSION) type = extension.getElementName();
+
+      delivered += deliver(current.byExtension.get(key), packet);
+
+      if (current.bySession.isEmpty()) continue;
+
+      final String sessionID = getSessionID(extension);
+
+      if (sessionID != null)
+        delivered += deliver(current.bySession.get(getKey(key, sessionID)), packet);
     }
-    for (Entry<PacketListener, PacketFilter> entry : copy.entrySet()) {
-      PacketListener listener = entry.getKey();
-      PacketFilter filter = entry.getValue();
 
-      if (filter == null || filter.accept(packet)) {
-        listener.processPacket(packet);
+    DispatchCounters counters = dispatchCounters.get(type);
+
+    if (counters == null) {
+      dispatchCounters.putIfAbsent(type, new DispatchCounters());
+      counters = dispatchCounters.get(type);
+    }
+
+    counters.record(delivered, System.nanoTime() - start);
+  }
+
+  /**
+   * Passes the packet to all given listeners whose filter accepts the packet.
+   *
+   * @return the number of listeners the packet was passed to
+   */
+  private static int deliver(List<Registration> registrations, Packet packet) {
+    if (registrations == null) return 0;
+
+    int delivered = 0;
+
+    for (Registration registration : registrations) {
+      if (registration.filter == null || registration.filter.accept(packet)) {
+        registration.listener.processPacket(packet);
+        delivered++;
       }
     }
+
+    return delivered;
+  }
+
+  /** Returns the ID of the session the payload of the given extension belongs to, if any. */
+  private static String getSessionID(PacketExtension extension) {
+    if (!(extension instanceof XStreamPacketExtension)) return null;
+
+    final Object payload = ((XStreamPacketExtension<?>) extension).getPayload();
+
+    if (!(payload instanceof SarosSessionPacketExtension)) return null;
+
+    return ((SarosSessionPacketExtension) payload).getSessionID();
+  }
+
+  private static String getKey(String first, String second) {
+    return first + '\0' + second;
   }
 
   /**
@@ -178,6 +369,18 @@ public class XMPPReceiver implements IReceiver {
 
     PacketExtension extension = null;
 
+    if (provider instanceof BinaryExtensionProvider) {
+      try {
+        extension =
+            ((BinaryExtensionProvider<?>) provider).parseBinary(transferObject.getPayload());
+      } catch (Exception e) {
+        LOG.error("could not deserialize binary transfer object payload: " + e.getMessage(), e);
+        return null;
+      }
+
+      return createPacket(description, extension);
+    }
+
     try {
       parser.setInput(new ByteArrayInputStream(transferObject.getPayload()), "UTF-8");
       /*
@@ -194,6 +397,10 @@ public class XMPPReceiver implements IReceiver {
       return null;
     }
 
+    return createPacket(description, extension);
+  }
+
+  private static Packet createPacket(TransferDescription description, PacketExtension extension) {
     Packet packet = new Message();
     packet.setPacketID(Packet.ID_NOT_AVAILABLE);
     packet.setFrom(description.getSender().toString());
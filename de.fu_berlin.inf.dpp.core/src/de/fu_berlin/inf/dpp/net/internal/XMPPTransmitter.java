@@ -20,6 +20,7 @@
 package de.fu_berlin.inf.dpp.net.internal;
 
 import de.fu_berlin.inf.dpp.annotations.Component;
+import de.fu_berlin.inf.dpp.misc.binary.BinaryExtensionProvider;
 import de.fu_berlin.inf.dpp.net.ConnectionState;
 import de.fu_berlin.inf.dpp.net.ITransmitter;
 import de.fu_berlin.inf.dpp.net.xmpp.IConnectionListener;
@@ -75,7 +76,11 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
             .setElementName(extension.getElementName())
             .setNamespace(extension.getNamespace());
 
-    byte[] data = extension.toXML().getBytes("UTF-8");
+    byte[] data;
+
+    if (extension instanceof BinaryExtensionProvider.BinaryPacketExtension)
+      data = ((BinaryExtensionProvider<?>.BinaryPacketExtension) extension).getData();
+    else data = extension.toXML().getBytes("UTF-8");
 
     if (data.length > PACKET_EXTENSION_COMPRESS_THRESHOLD)
       transferDescription.setCompressContent(true);
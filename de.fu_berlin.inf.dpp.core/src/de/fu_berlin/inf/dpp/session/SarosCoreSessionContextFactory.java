@@ -7,8 +7,10 @@ import de.fu_berlin.inf.dpp.concurrent.watchdog.ConsistencyWatchdogHandler;
 import de.fu_berlin.inf.dpp.concurrent.watchdog.ConsistencyWatchdogServer;
 import de.fu_berlin.inf.dpp.editor.FollowModeManager;
 import de.fu_berlin.inf.dpp.editor.remote.UserEditorStateManager;
+import de.fu_berlin.inf.dpp.misc.binary.ActivitiesCodec;
 import de.fu_berlin.inf.dpp.misc.xstream.SPathConverter;
 import de.fu_berlin.inf.dpp.misc.xstream.UserConverter;
+import de.fu_berlin.inf.dpp.negotiation.NegotiationArtifactCache;
 import de.fu_berlin.inf.dpp.session.internal.ActivityHandler;
 import de.fu_berlin.inf.dpp.session.internal.ActivitySequencer;
 import de.fu_berlin.inf.dpp.session.internal.ChangeColorManager;
@@ -51,10 +53,16 @@ public class SarosCoreSessionContextFactory implements ISarosSessionContextFacto
     if (session.isHost()) container.addComponent(ConsistencyWatchdogServer.class);
     else container.addComponent(ConsistencyWatchdogClient.class);
 
+    // Project Negotiation
+    if (session.isHost()) container.addComponent(NegotiationArtifactCache.class);
+
     // Session-dependent XStream Converter
     container.addComponent(SPathConverter.class);
     container.addComponent(UserConverter.class);
 
+    // Session-dependent binary codec
+    container.addComponent(ActivitiesCodec.class);
+
     // Other
     container.addComponent(ActivityHandler.class);
     container.addComponent(ActivitySequencer.class);
@@ -7,6 +7,9 @@ import de.fu_berlin.inf.dpp.activities.IResourceActivity;
 import de.fu_berlin.inf.dpp.activities.ITargetedActivity;
 import de.fu_berlin.inf.dpp.activities.JupiterActivity;
 import de.fu_berlin.inf.dpp.activities.QueueItem;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextSelectionActivity;
+import de.fu_berlin.inf.dpp.activities.ViewportActivity;
 import de.fu_berlin.inf.dpp.concurrent.management.ConcurrentDocumentClient;
 import de.fu_berlin.inf.dpp.concurrent.management.ConcurrentDocumentServer;
 import de.fu_berlin.inf.dpp.concurrent.management.TransformationResult;
@@ -14,11 +17,20 @@ import de.fu_berlin.inf.dpp.session.IActivityHandlerCallback;
 import de.fu_berlin.inf.dpp.session.ISarosSession;
 import de.fu_berlin.inf.dpp.session.User;
 import de.fu_berlin.inf.dpp.synchronize.UISynchronizer;
+import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
 import de.fu_berlin.inf.dpp.util.ThreadUtils;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import org.picocontainer.Startable;
 
@@ -28,6 +40,12 @@ import org.picocontainer.Startable;
  * executing of activities <b>must</b> be done in {@linkplain IActivityHandlerCallback callback} as
  * it is <b>not</b> performed by this handler !
  *
+ * <p>On the host the activities of different documents are transformed concurrently. The activities
+ * of a document are transformed in a separate lane per path, so they are sent and executed in the
+ * order they were received. All other activities are transformed in a sequenced lane which only
+ * starts once all lanes are idle, and the activities received after them wait until it is done. The
+ * thread that hands in the activities never waits for a transformation.
+ *
  * @author Stefan Rossbach
  */
 public final class ActivityHandler implements Startable {
@@ -53,6 +71,17 @@ public final class ActivityHandler implements Startable {
     DISPATCH_MODE = dispatchModeToUse;
   }
 
+  /**
+   * number of threads transforming the activities of different documents on the host, at least two
+   * so that a document whose activities cannot be sent right now does not stall all others
+   */
+  private static final int TRANSFORMATION_THREADS =
+      Math.max(
+          2,
+          Integer.getInteger(
+              "de.fu_berlin.inf.dpp.session.ACTIVITY_TRANSFORMATION_THREADS",
+              Runtime.getRuntime().availableProcessors()));
+
   private final LinkedBlockingQueue<List<IActivity>> dispatchQueue =
       new LinkedBlockingQueue<List<IActivity>>();
 
@@ -66,6 +95,25 @@ public final class ActivityHandler implements Startable {
 
   private final UISynchronizer synchronizer;
 
+  /** the lanes of the paths with pending transformations, removed when they become idle */
+  private final Map<SPath, TransformationLane> lanes = new HashMap<SPath, TransformationLane>();
+
+  /**
+   * activities in the order they were received that wait for the sequenced lane, i.e the first
+   * activity is not an activity of a document or the sequenced lane is running, guarded by {@link
+   * #lanes}
+   */
+  private final Deque<IActivity> sequencedActivities = new ArrayDeque<IActivity>();
+
+  /** whether the sequenced lane is running, guarded by {@link #lanes} */
+  private boolean sequencedLaneRunning;
+
+  /*
+   * Threads are only created when the first lane is scheduled, i.e this
+   * executor has no threads on clients
+   */
+  private ExecutorService transformationExecutor;
+
   /*
    * We must use a thread for synchronous execution otherwise we would block
    * the DispatchThreadContext which handles the dispatching of all network
@@ -122,27 +170,120 @@ public final class ActivityHandler implements Startable {
    * Transforms and dispatches the activities. The {@linkplain IActivityHandlerCallback callback}
    * will be notified about the results.
    *
+   * <p>On the host, the activities are transformed asynchronously, see {@link TransformationLane}
+   * and {@link SequencedLane}.
+   *
    * @param activities an <b>immutable</b> list containing the activities
    */
-  public synchronized void handleIncomingActivities(List<IActivity> activities) {
-
-    if (session.isHost()) {
-      /**
-       * @JTourBusStop 8, Activity sending, Activity Server:
-       *
-       * <p>This is where the server (or server-part of the host) receives activities. The Server
-       * may transform activities again if necessary and afterward sends them to the correct
-       * clients. (Note that the callback.send() methods get an actual list of recipients.)
-       */
-      TransformationResult result = directServerActivities(activities);
-      for (QueueItem item : result.getSendToPeers()) {
-        List<User> recipients = getRecipientsForQueueItem(item);
-        callback.send(recipients, item.activity);
+  public void handleIncomingActivities(List<IActivity> activities) {
+
+    if (!session.isHost()) {
+      dispatchLocally(activities);
+      return;
+    }
+
+    synchronized (lanes) {
+      sequencedActivities.addAll(activities);
+      scheduleSequencedActivities();
+    }
+  }
+
+  /**
+   * Returns the path of the lane the given activity is transformed in on the host or <code>null
+   * </code> if the activity must not be transformed concurrently to any other activity.
+   */
+  private static SPath getTransformationPath(IActivity activity) {
+    if (!(activity instanceof JupiterActivity
+        || activity instanceof ChecksumActivity
+        || activity instanceof TextSelectionActivity
+        || activity instanceof ViewportActivity)) return null;
+
+    return ((IResourceActivity) activity).getPath();
+  }
+
+  /**
+   * Moves the received activities to their lanes in the order they were received. Activities of
+   * documents are appended to the lane of their path. Other activities are handed to a sequenced
+   * lane once all lanes are idle, all activities received after them are held back until the
+   * sequenced lane is done. Must be called while holding the {@link #lanes} monitor.
+   */
+  private void scheduleSequencedActivities() {
+    while (!sequencedLaneRunning && !sequencedActivities.isEmpty()) {
+      final IActivity activity = sequencedActivities.peek();
+      final SPath path = getTransformationPath(activity);
+
+      if (path != null) {
+        sequencedActivities.poll();
+        schedule(path, activity);
+        continue;
       }
 
-      activities = result.getLocalActivities();
+      if (!lanes.isEmpty()) return;
+
+      final List<IActivity> pending = new ArrayList<IActivity>();
+
+      while (!sequencedActivities.isEmpty()
+          && getTransformationPath(sequencedActivities.peek()) == null)
+        pending.add(sequencedActivities.poll());
+
+      try {
+        transformationExecutor.execute(new SequencedLane(pending));
+      } catch (RejectedExecutionException e) {
+        LOG.warn("dropping activities as the activity handler is stopped: " + pending);
+        continue;
+      }
+
+      sequencedLaneRunning = true;
+    }
+  }
+
+  /**
+   * Appends the activity to the lane of the given path and schedules the lane if necessary. Must be
+   * called while holding the {@link #lanes} monitor.
+   */
+  private void schedule(SPath path, IActivity activity) {
+    TransformationLane lane = lanes.get(path);
+
+    if (lane != null) {
+      lane.activities.add(activity);
+      return;
     }
 
+    lane = new TransformationLane(path);
+    lane.activities.add(activity);
+
+    try {
+      transformationExecutor.execute(lane);
+    } catch (RejectedExecutionException e) {
+      LOG.warn("dropping activity as the activity handler is stopped: " + activity);
+      return;
+    }
+
+    lanes.put(path, lane);
+  }
+
+  /**
+   * Transforms the activities on the host, sends them to the other users and dispatches the
+   * activities that must be executed locally.
+   */
+  private void directAndDispatch(List<IActivity> activities) {
+    /**
+     * @JTourBusStop 8, Activity sending, Activity Server:
+     *
+     * <p>This is where the server (or server-part of the host) receives activities. The Server may
+     * transform activities again if necessary and afterward sends them to the correct clients.
+     * (Note that the callback.send() methods get an actual list of recipients.)
+     */
+    TransformationResult result = directServerActivities(activities);
+    for (QueueItem item : result.getSendToPeers()) {
+      List<User> recipients = getRecipientsForQueueItem(item);
+      callback.send(recipients, item.activity);
+    }
+
+    dispatchLocally(result.getLocalActivities());
+  }
+
+  private void dispatchLocally(List<IActivity> activities) {
     /**
      * @JTourBusStop 9, Activity sending, Client Receiver:
      *
@@ -237,6 +378,10 @@ public final class ActivityHandler implements Startable {
 
   @Override
   public void start() {
+    transformationExecutor =
+        Executors.newFixedThreadPool(
+            TRANSFORMATION_THREADS, new NamedThreadFactory("dpp-activity-transformer-"));
+
     if (DISPATCH_MODE == DISPATCH_MODE_ASYNC) return;
 
     dispatchThread =
@@ -245,6 +390,17 @@ public final class ActivityHandler implements Startable {
 
   @Override
   public void stop() {
+    transformationExecutor.shutdown();
+
+    try {
+      if (!transformationExecutor.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS))
+        LOG.error("activity transformation threads are still running");
+    } catch (InterruptedException e) {
+      LOG.warn("interrupted while waiting for the activity transformation threads to terminate");
+
+      Thread.currentThread().interrupt();
+    }
+
     if (DISPATCH_MODE == DISPATCH_MODE_ASYNC) return;
 
     dispatchThread.interrupt();
@@ -410,4 +566,72 @@ public final class ActivityHandler implements Startable {
     }
     return result;
   }
+
+  /**
+   * Transforms the activities of a single path on the host. Each lane is executed by at most one
+   * thread at a time, so the activities of a path are sent and dispatched in the order they were
+   * received while the lanes of different paths run concurrently.
+   */
+  private final class TransformationLane implements Runnable {
+
+    private final SPath path;
+
+    /** guarded by {@link ActivityHandler#lanes} */
+    private final List<IActivity> activities = new ArrayList<IActivity>();
+
+    private TransformationLane(SPath path) {
+      this.path = path;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        final List<IActivity> pending;
+
+        synchronized (lanes) {
+          if (activities.isEmpty()) {
+            lanes.remove(path);
+            scheduleSequencedActivities();
+            return;
+          }
+
+          pending = new ArrayList<IActivity>(activities);
+          activities.clear();
+        }
+
+        try {
+          directAndDispatch(pending);
+        } catch (RuntimeException e) {
+          LOG.error("failed to transform activities of " + path + ": " + pending, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Transforms activities that are not activities of a document on the host. It only runs while all
+   * {@link TransformationLane lanes} are idle, and no lane is started before it is done.
+   */
+  private final class SequencedLane implements Runnable {
+
+    private final List<IActivity> activities;
+
+    private SequencedLane(List<IActivity> activities) {
+      this.activities = activities;
+    }
+
+    @Override
+    public void run() {
+      try {
+        directAndDispatch(activities);
+      } catch (RuntimeException e) {
+        LOG.error("failed to transform activities: " + activities, e);
+      } finally {
+        synchronized (lanes) {
+          sequencedLaneRunning = false;
+          scheduleSequencedActivities();
+        }
+      }
+    }
+  }
 }
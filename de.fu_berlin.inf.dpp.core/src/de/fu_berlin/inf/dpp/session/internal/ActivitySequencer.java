@@ -29,6 +29,7 @@ import de.fu_berlin.inf.dpp.net.ITransmitter;
 import de.fu_berlin.inf.dpp.net.xmpp.JID;
 import de.fu_berlin.inf.dpp.session.ISarosSession;
 import de.fu_berlin.inf.dpp.session.User;
+import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
 import de.fu_berlin.inf.dpp.util.ThreadUtils;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -39,7 +40,10 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.PacketListener;
 import org.jivesoftware.smack.packet.Packet;
@@ -50,6 +54,13 @@ import org.picocontainer.Startable;
  * The ActivitySequencer is responsible for making sure that transformed {@linkplain IActivity
  * activities} are sent and received in the right order.
  *
+ * <p>Outgoing activities are sent in parallel per recipient, so a recipient with a slow connection
+ * does not delay the delivery to the other recipients. Sending never blocks the calling thread. If
+ * the queue of a recipient grows beyond a limit, superseded activities in the queue are coalesced
+ * (see {@link ActivityOptimizer}). If the queue is still full afterwards the recipient is marked as
+ * lagging until its queue drained again. Activities are never dropped for a lagging recipient, as
+ * that would break the consistency of the session.
+ *
  * @author rdjemili
  * @author coezbek
  * @author marrin
@@ -64,104 +75,116 @@ public class ActivitySequencer implements Startable {
   /** Sequence numbers for outgoing and incoming activities start with this value. */
   private static final int FIRST_SEQUENCE_NUMBER = 0;
 
-  private static class SequencedActivities {
-    private final int sequenceNumber;
-    private final List<IActivity> activites;
+  /**
+   * Maximum number of threads that send activities in parallel. Each recipient is served by at most
+   * one thread at a time.
+   */
+  private static final int MAX_SENDER_THREADS = 8;
 
-    private SequencedActivities(List<IActivity> activites, int sequenceNumber) {
-      this.activites = activites;
-      this.sequenceNumber = sequenceNumber;
-    }
-  }
+  /**
+   * Number of activities queued for a single recipient at which the queue is coalesced and the
+   * recipient is considered to be lagging if that does not help.
+   */
+  private static final int MAX_QUEUED_ACTIVITIES =
+      Integer.getInteger("de.fu_berlin.inf.dpp.session.MAX_QUEUED_ACTIVITIES", 1024);
 
   private static class ActivityBuffer<T> {
     /**
      * Helper flag to signal that there pending data is still send even if the buffer is already
-     * empty.
+     * empty. For outgoing buffers this also signals that a {@link LaneSender} is scheduled.
      */
     private boolean isInTransmission;
 
     private int nextSequenceNumber;
     private final Deque<T> activities = new LinkedList<T>();
 
-    private ActivityBuffer(int firstSequenceNumber) {
-      nextSequenceNumber = firstSequenceNumber;
-    }
-  }
+    /** Time at which the oldest activity of the buffer was queued, outgoing buffers only. */
+    private long pendingSince;
 
-  private final PacketListener activitiesPacketListener =
-      new PacketListener() {
+    /** Queue size at which the queue is coalesced next, outgoing buffers only. */
+    private int coalesceThreshold;
 
-        @Override
-        public void processPacket(Packet packet) {
-          receiveActivities(packet);
-        }
-      };
-
-  private final Runnable activitySender =
-      new Runnable() {
-
-        @Override
-        public void run() {
+    /** Time since which the recipient is lagging or 0, outgoing buffers only. */
+    private long laggingSince;
 
-          Map<JID, SequencedActivities> activitiesToSend = new HashMap<JID, SequencedActivities>();
+    private int maxQueueDepth;
+    private long coalescedActivities;
+    private long sentPackets;
+    private long sentActivities;
+    private long lastLatency;
+    private long maxLatency;
+    private long totalLatency;
 
-          send:
-          while (true) {
-            activitiesToSend.clear();
+    private ActivityBuffer(int firstSequenceNumber) {
+      nextSequenceNumber = firstSequenceNumber;
+    }
+  }
 
-            synchronized (bufferedOutgoingActivities) {
-              if (stopSending) return;
+  /**
+   * Sends the outgoing activities of a single recipient. Only one instance per recipient is
+   * scheduled at the same time so activities are always sent in the order of their sequence
+   * numbers. After a batch was sent the sender is rescheduled if new activities are available so
+   * other recipients get their turn if all sender threads are busy.
+   */
+  private class LaneSender implements Runnable {
 
-              for (Entry<JID, ActivityBuffer<IActivity>> entry :
-                  bufferedOutgoingActivities.entrySet()) {
+    private final JID recipient;
+    private final ActivityBuffer<IActivity> buffer;
 
-                ActivityBuffer<IActivity> buffer = entry.getValue();
+    private LaneSender(JID recipient, ActivityBuffer<IActivity> buffer) {
+      this.recipient = recipient;
+      this.buffer = buffer;
+    }
 
-                if (buffer == null || buffer.activities.isEmpty()) continue;
+    @Override
+    public void run() {
+      final List<IActivity> activities;
+      final int sequenceNumber;
+      final long pendingSince;
 
-                List<IActivity> optimizedActivities = ActivityOptimizer.optimize(buffer.activities);
+      synchronized (bufferedOutgoingActivities) {
+        if (!isLaneActive(recipient, buffer) || buffer.activities.isEmpty()) {
+          finishLane(buffer);
+          return;
+        }
 
-                buffer.activities.clear();
-                buffer.isInTransmission = true;
+        activities = ActivityOptimizer.optimize(buffer.activities);
 
-                int currentSequenceNumber = buffer.nextSequenceNumber;
-                buffer.nextSequenceNumber += optimizedActivities.size();
+        buffer.activities.clear();
 
-                activitiesToSend.put(
-                    entry.getKey(),
-                    new SequencedActivities(optimizedActivities, currentSequenceNumber));
-              }
+        sequenceNumber = buffer.nextSequenceNumber;
+        buffer.nextSequenceNumber += activities.size();
 
-              if (activitiesToSend.isEmpty()) {
-                try {
-                  bufferedOutgoingActivities.wait();
-                  continue send;
-                } catch (InterruptedException e) {
-                  return;
-                }
-              }
-            }
+        pendingSince = buffer.pendingSince;
+      }
 
-            for (Entry<JID, SequencedActivities> e : activitiesToSend.entrySet()) {
-              sendActivities(e.getKey(), e.getValue().activites, e.getValue().sequenceNumber);
-            }
+      try {
+        sendActivities(recipient, activities, sequenceNumber);
+      } finally {
+        synchronized (bufferedOutgoingActivities) {
+          final long latency = System.currentTimeMillis() - pendingSince;
 
-            synchronized (bufferedOutgoingActivities) {
-              for (Entry<JID, ActivityBuffer<IActivity>> entry :
-                  bufferedOutgoingActivities.entrySet()) {
+          buffer.sentPackets++;
+          buffer.sentActivities += activities.size();
+          buffer.lastLatency = latency;
+          buffer.totalLatency += latency;
+          buffer.maxLatency = Math.max(buffer.maxLatency, latency);
 
-                ActivityBuffer<IActivity> buffer = entry.getValue();
+          if (buffer.activities.size() < maxQueuedActivities) catchUp(recipient, buffer);
 
-                if (buffer == null) continue;
+          if (!isLaneActive(recipient, buffer) || buffer.activities.isEmpty() || !schedule(this))
+            finishLane(buffer);
+        }
+      }
+    }
+  }
 
-                buffer.isInTransmission = false;
-              }
+  private final PacketListener activitiesPacketListener =
+      new PacketListener() {
 
-              // notify waiting threads in flush method that we are done
-              bufferedOutgoingActivities.notifyAll();
-            }
-          }
+        @Override
+        public void processPacket(Packet packet) {
+          receiveActivities(packet);
         }
       };
 
@@ -173,7 +196,7 @@ public class ActivitySequencer implements Startable {
   private boolean stopSending = false;
   private final String currentSessionID;
 
-  private Thread activitySendThread;
+  private ThreadPoolExecutor activitySendExecutor;
 
   private final ISarosSession sarosSession;
 
@@ -187,6 +210,8 @@ public class ActivitySequencer implements Startable {
 
   private final Map<JID, ActivityBuffer<IActivity>> bufferedOutgoingActivities;
 
+  private int maxQueuedActivities = MAX_QUEUED_ACTIVITIES;
+
   public ActivitySequencer(
       final ISarosSession sarosSession,
       final ITransmitter transmitter,
@@ -249,7 +274,16 @@ public class ActivitySequencer implements Startable {
     receiver.addPacketListener(
         activitiesPacketListener, ActivitiesExtension.PROVIDER.getPacketFilter(currentSessionID));
 
-    activitySendThread = ThreadUtils.runSafeAsync("dpp-activity-sender", LOG, activitySender);
+    activitySendExecutor =
+        new ThreadPoolExecutor(
+            MAX_SENDER_THREADS,
+            MAX_SENDER_THREADS,
+            30,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new NamedThreadFactory("dpp-activity-sender-"));
+
+    activitySendExecutor.allowCoreThreadTimeOut(true);
   }
 
   /**
@@ -275,22 +309,25 @@ public class ActivitySequencer implements Startable {
     synchronized (bufferedOutgoingActivities) {
       stopSending = true;
       bufferedOutgoingActivities.notifyAll();
+
+      if (LOG.isDebugEnabled()) {
+        for (JID jid : bufferedOutgoingActivities.keySet()) logSendLaneStatistics(jid);
+      }
     }
 
+    activitySendExecutor.shutdown();
+
     boolean isStoppingInterrupted = false;
 
     try {
-      activitySendThread.join(TIMEOUT);
+      if (!activitySendExecutor.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS))
+        LOG.error("activity sender threads are still running");
     } catch (InterruptedException e) {
-      LOG.warn(
-          "interrupted while waiting for " + activitySendThread.getName() + " thread to terminate");
+      LOG.warn("interrupted while waiting for the activity sender threads to terminate");
 
       isStoppingInterrupted = true;
     }
 
-    if (activitySendThread.isAlive())
-      LOG.error(activitySendThread.getName() + " thread is still running");
-
     synchronized (bufferedOutgoingActivities) {
       bufferedOutgoingActivities.clear();
       bufferedOutgoingActivities.notifyAll();
@@ -300,8 +337,6 @@ public class ActivitySequencer implements Startable {
       bufferedIncomingActivities.clear();
     }
 
-    activitySendThread = null;
-
     if (isStoppingInterrupted) Thread.currentThread().interrupt();
   }
 
@@ -342,7 +377,10 @@ public class ActivitySequencer implements Startable {
     sarosSession.exec(activities);
   }
 
-  /** Sends an activity to the given recipients. */
+  /**
+   * Sends an activity to the given recipients. This method does not block, the activity is queued
+   * and sent asynchronously.
+   */
   public void sendActivity(List<User> recipients, final IActivity activity) {
 
     ArrayList<User> remoteRecipients = new ArrayList<User>();
@@ -368,9 +406,11 @@ public class ActivitySequencer implements Startable {
 
     synchronized (bufferedOutgoingActivities) {
       for (User recipient : remoteRecipients) {
-        ActivityBuffer<IActivity> buffer = bufferedOutgoingActivities.get(recipient.getJID());
+        final JID jid = recipient.getJID();
 
-        if (buffer == null) {
+        ActivityBuffer<IActivity> buffer = bufferedOutgoingActivities.get(jid);
+
+        if (buffer == null || !isLaneActive(jid, buffer)) {
           LOG.warn(
               "cannot send activity to "
                   + recipient
@@ -378,14 +418,69 @@ public class ActivitySequencer implements Startable {
                   + activity);
           continue;
         }
+
+        if (buffer.activities.isEmpty()) buffer.pendingSince = System.currentTimeMillis();
+
         buffer.activities.add(activity);
-      }
+        buffer.maxQueueDepth = Math.max(buffer.maxQueueDepth, buffer.activities.size());
 
-      // ActivitySender thread is flushing the buffers
-      bufferedOutgoingActivities.notifyAll();
+        if (buffer.activities.size() >= Math.max(buffer.coalesceThreshold, maxQueuedActivities))
+          coalesce(jid, buffer);
+
+        if (buffer.isInTransmission) continue;
+
+        // the lane sender is flushing the buffer
+        buffer.isInTransmission = schedule(new LaneSender(jid, buffer));
+      }
     }
   }
 
+  /**
+   * Coalesces the queued activities of the given buffer and marks the recipient as lagging if the
+   * queue is still full afterwards. The next coalescing is deferred until the queue doubled its
+   * size, so the queue is not scanned on every activity while the recipient is lagging. <b>Must</b>
+   * be called while holding the lock of the outgoing buffers.
+   */
+  private void coalesce(JID recipient, ActivityBuffer<IActivity> buffer) {
+    final int queued = buffer.activities.size();
+
+    final List<IActivity> activities = ActivityOptimizer.optimize(buffer.activities);
+
+    buffer.activities.clear();
+    buffer.activities.addAll(activities);
+
+    buffer.coalescedActivities += queued - activities.size();
+    buffer.coalesceThreshold = 2 * activities.size();
+
+    if (activities.size() < maxQueuedActivities || buffer.laggingSince != 0) return;
+
+    buffer.laggingSince = System.currentTimeMillis();
+
+    LOG.warn(
+        "send queue of "
+            + recipient
+            + " is full, recipient is lagging behind: "
+            + createSendLaneStatistics(buffer));
+  }
+
+  /**
+   * Resets the lagging state of the given buffer after its queue drained. <b>Must</b> be called
+   * while holding the lock of the outgoing buffers.
+   */
+  private void catchUp(JID recipient, ActivityBuffer<IActivity> buffer) {
+    buffer.coalesceThreshold = 0;
+
+    if (buffer.laggingSince == 0) return;
+
+    LOG.info(
+        recipient
+            + " caught up after lagging behind for "
+            + (System.currentTimeMillis() - buffer.laggingSince)
+            + " ms");
+
+    buffer.laggingSince = 0;
+  }
+
   /**
    * Registers a user with the sequencer allowing the sending and receiving to and from this user.
    * The local user of a session does not need to be registered as it is always allowed to send
@@ -440,6 +535,86 @@ public class ActivitySequencer implements Startable {
     }
   }
 
+  /**
+   * Returns the statistics of the outgoing activities for the given user.
+   *
+   * @param user the recipient of the activities
+   * @return the current statistics or <code>null</code> if the user is not registered
+   */
+  public SendLaneStatistics getSendLaneStatistics(User user) {
+    synchronized (bufferedOutgoingActivities) {
+      ActivityBuffer<IActivity> buffer = bufferedOutgoingActivities.get(user.getJID());
+
+      if (buffer == null) return null;
+
+      return createSendLaneStatistics(buffer);
+    }
+  }
+
+  /**
+   * Creates a snapshot of the statistics of the given buffer. <b>Must</b> be called while holding
+   * the lock of the outgoing buffers.
+   */
+  private static SendLaneStatistics createSendLaneStatistics(ActivityBuffer<IActivity> buffer) {
+    return new SendLaneStatistics(
+        buffer.activities.size(),
+        buffer.maxQueueDepth,
+        buffer.laggingSince != 0,
+        buffer.coalescedActivities,
+        buffer.sentPackets,
+        buffer.sentActivities,
+        buffer.lastLatency,
+        buffer.maxLatency,
+        buffer.totalLatency);
+  }
+
+  /**
+   * Logs the statistics of the send lane of the given recipient if it is registered. <b>Must</b> be
+   * called while holding the lock of the outgoing buffers.
+   */
+  private void logSendLaneStatistics(JID recipient) {
+    final ActivityBuffer<IActivity> buffer = bufferedOutgoingActivities.get(recipient);
+
+    if (buffer != null)
+      LOG.debug("send lane statistics of " + recipient + ": " + createSendLaneStatistics(buffer));
+  }
+
+  /**
+   * Schedules the given lane sender. <b>Must</b> be called while holding the lock of the outgoing
+   * buffers.
+   *
+   * @return <code>true</code> if the sender was scheduled, <code>false</code> if the sequencer is
+   *     stopping
+   */
+  private boolean schedule(LaneSender sender) {
+    if (stopSending) return false;
+
+    try {
+      activitySendExecutor.execute(ThreadUtils.wrapSafe(LOG, sender));
+      return true;
+    } catch (RejectedExecutionException e) {
+      LOG.warn("could not schedule sending of activities to " + sender.recipient, e);
+      return false;
+    }
+  }
+
+  /**
+   * Returns whether the given buffer is still the current buffer of the recipient. <b>Must</b> be
+   * called while holding the lock of the outgoing buffers.
+   */
+  private boolean isLaneActive(JID recipient, ActivityBuffer<IActivity> buffer) {
+    return !stopSending && bufferedOutgoingActivities.get(recipient) == buffer;
+  }
+
+  /**
+   * Marks the transmission of the given buffer as finished and notifies threads waiting in {@link
+   * #flush}. <b>Must</b> be called while holding the lock of the outgoing buffers.
+   */
+  private void finishLane(ActivityBuffer<IActivity> buffer) {
+    buffer.isInTransmission = false;
+    bufferedOutgoingActivities.notifyAll();
+  }
+
   private void unregisterUser(JID jid) {
     /*
      * FIXME This stuff is to lazy if called outside the UI-Thread as it is
@@ -449,6 +624,8 @@ public class ActivitySequencer implements Startable {
      */
 
     synchronized (bufferedOutgoingActivities) {
+      if (LOG.isDebugEnabled()) logSendLaneStatistics(jid);
+
       bufferedOutgoingActivities.put(jid, null);
       bufferedOutgoingActivities.notifyAll();
     }
@@ -499,8 +676,14 @@ public class ActivitySequencer implements Startable {
 
       if (it.hasNext() && currentFileActivitySize < maxFileActivitySize) continue;
 
+      /*
+       * uses the binary representation if the recipient supports it and
+       * falls back to XML otherwise, the codec caches the encoded form of
+       * activities that are sent to multiple recipients
+       */
       final PacketExtension activityPacketExtension =
-          ActivitiesExtension.PROVIDER.create(
+          ActivitiesExtension.BINARY_PROVIDER.create(
+              recipient,
               new ActivitiesExtension(currentSessionID, activitiesToMarshall, sequenceNumber));
 
       if (LOG.isTraceEnabled()) {
@@ -589,6 +772,18 @@ public class ActivitySequencer implements Startable {
     }
   }
 
+  /**
+   * For testing purposes only.
+   *
+   * @param maxQueuedActivities number of queued activities at which the queue of a recipient is
+   *     coalesced
+   */
+  void setMaxQueuedActivities(int maxQueuedActivities) {
+    synchronized (bufferedOutgoingActivities) {
+      this.maxQueuedActivities = maxQueuedActivities;
+    }
+  }
+
   private void notifyTransmissionError(final JID user) {
     IActivitySequencerCallback currentCallback = callback;
 
@@ -0,0 +1,110 @@
+package de.fu_berlin.inf.dpp.session.internal;
+
+/**
+ * Snapshot of the statistics of the outgoing activity lane of a single recipient, see {@link
+ * ActivitySequencer#getSendLaneStatistics}.
+ *
+ * <p>The latency of a packet is the time between the moment the oldest activity of the packet was
+ * queued and the moment the packet was handed over to the network layer.
+ */
+public final class SendLaneStatistics {
+
+  private final int queueDepth;
+  private final int maxQueueDepth;
+  private final boolean lagging;
+  private final long coalescedActivities;
+  private final long sentPackets;
+  private final long sentActivities;
+  private final long lastLatency;
+  private final long maxLatency;
+  private final long totalLatency;
+
+  SendLaneStatistics(
+      int queueDepth,
+      int maxQueueDepth,
+      boolean lagging,
+      long coalescedActivities,
+      long sentPackets,
+      long sentActivities,
+      long lastLatency,
+      long maxLatency,
+      long totalLatency) {
+    this.queueDepth = queueDepth;
+    this.maxQueueDepth = maxQueueDepth;
+    this.lagging = lagging;
+    this.coalescedActivities = coalescedActivities;
+    this.sentPackets = sentPackets;
+    this.sentActivities = sentActivities;
+    this.lastLatency = lastLatency;
+    this.maxLatency = maxLatency;
+    this.totalLatency = totalLatency;
+  }
+
+  /** Returns the number of activities that are currently waiting to be sent. */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /** Returns the maximum number of activities that were waiting to be sent at the same time. */
+  public int getMaxQueueDepth() {
+    return maxQueueDepth;
+  }
+
+  /** Returns whether the recipient is lagging behind, i.e its queue is full. */
+  public boolean isLagging() {
+    return lagging;
+  }
+
+  /** Returns the number of queued activities that were coalesced as the queue was full. */
+  public long getCoalescedActivities() {
+    return coalescedActivities;
+  }
+
+  /** Returns the number of activity batches that were sent. */
+  public long getSentPackets() {
+    return sentPackets;
+  }
+
+  /** Returns the number of activities that were sent after optimization. */
+  public long getSentActivities() {
+    return sentActivities;
+  }
+
+  /** Returns the latency of the last sent batch in milliseconds. */
+  public long getLastLatency() {
+    return lastLatency;
+  }
+
+  /** Returns the maximum latency of all sent batches in milliseconds. */
+  public long getMaxLatency() {
+    return maxLatency;
+  }
+
+  /** Returns the average latency of all sent batches in milliseconds. */
+  public long getAverageLatency() {
+    return sentPackets == 0 ? 0 : totalLatency / sentPackets;
+  }
+
+  @Override
+  public String toString() {
+    return "SendLaneStatistics [queueDepth="
+        + queueDepth
+        + ", maxQueueDepth="
+        + maxQueueDepth
+        + ", lagging="
+        + lagging
+        + ", coalescedActivities="
+        + coalescedActivities
+        + ", sentPackets="
+        + sentPackets
+        + ", sentActivities="
+        + sentActivities
+        + ", lastLatency="
+        + lastLatency
+        + ", maxLatency="
+        + maxLatency
+        + ", averageLatency="
+        + getAverageLatency()
+        + "]";
+  }
+}
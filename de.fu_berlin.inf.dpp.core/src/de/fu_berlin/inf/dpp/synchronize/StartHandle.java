@@ -2,6 +2,8 @@ package de.fu_berlin.inf.dpp.synchronize;
 
 import de.fu_berlin.inf.dpp.session.User;
 import de.fu_berlin.inf.dpp.util.StackTrace;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.log4j.Logger;
 
@@ -25,6 +27,9 @@ public class StartHandle {
   /** Each start handle may be acknowledged once to have been started. */
   protected AtomicBoolean acknowledged = new AtomicBoolean(false);
 
+  /** Released when the handle is acknowledged. */
+  private final CountDownLatch acknowledgment = new CountDownLatch(1);
+
   StartHandle(User user, StopManager stopManager, String id) {
     this.user = user;
     this.stopManager = stopManager;
@@ -95,9 +100,14 @@ public class StartHandle {
     long timeoutToExceed = System.currentTimeMillis() + StopManager.TIMEOUT;
 
     try {
-      while (!acknowledged.get()
-          && (System.currentTimeMillis() < timeoutToExceed)
-          && user.isInSession()) Thread.sleep(stopManager.MILLISTOWAIT);
+      while (!acknowledged.get() && user.isInSession()) {
+        final long remaining = timeoutToExceed - System.currentTimeMillis();
+
+        if (remaining <= 0) break;
+
+        acknowledgment.await(
+            Math.min(remaining, StopManager.USER_CHECK_INTERVAL), TimeUnit.MILLISECONDS);
+      }
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       log.error("Code not designed to be interruptible", e);
@@ -125,6 +135,8 @@ public class StartHandle {
     if (!acknowledged.compareAndSet(false, true)) {
       log.warn("Acknowledge should only be called once per handle", new StackTrace());
     }
+
+    acknowledgment.countDown();
   }
 
   @Override
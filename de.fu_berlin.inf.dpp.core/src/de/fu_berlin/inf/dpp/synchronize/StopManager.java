@@ -11,21 +11,20 @@ import de.fu_berlin.inf.dpp.session.IActivityConsumer;
 import de.fu_berlin.inf.dpp.session.IActivityConsumer.Priority;
 import de.fu_berlin.inf.dpp.session.ISarosSession;
 import de.fu_berlin.inf.dpp.session.User;
-import de.fu_berlin.inf.dpp.util.ThreadUtils;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import org.picocontainer.Startable;
 
@@ -50,12 +49,15 @@ public final class StopManager extends AbstractActivityProducer implements Start
 
   private static final Random RANDOM = new Random();
 
-  // Waits MILLISTOWAIT ms until the next test for progress cancellation
-  public final int MILLISTOWAIT = 100;
-
   /** Timeout to abort waiting for a response */
   static final long TIMEOUT = 20000;
 
+  /**
+   * Interval in which waiting threads check if the user they wait for is still in the session.
+   * Acknowledgments wake up waiting threads immediately.
+   */
+  static final long USER_CHECK_INTERVAL = 1000;
+
   protected List<Blockable> blockables = new CopyOnWriteArrayList<Blockable>();
 
   protected ObservableValue<Boolean> blocked = new ObservableValue<Boolean>(false);
@@ -76,13 +78,33 @@ public final class StopManager extends AbstractActivityProducer implements Start
   private Map<String, StartHandle> startsToBeAcknowledged =
       Collections.synchronizedMap(new HashMap<String, StartHandle>());
 
-  /** For every initiated StopActivity (type: LockRequest) there is one acknowledgment expected. */
-  private Set<StopActivity> expectedAcknowledgments =
-      Collections.synchronizedSet(new HashSet<StopActivity>());
+  /**
+   * For every initiated StopActivity (type: LockRequest) there is one acknowledgment expected. The
+   * latch is released when it arrives.
+   */
+  private final Map<StopActivity, CountDownLatch> expectedAcknowledgments =
+      new ConcurrentHashMap<StopActivity, CountDownLatch>();
 
-  private final Object notificationLock = new Object();
   /** Indicates of the component is stopped; */
-  private boolean isStopped = false;
+  private volatile boolean isStopped = false;
+
+  /** A lock request that was sent and is waiting for its acknowledgment. */
+  private static final class PendingStop {
+    final User user;
+    final StartHandle handle;
+
+    /** the expected acknowledgment, <code>null</code> for the local user */
+    final StopActivity expectedAck;
+
+    final CountDownLatch acknowledged;
+
+    PendingStop(User user, StartHandle handle, StopActivity expectedAck, CountDownLatch latch) {
+      this.user = user;
+      this.handle = handle;
+      this.expectedAck = expectedAck;
+      this.acknowledged = latch;
+    }
+  }
 
   public StopManager(ISarosSession session) {
     this.sarosSession = session;
@@ -135,23 +157,18 @@ public final class StopManager extends AbstractActivityProducer implements Start
         return;
       }
       if (stopActivity.getState() == State.ACKNOWLEDGED) {
-        synchronized (notificationLock) {
-          if (!expectedAcknowledgments.contains(stopActivity)) {
-            log.warn("Received unexpected StopActivity: " + stopActivity);
-            return;
-          }
-
-          /**
-           * Remove from the expectedAcknowledgements set and inform who ever has been waiting for
-           * that to happen. Warn if the removal is failing besides the above check.
-           */
-          if (!expectedAcknowledgments.remove(stopActivity)) {
-            log.warn("Received unexpected " + "StopActivity acknowledgement: " + stopActivity);
-            return;
-          }
-
-          notificationLock.notifyAll();
+        /*
+         * Remove from the expectedAcknowledgements and inform who ever has
+         * been waiting for that to happen.
+         */
+        final CountDownLatch acknowledged = expectedAcknowledgments.remove(stopActivity);
+
+        if (acknowledged == null) {
+          log.warn("Received unexpected StopActivity: " + stopActivity);
+          return;
         }
+
+        acknowledged.countDown();
         return;
       }
     }
@@ -192,58 +209,58 @@ public final class StopManager extends AbstractActivityProducer implements Start
   public List<StartHandle> stop(final Collection<User> users, final String cause)
       throws CancellationException {
 
-    final List<StartHandle> resultingHandles =
-        Collections.synchronizedList(new LinkedList<StartHandle>());
-    final LinkedList<Thread> threads = new LinkedList<Thread>();
-
-    final AtomicBoolean isTimeout = new AtomicBoolean(false);
-
-    for (final User user : users) {
-      threads.add(
-          ThreadUtils.runSafeAsync(
-              "dpp-stop-" + user + "-" + cause,
-              log,
-              new Runnable() {
-                @Override
-                public void run() {
-                  try {
-                    StartHandle startHandle = stop(user, cause);
-                    resultingHandles.add(startHandle);
-                    log.debug("added " + startHandle + " to resulting handles.");
-                  } catch (CancellationException e) {
-                    isTimeout.set(true);
-                    log.error("user " + user + " did not respond");
-                  } catch (InterruptedException e) {
-                    isTimeout.set(true);
-                    log.error("waiting for response of user " + user + " was interrupted");
-                  }
-                }
-              }));
-    }
-
-    /**
-     * We have started all threads and we will wait for all of them to finish now. This is the
-     * safest and most simple approach to avoid ending up with ConcurrentModificationExceptions that
-     * might happen when we resume the remote users while some threads still need to be executed.
+    /*
+     * send all lock requests first, so the users acknowledge them
+     * concurrently
      */
-    while (!threads.isEmpty()) {
+    final List<PendingStop> pendingStops = new ArrayList<PendingStop>(users.size());
+
+    for (final User user : users) pendingStops.add(requestStop(user));
+
+    final long timeoutToExceed = System.currentTimeMillis() + TIMEOUT;
+
+    boolean failed = false;
+    boolean isInterrupted = false;
+
+    for (final PendingStop pendingStop : pendingStops) {
       try {
-        threads.getFirst().join();
-        threads.removeFirst();
+        if (!awaitAcknowledgment(pendingStop, timeoutToExceed)) {
+          log.error("user " + pendingStop.user + " did not respond");
+          failed = true;
+          break;
+        }
       } catch (InterruptedException e) {
-        // We need to ignore this right now as we would end up with
-        // inconsistent state at the end of this method. Some remote
-        // Users might be blocked already and would remain blocked. We
-        // will just need to try again until all threads have terminated
+        log.error("waiting for response of user " + pendingStop.user + " was interrupted");
+        isInterrupted = true;
+        failed = true;
+        break;
       }
     }
 
-    if (isTimeout.get()) {
-      // Restart the already stopped users
+    /*
+     * All or none of the users must be stopped, so restart all users if
+     * one of them does not respond. This must be done in this thread, so
+     * remote users are never left blocked.
+     */
+    if (failed) {
       log.error("some users do not respond, restarting already stopped users");
-      for (StartHandle startHandle : resultingHandles) startHandle.start();
+
+      for (final PendingStop pendingStop : pendingStops) {
+        if (pendingStop.expectedAck != null)
+          expectedAcknowledgments.remove(pendingStop.expectedAck);
+
+        pendingStop.handle.start();
+      }
+
+      if (isInterrupted) Thread.currentThread().interrupt();
+
       throw new CancellationException();
     }
+
+    final List<StartHandle> resultingHandles = new ArrayList<StartHandle>(pendingStops.size());
+
+    for (final PendingStop pendingStop : pendingStops) resultingHandles.add(pendingStop.handle);
+
     return resultingHandles;
   }
 
@@ -271,6 +288,34 @@ public final class StopManager extends AbstractActivityProducer implements Start
    */
   public StartHandle stop(User user, String cause)
       throws CancellationException, InterruptedException {
+
+    final PendingStop pendingStop = requestStop(user);
+
+    boolean acknowledged = false;
+
+    try {
+      acknowledged = awaitAcknowledgment(pendingStop, System.currentTimeMillis() + TIMEOUT);
+    } finally {
+      /*
+       * the user did respond or we got interrupted ... do not care to check
+       * if the user is still in session ... just try to resume ... it does
+       * not matter if it fails
+       */
+      if (!acknowledged) pendingStop.handle.start();
+    }
+
+    if (!acknowledged) {
+      log.warn("No acknowledgment arrived, gave up waiting");
+      throw new CancellationException();
+    }
+
+    log.debug("Acknowledgment arrived " + user);
+
+    return pendingStop.handle;
+  }
+
+  /** Creates a StartHandle for the given user and asks the user to stop. */
+  private PendingStop requestStop(User user) {
     assert sarosSession != null;
 
     // Creating StopActivity for asking user to stop
@@ -290,65 +335,46 @@ public final class StopManager extends AbstractActivityProducer implements Start
     // Short cut if affected user is local
     if (user.isLocal()) {
       lockSession(true);
-      return handle;
+      return new PendingStop(user, handle, null, new CountDownLatch(0));
     }
 
-    StopActivity expectedAck = stopActivity.generateAcknowledgment(user);
-    expectedAcknowledgments.add(expectedAck);
+    final StopActivity expectedAck = stopActivity.generateAcknowledgment(user);
+    final CountDownLatch acknowledged = new CountDownLatch(1);
+
+    // register before sending, the acknowledgment may arrive at any time
+    expectedAcknowledgments.put(expectedAck, acknowledged);
 
     fireActivity(stopActivity);
 
-    // Block until user acknowledged
+    return new PendingStop(user, handle, expectedAck, acknowledged);
+  }
 
-    long timeoutToExceed = System.currentTimeMillis() + StopManager.TIMEOUT;
+  /**
+   * Blocks until the given stop is acknowledged, the user left the session, this component is
+   * stopped or the given time is reached.
+   *
+   * @return <code>true</code> if the stop was acknowledged
+   */
+  private boolean awaitAcknowledgment(PendingStop pendingStop, long timeoutToExceed)
+      throws InterruptedException {
 
-    boolean isInterrupted = false;
-    boolean acknowledged = false;
-    synchronized (notificationLock) {
-      while ((System.currentTimeMillis() < timeoutToExceed) && user.isInSession()) {
+    try {
+      while (true) {
+        if (pendingStop.acknowledged.getCount() == 0) return !isStopped;
 
-        acknowledged = !expectedAcknowledgments.contains(expectedAck);
+        if (!pendingStop.user.isInSession()) return false;
 
-        if (acknowledged && isStopped) {
-          acknowledged = false;
-          break;
-        }
+        final long remaining = timeoutToExceed - System.currentTimeMillis();
 
-        if (acknowledged) break;
+        if (remaining <= 0) return false;
 
-        try {
-          notificationLock.wait(1000);
-        } catch (InterruptedException e) {
-          isInterrupted = true;
-          break;
-        }
+        pendingStop.acknowledged.await(
+            Math.min(remaining, USER_CHECK_INTERVAL), TimeUnit.MILLISECONDS);
       }
+    } finally {
+      // clean up
+      if (pendingStop.expectedAck != null) expectedAcknowledgments.remove(pendingStop.expectedAck);
     }
-
-    // clean up
-    expectedAcknowledgments.remove(expectedAck);
-
-    /*
-     * the user did respond or we got interrupted ... do not care to check
-     * if the user is still in session ... just try to resume ... it does
-     * not matter if it fails
-     */
-
-    if (isInterrupted) {
-      handle.start();
-      throw new InterruptedException();
-    }
-
-    if (!acknowledged) {
-      log.warn("No acknowledgment arrived, gave up waiting");
-
-      handle.start();
-      throw new CancellationException();
-    }
-
-    log.debug("Acknowledgment arrived " + user);
-
-    return handle;
   }
 
   /**
@@ -484,11 +510,12 @@ public final class StopManager extends AbstractActivityProducer implements Start
      * Clear the expectedAcknowledgements and inform the threads that are blocked in the stop method
      * that there will be no response.
      */
-    synchronized (this) {
-      expectedAcknowledgments.clear();
-      isStopped = true;
-      notifyAll();
-    }
+    isStopped = true;
+
+    for (final CountDownLatch acknowledged : expectedAcknowledgments.values())
+      acknowledged.countDown();
+
+    expectedAcknowledgments.clear();
   }
 
   private Object resumeLock = new Object();
@@ -3,6 +3,8 @@ package de.fu_berlin.inf.dpp.versioning;
 import de.fu_berlin.inf.dpp.annotations.Component;
 import de.fu_berlin.inf.dpp.communication.extensions.VersionExchangeExtension;
 import de.fu_berlin.inf.dpp.context.IContextKeyBindings.SarosVersion;
+import de.fu_berlin.inf.dpp.misc.binary.ActivitiesCodec;
+import de.fu_berlin.inf.dpp.negotiation.stream.AbstractStreamProtocol;
 import de.fu_berlin.inf.dpp.net.IReceiver;
 import de.fu_berlin.inf.dpp.net.ITransmitter;
 import de.fu_berlin.inf.dpp.net.PacketCollector;
@@ -15,6 +17,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.PacketListener;
 import org.jivesoftware.smack.filter.AndFilter;
@@ -36,6 +39,8 @@ public class VersionManager {
   private static final String VERSION_KEY = "version";
   private static final String COMPATIBILITY_KEY = "compatibility";
   private static final String ID_KEY = "id";
+  private static final String ACTIVITY_CODEC_KEY = "ac";
+  private static final String STREAM_PROTOCOL_KEY = "sp";
 
   private static final Random ID_GENERATOR = new Random();
 
@@ -50,6 +55,12 @@ public class VersionManager {
   private volatile Map<Version, List<Version>> compatibilityChart =
       new HashMap<Version, List<Version>>();
 
+  /** Binary activity codec versions announced by remote peers during the version exchange. */
+  private final Map<JID, Integer> activityCodecVersions = new ConcurrentHashMap<JID, Integer>();
+
+  /** Project negotiation stream protocol versions announced by remote peers. */
+  private final Map<JID, Integer> streamProtocolVersions = new ConcurrentHashMap<JID, Integer>();
+
   private final Version localVersion;
   private final ITransmitter transmitter;
   private final IReceiver receiver;
@@ -73,8 +84,20 @@ public class VersionManager {
             return;
           }
 
+          final JID from = new JID(packet.getFrom());
+
+          updateVersion(
+              activityCodecVersions, from, versionExchangeRequest.get(ACTIVITY_CODEC_KEY));
+
+          updateVersion(
+              streamProtocolVersions, from, versionExchangeRequest.get(STREAM_PROTOCOL_KEY));
+
           VersionExchangeExtension versionExchangeResponse = new VersionExchangeExtension();
 
+          versionExchangeResponse.set(ACTIVITY_CODEC_KEY, String.valueOf(ActivitiesCodec.VERSION));
+          versionExchangeResponse.set(
+              STREAM_PROTOCOL_KEY, String.valueOf(AbstractStreamProtocol.VERSION));
+
           createResponseData:
           {
             versionExchangeResponse.set(VERSION_KEY, localVersion.toString());
@@ -161,6 +184,10 @@ public class VersionManager {
 
     if (versionExchangeResponse == null) return null;
 
+    updateVersion(activityCodecVersions, rqJID, versionExchangeResponse.get(ACTIVITY_CODEC_KEY));
+
+    updateVersion(streamProtocolVersions, rqJID, versionExchangeResponse.get(STREAM_PROTOCOL_KEY));
+
     Compatibility remoteCompatibility = Compatibility.UNKNOWN;
     Compatibility compatibility = Compatibility.UNKNOWN;
     Version remoteVersion = Version.INVALID;
@@ -204,6 +231,41 @@ public class VersionManager {
     return new VersionCompatibilityResult(compatibility, localVersion, remoteVersion);
   }
 
+  /**
+   * Returns the version of the binary activity codec that can be used to send activities to the
+   * given peer. The version is only available if a version exchange with the peer took place.
+   *
+   * @param jid the JID of the peer
+   * @return the highest codec version supported by both sides or <code>0</code> if activities must
+   *     be sent as XML
+   * @see ActivitiesCodec
+   */
+  public int getActivityCodecVersion(final JID jid) {
+    final Integer remoteVersion = activityCodecVersions.get(jid);
+
+    if (remoteVersion == null) return 0;
+
+    return Math.min(remoteVersion, ActivitiesCodec.VERSION);
+  }
+
+  /**
+   * Returns the version of the stream protocol that can be used to transfer files to or from the
+   * given peer during an instant project negotiation. The version is only available if a version
+   * exchange with the peer took place.
+   *
+   * @param jid the JID of the peer
+   * @return the highest stream protocol version supported by both sides or <code>0</code> if the
+   *     files must be transferred one after another in the legacy format
+   * @see AbstractStreamProtocol
+   */
+  public int getStreamProtocolVersion(final JID jid) {
+    final Integer remoteVersion = streamProtocolVersions.get(jid);
+
+    if (remoteVersion == null) return 0;
+
+    return Math.min(remoteVersion, AbstractStreamProtocol.VERSION);
+  }
+
   /**
    * Sets an compatibility char that contains additional version information. The chart should be
    * loaded from a property file which must use the following syntax:
@@ -267,6 +329,8 @@ public class VersionManager {
 
     versionExchangeRequest.set(VERSION_KEY, localVersion.toString());
     versionExchangeRequest.set(ID_KEY, String.valueOf(exchangeID));
+    versionExchangeRequest.set(ACTIVITY_CODEC_KEY, String.valueOf(ActivitiesCodec.VERSION));
+    versionExchangeRequest.set(STREAM_PROTOCOL_KEY, String.valueOf(AbstractStreamProtocol.VERSION));
 
     IQ request = VersionExchangeExtension.PROVIDER.createIQ(versionExchangeRequest);
 
@@ -303,6 +367,27 @@ public class VersionManager {
     }
   }
 
+  /*
+   * Older Saros versions do not announce the codec and stream protocol
+   * versions so the values are missing in that case.
+   */
+  private void updateVersion(
+      final Map<JID, Integer> versions, final JID jid, final String versionString) {
+
+    int version = 0;
+
+    if (versionString != null) {
+      try {
+        version = Integer.parseInt(versionString);
+      } catch (NumberFormatException e) {
+        LOG.warn("remote version announced by " + jid + " is invalid: " + versionString);
+      }
+    }
+
+    if (version > 0) versions.put(jid, version);
+    else versions.remove(jid);
+  }
+
   /**
    * Compares the two given versions for compatibility. The result indicates whether the local
    * version is compatible with the remote version.
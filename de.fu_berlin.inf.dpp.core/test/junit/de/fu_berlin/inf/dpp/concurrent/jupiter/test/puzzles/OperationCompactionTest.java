@@ -0,0 +1,272 @@
+package de.fu_berlin.inf.dpp.concurrent.jupiter.test.puzzles;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+
+import de.fu_berlin.inf.dpp.activities.JupiterActivity;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.Operation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.TransformationException;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.Jupiter;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.JupiterVectorTime;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.DeleteOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.InsertOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.SplitOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.Document;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.filesystem.IPath;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.session.User;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that combining consecutive operations in the acknowledgement list of {@link Jupiter} does
+ * not change the results of the transformations.
+ */
+public class OperationCompactionTest {
+
+  private static final int CLIENTS = 3;
+
+  private static final int SEEDS = 20;
+
+  private static final int STEPS = 600;
+
+  private static final String INITIAL_CONTENT = "public class Foo {\n  int bar;\n}\n";
+
+  private static class InspectableJupiter extends Jupiter {
+
+    InspectableJupiter(boolean isClientSide, boolean compactOperations) {
+      super(isClientSide, compactOperations);
+    }
+
+    int getUnacknowledgedEntries() {
+      return ackJupiterActivityList.size();
+    }
+  }
+
+  private static class Client {
+    private final User user;
+    private final Jupiter jupiter;
+    private final Document document;
+    private final LinkedList<JupiterActivity> inbox = new LinkedList<JupiterActivity>();
+
+    private int cursor;
+
+    private Client(User user, Jupiter jupiter, Document document) {
+      this.user = user;
+      this.jupiter = jupiter;
+      this.document = document;
+    }
+  }
+
+  private static class Proxy {
+    private final Jupiter jupiter;
+    private final LinkedList<JupiterActivity> inbox = new LinkedList<JupiterActivity>();
+
+    private Proxy(Jupiter jupiter) {
+      this.jupiter = jupiter;
+    }
+  }
+
+  private IProject project;
+  private IPath path;
+
+  private final User alice = JupiterTestCase.createUser("alice");
+  private final User host = JupiterTestCase.createUser("host");
+
+  @Before
+  public void setUp() {
+    project = createMock(IProject.class);
+    replay(project);
+    path = new PathFake("Foo.java");
+  }
+
+  @Test
+  public void testTypingIsCompacted() throws TransformationException {
+    InspectableJupiter jupiter = new InspectableJupiter(true, true);
+
+    for (int i = 0; i < 10; i++)
+      jupiter.generateJupiterActivity(new InsertOperation(20 + i, "a"), alice, null);
+
+    for (int i = 0; i < 4; i++)
+      jupiter.generateJupiterActivity(new DeleteOperation(29 - i, "a"), alice, null);
+
+    assertEquals(2, jupiter.getUnacknowledgedEntries());
+
+    // a remote insert far away from the local changes
+    Operation op = receive(jupiter, new InsertOperation(0, "xyz"), 0, 0);
+
+    assertEquals(new InsertOperation(0, "xyz"), op);
+    assertEquals(2, jupiter.getUnacknowledgedEntries());
+
+    // a remote insert that was generated after the first 3 local operations
+    op = receive(jupiter, new InsertOperation(60, "!"), 1, 3);
+
+    assertEquals(new InsertOperation(60 + 7 - 4, "!", 60), op);
+    assertEquals(2, jupiter.getUnacknowledgedEntries());
+
+    /*
+     * a remote insert inside of the local changes, it is placed behind the
+     * local inserts as their origins are smaller
+     */
+    op = receive(jupiter, new InsertOperation(26, "?"), 2, 3);
+
+    assertEquals(new InsertOperation(26 + 3, "?", 26), op);
+    assertEquals(7 + 4, jupiter.getUnacknowledgedEntries());
+  }
+
+  @Test
+  public void testCompactionIsDisabled() {
+    InspectableJupiter jupiter = new InspectableJupiter(true, false);
+
+    for (int i = 0; i < 10; i++)
+      jupiter.generateJupiterActivity(new InsertOperation(i, "a"), alice, null);
+
+    assertEquals(10, jupiter.getUnacknowledgedEntries());
+  }
+
+  @Test
+  public void testCompactedAgainstUncompactedTransformation() throws TransformationException {
+    for (long seed = 0; seed < SEEDS; seed++) {
+      final String compacted = simulate(seed, true);
+      final String uncompacted = simulate(seed, false);
+
+      assertEquals("seed " + seed + " did not yield the same document", uncompacted, compacted);
+    }
+  }
+
+  /**
+   * Simulates a session with several clients that are connected to a server via connections with
+   * random latency and returns the final document after all activities were delivered.
+   */
+  private String simulate(long seed, boolean compactOperations) throws TransformationException {
+
+    final Random random = new Random(seed);
+
+    final Document serverDocument = new Document(INITIAL_CONTENT, project, path);
+
+    final List<Client> clients = new ArrayList<Client>();
+    final List<Proxy> proxies = new ArrayList<Proxy>();
+
+    for (int i = 0; i < CLIENTS; i++) {
+      Client client =
+          new Client(
+              JupiterTestCase.createUser("client" + i),
+              new Jupiter(true, compactOperations),
+              new Document(INITIAL_CONTENT, project, path));
+
+      client.cursor = random.nextInt(INITIAL_CONTENT.length());
+
+      clients.add(client);
+      proxies.add(new Proxy(new Jupiter(false, compactOperations)));
+    }
+
+    for (int step = 0; step < STEPS; step++) {
+      final int index = random.nextInt(CLIENTS);
+      final int action = random.nextInt(100);
+
+      if (action < 60) edit(random, clients.get(index), proxies.get(index));
+      else if (action < 80) deliverToServer(index, clients, proxies, serverDocument);
+      else deliverToClient(clients.get(index));
+    }
+
+    boolean pending = true;
+
+    while (pending) {
+      pending = false;
+
+      for (int i = 0; i < CLIENTS; i++) {
+        pending |= !proxies.get(i).inbox.isEmpty() || !clients.get(i).inbox.isEmpty();
+
+        deliverToServer(i, clients, proxies, serverDocument);
+        deliverToClient(clients.get(i));
+      }
+    }
+
+    for (Client client : clients)
+      assertEquals(
+          "seed " + seed + ": client document differs from the server document",
+          serverDocument.getDocument(),
+          client.document.getDocument());
+
+    return serverDocument.getDocument();
+  }
+
+  private void edit(Random random, Client client, Proxy proxy) {
+    final String content = client.document.getDocument();
+
+    client.cursor = Math.min(client.cursor, content.length());
+
+    final int cursor = client.cursor;
+    final int action = random.nextInt(100);
+
+    final Operation op;
+
+    if (action < 55) {
+      op = new InsertOperation(cursor, String.valueOf((char) ('a' + random.nextInt(26))));
+      client.cursor++;
+    } else if (action < 70 && cursor > 0) {
+      op = new DeleteOperation(cursor - 1, content.substring(cursor - 1, cursor));
+      client.cursor--;
+    } else if (action < 80 && cursor < content.length()) {
+      op = new DeleteOperation(cursor, content.substring(cursor, cursor + 1));
+    } else if (action < 90 && cursor < content.length()) {
+      // replace a selection
+      final int end = Math.min(content.length(), cursor + 1 + random.nextInt(8));
+      op =
+          new SplitOperation(
+              new DeleteOperation(cursor, content.substring(cursor, end)),
+              new InsertOperation(cursor, "pasted"));
+      client.cursor += "pasted".length();
+    } else {
+      client.cursor = random.nextInt(content.length() + 1);
+      return;
+    }
+
+    client.document.execOperation(op);
+    proxy.inbox.add(client.jupiter.generateJupiterActivity(op, client.user, null));
+  }
+
+  private void deliverToServer(
+      int index, List<Client> clients, List<Proxy> proxies, Document serverDocument)
+      throws TransformationException {
+
+    final Proxy proxy = proxies.get(index);
+
+    if (proxy.inbox.isEmpty()) return;
+
+    final JupiterActivity activity = proxy.inbox.removeFirst();
+    final Operation op = proxy.jupiter.receiveJupiterActivity(activity);
+
+    serverDocument.execOperation(op);
+
+    for (int i = 0; i < proxies.size(); i++) {
+      if (i == index) continue;
+
+      clients
+          .get(i)
+          .inbox
+          .add(proxies.get(i).jupiter.generateJupiterActivity(op, activity.getSource(), null));
+    }
+  }
+
+  private void deliverToClient(Client client) throws TransformationException {
+    if (client.inbox.isEmpty()) return;
+
+    final Operation op = client.jupiter.receiveJupiterActivity(client.inbox.removeFirst());
+
+    client.document.execOperation(op);
+  }
+
+  private Operation receive(Jupiter jupiter, Operation op, int remoteCount, int acknowledged)
+      throws TransformationException {
+    return jupiter.receiveJupiterActivity(
+        new JupiterActivity(new JupiterVectorTime(remoteCount, acknowledged), op, host, null));
+  }
+}
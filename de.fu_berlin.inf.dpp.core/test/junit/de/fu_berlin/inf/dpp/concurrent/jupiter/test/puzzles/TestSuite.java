@@ -10,6 +10,7 @@ import org.junit.runners.Suite;
   DOptPuzzleTest.class,
   GOTOInclusionTransformationTest.class,
   InclusionTransformationTest.class,
+  OperationCompactionTest.class,
   SimpleClientServerTest.class,
   SimpleJupiterDocumentTest.class,
   SimpleServerProxyTest.class
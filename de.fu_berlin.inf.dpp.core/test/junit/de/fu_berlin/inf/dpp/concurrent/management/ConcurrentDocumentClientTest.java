@@ -0,0 +1,77 @@
+package de.fu_berlin.inf.dpp.concurrent.management;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import de.fu_berlin.inf.dpp.activities.IActivity;
+import de.fu_berlin.inf.dpp.activities.RecoveryTextEditActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.editor.IEditorManager;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.session.User;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentDocumentClientTest {
+
+  private final User host = JupiterTestCase.createUser("host");
+  private final User alice = JupiterTestCase.createUser("alice");
+
+  private SPath path;
+
+  @Before
+  public void setUp() {
+    IProject project = createMock(IProject.class);
+    replay(project);
+    path = new SPath(project, new PathFake("Foo.java"));
+  }
+
+  @Test
+  public void testRecoveryIsTransformedToTextEdit() {
+    ConcurrentDocumentClient client = createClient("foo bar baz");
+
+    RecoveryTextEditActivity recovery =
+        new RecoveryTextEditActivity(
+            host, alice, path, 4, 3, "qux", "foo bar baz".length(), "foo bar baz".hashCode());
+
+    List<IActivity> activities = client.transformFromJupiter(recovery);
+
+    assertEquals(2, activities.size());
+    assertSame(recovery, activities.get(0));
+    assertEquals(new TextEditActivity(host, 4, "qux", "bar", path), activities.get(1));
+  }
+
+  @Test
+  public void testRecoveryOfChangedDocumentIsDropped() {
+    ConcurrentDocumentClient client = createClient("foo bar baz!");
+
+    RecoveryTextEditActivity recovery =
+        new RecoveryTextEditActivity(
+            host, alice, path, 4, 3, "qux", "foo bar baz".length(), "foo bar baz".hashCode());
+
+    List<IActivity> activities = client.transformFromJupiter(recovery);
+
+    assertEquals(1, activities.size());
+    assertSame(recovery, activities.get(0));
+  }
+
+  private ConcurrentDocumentClient createClient(String content) {
+    ISarosSession session = createNiceMock(ISarosSession.class);
+    replay(session);
+
+    IEditorManager editorManager = createNiceMock(IEditorManager.class);
+    expect(editorManager.getContent(path)).andStubReturn(content);
+    replay(editorManager);
+
+    return new ConcurrentDocumentClient(session, editorManager);
+  }
+}
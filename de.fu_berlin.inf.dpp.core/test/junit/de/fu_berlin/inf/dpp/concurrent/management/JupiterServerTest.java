@@ -0,0 +1,150 @@
+package de.fu_berlin.inf.dpp.concurrent.management;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.fu_berlin.inf.dpp.activities.JupiterActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.Jupiter;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.InsertOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.session.User;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JupiterServerTest {
+
+  private static final int DOCUMENTS = 8;
+
+  private static final int OPERATIONS = 500;
+
+  private final User host = JupiterTestCase.createUser("host");
+  private final User alice = JupiterTestCase.createUser("alice");
+  private final User bob = JupiterTestCase.createUser("bob");
+
+  private SPath[] paths;
+
+  private JupiterServer server;
+
+  @Before
+  public void setUp() {
+    IProject project = createMock(IProject.class);
+
+    ISarosSession session = createMock(ISarosSession.class);
+    expect(session.getHost()).andStubReturn(host);
+    expect(session.userHasProject(anyObject(User.class), anyObject(IProject.class)))
+        .andStubReturn(true);
+
+    replay(project, session);
+
+    paths = new SPath[DOCUMENTS];
+
+    for (int i = 0; i < DOCUMENTS; i++) paths[i] = new SPath(project, new PathFake("file" + i));
+
+    server = new JupiterServer(session);
+    server.addUser(host);
+    server.addUser(alice);
+  }
+
+  @Test
+  public void testConcurrentTransformationOfDifferentDocuments() throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+    Thread[] threads = new Thread[DOCUMENTS];
+
+    for (int i = 0; i < DOCUMENTS; i++) {
+      threads[i] = new TypingThread(paths[i], start, error, null);
+      threads[i].start();
+    }
+
+    start.countDown();
+
+    for (Thread thread : threads) thread.join(30000);
+
+    assertNull("transformation failed: " + error.get(), error.get());
+  }
+
+  @Test
+  public void testUserAddedDuringConcurrentTransformation() throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch typing = new CountDownLatch(DOCUMENTS);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+    TypingThread[] threads = new TypingThread[DOCUMENTS];
+
+    for (int i = 0; i < DOCUMENTS; i++) {
+      threads[i] = new TypingThread(paths[i], start, error, typing);
+      threads[i].start();
+    }
+
+    start.countDown();
+    typing.await();
+
+    server.addUser(bob);
+
+    for (Thread thread : threads) thread.join(30000);
+
+    assertNull("transformation failed: " + error.get(), error.get());
+
+    for (TypingThread thread : threads) {
+      Map<User, JupiterActivity> result =
+          server.transform(
+              thread.client.generateJupiterActivity(
+                  new InsertOperation(0, "x"), alice, thread.path));
+
+      assertEquals(new HashSet<User>(Arrays.asList(host, bob)), result.keySet());
+    }
+  }
+
+  private class TypingThread extends Thread {
+
+    private final SPath path;
+    private final CountDownLatch start;
+    private final AtomicReference<Throwable> error;
+    private final CountDownLatch typing;
+
+    private final Jupiter client = new Jupiter(true);
+
+    TypingThread(
+        SPath path, CountDownLatch start, AtomicReference<Throwable> error, CountDownLatch typing) {
+      this.path = path;
+      this.start = start;
+      this.error = error;
+      this.typing = typing;
+    }
+
+    @Override
+    public void run() {
+      try {
+        start.await();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+          JupiterActivity activity =
+              client.generateJupiterActivity(new InsertOperation(i, "a"), alice, path);
+
+          Map<User, JupiterActivity> result = server.transform(activity);
+
+          assertTrue("host did not receive the activity", result.containsKey(host));
+
+          if (typing != null && i == OPERATIONS / 2) typing.countDown();
+        }
+      } catch (Throwable t) {
+        error.compareAndSet(null, t);
+      }
+    }
+  }
+}
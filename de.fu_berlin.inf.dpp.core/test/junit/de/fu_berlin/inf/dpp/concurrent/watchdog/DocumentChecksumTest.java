@@ -0,0 +1,164 @@
+package de.fu_berlin.inf.dpp.concurrent.watchdog;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.session.User;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DocumentChecksumTest {
+
+  private final User alice = JupiterTestCase.createUser("alice");
+
+  private SPath path;
+
+  @Before
+  public void setUp() {
+    IProject project = createMock(IProject.class);
+    replay(project);
+    path = new SPath(project, new PathFake("Foo.java"));
+  }
+
+  @Test
+  public void testTextEditsAreApplied() {
+    DocumentChecksum checksum = new DocumentChecksum(path);
+    checksum.update("foo bar");
+
+    assertTrue(checksum.applyTextEdit(edit(4, "bar", "baz")));
+    assertTrue(checksum.applyTextEdit(edit(0, "", "// ")));
+    assertTrue(checksum.applyTextEdit(edit(10, "", "\n")));
+
+    assertFalse(checksum.isDirty());
+    assertEquals("// foo baz\n".length(), checksum.getLength());
+    assertEquals("// foo baz\n".hashCode(), checksum.getHash());
+  }
+
+  @Test
+  public void testMismatchingTextEditMarksDirty() {
+    DocumentChecksum checksum = new DocumentChecksum(path);
+    checksum.update("foo bar");
+
+    assertFalse(checksum.applyTextEdit(edit(4, "baz", "")));
+    assertTrue(checksum.isDirty());
+
+    // all following edits are ignored until the checksum is recalculated
+    assertFalse(checksum.applyTextEdit(edit(0, "foo", "")));
+
+    checksum.update("foo");
+
+    assertFalse(checksum.isDirty());
+    assertEquals("foo".hashCode(), checksum.getHash());
+  }
+
+  @Test
+  public void testTextEditOfNonExistingDocumentMarksDirty() {
+    DocumentChecksum checksum = new DocumentChecksum(path);
+    checksum.update(null);
+
+    assertFalse(checksum.applyTextEdit(edit(0, "", "foo")));
+    assertTrue(checksum.isDirty());
+  }
+
+  @Test
+  public void testRandomTextEdits() {
+    Random random = new Random(4711);
+
+    StringBuilder document = new StringBuilder();
+
+    for (int i = 0; i < 3 * ChunkedDocumentHash.CHUNK_SIZE + 17; i++)
+      document.append((char) ('a' + random.nextInt(26)));
+
+    DocumentChecksum checksum = new DocumentChecksum(path);
+    checksum.update(document.toString());
+
+    for (int i = 0; i < 5000; i++) {
+      int offset = random.nextInt(document.length() + 1);
+      int action = random.nextInt(100);
+
+      String replacedText;
+      String text;
+
+      if (action < 60) {
+        // typing
+        replacedText = "";
+        text = String.valueOf((char) ('a' + random.nextInt(26)));
+      } else if (action < 90) {
+        // deleting, possibly across chunk boundaries
+        int end = Math.min(document.length(), offset + random.nextInt(100));
+        replacedText = document.substring(offset, end);
+        text = "";
+      } else {
+        // pasting large blocks which have to be split
+        int end = Math.min(document.length(), offset + random.nextInt(10));
+        replacedText = document.substring(offset, end);
+        text = randomText(random, random.nextInt(3 * ChunkedDocumentHash.CHUNK_SIZE));
+      }
+
+      document.replace(offset, offset + replacedText.length(), text);
+
+      assertTrue(checksum.applyTextEdit(edit(offset, replacedText, text)));
+      assertEquals(document.length(), checksum.getLength());
+
+      if (i % 50 == 0) assertEquals(document.toString().hashCode(), checksum.getHash());
+    }
+
+    assertEquals(document.toString().hashCode(), checksum.getHash());
+  }
+
+  @Test
+  public void testDeletingEverything() {
+    String content = randomText(new Random(42), 2 * ChunkedDocumentHash.CHUNK_SIZE + 5);
+
+    DocumentChecksum checksum = new DocumentChecksum(path);
+    checksum.update(content);
+
+    assertTrue(checksum.applyTextEdit(edit(0, content, "")));
+    assertEquals(0, checksum.getLength());
+    assertEquals("".hashCode(), checksum.getHash());
+
+    assertTrue(checksum.applyTextEdit(edit(0, "", "foo")));
+    assertEquals("foo".hashCode(), checksum.getHash());
+  }
+
+  @Test
+  public void testChunksAreMerged() {
+    String content = randomText(new Random(42), 8 * ChunkedDocumentHash.CHUNK_SIZE);
+
+    ChunkedDocumentHash hash = new ChunkedDocumentHash(content);
+
+    assertEquals(8, hash.getChunkCount());
+
+    // remove most of the content of every chunk
+    for (int i = 7; i >= 0; i--) {
+      int offset = i * ChunkedDocumentHash.CHUNK_SIZE + 1;
+      int end = (i + 1) * ChunkedDocumentHash.CHUNK_SIZE - 1;
+
+      assertTrue(hash.replace(offset, content.substring(offset, end), ""));
+    }
+
+    assertEquals(16, hash.getLength());
+    assertEquals(1, hash.getChunkCount());
+  }
+
+  private TextEditActivity edit(int offset, String replacedText, String text) {
+    return new TextEditActivity(alice, offset, text, replacedText, path);
+  }
+
+  private static String randomText(Random random, int length) {
+    StringBuilder builder = new StringBuilder(length);
+
+    for (int i = 0; i < length; i++) builder.append((char) (' ' + random.nextInt(95)));
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,147 @@
+package de.fu_berlin.inf.dpp.concurrent.watchdog;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.fu_berlin.inf.dpp.activities.DocumentDigest;
+import de.fu_berlin.inf.dpp.activities.RecoveryTextEditActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.session.User;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PartialRecoveryTest {
+
+  private final User host = JupiterTestCase.createUser("host");
+  private final User alice = JupiterTestCase.createUser("alice");
+
+  private SPath path;
+
+  @Before
+  public void setUp() {
+    IProject project = createMock(IProject.class);
+    replay(project);
+    path = new SPath(project, new PathFake("Foo.java"));
+  }
+
+  @Test
+  public void testSmallDocumentsHaveNoDigest() {
+    assertNull(PartialRecovery.createDigest(path, null));
+    assertNull(PartialRecovery.createDigest(path, randomText(new Random(1), 1000)));
+  }
+
+  @Test
+  public void testDigestSizeIsBounded() {
+    DocumentDigest digest =
+        PartialRecovery.createDigest(path, randomText(new Random(1), 4 * 1024 * 1024 + 3));
+
+    assertEquals(PartialRecovery.MAX_CHUNKS, digest.getHeadHashes().length);
+    assertEquals(PartialRecovery.MAX_CHUNKS, digest.getTailHashes().length);
+  }
+
+  @Test
+  public void testOnlyInconsistentPartIsSent() {
+    String host = randomText(new Random(2), 100 * 1024);
+
+    // the client lost the insertion of a single character
+    String client = host.substring(0, 50000) + host.substring(50001);
+
+    RecoveryTextEditActivity recovery = recover(client, host);
+
+    assertNotNull(recovery);
+    assertTrue(recovery.getText().length() <= 2 * PartialRecovery.MIN_CHUNK_SIZE);
+    assertEquals(host, apply(recovery, client));
+  }
+
+  @Test
+  public void testInconsistencyAtTheBorders() {
+    String host = randomText(new Random(3), 64 * 1024);
+
+    assertEquals(host, apply(recover("x" + host, host), "x" + host));
+    assertEquals(host, apply(recover(host + "x", host), host + "x"));
+    assertEquals(host, apply(recover(host.substring(1), host), host.substring(1)));
+    String truncated = host.substring(0, host.length() - 1);
+    assertEquals(host, apply(recover(truncated, host), truncated));
+  }
+
+  @Test
+  public void testRandomInconsistencies() {
+    Random random = new Random(4711);
+
+    for (int i = 0; i < 200; i++) {
+      String host =
+          randomText(random, PartialRecovery.MIN_DOCUMENT_LENGTH + random.nextInt(200000));
+
+      StringBuilder client = new StringBuilder(host);
+
+      for (int edits = 1 + random.nextInt(3); edits > 0; edits--) {
+        int offset = random.nextInt(client.length());
+        int end = Math.min(client.length(), offset + random.nextInt(20));
+
+        client.replace(offset, end, randomText(random, random.nextInt(20)));
+      }
+
+      RecoveryTextEditActivity recovery = recover(client.toString(), host);
+
+      if (recovery == null) continue;
+
+      assertEquals("iteration " + i, host, apply(recovery, client.toString()));
+    }
+  }
+
+  @Test
+  public void testLargeInconsistenciesAreNotRecoveredPartially() {
+    Random random = new Random(5);
+
+    String host = randomText(random, 64 * 1024);
+    String client = randomText(random, 64 * 1024);
+
+    assertNull(recover(client, host));
+  }
+
+  @Test
+  public void testRecoveryIsOnlyApplicableToTheDigestedContent() {
+    String host = randomText(new Random(6), 64 * 1024);
+    String client = host.substring(0, 1000) + "x" + host.substring(1001);
+
+    RecoveryTextEditActivity recovery = recover(client, host);
+
+    assertTrue(recovery.isApplicableTo(client));
+    assertFalse(recovery.isApplicableTo(client + "x"));
+    assertFalse(recovery.isApplicableTo(null));
+  }
+
+  private RecoveryTextEditActivity recover(String client, String host) {
+    DocumentDigest digest = PartialRecovery.createDigest(path, client);
+
+    return PartialRecovery.createRecovery(this.host, alice, digest, host);
+  }
+
+  private static String apply(RecoveryTextEditActivity recovery, String client) {
+    assertTrue(recovery.isApplicableTo(client));
+
+    TextEditActivity edit = recovery.toTextEditActivity(client);
+
+    return client.substring(0, edit.getOffset())
+        + edit.getText()
+        + client.substring(edit.getOffset() + edit.getReplacedText().length());
+  }
+
+  private static String randomText(Random random, int length) {
+    StringBuilder builder = new StringBuilder(length);
+
+    for (int i = 0; i < length; i++) builder.append((char) ('a' + random.nextInt(26)));
+
+    return builder.toString();
+  }
+}
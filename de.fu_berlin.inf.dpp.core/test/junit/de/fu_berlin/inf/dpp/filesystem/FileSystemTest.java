@@ -0,0 +1,88 @@
+package de.fu_berlin.inf.dpp.filesystem;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Adler32;
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileSystemTest {
+
+  private File localFile;
+
+  private byte[] content;
+
+  private long expectedChecksum;
+
+  @Before
+  public void setUp() throws IOException {
+    // larger than the buffer, so it is read in several chunks
+    content = new byte[1024 * 1024 + 17];
+    new Random(42).nextBytes(content);
+
+    localFile = File.createTempFile("saros-checksum", ".bin");
+    FileUtils.writeByteArrayToFile(localFile, content);
+
+    final Adler32 adler = new Adler32();
+    adler.update(content);
+    expectedChecksum = adler.getValue();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(localFile);
+  }
+
+  @Test
+  public void testChecksumOfLocalFile() throws IOException {
+    final IFile file = createFileMock(localFile, content.length);
+
+    // the contents are not needed if the file can be read directly
+    EasyMock.replay(file);
+
+    assertEquals(expectedChecksum, FileSystem.checksum(file));
+    EasyMock.verify(file);
+  }
+
+  @Test
+  public void testChecksumOfChangedLocalFileUsesContents() throws IOException {
+    final IFile file = createFileMock(localFile, content.length + 1);
+
+    EasyMock.expect(file.getContents()).andReturn(new ByteArrayInputStream(content));
+    EasyMock.replay(file);
+
+    assertEquals(expectedChecksum, FileSystem.checksum(file));
+    EasyMock.verify(file);
+  }
+
+  @Test
+  public void testChecksumOfNonLocalFile() throws IOException {
+    final IFile file = EasyMock.createMock(IFile.class);
+
+    EasyMock.expect(file.getLocation()).andStubReturn(null);
+    EasyMock.expect(file.getContents()).andReturn(new ByteArrayInputStream(content));
+    EasyMock.replay(file);
+
+    assertEquals(expectedChecksum, FileSystem.checksum(file));
+    EasyMock.verify(file);
+  }
+
+  private static IFile createFileMock(File localFile, long size) throws IOException {
+    final IPath location = EasyMock.createMock(IPath.class);
+    EasyMock.expect(location.toFile()).andStubReturn(localFile);
+    EasyMock.replay(location);
+
+    final IFile file = EasyMock.createMock(IFile.class);
+    EasyMock.expect(file.getLocation()).andStubReturn(location);
+    EasyMock.expect(file.getSize()).andStubReturn(size);
+
+    return file;
+  }
+}
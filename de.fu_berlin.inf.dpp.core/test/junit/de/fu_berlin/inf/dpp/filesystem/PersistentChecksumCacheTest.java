@@ -0,0 +1,170 @@
+package de.fu_berlin.inf.dpp.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PersistentChecksumCacheTest {
+
+  private static final long AN_HOUR_AGO = System.currentTimeMillis() - 60 * 60 * 1000;
+
+  private File folder;
+
+  private File storeFile;
+
+  private File localFile;
+
+  private IFile file;
+
+  private IFileContentChangedListener listener;
+
+  private IFileContentChangedNotifier notifier =
+      new IFileContentChangedNotifier() {
+
+        @Override
+        public void addFileContentChangedListener(IFileContentChangedListener listener) {
+          PersistentChecksumCacheTest.this.listener = listener;
+        }
+
+        @Override
+        public void removeFileContentChangedListener(IFileContentChangedListener listener) {
+          // NOP
+        }
+      };
+
+  @Before
+  public void setUp() throws IOException {
+    folder = Files.createTempDirectory("saros-checksum-cache").toFile();
+    storeFile = new File(new File(folder, "state"), "checksums.dat");
+
+    localFile = new File(folder, "file.txt");
+    FileUtils.writeStringToFile(localFile, "Hello World");
+    assertTrue(localFile.setLastModified(AN_HOUR_AGO));
+
+    file = createFileMock("/project/file.txt", localFile);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(folder);
+  }
+
+  @Test
+  public void testChecksumIsKeptAcrossRestarts() {
+    PersistentChecksumCache cache = new PersistentChecksumCache(notifier, storeFile);
+    cache.start();
+
+    assertNull(cache.getChecksum(file));
+    assertFalse(cache.addChecksum(file, 5L));
+    assertEquals(Long.valueOf(5), cache.getChecksum(file));
+
+    cache.stop();
+
+    assertTrue(storeFile.exists());
+
+    cache = new PersistentChecksumCache(notifier, storeFile);
+    cache.start();
+
+    assertEquals(Long.valueOf(5), cache.getChecksum(file));
+  }
+
+  @Test
+  public void testChangedFileIsNotReturnedAfterRestart() throws IOException {
+    PersistentChecksumCache cache = new PersistentChecksumCache(notifier, storeFile);
+    cache.start();
+    cache.addChecksum(file, 5L);
+    cache.stop();
+
+    // changed while the cache was not running
+    FileUtils.writeStringToFile(localFile, "Hello World!");
+    assertTrue(localFile.setLastModified(AN_HOUR_AGO + 1000));
+
+    cache = new PersistentChecksumCache(notifier, storeFile);
+    cache.start();
+
+    assertNull(cache.getChecksum(file));
+  }
+
+  @Test
+  public void testChecksumOfRecentlyModifiedFileIsNotStored() {
+    assertTrue(localFile.setLastModified(System.currentTimeMillis()));
+
+    PersistentChecksumCache cache = new PersistentChecksumCache(notifier, storeFile);
+    cache.start();
+    cache.addChecksum(file, 5L);
+
+    assertEquals(Long.valueOf(5), cache.getChecksum(file));
+
+    cache.stop();
+
+    cache = new PersistentChecksumCache(notifier, storeFile);
+    cache.start();
+
+    assertNull(cache.getChecksum(file));
+  }
+
+  @Test
+  public void testChecksumInvalidation() {
+    PersistentChecksumCache cache = new PersistentChecksumCache(notifier, storeFile);
+    cache.start();
+
+    cache.addChecksum(file, 5L);
+    listener.fileContentChanged(file);
+
+    assertNull(cache.getChecksum(file));
+    assertTrue(cache.addChecksum(file, 6L));
+    assertEquals(Long.valueOf(6), cache.getChecksum(file));
+  }
+
+  @Test
+  public void testNonLocalFileIsNotCached() {
+    PersistentChecksumCache cache = new PersistentChecksumCache(notifier, storeFile);
+    cache.start();
+
+    IFile nonLocal = createFileMock("/project/remote.txt", null);
+
+    assertFalse(cache.addChecksum(nonLocal, 5L));
+    assertNull(cache.getChecksum(nonLocal));
+  }
+
+  @Test
+  public void testCorruptedStoreIsIgnored() throws IOException {
+    FileUtils.writeStringToFile(storeFile, "garbage");
+
+    PersistentChecksumCache cache = new PersistentChecksumCache(notifier, storeFile);
+    cache.start();
+
+    assertNull(cache.getChecksum(file));
+  }
+
+  private static IFile createFileMock(String fullPath, File localFile) {
+    final IPath fullPathMock = EasyMock.createMock(IPath.class);
+    EasyMock.expect(fullPathMock.toPortableString()).andStubReturn(fullPath);
+
+    IPath location = null;
+
+    if (localFile != null) {
+      location = EasyMock.createMock(IPath.class);
+      EasyMock.expect(location.toFile()).andStubReturn(localFile);
+      EasyMock.replay(location);
+    }
+
+    final IFile fileMock = EasyMock.createMock(IFile.class);
+    EasyMock.expect(fileMock.getFullPath()).andStubReturn(fullPathMock);
+    EasyMock.expect(fileMock.getLocation()).andStubReturn(location);
+
+    EasyMock.replay(fullPathMock, fileMock);
+
+    return fileMock;
+  }
+}
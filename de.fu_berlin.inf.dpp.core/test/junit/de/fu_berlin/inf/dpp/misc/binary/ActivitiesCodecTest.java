@@ -0,0 +1,256 @@
+package de.fu_berlin.inf.dpp.misc.binary;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.fu_berlin.inf.dpp.activities.EditorActivity;
+import de.fu_berlin.inf.dpp.activities.IActivity;
+import de.fu_berlin.inf.dpp.activities.JupiterActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextSelectionActivity;
+import de.fu_berlin.inf.dpp.activities.ViewportActivity;
+import de.fu_berlin.inf.dpp.communication.extensions.ActivitiesExtension;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.JupiterVectorTime;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.DeleteOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.InsertOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.NoOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.SplitOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.TimestampOperation;
+import de.fu_berlin.inf.dpp.filesystem.IPath;
+import de.fu_berlin.inf.dpp.filesystem.IPathFactory;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.misc.xstream.SPathConverter;
+import de.fu_berlin.inf.dpp.misc.xstream.UserConverter;
+import de.fu_berlin.inf.dpp.net.xmpp.JID;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.session.User;
+import de.fu_berlin.inf.dpp.versioning.VersionManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActivitiesCodecTest {
+
+  private final JID aliceJID = new JID("alice@saros-con/Saros");
+  private final JID bobJID = new JID("bob@saros-con/Saros");
+  private final JID carlJID = new JID("carl@saros-con/Saros");
+  private final JID daveJID = new JID("dave@saros-con/Saros");
+
+  private User alice;
+  private User bob;
+
+  private SPath mainPath;
+  private SPath testPath;
+
+  private ActivitiesCodec codec;
+
+  private UserConverter userConverter;
+  private SPathConverter pathConverter;
+
+  @Before
+  public void setUp() {
+    alice = new User(aliceJID, true, true, 0, 0);
+    bob = new User(bobJID, false, false, 0, 0);
+
+    IPath main = createPath("src/Main.java");
+    IPath test = createPath("test/MainTest.java");
+
+    IPathFactory pathFactory = EasyMock.createMock(IPathFactory.class);
+    expect(pathFactory.fromPath(main)).andStubReturn("src/Main.java");
+    expect(pathFactory.fromString("src/Main.java")).andStubReturn(main);
+    expect(pathFactory.fromPath(test)).andStubReturn("test/MainTest.java");
+    expect(pathFactory.fromString("test/MainTest.java")).andStubReturn(test);
+
+    IProject project = EasyMock.createNiceMock(IProject.class);
+
+    ISarosSession session = EasyMock.createMock(ISarosSession.class);
+    expect(session.getProjectID(project)).andStubReturn("ABC");
+    expect(session.getProject("ABC")).andStubReturn(project);
+    expect(session.getUser(aliceJID)).andStubReturn(alice);
+    expect(session.getUser(bobJID)).andStubReturn(bob);
+
+    VersionManager versionManager = EasyMock.createMock(VersionManager.class);
+    expect(versionManager.getActivityCodecVersion(bobJID)).andStubReturn(ActivitiesCodec.VERSION);
+    expect(versionManager.getActivityCodecVersion(carlJID)).andStubReturn(0);
+    expect(versionManager.getActivityCodecVersion(daveJID)).andStubReturn(1);
+
+    EasyMock.replay(pathFactory, project, session, versionManager);
+
+    mainPath = new SPath(project, main);
+    testPath = new SPath(project, test);
+
+    codec = new ActivitiesCodec(session, pathFactory, versionManager);
+
+    // needed for the activities that are embedded as XML
+    userConverter = new UserConverter(session);
+    pathConverter = new SPathConverter(session, pathFactory);
+    userConverter.start();
+    pathConverter.start();
+  }
+
+  @After
+  public void tearDown() {
+    userConverter.stop();
+    pathConverter.stop();
+  }
+
+  @Test
+  public void testEncodeDecode() throws Exception {
+    List<IActivity> activities = new ArrayList<IActivity>();
+
+    activities.add(
+        new JupiterActivity(
+            new JupiterVectorTime(4, 2), new InsertOperation(200, "aä€😀", 198), alice, mainPath));
+
+    activities.add(
+        new JupiterActivity(
+            new JupiterVectorTime(5, 2),
+            new SplitOperation(
+                new DeleteOperation(0, "foo"),
+                new SplitOperation(new NoOperation(), new InsertOperation(70000, "bar"))),
+            bob,
+            testPath));
+
+    activities.add(
+        new JupiterActivity(
+            new JupiterVectorTime(6, 300), new TimestampOperation(), alice, mainPath));
+
+    activities.add(new TextSelectionActivity(alice, 203, 0, mainPath));
+    activities.add(new ViewportActivity(bob, 1000, 42, testPath));
+
+    ActivitiesExtension extension = new ActivitiesExtension("4711", activities, 1234567);
+
+    assertTrue(codec.canEncode(bobJID, extension));
+
+    ActivitiesExtension decoded = decode(encode(extension));
+
+    assertEquals("4711", decoded.getSessionID());
+    assertEquals(1234567, decoded.getSequenceNumber());
+    assertEquals(activities, decoded.getActivities());
+  }
+
+  @Test
+  public void testCanNotEncodeForOldPeers() {
+    IActivity activity = new TextSelectionActivity(alice, 0, 0, mainPath);
+
+    ActivitiesExtension extension = new ActivitiesExtension("4711", Arrays.asList(activity), 0);
+
+    assertFalse(codec.canEncode(carlJID, extension));
+  }
+
+  @Test
+  public void testEncodeDecodeMixedActivities() throws Exception {
+    List<IActivity> activities = new ArrayList<IActivity>();
+
+    activities.add(new EditorActivity(alice, EditorActivity.Type.ACTIVATED, mainPath));
+    activities.add(
+        new JupiterActivity(
+            new JupiterVectorTime(1, 0),
+            new InsertOperation(10, "100% <b>&amp;</b> äöü"),
+            alice,
+            mainPath));
+    activities.add(new EditorActivity(alice, EditorActivity.Type.SAVED, mainPath));
+
+    ActivitiesExtension extension = new ActivitiesExtension("4711", activities, 42);
+
+    assertTrue(codec.canEncode(bobJID, extension));
+
+    byte[] data = encode(extension);
+
+    assertEquals(ActivitiesCodec.VERSION, data[0]);
+
+    ActivitiesExtension decoded = decode(data);
+
+    assertEquals(42, decoded.getSequenceNumber());
+    assertEquals(activities, decoded.getActivities());
+  }
+
+  @Test
+  public void testTypingActivitiesAreEncodedForOldCodecVersion() throws Exception {
+    IActivity activity = new TextSelectionActivity(alice, 0, 0, mainPath);
+
+    ActivitiesExtension extension = new ActivitiesExtension("4711", Arrays.asList(activity), 0);
+
+    assertTrue(codec.canEncode(daveJID, extension));
+    assertEquals(1, encode(extension)[0]);
+  }
+
+  @Test
+  public void testCanNotEncodeUnsupportedActivitiesForOldCodecVersion() {
+    List<IActivity> activities = new ArrayList<IActivity>();
+
+    activities.add(new TextSelectionActivity(alice, 0, 0, mainPath));
+    activities.add(new EditorActivity(alice, EditorActivity.Type.ACTIVATED, mainPath));
+
+    assertFalse(codec.canEncode(daveJID, new ActivitiesExtension("4711", activities, 0)));
+  }
+
+  @Test
+  public void testActivitiesAreEncodedOnceInDifferentBatches() throws Exception {
+    IActivity edit =
+        new JupiterActivity(
+            new JupiterVectorTime(1, 0), new InsertOperation(10, "foo"), alice, mainPath);
+    IActivity selection = new TextSelectionActivity(alice, 13, 0, mainPath);
+    IActivity editor = new EditorActivity(alice, EditorActivity.Type.SAVED, mainPath);
+
+    // the send lanes of two recipients batched the same activities differently
+    List<IActivity> bobBatch = Arrays.asList(edit, selection, editor);
+    List<IActivity> carlFirstBatch = Arrays.asList(edit);
+    List<IActivity> carlSecondBatch = Arrays.asList(selection, editor);
+
+    ActivitiesExtension decoded = decode(encode(new ActivitiesExtension("4711", bobBatch, 0)));
+
+    assertEquals(bobBatch, decoded.getActivities());
+
+    decoded = decode(encode(new ActivitiesExtension("4711", carlFirstBatch, 0)));
+
+    assertEquals(carlFirstBatch, decoded.getActivities());
+
+    decoded = decode(encode(new ActivitiesExtension("4711", carlSecondBatch, 1)));
+
+    assertEquals(1, decoded.getSequenceNumber());
+    assertEquals(carlSecondBatch, decoded.getActivities());
+
+    assertEquals(3, codec.getEncodedActivityCount());
+  }
+
+  @Test(expected = IOException.class)
+  public void testDecodeUnknownVersion() throws Exception {
+    IActivity activity = new TextSelectionActivity(alice, 0, 0, mainPath);
+
+    byte[] data = encode(new ActivitiesExtension("4711", Arrays.asList(activity), 0));
+
+    data[0] = (byte) (ActivitiesCodec.VERSION + 1);
+
+    decode(data);
+  }
+
+  private byte[] encode(ActivitiesExtension extension) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.encode(extension, new DataOutputStream(out));
+    return out.toByteArray();
+  }
+
+  private ActivitiesExtension decode(byte[] data) throws IOException {
+    return codec.decode(new DataInputStream(new ByteArrayInputStream(data)));
+  }
+
+  private static IPath createPath(String path) {
+    IPath mock = EasyMock.createMock(IPath.class);
+    expect(mock.isAbsolute()).andStubReturn(false);
+    expect(mock.toPortableString()).andStubReturn(path);
+    EasyMock.replay(mock);
+    return mock;
+  }
+}
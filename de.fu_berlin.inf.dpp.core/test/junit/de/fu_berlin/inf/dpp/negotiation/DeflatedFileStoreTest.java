@@ -0,0 +1,177 @@
+package de.fu_berlin.inf.dpp.negotiation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import de.fu_berlin.inf.dpp.filesystem.IFile;
+import de.fu_berlin.inf.dpp.filesystem.IPath;
+import de.fu_berlin.inf.dpp.monitoring.NullProgressMonitor;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeflatedFileStoreTest {
+
+  private static final long AN_HOUR_AGO = System.currentTimeMillis() - 60 * 60 * 1000;
+
+  private File folder;
+
+  private DeflatedFileStore store;
+
+  private final AtomicInteger reads = new AtomicInteger();
+
+  @Before
+  public void setUp() throws IOException {
+    folder = Files.createTempDirectory("saros-deflated-store").toFile();
+    store = new DeflatedFileStore();
+  }
+
+  @After
+  public void tearDown() {
+    store.close();
+    FileUtils.deleteQuietly(folder);
+  }
+
+  @Test
+  public void testArchiveContainsAllFiles() throws Exception {
+    final StringBuilder large = new StringBuilder();
+
+    for (int i = 0; i < 10000; i++) large.append("line ").append(i).append('\n');
+
+    final IFile a = createFile("a.txt", "Hello World", AN_HOUR_AGO);
+    final IFile b = createFile("b.txt", large.toString(), AN_HOUR_AGO);
+    final IFile empty = createFile("empty.txt", "", AN_HOUR_AGO);
+
+    final File archive =
+        writeArchive(Arrays.asList(a, b, empty), Arrays.asList("1:a.txt", "1:ü/b.txt", "1:e"));
+
+    try (ZipFile zip = new ZipFile(archive)) {
+      assertEquals(3, zip.size());
+      assertEquals("Hello World", read(zip, "1:a.txt"));
+      assertEquals(large.toString(), read(zip, "1:ü/b.txt"));
+      assertEquals("", read(zip, "1:e"));
+    }
+  }
+
+  @Test
+  public void testFilesAreOnlyCompressedOnce() throws Exception {
+    final IFile a = createFile("a.txt", "Hello World", AN_HOUR_AGO);
+
+    writeArchive(Collections.singletonList(a), Collections.singletonList("a"));
+    final File archive = writeArchive(Collections.singletonList(a), Collections.singletonList("b"));
+
+    assertEquals(1, reads.get());
+
+    try (ZipFile zip = new ZipFile(archive)) {
+      assertEquals("Hello World", read(zip, "b"));
+    }
+  }
+
+  @Test
+  public void testChangedFileIsCompressedAgain() throws Exception {
+    final IFile a = createFile("a.txt", "Hello World", AN_HOUR_AGO);
+
+    writeArchive(Collections.singletonList(a), Collections.singletonList("a"));
+
+    final File localFile = new File(folder, "a.txt");
+    FileUtils.writeStringToFile(localFile, "Hello Saros");
+    assertTrue(localFile.setLastModified(AN_HOUR_AGO + 1000));
+
+    final File archive = writeArchive(Collections.singletonList(a), Collections.singletonList("a"));
+
+    assertEquals(2, reads.get());
+
+    try (ZipFile zip = new ZipFile(archive)) {
+      assertEquals("Hello Saros", read(zip, "a"));
+    }
+  }
+
+  @Test
+  public void testInvalidatedFileIsCompressedAgain() throws Exception {
+    final IFile a = createFile("a.txt", "Hello World", AN_HOUR_AGO);
+
+    writeArchive(Collections.singletonList(a), Collections.singletonList("a"));
+    store.invalidate(a);
+    writeArchive(Collections.singletonList(a), Collections.singletonList("a"));
+
+    assertEquals(2, reads.get());
+  }
+
+  @Test
+  public void testRecentlyModifiedFileIsNotReused() throws Exception {
+    final IFile a = createFile("a.txt", "Hello World", System.currentTimeMillis());
+
+    writeArchive(Collections.singletonList(a), Collections.singletonList("a"));
+    writeArchive(Collections.singletonList(a), Collections.singletonList("a"));
+
+    assertEquals(2, reads.get());
+  }
+
+  private File writeArchive(List<IFile> files, List<String> names) throws Exception {
+    final File archive = File.createTempFile("archive", ".zip", folder);
+    store.writeArchive(archive, files, names, null, new NullProgressMonitor());
+    return archive;
+  }
+
+  private IFile createFile(String name, String content, long lastModified) throws IOException {
+    final File localFile = new File(folder, name);
+    FileUtils.writeStringToFile(localFile, content, "UTF-8");
+    assertTrue(localFile.setLastModified(lastModified));
+
+    final IPath fullPath = EasyMock.createMock(IPath.class);
+    EasyMock.expect(fullPath.toPortableString()).andStubReturn("/project/" + name);
+
+    final IPath location = EasyMock.createMock(IPath.class);
+    EasyMock.expect(location.toFile()).andStubReturn(localFile);
+
+    final IFile file = EasyMock.createMock(IFile.class);
+    EasyMock.expect(file.getFullPath()).andStubReturn(fullPath);
+    EasyMock.expect(file.getLocation()).andStubReturn(location);
+    EasyMock.expect(file.getSize())
+        .andStubAnswer(
+            new IAnswer<Long>() {
+              @Override
+              public Long answer() throws Throwable {
+                return localFile.length();
+              }
+            });
+    EasyMock.expect(file.getContents())
+        .andStubAnswer(
+            new IAnswer<InputStream>() {
+              @Override
+              public InputStream answer() throws Throwable {
+                reads.incrementAndGet();
+                return new FileInputStream(localFile);
+              }
+            });
+
+    EasyMock.replay(fullPath, location, file);
+
+    return file;
+  }
+
+  private static String read(ZipFile zip, String name) throws IOException {
+    final ZipEntry entry = zip.getEntry(name);
+    assertNotNull("missing entry: " + name, entry);
+
+    try (InputStream in = zip.getInputStream(entry)) {
+      return IOUtils.toString(in, "UTF-8");
+    }
+  }
+}
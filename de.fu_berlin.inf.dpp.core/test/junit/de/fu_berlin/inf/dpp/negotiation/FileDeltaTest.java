@@ -0,0 +1,163 @@
+package de.fu_berlin.inf.dpp.negotiation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import de.fu_berlin.inf.dpp.filesystem.IFile;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Random;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ArrayUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+public class FileDeltaTest {
+
+  private static final String KEY = DeltaEncoder.getKey("4711", "src/file");
+
+  private final Random random = new Random(42);
+
+  @Test
+  public void testUnchangedContent() throws IOException {
+    final byte[] content = randomBytes(256 * 1024);
+
+    final byte[] delta = assertRoundTrip(content, content);
+
+    assertTrue("delta is too large: " + delta.length, delta.length < 64);
+  }
+
+  @Test
+  public void testSmallModifications() throws IOException {
+    final byte[] base = randomBytes(1024 * 1024);
+
+    /* insert, replace and delete some bytes at different positions */
+    byte[] content = ArrayUtils.addAll(ArrayUtils.subarray(base, 0, 1000), randomBytes(17));
+    content = ArrayUtils.addAll(content, ArrayUtils.subarray(base, 1000, 500000));
+    content = ArrayUtils.addAll(content, randomBytes(100));
+    content = ArrayUtils.addAll(content, ArrayUtils.subarray(base, 500100, 800000));
+    content = ArrayUtils.addAll(content, ArrayUtils.subarray(base, 800333, base.length));
+
+    final byte[] delta = assertRoundTrip(base, content);
+
+    assertTrue("delta is too large: " + delta.length, delta.length < 8 * 1024);
+  }
+
+  @Test
+  public void testUnrelatedContent() throws IOException {
+    assertRoundTrip(randomBytes(10000), randomBytes(20000));
+  }
+
+  @Test
+  public void testContentSmallerThanBlock() throws IOException {
+    assertRoundTrip(randomBytes(10000), randomBytes(100));
+    assertRoundTrip(randomBytes(10000), new byte[0]);
+    assertRoundTrip(new byte[0], randomBytes(100));
+  }
+
+  @Test(expected = IOException.class)
+  public void testMalformedDelta() throws IOException {
+    final byte[] base = randomBytes(10000);
+    final byte[] delta = FileDelta.createDelta(FileDelta.createSignature(base), base);
+
+    FileDelta.applyDelta(new byte[100], new ByteArrayInputStream(delta));
+  }
+
+  @Test
+  public void testEncoderAndDecoder() throws IOException {
+    final byte[] base = randomBytes(64 * 1024);
+    final byte[] content = ArrayUtils.addAll(randomBytes(10), base);
+
+    final DeltaEncoder encoder =
+        new DeltaEncoder(Collections.singletonMap(KEY, FileDelta.createSignature(base)));
+
+    final DeltaDecoder decoder = new DeltaDecoder(Collections.singleton(KEY));
+
+    final byte[] encoded = IOUtils.toByteArray(encoder.getContents(createFileMock(content), KEY));
+
+    assertEquals(DeltaEncoder.DELTA, encoded[0]);
+    assertTrue("delta is too large: " + encoded.length, encoded.length < 1024);
+
+    final byte[] decoded =
+        IOUtils.toByteArray(
+            decoder.getContents(createFileMock(base), KEY, new ByteArrayInputStream(encoded)));
+
+    assertArrayEquals(content, decoded);
+  }
+
+  @Test
+  public void testEncoderSendsIncompressibleContentRaw() throws IOException {
+    final byte[] content = randomBytes(8 * 1024);
+
+    final DeltaEncoder encoder =
+        new DeltaEncoder(
+            Collections.singletonMap(KEY, FileDelta.createSignature(randomBytes(8 * 1024))));
+
+    final byte[] encoded = IOUtils.toByteArray(encoder.getContents(createFileMock(content), KEY));
+
+    assertEquals(DeltaEncoder.RAW, encoded[0]);
+    assertArrayEquals(content, ArrayUtils.subarray(encoded, 1, encoded.length));
+
+    final DeltaDecoder decoder = new DeltaDecoder(Collections.singleton(KEY));
+
+    assertArrayEquals(
+        content,
+        IOUtils.toByteArray(
+            decoder.getContents(
+                createFileMock(new byte[0]), KEY, new ByteArrayInputStream(encoded))));
+  }
+
+  @Test(expected = IOException.class)
+  public void testDecoderDetectsModifiedBase() throws IOException {
+    final byte[] base = randomBytes(64 * 1024);
+
+    final DeltaEncoder encoder =
+        new DeltaEncoder(Collections.singletonMap(KEY, FileDelta.createSignature(base)));
+
+    final DeltaDecoder decoder = new DeltaDecoder(Collections.singleton(KEY));
+
+    final byte[] encoded = IOUtils.toByteArray(encoder.getContents(createFileMock(base), KEY));
+
+    final byte[] modified = base.clone();
+    modified[4711]++;
+
+    decoder.getContents(createFileMock(modified), KEY, new ByteArrayInputStream(encoded));
+  }
+
+  private static byte[] assertRoundTrip(byte[] base, byte[] content) throws IOException {
+    final byte[] signature = FileDelta.createSignature(base);
+    final byte[] delta = FileDelta.createDelta(signature, content);
+
+    assertArrayEquals(content, FileDelta.applyDelta(base, new ByteArrayInputStream(delta)));
+
+    return delta;
+  }
+
+  private byte[] randomBytes(int length) {
+    final byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+  private static IFile createFileMock(final byte[] content) throws IOException {
+    final IFile file = EasyMock.createMock(IFile.class);
+
+    EasyMock.expect(file.getSize()).andStubReturn((long) content.length);
+    EasyMock.expect(file.getContents())
+        .andStubAnswer(
+            new IAnswer<InputStream>() {
+              @Override
+              public InputStream answer() throws Throwable {
+                return new ByteArrayInputStream(content);
+              }
+            });
+
+    EasyMock.replay(file);
+
+    return file;
+  }
+}
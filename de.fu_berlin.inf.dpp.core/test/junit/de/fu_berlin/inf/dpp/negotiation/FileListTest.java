@@ -23,6 +23,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.zip.Adler32;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 import org.junit.Before;
@@ -82,6 +83,31 @@ public class FileListTest {
     assertEquals("not all encodings were fetched", expectedEncodings, fileList.getEncodings());
   }
 
+  @Test
+  public void testChecksumsAreAssignedToTheirFiles() throws IOException {
+    final IProject project = EasyMock.createMock(IProject.class);
+
+    final List<IResource> files = new ArrayList<IResource>();
+
+    for (int i = 0; i < 500; i++)
+      files.add(createFileMock(project, "file" + i + ".txt", "content of file " + i, "UTF-8"));
+
+    EasyMock.expect(project.getName()).andStubReturn("foo");
+    EasyMock.replay(project);
+
+    final FileList fileList = FileListFactory.createFileList(project, files, null, null);
+
+    for (int i = 0; i < 500; i++) {
+      final Adler32 adler = new Adler32();
+      adler.update(("content of file " + i).getBytes());
+
+      assertEquals(
+          "wrong checksum for file" + i + ".txt",
+          adler.getValue(),
+          fileList.getMetaData("file" + i + ".txt").checksum);
+    }
+  }
+
   @Test
   public void testToXmlAndBack() throws Exception {
     List<String> files = new ArrayList<String>();
@@ -155,6 +181,9 @@ public class FileListTest {
     // only used for UI feedback
     EasyMock.expect(fileMock.getName()).andStubReturn("");
 
+    // not stored in the local file system
+    EasyMock.expect(fileMock.getLocation()).andStubReturn(null);
+
     try {
       EasyMock.expect(fileMock.getContents())
           .andStubAnswer(
@@ -0,0 +1,213 @@
+package de.fu_berlin.inf.dpp.negotiation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.JupiterTestCase;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.test.util.PathFake;
+import de.fu_berlin.inf.dpp.editor.IEditorManager;
+import de.fu_berlin.inf.dpp.editor.ISharedEditorListener;
+import de.fu_berlin.inf.dpp.filesystem.IChecksumCache;
+import de.fu_berlin.inf.dpp.filesystem.IFile;
+import de.fu_berlin.inf.dpp.filesystem.IPath;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.filesystem.IResource;
+import de.fu_berlin.inf.dpp.monitoring.NullProgressMonitor;
+import de.fu_berlin.inf.dpp.session.IActivityConsumer;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NegotiationArtifactCacheTest {
+
+  private final AtomicInteger scans = new AtomicInteger();
+
+  private final List<IResource> members = new ArrayList<IResource>();
+
+  private final Map<IFile, Long> checksums = new HashMap<IFile, Long>();
+
+  private final IChecksumCache checksumCache =
+      new IChecksumCache() {
+        @Override
+        public Long getChecksum(IFile file) {
+          return checksums.get(file);
+        }
+
+        @Override
+        public boolean addChecksum(IFile file, long checksum) {
+          checksums.put(file, checksum);
+          return false;
+        }
+      };
+
+  private IProject project;
+
+  private ISharedEditorListener editorListener;
+
+  private NegotiationArtifactCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    project = EasyMock.createMock(IProject.class);
+    EasyMock.expect(project.getName()).andStubReturn("foo");
+    EasyMock.expect(project.getDefaultCharset()).andStubReturn("UTF-8");
+    EasyMock.expect(project.members())
+        .andStubAnswer(
+            new IAnswer<IResource[]>() {
+              @Override
+              public IResource[] answer() throws Throwable {
+                scans.incrementAndGet();
+                return members.toArray(new IResource[0]);
+              }
+            });
+
+    final ISarosSession session = EasyMock.createNiceMock(ISarosSession.class);
+    session.addActivityConsumer(
+        EasyMock.anyObject(IActivityConsumer.class),
+        EasyMock.anyObject(IActivityConsumer.Priority.class));
+    EasyMock.expectLastCall().asStub();
+
+    final Capture<ISharedEditorListener> listener = new Capture<ISharedEditorListener>();
+
+    final IEditorManager editorManager = EasyMock.createNiceMock(IEditorManager.class);
+    editorManager.addSharedEditorListener(EasyMock.capture(listener));
+    EasyMock.expectLastCall().once();
+
+    EasyMock.replay(project, session, editorManager);
+
+    cache = new NegotiationArtifactCache(session, editorManager);
+    cache.start();
+
+    editorListener = listener.getValue();
+  }
+
+  @After
+  public void tearDown() {
+    cache.stop();
+  }
+
+  @Test
+  public void testFileListIsShared() throws Exception {
+    cache.acquire();
+    cache.acquire();
+
+    final FileList first = getFileList();
+    final FileList second = getFileList();
+
+    assertSame(first, second);
+
+    // the second negotiation rescans the project to check the file list
+    assertEquals(2, scans.get());
+  }
+
+  @Test
+  public void testFileListIsCreatedAgainAfterLocalChange() throws Exception {
+    cache.acquire();
+
+    final FileList first = getFileList();
+
+    members.add(createFile("info.txt", 42));
+
+    final FileList second = getFileList();
+
+    assertNotSame(first, second);
+    assertTrue(second.getPaths().contains("info.txt"));
+  }
+
+  @Test
+  public void testFileListIsCreatedAgainAfterLocalModification() throws Exception {
+    final IFile file = createFile("info.txt", 42);
+    members.add(file);
+
+    cache.acquire();
+
+    final FileList first = getFileList();
+    final FileList second = getFileList();
+
+    assertSame(first, second);
+
+    // the file was changed locally, so its checksum changed
+    checksums.put(file, 43L);
+
+    final FileList third = getFileList();
+
+    assertNotSame(first, third);
+  }
+
+  @Test
+  public void testFileListIsCreatedAgainAfterModification() throws Exception {
+    cache.acquire();
+
+    final FileList first = getFileList();
+
+    editorListener.textEdited(
+        new TextEditActivity(
+            JupiterTestCase.createUser("alice"),
+            0,
+            "a",
+            "",
+            new SPath(project, new PathFake("info.txt"))));
+
+    final FileList second = getFileList();
+
+    assertNotSame(first, second);
+    assertEquals(2, scans.get());
+  }
+
+  @Test
+  public void testArtifactsAreDiscardedWhenReleased() throws Exception {
+    cache.acquire();
+    final FileList first = getFileList();
+    cache.release();
+
+    cache.acquire();
+    final FileList second = getFileList();
+    cache.release();
+
+    assertNotSame(first, second);
+    assertEquals(2, scans.get());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCacheMustBeAcquired() throws Exception {
+    getFileList();
+  }
+
+  private FileList getFileList() throws Exception {
+    return cache.getFileList(project, null, checksumCache, new NullProgressMonitor());
+  }
+
+  private IFile createFile(String name, long checksum) throws Exception {
+    final IPath path = EasyMock.createMock(IPath.class);
+    EasyMock.expect(path.toPortableString()).andStubReturn(name);
+
+    final IFile file = EasyMock.createMock(IFile.class);
+    EasyMock.expect(file.isDerived()).andStubReturn(false);
+    EasyMock.expect(file.exists()).andStubReturn(true);
+    EasyMock.expect(file.getType()).andStubReturn(IResource.FILE);
+    EasyMock.expect(file.getName()).andStubReturn(name);
+    EasyMock.expect(file.getProject()).andStubReturn(project);
+    EasyMock.expect(file.getProjectRelativePath()).andStubReturn(path);
+    EasyMock.expect(file.getFullPath()).andStubReturn(path);
+    EasyMock.expect(file.getCharset()).andStubReturn("UTF-8");
+
+    EasyMock.replay(path, file);
+
+    checksums.put(file, checksum);
+
+    return file;
+  }
+}
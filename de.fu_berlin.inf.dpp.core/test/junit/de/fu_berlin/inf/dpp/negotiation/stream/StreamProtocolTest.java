@@ -0,0 +1,256 @@
+package de.fu_berlin.inf.dpp.negotiation.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.filesystem.IFile;
+import de.fu_berlin.inf.dpp.filesystem.IPath;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.filesystem.IResource;
+import de.fu_berlin.inf.dpp.monitoring.NullProgressMonitor;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.io.IOUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamProtocolTest {
+
+  private static final String PROJECT_ID = "4711";
+
+  /** contents of the files on the sending side */
+  private final Map<String, byte[]> localContents = new ConcurrentHashMap<String, byte[]>();
+
+  /** contents of the files written on the receiving side */
+  private final Map<String, byte[]> receivedContents = new ConcurrentHashMap<String, byte[]>();
+
+  private IProject project;
+
+  private ISarosSession session;
+
+  @Before
+  public void setUp() {
+    project = EasyMock.createMock(IProject.class);
+    EasyMock.expect(project.getName()).andStubReturn("foo");
+    EasyMock.expect(project.getType()).andStubReturn(IResource.PROJECT);
+    EasyMock.expect(project.getFile(EasyMock.anyObject(IPath.class)))
+        .andStubAnswer(
+            new IAnswer<IFile>() {
+              @Override
+              public IFile answer() throws Throwable {
+                return createFileMock(
+                    ((IPath) EasyMock.getCurrentArguments()[0]).toPortableString());
+              }
+            });
+    EasyMock.expect(project.getFile(EasyMock.anyObject(String.class)))
+        .andStubAnswer(
+            new IAnswer<IFile>() {
+              @Override
+              public IFile answer() throws Throwable {
+                return createFileMock((String) EasyMock.getCurrentArguments()[0]);
+              }
+            });
+
+    session = EasyMock.createMock(ISarosSession.class);
+    EasyMock.expect(session.getProjectID(project)).andStubReturn(PROJECT_ID);
+    EasyMock.expect(session.getProject(PROJECT_ID)).andStubReturn(project);
+
+    EasyMock.replay(project, session);
+  }
+
+  @Test
+  public void testAllFilesAreTransmitted() throws Exception {
+    assertAllFilesAreTransmitted(AbstractStreamProtocol.VERSION);
+  }
+
+  @Test
+  public void testAllFilesAreTransmittedInLegacyFormat() throws Exception {
+    assertAllFilesAreTransmitted(AbstractStreamProtocol.LEGACY_VERSION);
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadFailureAbortsTransmission() throws Exception {
+    final List<SPath> files = new ArrayList<SPath>();
+
+    files.add(addLocalFile("a", new byte[10]));
+    files.add(new SPath(project, createPathMock("missing")));
+
+    transmit(AbstractStreamProtocol.VERSION, Collections.singletonList(files));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedVersionIsRejected() {
+    new OutgoingStreamProtocol(
+        new ByteArrayOutputStream(),
+        session,
+        null,
+        AbstractStreamProtocol.VERSION + 1,
+        new NullProgressMonitor());
+  }
+
+  private void assertAllFilesAreTransmitted(int version) throws Exception {
+    final Random random = new Random(42);
+
+    final int[] sizes = {0, 1, 100, 64 * 1024, 64 * 1024 + 1, 300 * 1024, 3 * 1024 * 1024};
+
+    final List<SPath> configFiles = new ArrayList<SPath>();
+    final List<SPath> otherFiles = new ArrayList<SPath>();
+
+    configFiles.add(addLocalFile(".project", "<project/>".getBytes("UTF-8")));
+
+    for (int i = 0; i < 50; i++) {
+      final byte[] content = new byte[sizes[i % sizes.length]];
+      random.nextBytes(content);
+      otherFiles.add(addLocalFile("src/file" + i, content));
+    }
+
+    final List<List<SPath>> sections = new ArrayList<List<SPath>>();
+
+    sections.add(configFiles);
+    sections.add(otherFiles);
+
+    transmit(version, sections);
+
+    assertEquals(localContents.size(), receivedContents.size());
+
+    for (Map.Entry<String, byte[]> entry : localContents.entrySet()) {
+      final byte[] received = receivedContents.get(entry.getKey());
+
+      assertNotNull("file was not received: " + entry.getKey(), received);
+      assertArrayEquals("wrong content: " + entry.getKey(), entry.getValue(), received);
+    }
+  }
+
+  private void transmit(final int version, List<List<SPath>> sections) throws Exception {
+    final PipedInputStream in = new PipedInputStream(64 * 1024);
+    final PipedOutputStream out = new PipedOutputStream(in);
+
+    final AtomicReference<Exception> receiveFailure = new AtomicReference<Exception>();
+
+    final Thread receiver =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  new IncomingStreamProtocol(in, session, null, version, new NullProgressMonitor())
+                      .receiveStream();
+                } catch (Exception e) {
+                  receiveFailure.set(e);
+                }
+              }
+            });
+
+    receiver.start();
+
+    final OutgoingStreamProtocol osp =
+        new OutgoingStreamProtocol(out, session, null, version, new NullProgressMonitor());
+
+    try {
+      for (List<SPath> section : sections) {
+        final Iterator<SPath> files = section.iterator();
+
+        osp.streamFiles(
+            new OutgoingStreamProtocol.FileSource() {
+              @Override
+              public synchronized SPath next() {
+                return files.hasNext() ? files.next() : null;
+              }
+            });
+      }
+
+      osp.close();
+    } finally {
+      IOUtils.closeQuietly(out);
+      receiver.join(10000);
+    }
+
+    if (receiveFailure.get() != null) throw receiveFailure.get();
+  }
+
+  private SPath addLocalFile(String name, byte[] content) {
+    localContents.put(name, content);
+    return new SPath(project, createPathMock(name));
+  }
+
+  private IFile createFileMock(final String name) throws IOException {
+    final IFile file = EasyMock.createMock(IFile.class);
+
+    EasyMock.expect(file.getProject()).andStubReturn(project);
+    EasyMock.expect(file.getProjectRelativePath()).andStubReturn(createPathMock(name));
+    EasyMock.expect(file.getType()).andStubReturn(IResource.FILE);
+    EasyMock.expect(file.getParent()).andStubReturn(project);
+    EasyMock.expect(file.exists()).andStubReturn(false);
+
+    EasyMock.expect(file.getSize())
+        .andStubAnswer(
+            new IAnswer<Long>() {
+              @Override
+              public Long answer() throws Throwable {
+                final byte[] content = localContents.get(name);
+
+                if (content == null) throw new IOException("file does not exist: " + name);
+
+                return (long) content.length;
+              }
+            });
+
+    EasyMock.expect(file.getContents())
+        .andStubAnswer(
+            new IAnswer<InputStream>() {
+              @Override
+              public InputStream answer() throws Throwable {
+                final byte[] content = localContents.get(name);
+
+                if (content == null) throw new IOException("file does not exist: " + name);
+
+                return new ByteArrayInputStream(content);
+              }
+            });
+
+    file.create(EasyMock.anyObject(InputStream.class), EasyMock.anyBoolean());
+    EasyMock.expectLastCall()
+        .andStubAnswer(
+            new IAnswer<Object>() {
+              @Override
+              public Object answer() throws Throwable {
+                final InputStream in = (InputStream) EasyMock.getCurrentArguments()[0];
+                receivedContents.put(name, IOUtils.toByteArray(in));
+                return null;
+              }
+            });
+
+    EasyMock.replay(file);
+
+    return file;
+  }
+
+  private static IPath createPathMock(String name) {
+    final IPath path = EasyMock.createMock(IPath.class);
+
+    EasyMock.expect(path.isAbsolute()).andStubReturn(false);
+    EasyMock.expect(path.toPortableString()).andStubReturn(name);
+    EasyMock.expect(path.toOSString()).andStubReturn(name);
+
+    EasyMock.replay(path);
+
+    return path;
+  }
+}
@@ -0,0 +1,71 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class AdaptiveCompressionSelectorTest {
+
+  private final AdaptiveCompressionSelector selector = new AdaptiveCompressionSelector();
+
+  @Test
+  public void testSelectBySize() {
+    TransferDescription description = createDescription("foo");
+
+    assertSame(CompressionCodecs.DEFLATE, selector.select(description, 1024));
+
+    assertSame(
+        CompressionCodecs.DEFLATE_FAST,
+        selector.select(description, AdaptiveCompressionSelector.FAST_CODEC_THRESHOLD));
+  }
+
+  @Test
+  public void testSkipIncompressiblePayloads() {
+    TransferDescription archive = createDescription("archive");
+    TransferDescription text = createDescription("text");
+
+    selector.update(archive, CompressionCodecs.DEFLATE, 1010, 1000);
+    selector.update(text, CompressionCodecs.DEFLATE, 200, 1000);
+
+    assertSame(CompressionCodecs.DEFLATE, selector.select(text, 1000));
+
+    int compressed = 0;
+
+    for (int i = 0; i < AdaptiveCompressionSelector.PROBE_INTERVAL * 2; i++) {
+      if (selector.select(archive, 1000) != CompressionCodecs.NONE) compressed++;
+    }
+
+    // only probes are compressed
+    assertEquals(2, compressed);
+  }
+
+  @Test
+  public void testRatioRecovers() {
+    TransferDescription description = createDescription("foo");
+
+    selector.update(description, CompressionCodecs.DEFLATE, 1000, 1000);
+
+    assertEquals(1.0, selector.getRatio(description), 0.0001);
+
+    for (int i = 0; i < 10; i++) selector.update(description, CompressionCodecs.DEFLATE, 100, 1000);
+
+    assertSame(CompressionCodecs.DEFLATE, selector.select(description, 1000));
+  }
+
+  @Test
+  public void testUncompressedTransfersAreIgnored() {
+    TransferDescription description = createDescription("foo");
+
+    selector.update(description, CompressionCodecs.NONE, 1000, 1000);
+
+    assertEquals(-1, selector.getRatio(description), 0);
+  }
+
+  private static TransferDescription createDescription(String elementName) {
+    return TransferDescription.newDescription()
+        .setNamespace("junit")
+        .setElementName(elementName)
+        .setCompressContent(true);
+  }
+}
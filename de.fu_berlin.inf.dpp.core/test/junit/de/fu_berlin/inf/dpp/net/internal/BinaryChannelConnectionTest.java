@@ -8,6 +8,7 @@ import de.fu_berlin.inf.dpp.net.internal.BinaryChannelConnection.IDPool;
 import de.fu_berlin.inf.dpp.net.stream.ByteStream;
 import de.fu_berlin.inf.dpp.net.stream.StreamMode;
 import de.fu_berlin.inf.dpp.net.xmpp.JID;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -17,6 +18,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -321,6 +323,93 @@ public class BinaryChannelConnectionTest {
     assertArrayEquals("fragmentation error", bytesToSend, receivedBytes);
   }
 
+  @Test
+  public void testDataFramesAreWrittenAtOnce() throws Exception {
+
+    final AtomicInteger writes = new AtomicInteger();
+
+    final OutputStream aliceOut = aliceStream.getOutputStream();
+
+    final ByteStream countingStream =
+        new PipedBytestreamSession(null, null) {
+          @Override
+          public InputStream getInputStream() throws IOException {
+            return aliceStream.getInputStream();
+          }
+
+          @Override
+          public OutputStream getOutputStream() throws IOException {
+            return new FilterOutputStream(aliceOut) {
+              @Override
+              public void write(byte[] b, int off, int len) throws IOException {
+                writes.incrementAndGet();
+                out.write(b, off, len);
+              }
+            };
+          }
+
+          @Override
+          public void close() throws IOException {
+            aliceStream.close();
+          }
+        };
+
+    final CountDownLatch received = new CountDownLatch(2);
+
+    BinaryChannelConnection alice =
+        new BinaryChannelConnection(
+            aliceJID,
+            bobJID,
+            "junit",
+            countingStream,
+            StreamMode.SOCKS5_DIRECT,
+            new StreamConnectionListener() {
+              @Override
+              public void receive(final BinaryXMPPExtension extension) {
+                // NOP
+              }
+            });
+
+    BinaryChannelConnection bob =
+        new BinaryChannelConnection(
+            bobJID,
+            aliceJID,
+            "junit",
+            bobStream,
+            StreamMode.SOCKS5_DIRECT,
+            new StreamConnectionListener() {
+              @Override
+              public void receive(final BinaryXMPPExtension extension) {
+                received.countDown();
+              }
+            });
+
+    alice.initialize();
+    bob.initialize();
+
+    final TransferDescription description = TransferDescription.newDescription();
+
+    description.setNamespace("foo-namespace");
+    description.setElementName("bar");
+
+    try {
+      alice.send(description, new byte[512]);
+
+      assertEquals("cache updates, description and data were not written at once", 1, writes.get());
+
+      alice.send(description, new byte[BinaryChannelConnection.CHUNKSIZE * 2 + 1]);
+
+      assertEquals("every data frame must be written at once", 4, writes.get());
+
+      received.await(10000, TimeUnit.MILLISECONDS);
+    } finally {
+      alice.close();
+      bob.close();
+    }
+
+    assertEquals("not all packets were received", 0, received.getCount());
+  }
+
   @Test
   public void testIDPool() {
 
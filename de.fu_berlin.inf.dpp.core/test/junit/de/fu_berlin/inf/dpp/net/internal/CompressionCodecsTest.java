@@ -0,0 +1,90 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class CompressionCodecsTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (ICompressionCodec codec :
+        Arrays.asList(
+            CompressionCodecs.NONE, CompressionCodecs.DEFLATE, CompressionCodecs.DEFLATE_FAST)) {
+
+      for (byte[] data : Arrays.asList(new byte[1], createText(100), createText(1024 * 1024))) {
+        assertArrayEquals(codec.getName(), data, codec.decompress(codec.compress(data)));
+      }
+    }
+  }
+
+  @Test
+  public void testFastCodecIsReadableByDefaultCodec() throws Exception {
+    byte[] data = createText(200 * 1024);
+
+    assertArrayEquals(
+        data, CompressionCodecs.DEFLATE.decompress(CompressionCodecs.DEFLATE_FAST.compress(data)));
+  }
+
+  @Test
+  public void testCodecIsDeterminedByCompressedData() throws Exception {
+    for (byte[] data : Arrays.asList(new byte[1], createText(100), createText(200 * 1024))) {
+      assertSame(
+          CompressionCodecs.DEFLATE,
+          CompressionCodecs.forCompressedData(CompressionCodecs.DEFLATE.compress(data)));
+
+      assertSame(
+          CompressionCodecs.DEFLATE_FAST,
+          CompressionCodecs.forCompressedData(CompressionCodecs.DEFLATE_FAST.compress(data)));
+    }
+  }
+
+  @Test
+  public void testIncompressibleData() throws Exception {
+    byte[] data = new byte[64 * 1024];
+    new Random(4711).nextBytes(data);
+
+    byte[] compressed = CompressionCodecs.DEFLATE.compress(data);
+
+    assertTrue(compressed.length > data.length * AdaptiveCompressionSelector.INCOMPRESSIBLE_RATIO);
+    assertArrayEquals(data, CompressionCodecs.DEFLATE.decompress(compressed));
+  }
+
+  @Test
+  public void testNoneDoesNotCopy() throws Exception {
+    byte[] data = createText(16);
+
+    assertSame(data, CompressionCodecs.NONE.compress(data));
+    assertSame(data, CompressionCodecs.NONE.decompress(data));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedData() throws Exception {
+    byte[] compressed = CompressionCodecs.DEFLATE.compress(createText(4096));
+
+    CompressionCodecs.DEFLATE.decompress(Arrays.copyOf(compressed, compressed.length / 2));
+  }
+
+  @Test
+  public void testCodecsAreReusable() throws Exception {
+    byte[] data = createText(1000);
+
+    // more iterations than pooled instances
+    for (int i = 0; i < 32; i++)
+      assertArrayEquals(
+          data, CompressionCodecs.DEFLATE.decompress(CompressionCodecs.DEFLATE.compress(data)));
+  }
+
+  private static byte[] createText(int size) {
+    byte[] data = new byte[size];
+
+    for (int i = 0; i < size; i++) data[i] = (byte) ('a' + (i % 7) + (i / 1000 % 3));
+
+    return data;
+  }
+}
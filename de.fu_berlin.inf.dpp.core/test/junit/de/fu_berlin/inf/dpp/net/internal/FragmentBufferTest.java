@@ -0,0 +1,76 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.ProtocolException;
+import org.junit.Test;
+
+public class FragmentBufferTest {
+
+  private static final int CHUNKSIZE = 16;
+
+  @Test
+  public void testLargeChunkCountIsNotPreallocated() throws Exception {
+    final FragmentBuffer buffer = new FragmentBuffer(Integer.MAX_VALUE / CHUNKSIZE, CHUNKSIZE);
+
+    assertEquals(
+        FragmentBuffer.MAX_PREALLOCATED_CHUNKS * CHUNKSIZE, buffer.reserve(CHUNKSIZE).length);
+  }
+
+  @Test
+  public void testBufferGrowsWithReceivedChunks() throws Exception {
+    final int chunks = FragmentBuffer.MAX_PREALLOCATED_CHUNKS * 3;
+
+    final FragmentBuffer buffer = new FragmentBuffer(chunks, CHUNKSIZE);
+
+    final byte[] expected = new byte[chunks * CHUNKSIZE - 1];
+
+    for (int i = 0; i < expected.length; i++) expected[i] = (byte) i;
+
+    for (int offset = 0; offset < expected.length; offset += CHUNKSIZE) {
+      final int length = Math.min(CHUNKSIZE, expected.length - offset);
+
+      System.arraycopy(expected, offset, buffer.reserve(length), buffer.size(), length);
+      buffer.advance(length);
+    }
+
+    assertArrayEquals(expected, buffer.toByteArray());
+  }
+
+  @Test
+  public void testCompletelyFilledBufferIsNotCopied() throws Exception {
+    final FragmentBuffer buffer = new FragmentBuffer(1, CHUNKSIZE);
+
+    final byte[] data = buffer.reserve(CHUNKSIZE);
+    buffer.advance(CHUNKSIZE);
+
+    assertSame(data, buffer.toByteArray());
+  }
+
+  @Test(expected = ProtocolException.class)
+  public void testMoreDataThanAnnounced() throws Exception {
+    final FragmentBuffer buffer = new FragmentBuffer(2, CHUNKSIZE);
+
+    buffer.reserve(CHUNKSIZE);
+    buffer.advance(CHUNKSIZE);
+    buffer.reserve(CHUNKSIZE);
+    buffer.advance(CHUNKSIZE);
+    buffer.reserve(1);
+  }
+
+  @Test
+  public void testCorruptedChunkCount() {
+    for (int chunks : new int[] {0, -1, Integer.MAX_VALUE / CHUNKSIZE + 1}) {
+      try {
+        new FragmentBuffer(chunks, CHUNKSIZE);
+      } catch (ProtocolException e) {
+        continue;
+      }
+
+      fail("accepted chunk count " + chunks);
+    }
+  }
+}
@@ -5,9 +5,13 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+  AdaptiveCompressionSelectorTest.class,
   BinaryChannelConnectionTest.class,
+  CompressionCodecsTest.class,
   ConnectionPoolTest.class,
-  DataTransferManagerTest.class
+  DataTransferManagerTest.class,
+  FragmentBufferTest.class,
+  XMPPReceiverTest.class
 })
 public class TestSuite {
   // the class remains completely empty,
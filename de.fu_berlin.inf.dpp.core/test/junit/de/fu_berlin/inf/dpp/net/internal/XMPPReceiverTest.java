@@ -0,0 +1,198 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import de.fu_berlin.inf.dpp.communication.extensions.PingExtension;
+import de.fu_berlin.inf.dpp.communication.extensions.PongExtension;
+import de.fu_berlin.inf.dpp.net.DispatchThreadContext;
+import de.fu_berlin.inf.dpp.net.PacketCollector;
+import de.fu_berlin.inf.dpp.net.stream.StreamMode;
+import de.fu_berlin.inf.dpp.net.xmpp.JID;
+import de.fu_berlin.inf.dpp.net.xmpp.XMPPConnectionService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.easymock.EasyMock;
+import org.jivesoftware.smack.PacketListener;
+import org.jivesoftware.smack.filter.PacketFilter;
+import org.jivesoftware.smack.packet.Message;
+import org.jivesoftware.smack.packet.Packet;
+import org.junit.Before;
+import org.junit.Test;
+
+public class XMPPReceiverTest {
+
+  private static class RecordingListener implements PacketListener {
+    private final List<Packet> packets = new ArrayList<Packet>();
+
+    @Override
+    public void processPacket(Packet packet) {
+      packets.add(packet);
+    }
+  }
+
+  private XMPPReceiver receiver;
+
+  @Before
+  public void setUp() {
+    final DispatchThreadContext dispatchThreadContext =
+        new DispatchThreadContext() {
+          @Override
+          public void executeAsDispatch(Runnable runnable) {
+            runnable.run();
+          }
+        };
+
+    final XMPPConnectionService connectionService =
+        EasyMock.createNiceMock(XMPPConnectionService.class);
+
+    EasyMock.replay(connectionService);
+
+    receiver = new XMPPReceiver(dispatchThreadContext, connectionService);
+  }
+
+  @Test
+  public void testDispatchBySessionID() {
+    final RecordingListener first = new RecordingListener();
+    final RecordingListener second = new RecordingListener();
+    final RecordingListener all = new RecordingListener();
+
+    receiver.addPacketListener(first, PingExtension.PROVIDER.getPacketFilter("first"));
+    receiver.addPacketListener(second, PingExtension.PROVIDER.getPacketFilter("second"));
+    receiver.addPacketListener(all, PingExtension.PROVIDER.getPacketFilter());
+
+    receiver.processPacket(createPacket(new PingExtension("first")));
+
+    assertEquals(1, first.packets.size());
+    assertEquals(0, second.packets.size());
+    assertEquals(1, all.packets.size());
+  }
+
+  @Test
+  public void testDispatchByExtension() {
+    final RecordingListener ping = new RecordingListener();
+    final RecordingListener pong = new RecordingListener();
+    final RecordingListener unfiltered = new RecordingListener();
+    final RecordingListener custom = new RecordingListener();
+
+    receiver.addPacketListener(ping, PingExtension.PROVIDER.getPacketFilter());
+    receiver.addPacketListener(pong, PongExtension.PROVIDER.getPacketFilter());
+    receiver.addPacketListener(unfiltered, null);
+    receiver.addPacketListener(
+        custom,
+        new PacketFilter() {
+          @Override
+          public boolean accept(Packet packet) {
+            return packet.getExtension("ping", PingExtension.EXTENSION_NAMESPACE) != null;
+          }
+        });
+
+    receiver.processPacket(createPacket(new PongExtension("session")));
+
+    assertEquals(0, ping.packets.size());
+    assertEquals(1, pong.packets.size());
+    assertEquals(1, unfiltered.packets.size());
+    assertEquals(0, custom.packets.size());
+  }
+
+  @Test
+  public void testDuplicateExtensionIsDispatchedOnce() {
+    final RecordingListener ping = new RecordingListener();
+
+    receiver.addPacketListener(ping, PingExtension.PROVIDER.getPacketFilter("session"));
+
+    final Packet packet = createPacket(new PingExtension("session"));
+    packet.addExtension(PingExtension.PROVIDER.create(new PingExtension("session")));
+
+    receiver.processPacket(packet);
+
+    assertEquals(1, ping.packets.size());
+  }
+
+  @Test
+  public void testRemovePacketListener() {
+    final RecordingListener ping = new RecordingListener();
+
+    receiver.addPacketListener(ping, PingExtension.PROVIDER.getPacketFilter("session"));
+    receiver.removePacketListener(ping);
+
+    receiver.processPacket(createPacket(new PingExtension("session")));
+
+    assertEquals(0, ping.packets.size());
+  }
+
+  @Test
+  public void testPayloadIsDecodedOnce() throws Exception {
+    final RecordingListener session = new RecordingListener();
+    final RecordingListener all = new RecordingListener();
+    final RecordingListener unfiltered = new RecordingListener();
+
+    receiver.addPacketListener(session, PingExtension.PROVIDER.getPacketFilter("session"));
+    receiver.addPacketListener(all, PingExtension.PROVIDER.getPacketFilter());
+    receiver.addPacketListener(unfiltered, null);
+
+    final PacketCollector collector =
+        receiver.createCollector(PingExtension.PROVIDER.getPacketFilter("session"));
+
+    final TransferDescription description =
+        TransferDescription.newDescription()
+            .setElementName("ping")
+            .setNamespace(PingExtension.EXTENSION_NAMESPACE)
+            .setSender(new JID("alice@example.org/Saros"))
+            .setRecipient(new JID("bob@example.org/Saros"));
+
+    final byte[] data =
+        PingExtension.PROVIDER.create(new PingExtension("session")).toXML().getBytes("UTF-8");
+
+    final BinaryXMPPExtension extension = new BinaryXMPPExtension(StreamMode.TCP, description, 1);
+
+    extension.isLastChunk();
+    extension.setPayload(data.length, data);
+
+    final long decodedPayloads = PingExtension.PROVIDER.getDecodedPayloadCount();
+
+    receiver.processBinaryXMPPExtension(extension);
+
+    assertEquals(1, PingExtension.PROVIDER.getDecodedPayloadCount() - decodedPayloads);
+
+    assertEquals(1, session.packets.size());
+    assertEquals(1, all.packets.size());
+    assertEquals(1, unfiltered.packets.size());
+    assertNotNull(collector.nextResult(0));
+
+    assertEquals(
+        "session", PingExtension.PROVIDER.getPayload(session.packets.get(0)).getSessionID());
+
+    assertEquals(1, PingExtension.PROVIDER.getDecodedPayloadCount() - decodedPayloads);
+  }
+
+  @Test
+  public void testDispatchStatistics() {
+    receiver.addPacketListener(new RecordingListener(), PingExtension.PROVIDER.getPacketFilter());
+    receiver.addPacketListener(new RecordingListener(), PingExtension.PROVIDER.getPacketFilter());
+
+    receiver.processPacket(createPacket(new PingExtension("session")));
+    receiver.processPacket(createPacket(new PingExtension("session")));
+    receiver.processPacket(createPacket(new PongExtension("session")));
+
+    final Map<String, DispatchStatistics> statistics = receiver.getDispatchStatistics();
+
+    assertEquals(2, statistics.get("ping").getDispatchedPackets());
+    assertEquals(4, statistics.get("ping").getDeliveries());
+    assertEquals(1, statistics.get("pong").getDispatchedPackets());
+    assertEquals(0, statistics.get("pong").getDeliveries());
+  }
+
+  private static Packet createPacket(PingExtension extension) {
+    final Packet packet = new Message();
+    packet.addExtension(PingExtension.PROVIDER.create(extension));
+    return packet;
+  }
+
+  private static Packet createPacket(PongExtension extension) {
+    final Packet packet = new Message();
+    packet.addExtension(PongExtension.PROVIDER.create(extension));
+    return packet;
+  }
+}
@@ -35,6 +35,7 @@ import de.fu_berlin.inf.dpp.session.ISarosSession;
 import de.fu_berlin.inf.dpp.session.User;
 import de.fu_berlin.inf.dpp.test.fakes.synchonize.NonUISynchronizer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -73,6 +74,9 @@ public class ActivityHandlerTest {
   // Needed to compare localActivities
   private volatile CountDownLatch gate;
 
+  // Needed to compare sent activities as the host transforms them asynchronously
+  private volatile CountDownLatch sendGate;
+
   // Roles of the Users in this Test
   private User target;
   private User source;
@@ -88,6 +92,10 @@ public class ActivityHandlerTest {
           willBeSent = true;
           targets = recipients;
           transformedActivity = activity;
+
+          CountDownLatch gateToCountdown = sendGate;
+
+          if (gateToCountdown != null) gateToCountdown.countDown();
         }
 
         @Override
@@ -101,6 +109,8 @@ public class ActivityHandlerTest {
         }
       };
   private SPath path;
+  private IProject project;
+  private ISarosSession sessionMock;
 
   @Before
   public void setUp() {
@@ -173,10 +183,18 @@ public class ActivityHandlerTest {
     for (IActivity activity : activities) {
 
       willBeSent = false;
+      sendGate = new CountDownLatch(1);
 
       // SUT-CALL
       handler.handleIncomingActivities(Collections.singletonList(activity));
 
+      // Activities of documents are transformed by a different Thread
+      try {
+        sendGate.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        fail("Interupted");
+      }
+
       if (!willBeSent) {
         fail("Activity: " + activity + " was not send.");
       } else if (activity instanceof ITargetedActivity) {
@@ -268,6 +286,184 @@ public class ActivityHandlerTest {
     }
   }
 
+  /**
+   * This tests if the host transforms the activities of a document while the activities of another
+   * document are still transformed, and if the activities of a document are sent in order.
+   */
+  @Test
+  public void ServerTransformsDocumentsConcurrentlyTest() throws Exception {
+
+    setParameters(bob, alice, true);
+
+    final SPath blockedPath = createPath();
+    final SPath otherPath = createPath();
+
+    final IActivity first = createJupiterActivity(blockedPath);
+    final IActivity second = createJupiterActivity(blockedPath);
+    final IActivity other = createJupiterActivity(otherPath);
+
+    ConcurrentDocumentServer server = EasyMock.createNiceMock(ConcurrentDocumentServer.class);
+    for (IActivity activity : Arrays.asList(first, second, other)) {
+      EasyMock.expect(server.transformIncoming(activity))
+          .andReturn(Collections.singletonList(new QueueItem(remoteUsersWithProjects, activity)));
+    }
+    EasyMock.replay(server);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch otherSent = new CountDownLatch(1);
+    final CountDownLatch allSent = new CountDownLatch(3);
+    final List<IActivity> sent = Collections.synchronizedList(new ArrayList<IActivity>());
+
+    IActivityHandlerCallback blockingCallback =
+        new IActivityHandlerCallback() {
+
+          @Override
+          public void send(List<User> recipients, IActivity activity) {
+            if (activity == first) {
+              try {
+                release.await(10, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+
+            sent.add(activity);
+
+            if (activity == other) otherSent.countDown();
+
+            allSent.countDown();
+          }
+
+          @Override
+          public void execute(IActivity activity) {
+            // NOP
+          }
+        };
+
+    ActivityHandler concurrentHandler =
+        new ActivityHandler(
+            sessionMock,
+            blockingCallback,
+            server,
+            EasyMock.createNiceMock(ConcurrentDocumentClient.class),
+            synchronizer);
+
+    concurrentHandler.start();
+
+    try {
+      // SUT-CALL
+      concurrentHandler.handleIncomingActivities(Arrays.asList(first, second));
+      concurrentHandler.handleIncomingActivities(Collections.singletonList(other));
+
+      assertTrue(
+          "activity of other document was not sent while the first one was blocked",
+          otherSent.await(10, TimeUnit.SECONDS));
+
+      release.countDown();
+
+      assertTrue("not all activities were sent", allSent.await(10, TimeUnit.SECONDS));
+      assertTrue(
+          "activities of a document were reordered", sent.indexOf(first) < sent.indexOf(second));
+    } finally {
+      release.countDown();
+      concurrentHandler.stop();
+    }
+  }
+
+  /**
+   * This tests if the host does not wait for the transformation of document activities when it
+   * receives other activities, and if those activities are still sent in the order they were
+   * received relative to the document activities.
+   */
+  @Test
+  public void ServerSequencesOtherActivitiesWithoutWaitingTest() throws Exception {
+
+    setParameters(bob, alice, true);
+
+    final SPath blockedPath = createPath();
+    final SPath otherPath = createPath();
+
+    final IActivity first = createJupiterActivity(blockedPath);
+    final IActivity nonDocument = new ChangeColorActivity(alice, bob, carl, 1);
+    final IActivity last = createJupiterActivity(otherPath);
+
+    ConcurrentDocumentServer server = EasyMock.createNiceMock(ConcurrentDocumentServer.class);
+    for (IActivity activity : Arrays.asList(first, last)) {
+      EasyMock.expect(server.transformIncoming(activity))
+          .andReturn(Collections.singletonList(new QueueItem(remoteUsersWithProjects, activity)));
+    }
+    EasyMock.replay(server);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch allSent = new CountDownLatch(3);
+    final List<IActivity> sent = Collections.synchronizedList(new ArrayList<IActivity>());
+
+    IActivityHandlerCallback blockingCallback =
+        new IActivityHandlerCallback() {
+
+          @Override
+          public void send(List<User> recipients, IActivity activity) {
+            if (activity == first) {
+              try {
+                release.await(10, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+
+            sent.add(activity);
+            allSent.countDown();
+          }
+
+          @Override
+          public void execute(IActivity activity) {
+            // NOP
+          }
+        };
+
+    ActivityHandler sequencingHandler =
+        new ActivityHandler(
+            sessionMock,
+            blockingCallback,
+            server,
+            EasyMock.createNiceMock(ConcurrentDocumentClient.class),
+            synchronizer);
+
+    sequencingHandler.start();
+
+    try {
+      // SUT-CALL, must return although the first activity is blocked
+      sequencingHandler.handleIncomingActivities(Collections.singletonList(first));
+      sequencingHandler.handleIncomingActivities(Collections.singletonList(nonDocument));
+      sequencingHandler.handleIncomingActivities(Collections.singletonList(last));
+
+      assertTrue("activities were sent before the blocked one", sent.isEmpty());
+
+      release.countDown();
+
+      assertTrue("not all activities were sent", allSent.await(10, TimeUnit.SECONDS));
+      assertEquals("activities were reordered", Arrays.asList(first, nonDocument, last), sent);
+    } finally {
+      release.countDown();
+      sequencingHandler.stop();
+    }
+  }
+
+  private SPath createPath() {
+    SPath newPath = EasyMock.createMock(SPath.class);
+    EasyMock.expect(newPath.getProject()).andStubReturn(project);
+    EasyMock.replay(newPath);
+    return newPath;
+  }
+
+  private IActivity createJupiterActivity(SPath activityPath) {
+    JupiterActivity activity = EasyMock.createNiceMock(JupiterActivity.class);
+    EasyMock.expect(activity.getPath()).andStubReturn(activityPath);
+    EasyMock.expect(activity.getSource()).andStubReturn(alice);
+    EasyMock.replay(activity);
+    return activity;
+  }
+
   /**
    * Specifies the roles of participants in the session. Should be called at the start of every test
    * case
@@ -322,7 +518,7 @@ public class ActivityHandlerTest {
     synchronizer = new NonUISynchronizer();
 
     // Create SessionMock
-    ISarosSession sessionMock = EasyMock.createMock(ISarosSession.class);
+    sessionMock = EasyMock.createMock(ISarosSession.class);
     EasyMock.expect(sessionMock.getLocalUser()).andStubReturn(alice);
     EasyMock.expect(sessionMock.getHost()).andStubReturn(alice);
     // read host-Variable at runtime.
@@ -336,7 +532,7 @@ public class ActivityHandlerTest {
             })
         .anyTimes();
 
-    IProject project = EasyMock.createMock(IProject.class);
+    project = EasyMock.createMock(IProject.class);
 
     EasyMock.expect(sessionMock.userHasProject(dave, project)).andStubReturn(false);
     for (User user : remoteUsersWithProjects) {
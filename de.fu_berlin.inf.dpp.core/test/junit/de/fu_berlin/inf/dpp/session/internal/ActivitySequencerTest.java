@@ -2,11 +2,16 @@ package de.fu_berlin.inf.dpp.session.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import de.fu_berlin.inf.dpp.activities.IActivity;
 import de.fu_berlin.inf.dpp.activities.NOPActivity;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextSelectionActivity;
+import de.fu_berlin.inf.dpp.filesystem.IPath;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
 import de.fu_berlin.inf.dpp.net.IReceiver;
 import de.fu_berlin.inf.dpp.net.ITransmitter;
 import de.fu_berlin.inf.dpp.net.xmpp.JID;
@@ -22,7 +27,10 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.easymock.EasyMock;
+import org.jivesoftware.smack.packet.Packet;
 import org.jivesoftware.smack.packet.PacketExtension;
 import org.junit.After;
 import org.junit.Before;
@@ -87,6 +95,7 @@ public class ActivitySequencerTest {
 
   private static final JID ALICE_JID = new JID("alice@test/Saros");
   private static final JID BOB_JID = new JID("bob@test/Saros");
+  private static final JID CARL_JID = new JID("carl@test/Saros");
 
   private SequencerSessionStub sessionStubAlice;
   private SequencerSessionStub sessionStubBob;
@@ -348,4 +357,231 @@ public class ActivitySequencerTest {
         0,
         receivedActivities.size());
   }
+
+  @Test(timeout = 30000)
+  public void testSlowRecipientDoesNotBlockOtherRecipients() throws Exception {
+
+    final CountDownLatch carlSending = new CountDownLatch(1);
+    final CountDownLatch carlBlocked = new CountDownLatch(1);
+    final AtomicInteger sentToBob = new AtomicInteger();
+
+    ITransmitter transmitter =
+        new ITransmitter() {
+
+          @Override
+          public void send(String connectionID, JID recipient, PacketExtension extension)
+              throws IOException {
+
+            if (recipient.equals(BOB_JID)) {
+              sentToBob.incrementAndGet();
+              return;
+            }
+
+            carlSending.countDown();
+
+            try {
+              carlBlocked.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+
+          @Override
+          public void send(JID recipient, PacketExtension extension) throws IOException {
+            send(null, recipient, extension);
+          }
+
+          @Override
+          public void sendPacket(Packet packet) throws IOException {
+            // NOP
+          }
+
+          @Override
+          public void sendPacketExtension(JID jid, PacketExtension extension) {
+            // NOP
+          }
+        };
+
+    aliceSequencer = new ActivitySequencer(sessionStubAlice, transmitter, aliceReceiver, null);
+
+    aliceSequencer.start();
+
+    User bobUserInAliceSession = new User(BOB_JID, false, false, 0, 0);
+    User carlUserInAliceSession = new User(CARL_JID, false, false, 0, 0);
+
+    List<User> recipients = new ArrayList<User>();
+    recipients.add(carlUserInAliceSession);
+    recipients.add(bobUserInAliceSession);
+
+    aliceSequencer.registerUser(bobUserInAliceSession);
+    aliceSequencer.registerUser(carlUserInAliceSession);
+
+    try {
+      aliceSequencer.sendActivity(recipients, new NOPActivity(aliceUser, aliceUser, 0));
+      aliceSequencer.flush(bobUserInAliceSession);
+      carlSending.await();
+
+      aliceSequencer.sendActivity(recipients, new NOPActivity(aliceUser, aliceUser, 1));
+      aliceSequencer.flush(bobUserInAliceSession);
+
+      assertEquals("activities to bob are delayed by carl", 2, sentToBob.get());
+
+      SendLaneStatistics carlStatistics =
+          aliceSequencer.getSendLaneStatistics(carlUserInAliceSession);
+
+      assertNotNull(carlStatistics);
+      assertEquals("activities to carl should be still queued", 1, carlStatistics.getQueueDepth());
+      assertEquals(0, carlStatistics.getSentPackets());
+    } finally {
+      carlBlocked.countDown();
+    }
+
+    aliceSequencer.flush(carlUserInAliceSession);
+
+    SendLaneStatistics bobStatistics = aliceSequencer.getSendLaneStatistics(bobUserInAliceSession);
+    SendLaneStatistics carlStatistics =
+        aliceSequencer.getSendLaneStatistics(carlUserInAliceSession);
+
+    assertEquals(2, bobStatistics.getSentPackets());
+    assertEquals(2, bobStatistics.getSentActivities());
+    assertEquals(0, bobStatistics.getQueueDepth());
+
+    assertEquals(2, carlStatistics.getSentPackets());
+    assertEquals(0, carlStatistics.getQueueDepth());
+    assertEquals(1, carlStatistics.getMaxQueueDepth());
+  }
+
+  @Test(timeout = 30000)
+  public void testFullSendQueueDoesNotBlockSender() throws Exception {
+
+    final CountDownLatch sending = new CountDownLatch(1);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final List<JID> failedRecipients = Collections.synchronizedList(new ArrayList<JID>());
+
+    aliceSequencer =
+        new ActivitySequencer(
+            sessionStubAlice, createBlockingTransmitter(sending, blocked), aliceReceiver, null);
+
+    aliceSequencer.setCallback(
+        new IActivitySequencerCallback() {
+          @Override
+          public void transmissionFailed(JID jid) {
+            failedRecipients.add(jid);
+          }
+        });
+
+    aliceSequencer.setMaxQueuedActivities(2);
+    aliceSequencer.start();
+
+    final User carlUserInAliceSession = new User(CARL_JID, false, false, 0, 0);
+    final List<User> recipients = Collections.singletonList(carlUserInAliceSession);
+
+    aliceSequencer.registerUser(carlUserInAliceSession);
+
+    try {
+      aliceSequencer.sendActivity(recipients, new NOPActivity(aliceUser, aliceUser, -1));
+      sending.await();
+
+      for (int i = 0; i < 4; i++)
+        aliceSequencer.sendActivity(recipients, new NOPActivity(aliceUser, aliceUser, i));
+
+      SendLaneStatistics statistics = aliceSequencer.getSendLaneStatistics(carlUserInAliceSession);
+
+      assertEquals(4, statistics.getQueueDepth());
+      assertTrue("carl is not lagging", statistics.isLagging());
+      assertTrue("carl was unregistered", aliceSequencer.isUserRegistered(carlUserInAliceSession));
+      assertTrue("lagging was reported as failure", failedRecipients.isEmpty());
+    } finally {
+      blocked.countDown();
+    }
+
+    aliceSequencer.flush(carlUserInAliceSession);
+
+    SendLaneStatistics statistics = aliceSequencer.getSendLaneStatistics(carlUserInAliceSession);
+
+    assertFalse("carl is still lagging", statistics.isLagging());
+    assertEquals(5, statistics.getSentActivities());
+    assertEquals(0, statistics.getCoalescedActivities());
+  }
+
+  @Test(timeout = 30000)
+  public void testFullSendQueueIsCoalesced() throws Exception {
+
+    final CountDownLatch sending = new CountDownLatch(1);
+    final CountDownLatch blocked = new CountDownLatch(1);
+
+    aliceSequencer =
+        new ActivitySequencer(
+            sessionStubAlice, createBlockingTransmitter(sending, blocked), aliceReceiver, null);
+
+    aliceSequencer.setMaxQueuedActivities(4);
+    aliceSequencer.start();
+
+    final User carlUserInAliceSession = new User(CARL_JID, false, false, 0, 0);
+    final List<User> recipients = Collections.singletonList(carlUserInAliceSession);
+
+    aliceSequencer.registerUser(carlUserInAliceSession);
+
+    final IPath path = EasyMock.createMock(IPath.class);
+    EasyMock.expect(path.isAbsolute()).andStubReturn(false);
+    EasyMock.replay(path);
+
+    final SPath file = new SPath(EasyMock.createMock(IProject.class), path);
+
+    try {
+      aliceSequencer.sendActivity(recipients, new NOPActivity(aliceUser, aliceUser, -1));
+      sending.await();
+
+      for (int i = 0; i < 100; i++)
+        aliceSequencer.sendActivity(recipients, new TextSelectionActivity(aliceUser, i, 0, file));
+
+      SendLaneStatistics statistics = aliceSequencer.getSendLaneStatistics(carlUserInAliceSession);
+
+      assertTrue("queue was not coalesced", statistics.getQueueDepth() < 4);
+      assertEquals(100 - statistics.getQueueDepth(), statistics.getCoalescedActivities());
+      assertFalse("carl is lagging", statistics.isLagging());
+    } finally {
+      blocked.countDown();
+    }
+
+    aliceSequencer.flush(carlUserInAliceSession);
+  }
+
+  /**
+   * Creates a transmitter that blocks the sending to any recipient until the given latch is
+   * released.
+   */
+  private static ITransmitter createBlockingTransmitter(
+      final CountDownLatch sending, final CountDownLatch blocked) {
+    return new ITransmitter() {
+
+      @Override
+      public void send(String connectionID, JID recipient, PacketExtension extension)
+          throws IOException {
+
+        sending.countDown();
+
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      @Override
+      public void send(JID recipient, PacketExtension extension) throws IOException {
+        send(null, recipient, extension);
+      }
+
+      @Override
+      public void sendPacket(Packet packet) throws IOException {
+        // NOP
+      }
+
+      @Override
+      public void sendPacketExtension(JID jid, PacketExtension extension) {
+        // NOP
+      }
+    };
+  }
 }
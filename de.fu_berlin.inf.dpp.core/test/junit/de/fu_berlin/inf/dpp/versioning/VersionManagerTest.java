@@ -23,6 +23,8 @@ package de.fu_berlin.inf.dpp.versioning;
 
 import static org.junit.Assert.assertEquals;
 
+import de.fu_berlin.inf.dpp.misc.binary.ActivitiesCodec;
+import de.fu_berlin.inf.dpp.negotiation.stream.AbstractStreamProtocol;
 import de.fu_berlin.inf.dpp.net.IReceiver;
 import de.fu_berlin.inf.dpp.net.ITransmitter;
 import de.fu_berlin.inf.dpp.net.xmpp.JID;
@@ -171,4 +173,38 @@ public class VersionManagerTest {
 
     assertEquals(resultLocal.getCompatibility(), resultRemote.getCompatibility());
   }
+
+  @Test
+  public void testActivityCodecVersionExchange() {
+
+    Version version = Version.parseVersion("1.1.1.r1");
+
+    init(version, version);
+
+    assertEquals(0, versionManagerLocal.getActivityCodecVersion(bobJID));
+    assertEquals(0, versionManagerRemote.getActivityCodecVersion(aliceJID));
+
+    versionManagerLocal.determineVersionCompatibility(bobJID);
+
+    assertEquals(ActivitiesCodec.VERSION, versionManagerLocal.getActivityCodecVersion(bobJID));
+    assertEquals(ActivitiesCodec.VERSION, versionManagerRemote.getActivityCodecVersion(aliceJID));
+  }
+
+  @Test
+  public void testStreamProtocolVersionExchange() {
+
+    Version version = Version.parseVersion("1.1.1.r1");
+
+    init(version, version);
+
+    assertEquals(0, versionManagerLocal.getStreamProtocolVersion(bobJID));
+    assertEquals(0, versionManagerRemote.getStreamProtocolVersion(aliceJID));
+
+    versionManagerLocal.determineVersionCompatibility(bobJID);
+
+    assertEquals(
+        AbstractStreamProtocol.VERSION, versionManagerLocal.getStreamProtocolVersion(bobJID));
+    assertEquals(
+        AbstractStreamProtocol.VERSION, versionManagerRemote.getStreamProtocolVersion(aliceJID));
+  }
 }
@@ -10,8 +10,12 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.ScrollType;
 import com.intellij.openapi.editor.VisualPosition;
 import com.intellij.openapi.project.Project;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.DeleteOperation;
+import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.ITextOperation;
 import de.fu_berlin.inf.dpp.intellij.editor.colorstorage.ColorModel;
 import de.fu_berlin.inf.dpp.intellij.filesystem.Filesystem;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * IntellJ editor API. An Editor is a window for editing source files.
@@ -56,35 +60,67 @@ public class EditorAPI {
   }
 
   /**
-   * Inserts text at the given position inside the UI thread.
+   * Applies the given text operations to the document inside the UI thread. All operations are
+   * applied in one write action and one command, so they form a single undo unit. Consecutive
+   * commands with the same group id are merged into one undo unit as well.
    *
-   * @param doc
-   * @param position
-   * @param text
+   * <p>If the document is read-only, it is made writable while the operations are applied.
+   *
+   * @param doc the document to change
+   * @param operations the operations to apply in the given order
+   * @param groupId the command group id to use or <code>null</code> to use the current one
+   * @return the time in nanoseconds spent applying the operations in the UI thread
    */
-  public void insertText(final Document doc, final int position, final String text) {
+  public long applyTextOperations(
+      final Document doc, final List<ITextOperation> operations, final Object groupId) {
+
+    final AtomicLong duration = new AtomicLong();
 
     Runnable action =
         new Runnable() {
           @Override
           public void run() {
-            commandProcessor.executeCommand(
-                project,
-                new Runnable() {
-
-                  @Override
-                  public void run() {
-                    doc.insertString(position, text);
-                  }
-                },
-                "Saros text insertion at index " + position + " of \"" + text + "\"",
-                commandProcessor.getCurrentCommandGroupId(),
-                UndoConfirmationPolicy.REQUEST_CONFIRMATION,
-                doc);
+            final long start = System.nanoTime();
+
+            final boolean writePermission = doc.isWritable();
+
+            if (!writePermission) {
+              doc.setReadOnly(false);
+            }
+
+            try {
+              commandProcessor.executeCommand(
+                  project,
+                  new Runnable() {
+
+                    @Override
+                    public void run() {
+                      for (ITextOperation op : operations) {
+                        if (op instanceof DeleteOperation) {
+                          doc.deleteString(op.getPosition(), op.getPosition() + op.getTextLength());
+                        } else {
+                          doc.insertString(op.getPosition(), op.getText());
+                        }
+                      }
+                    }
+                  },
+                  "Saros text edit of " + operations.size() + " operation(s)",
+                  groupId != null ? groupId : commandProcessor.getCurrentCommandGroupId(),
+                  UndoConfirmationPolicy.REQUEST_CONFIRMATION,
+                  doc);
+            } finally {
+              if (!writePermission) {
+                doc.setReadOnly(true);
+              }
+
+              duration.set(System.nanoTime() - start);
+            }
           }
         };
 
     Filesystem.runWriteAction(action, ModalityState.defaultModalityState());
+
+    return duration.get();
   }
 
   /**
@@ -117,37 +153,6 @@ public class EditorAPI {
     Filesystem.runWriteAction(action, ModalityState.defaultModalityState());
   }
 
-  /**
-   * Deletes text in document in the specified range in the UI thread.
-   *
-   * @param doc
-   * @param start
-   * @param end
-   */
-  public void deleteText(final Document doc, final int start, final int end) {
-    Runnable action =
-        new Runnable() {
-          @Override
-          public void run() {
-            commandProcessor.executeCommand(
-                project,
-                new Runnable() {
-
-                  @Override
-                  public void run() {
-                    doc.deleteString(start, end);
-                  }
-                },
-                "Saros text deletion from index " + start + " to " + end,
-                commandProcessor.getCurrentCommandGroupId(),
-                UndoConfirmationPolicy.REQUEST_CONFIRMATION,
-                doc);
-          }
-        };
-
-    Filesystem.runWriteAction(action, ModalityState.defaultModalityState());
-  }
-
   /**
    * Sets text selection in editor inside the UI thread.
    *
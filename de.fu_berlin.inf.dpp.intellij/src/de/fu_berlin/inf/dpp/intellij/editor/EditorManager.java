@@ -33,6 +33,7 @@ import de.fu_berlin.inf.dpp.intellij.editor.annotations.AnnotationDocumentListen
 import de.fu_berlin.inf.dpp.intellij.editor.annotations.AnnotationManager;
 import de.fu_berlin.inf.dpp.intellij.filesystem.Filesystem;
 import de.fu_berlin.inf.dpp.intellij.filesystem.VirtualFileConverter;
+import de.fu_berlin.inf.dpp.intellij.runtime.IntelliJSynchronizer;
 import de.fu_berlin.inf.dpp.intellij.ui.util.NotificationPanel;
 import de.fu_berlin.inf.dpp.observables.FileReplacementInProgressObservable;
 import de.fu_berlin.inf.dpp.session.AbstractActivityConsumer;
@@ -47,7 +48,11 @@ import de.fu_berlin.inf.dpp.session.ISessionListener;
 import de.fu_berlin.inf.dpp.session.SessionEndReason;
 import de.fu_berlin.inf.dpp.session.User;
 import de.fu_berlin.inf.dpp.synchronize.Blockable;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -89,6 +94,30 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
         }
       };
 
+  /**
+   * Applies the pending remote text edits before any other activity is executed. As a passive
+   * consumer it is notified before the active consumers.
+   */
+  private final IActivityConsumer remoteEditBatchTerminator =
+      new IActivityConsumer() {
+        @Override
+        public void exec(IActivity activity) {
+          if (!(activity instanceof TextEditActivity)) applyPendingTextEdits();
+        }
+      };
+
+  /**
+   * Applies the pending remote text edits at the end of the UI thread task that executed them, i.e.
+   * at the end of the activity batch that was drained from the activity dispatcher.
+   */
+  private final Runnable remoteEditBatchCompletion =
+      new Runnable() {
+        @Override
+        public void run() {
+          applyPendingTextEdits();
+        }
+      };
+
   private final IActivityConsumer consumer =
       new AbstractActivityConsumer() {
 
@@ -166,61 +195,11 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
 
           LOG.debug(path + " text edit activity received " + editorActivity);
 
-          User user = editorActivity.getSource();
-
-          Operation operation = editorActivity.toOperation();
-
-          localEditorManipulator.applyTextOperations(path, operation);
+          pendingTextEdits.add(editorActivity);
 
-          adjustAnnotationsAfterEdit(user, path.getFile(), editorPool.getEditor(path), operation);
-
-          editorListenerDispatch.textEdited(editorActivity);
-        }
-
-        /**
-         * Adjusts the currently present notifications.
-         *
-         * <p>
-         *
-         * <p>If the given operation is an <code>InsertOperation</code>, a <code>
-         * ContributionAnnotation</code> is added for the inserted text and all existing annotations
-         * for the file are adjusted through {@link
-         * AnnotationManager#moveAnnotationsAfterAddition(IFile, int, int)}.
-         *
-         * <p>If the given operation is a <code>DeleteOperation</code>, all existing annotations for
-         * the file are adjusted through {@link
-         * AnnotationManager#moveAnnotationsAfterDeletion(IFile, int, int)}.
-         *
-         * @param user the user for the given operation
-         * @param file the file for the given operation
-         * @param editor the editor for the given file
-         * @param operations the received operation
-         */
-        private void adjustAnnotationsAfterEdit(
-            @NotNull User user,
-            @NotNull IFile file,
-            @Nullable Editor editor,
-            @NotNull Operation operations) {
-
-          operations
-              .getTextOperations()
-              .forEach(
-                  textOperation -> {
-                    int start = textOperation.getPosition();
-                    int end = textOperation.getPosition() + textOperation.getTextLength();
-
-                    if (textOperation instanceof InsertOperation) {
-                      if (editor == null) {
-                        annotationManager.moveAnnotationsAfterAddition(file, start, end);
-                      }
-
-                      annotationManager.addContributionAnnotation(user, file, start, end, editor);
-
-                    } else if (textOperation instanceof DeleteOperation && editor == null) {
-
-                      annotationManager.moveAnnotationsAfterDeletion(file, start, end);
-                    }
-                  });
+          if (!ApplicationManager.getApplication().isDispatchThread()) {
+            applyPendingTextEdits();
+          }
         }
 
         private void execTextSelection(TextSelectionActivity selection) {
@@ -363,6 +342,97 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
     selectedEditorState.applyCapturedState();
   }
 
+  /**
+   * Applies the pending remote text edits. The edits of each document are applied in one write
+   * action. Afterwards the annotations are adjusted and the listeners are notified for each edit in
+   * the order the edits were received.
+   */
+  private void applyPendingTextEdits() {
+    if (pendingTextEdits.isEmpty()) return;
+
+    final List<TextEditActivity> edits = new ArrayList<TextEditActivity>(pendingTextEdits);
+    final List<Operation> operations = new ArrayList<Operation>(edits.size());
+
+    pendingTextEdits.clear();
+
+    final Map<SPath, List<Operation>> operationsByPath =
+        new LinkedHashMap<SPath, List<Operation>>();
+
+    for (TextEditActivity edit : edits) {
+      final Operation operation = edit.toOperation();
+
+      operations.add(operation);
+
+      List<Operation> pathOperations = operationsByPath.get(edit.getPath());
+
+      if (pathOperations == null) {
+        pathOperations = new ArrayList<Operation>();
+        operationsByPath.put(edit.getPath(), pathOperations);
+      }
+
+      pathOperations.add(operation);
+    }
+
+    for (Map.Entry<SPath, List<Operation>> entry : operationsByPath.entrySet())
+      localEditorManipulator.applyTextOperations(entry.getKey(), entry.getValue());
+
+    for (int i = 0; i < edits.size(); i++) {
+      final TextEditActivity edit = edits.get(i);
+      final SPath path = edit.getPath();
+
+      adjustAnnotationsAfterEdit(
+          edit.getSource(), path.getFile(), editorPool.getEditor(path), operations.get(i));
+
+      editorListenerDispatch.textEdited(edit);
+    }
+  }
+
+  /**
+   * Adjusts the currently present notifications.
+   *
+   * <p>
+   *
+   * <p>If the given operation is an <code>InsertOperation</code>, a <code>
+   * ContributionAnnotation</code> is added for the inserted text and all existing annotations for
+   * the file are adjusted through {@link AnnotationManager#moveAnnotationsAfterAddition(IFile, int,
+   * int)}.
+   *
+   * <p>If the given operation is a <code>DeleteOperation</code>, all existing annotations for the
+   * file are adjusted through {@link AnnotationManager#moveAnnotationsAfterDeletion(IFile, int,
+   * int)}.
+   *
+   * @param user the user for the given operation
+   * @param file the file for the given operation
+   * @param editor the editor for the given file
+   * @param operations the received operation
+   */
+  private void adjustAnnotationsAfterEdit(
+      @NotNull User user,
+      @NotNull IFile file,
+      @Nullable Editor editor,
+      @NotNull Operation operations) {
+
+    operations
+        .getTextOperations()
+        .forEach(
+            textOperation -> {
+              int start = textOperation.getPosition();
+              int end = textOperation.getPosition() + textOperation.getTextLength();
+
+              if (textOperation instanceof InsertOperation) {
+                if (editor == null) {
+                  annotationManager.moveAnnotationsAfterAddition(file, start, end);
+                }
+
+                annotationManager.addContributionAnnotation(user, file, start, end, editor);
+
+              } else if (textOperation instanceof DeleteOperation && editor == null) {
+
+                annotationManager.moveAnnotationsAfterDeletion(file, start, end);
+              }
+            });
+  }
+
   private final ISessionLifecycleListener sessionLifecycleListener =
       new ISessionLifecycleListener() {
 
@@ -397,6 +467,9 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
 
           session.addActivityProducer(EditorManager.this);
           session.addActivityConsumer(consumer, Priority.ACTIVE);
+          session.addActivityConsumer(remoteEditBatchTerminator, Priority.PASSIVE);
+
+          synchronizer.addCompletionHook(remoteEditBatchCompletion);
 
           documentListener.setEnabled(true);
           annotationDocumentListener.setEnabled(true);
@@ -410,6 +483,10 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
         }
 
         private void endSession() {
+          synchronizer.removeCompletionHook(remoteEditBatchCompletion);
+
+          applyPendingTextEdits();
+
           annotationManager.removeAllAnnotations();
 
           setFollowing(null);
@@ -422,6 +499,7 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
           session.removeListener(sessionListener);
           session.removeActivityProducer(EditorManager.this);
           session.removeActivityConsumer(consumer);
+          session.removeActivityConsumer(remoteEditBatchTerminator);
 
           documentListener.setEnabled(false);
           annotationDocumentListener.setEnabled(false);
@@ -440,8 +518,16 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
   private final AnnotationManager annotationManager;
   private final FileReplacementInProgressObservable fileReplacementInProgressObservable;
 
+  private final IntelliJSynchronizer synchronizer;
+
   private final EditorPool editorPool = new EditorPool();
 
+  /**
+   * The remote text edits that were received during the current UI thread task but are not applied
+   * yet, see {@link #applyPendingTextEdits()}. Only accessed from the UI thread.
+   */
+  private final List<TextEditActivity> pendingTextEdits = new ArrayList<TextEditActivity>();
+
   private final SharedEditorListenerDispatch editorListenerDispatch =
       new SharedEditorListenerDispatch();
   private UserEditorStateManager userEditorStateManager;
@@ -470,13 +556,15 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
       LocalEditorManipulator localEditorManipulator,
       ProjectAPI projectAPI,
       AnnotationManager annotationManager,
-      FileReplacementInProgressObservable fileReplacementInProgressObservable) {
+      FileReplacementInProgressObservable fileReplacementInProgressObservable,
+      IntelliJSynchronizer synchronizer) {
 
     sessionManager.addSessionLifecycleListener(sessionLifecycleListener);
     this.localEditorHandler = localEditorHandler;
     this.localEditorManipulator = localEditorManipulator;
     this.annotationManager = annotationManager;
     this.fileReplacementInProgressObservable = fileReplacementInProgressObservable;
+    this.synchronizer = synchronizer;
 
     documentListener = new StoppableDocumentListener(this);
     annotationDocumentListener =
@@ -1,16 +1,21 @@
 package de.fu_berlin.inf.dpp.intellij.editor;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.vfs.VirtualFile;
 import de.fu_berlin.inf.dpp.activities.SPath;
 import de.fu_berlin.inf.dpp.concurrent.jupiter.Operation;
-import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.DeleteOperation;
 import de.fu_berlin.inf.dpp.concurrent.jupiter.internal.text.ITextOperation;
 import de.fu_berlin.inf.dpp.editor.text.LineRange;
 import de.fu_berlin.inf.dpp.editor.text.TextSelection;
 import de.fu_berlin.inf.dpp.intellij.filesystem.VirtualFileConverter;
 import de.fu_berlin.inf.dpp.intellij.session.SessionUtils;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 
 /** This class applies the logic for activities that were received from remote. */
@@ -18,6 +23,9 @@ public class LocalEditorManipulator {
 
   private static final Logger LOG = Logger.getLogger(LocalEditorManipulator.class);
 
+  /** Batches taking longer than this (in milliseconds) in the UI thread are logged. */
+  private static final long SLOW_BATCH_THRESHOLD = 50;
+
   private final ProjectAPI projectAPI;
   private final EditorAPI editorAPI;
 
@@ -26,6 +34,16 @@ public class LocalEditorManipulator {
 
   private EditorManager manager;
 
+  /** Command group ids of the remote edits per document, see {@link #getUndoGroup(Document)} */
+  private final Map<Document, Object> undoGroups = new HashMap<Document, Object>();
+
+  /* statistics about the time spent in the UI thread applying remote edits */
+  private long batchCount;
+  private long totalEditCount;
+  private long totalOperationCount;
+  private long totalBatchTime;
+  private long maxBatchTime;
+
   public LocalEditorManipulator(ProjectAPI projectAPI, EditorAPI editorAPI) {
     this.projectAPI = projectAPI;
     this.editorAPI = editorAPI;
@@ -132,12 +150,13 @@ public class LocalEditorManipulator {
   }
 
   /**
-   * Applies the text operations on the path and marks them in color.
+   * Applies the given operations in the given order on the document of the path. The text
+   * operations of all operations are applied in one write action and one command.
    *
-   * @param path
-   * @param operations
+   * @param path path of the document to change
+   * @param operations the operations of consecutive remote text edits of the document
    */
-  public void applyTextOperations(SPath path, Operation operations) {
+  public void applyTextOperations(SPath path, List<Operation> operations) {
     Document doc = editorPool.getDocument(path);
 
     /*
@@ -172,6 +191,12 @@ public class LocalEditorManipulator {
       }
     }
 
+    final List<ITextOperation> textOperations = new ArrayList<ITextOperation>();
+
+    for (Operation operation : operations) textOperations.addAll(operation.getTextOperations());
+
+    final long duration;
+
     try {
       /*
        * Disable documentListener temporarily to avoid being notified of
@@ -179,24 +204,94 @@ public class LocalEditorManipulator {
        */
       manager.disableDocumentListener();
 
-      for (ITextOperation op : operations.getTextOperations()) {
-        if (op instanceof DeleteOperation) {
-          editorAPI.deleteText(doc, op.getPosition(), op.getPosition() + op.getTextLength());
-        } else {
-          boolean writePermission = doc.isWritable();
-          if (!writePermission) {
-            doc.setReadOnly(false);
-          }
-          editorAPI.insertText(doc, op.getPosition(), op.getText());
-          if (!writePermission) {
-            doc.setReadOnly(true);
-          }
-        }
-      }
+      duration = editorAPI.applyTextOperations(doc, textOperations, getUndoGroup(doc));
 
     } finally {
       manager.enableDocumentListener();
     }
+
+    recordBatch(path, operations.size(), textOperations.size(), duration);
+  }
+
+  /**
+   * Returns the command group id for remote edits of the given document. All remote edits of a
+   * document that are executed during the same UI event, i.e. all edits of an activity batch
+   * drained from the activity dispatcher, use the same group id and are therefore merged into one
+   * undo unit.
+   */
+  private synchronized Object getUndoGroup(Document doc) {
+    if (undoGroups.isEmpty()) {
+      ApplicationManager.getApplication()
+          .invokeLater(
+              new Runnable() {
+                @Override
+                public void run() {
+                  synchronized (LocalEditorManipulator.this) {
+                    undoGroups.clear();
+                  }
+                }
+              });
+    }
+
+    Object group = undoGroups.get(doc);
+
+    if (group == null) {
+      group = new Object();
+      undoGroups.put(doc, group);
+    }
+
+    return group;
+  }
+
+  /**
+   * Records the time the UI thread was blocked while applying the remote edits of a document that
+   * were received in one activity batch.
+   */
+  private synchronized void recordBatch(
+      SPath path, int editCount, int operationCount, long duration) {
+    batchCount++;
+    totalEditCount += editCount;
+    totalOperationCount += operationCount;
+    totalBatchTime += duration;
+    maxBatchTime = Math.max(maxBatchTime, duration);
+
+    final long millis = TimeUnit.NANOSECONDS.toMillis(duration);
+
+    if (millis >= SLOW_BATCH_THRESHOLD) {
+      LOG.debug(
+          "applying "
+              + editCount
+              + " remote edit(s) with "
+              + operationCount
+              + " text operation(s) to "
+              + path
+              + " blocked the UI thread for "
+              + millis
+              + " ms");
+    }
+
+    if (LOG.isTraceEnabled()) {
+      LOG.trace(
+          "applied "
+              + editCount
+              + " remote edit(s) with "
+              + operationCount
+              + " text operation(s) to "
+              + path
+              + " in "
+              + TimeUnit.NANOSECONDS.toMicros(duration)
+              + " us, total: "
+              + batchCount
+              + " batches, "
+              + totalEditCount
+              + " edits, "
+              + totalOperationCount
+              + " operations, "
+              + TimeUnit.NANOSECONDS.toMillis(totalBatchTime)
+              + " ms, max: "
+              + TimeUnit.NANOSECONDS.toMicros(maxBatchTime)
+              + " us");
+    }
   }
 
   /**
@@ -4,13 +4,20 @@ import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import de.fu_berlin.inf.dpp.synchronize.UISynchronizer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Class implements the {@link UISynchronizer} with {@link Application#invokeLater(Runnable)} and
  * {@link Application#invokeAndWait(Runnable, ModalityState)}.
+ *
+ * <p>Components can register hooks that are run in the UI thread after each runnable executed by
+ * this synchronizer, e.g. to finish work that was collected while the runnable was executed.
  */
 public class IntelliJSynchronizer implements UISynchronizer {
 
+  private final List<Runnable> completionHooks = new CopyOnWriteArrayList<Runnable>();
+
   @Override
   public void asyncExec(Runnable runnable) {
     exec(runnable, true);
@@ -26,13 +33,38 @@ public class IntelliJSynchronizer implements UISynchronizer {
     return ApplicationManager.getApplication().isDispatchThread();
   }
 
-  private void exec(Runnable runnable, boolean async) {
+  /**
+   * Adds a hook that is run in the UI thread after every runnable executed by this synchronizer.
+   * The hook is run even if the runnable throws an exception.
+   */
+  public void addCompletionHook(Runnable hook) {
+    completionHooks.add(hook);
+  }
+
+  /** Removes the given hook, see {@link #addCompletionHook(Runnable)}. */
+  public void removeCompletionHook(Runnable hook) {
+    completionHooks.remove(hook);
+  }
+
+  private void exec(final Runnable runnable, boolean async) {
     Application application = ApplicationManager.getApplication();
 
+    final Runnable task =
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              runnable.run();
+            } finally {
+              for (Runnable hook : completionHooks) hook.run();
+            }
+          }
+        };
+
     if (async) {
-      application.invokeLater(runnable, ModalityState.defaultModalityState());
+      application.invokeLater(task, ModalityState.defaultModalityState());
     } else {
-      application.invokeAndWait(runnable, ModalityState.defaultModalityState());
+      application.invokeAndWait(task, ModalityState.defaultModalityState());
     }
   }
 }
@@ -0,0 +1,127 @@
+package de.fu_berlin.inf.dpp.server.editor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the document model of the server side {@link Editor}, the {@link Rope}, with the {@link
+ * GapBuffer} it replaced.
+ *
+ * <p>The edits are either made at a single position (one user typing) or alternately at several
+ * positions that are far apart (several users editing different parts of the file). Each edit
+ * inserts a character which is deleted again by the next edit at the same position, so the length
+ * of the document does not change during the benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentModelBenchmark {
+
+  private static final int EDITS = 100;
+
+  @Param({"10000", "1000000"})
+  public int length;
+
+  @Param({"1", "4"})
+  public int users;
+
+  private int[] offsets;
+
+  private GapBuffer gapBuffer;
+
+  private Rope rope;
+
+  private final char[] buffer = new char[8192];
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(42);
+    final StringBuilder text = new StringBuilder(length);
+
+    while (text.length() < length) {
+      for (int i = random.nextInt(80); i > 0 && text.length() < length; i--)
+        text.append((char) ('a' + random.nextInt(26)));
+
+      if (text.length() < length) text.append('\n');
+    }
+
+    offsets = new int[users];
+
+    for (int i = 0; i < users; i++) offsets[i] = (int) ((long) length * (2 * i + 1) / (2 * users));
+
+    gapBuffer = new GapBuffer(text.toString());
+    rope = Rope.of(text.toString());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EDITS)
+  public GapBuffer gapBufferEdit() {
+    for (int i = 0; i < EDITS; i++) {
+      final int offset = offsets[(i / 2) % users];
+
+      if (i % 2 == 0) gapBuffer.insert(offset, "x");
+      else gapBuffer.delete(offset, 1);
+    }
+
+    return gapBuffer;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EDITS)
+  public Rope ropeEdit() {
+    for (int i = 0; i < EDITS; i++) {
+      final int offset = offsets[(i / 2) % users];
+
+      if (i % 2 == 0) rope = rope.insert(offset, "x");
+      else rope = rope.delete(offset, 1);
+    }
+
+    return rope;
+  }
+
+  /** The content as needed by the consistency watchdog. */
+  @Benchmark
+  public String gapBufferToString() {
+    return gapBuffer.toString();
+  }
+
+  @Benchmark
+  public String ropeToString() {
+    return rope.toString();
+  }
+
+  /** The content as needed for saving, the rope does not have to create a string. */
+  @Benchmark
+  public int ropeRead() throws IOException {
+    int count = 0;
+
+    try (Reader reader = rope.newReader()) {
+      for (int read; (read = reader.read(buffer)) != -1; ) count += read;
+    }
+
+    return count;
+  }
+
+  @Benchmark
+  public int ropeTextHashCode() {
+    return rope.textHashCode();
+  }
+}
@@ -1,6 +1,9 @@
 package de.fu_berlin.inf.dpp.server.editor;
 
-/** Gap buffer implementation used by {@link Editor} for performant text edits. */
+/**
+ * Gap buffer implementation that was used by {@link Editor} before it was replaced by {@link Rope}.
+ * Kept as the baseline of the {@link DocumentModelBenchmark}.
+ */
 public class GapBuffer {
   // Buffer
   private char[] content;
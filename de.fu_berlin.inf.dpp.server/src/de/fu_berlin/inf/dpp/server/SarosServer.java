@@ -1,17 +1,25 @@
 package de.fu_berlin.inf.dpp.server;
 
 import de.fu_berlin.inf.dpp.server.console.ServerConsole;
+import de.fu_berlin.inf.dpp.server.console.SessionsCommand;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
-/** The entry point for the Saros server. */
+/**
+ * The entry point for the Saros server. The server runs one {@link ServerInstance} for every
+ * configured XMPP account (see {@link ServerConfig#getInstances()}), so one server process can host
+ * several sessions concurrently.
+ */
 public class SarosServer {
 
   private static final Logger LOG = Logger.getLogger(SarosServer.class);
   private static final String LOGGING_CONFIG_FILE = "/log4j.properties";
 
-  private ServerLifecycle lifecycle;
+  private final List<ServerInstance> instances = new ArrayList<ServerInstance>();
 
   /** The Saros server's version. */
   // FIXME move to META-INF or config file
@@ -19,7 +27,8 @@ public class SarosServer {
 
   /** Initializes and starts a Saros server. */
   public SarosServer() {
-    lifecycle = new ServerLifecycle();
+    for (ServerInstanceConfig config : ServerConfig.getInstances())
+      instances.add(new ServerInstance(config));
   }
 
   public void start() {
@@ -28,15 +37,21 @@ public class SarosServer {
     URL log4jProperties = SarosServer.class.getResource(LOGGING_CONFIG_FILE);
     PropertyConfigurator.configure(log4jProperties);
 
-    lifecycle.start();
+    for (ServerInstance instance : instances) instance.start();
   }
 
   public void initConsole(ServerConsole console) {
-    // no commands (yet) to register
+    console.registerCommand(new SessionsCommand(Collections.unmodifiableList(instances)));
   }
 
   public void stop() {
-    lifecycle.stop();
+    for (ServerInstance instance : instances) {
+      try {
+        instance.stop();
+      } catch (RuntimeException e) {
+        LOG.error("could not stop server instance " + instance.getName(), e);
+      }
+    }
   }
 
   /**
@@ -1,5 +1,11 @@
 package de.fu_berlin.inf.dpp.server;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * A facade for accessing the configuration properties that were passed to the Saros server on
  * startup.
@@ -9,7 +15,23 @@ public class ServerConfig {
   private static final String JID_KEY = "de.fu_berlin.inf.dpp.server.jid";
   private static final String PASSWORD_KEY = "de.fu_berlin.inf.dpp.server.password";
   private static final String WORKSPACE_PATH_KEY = "de.fu_berlin.inf.dpp.server.workspace";
+  private static final String INSTANCES_KEY = "de.fu_berlin.inf.dpp.server.instances";
+  private static final String INSTANCE_KEY_PREFIX = "de.fu_berlin.inf.dpp.server.instance.";
+  private static final String INSTANCE_JID_SUFFIX = ".jid";
+  private static final String INSTANCE_PASSWORD_SUFFIX = ".password";
+  private static final String INSTANCE_WORKSPACE_PATH_SUFFIX = ".workspace";
+  private static final String DEFAULT_INSTANCE_NAME = "default";
   private static final String INTERACTIVE_KEY = "de.fu_berlin.inf.dpp.server.interactive";
+  private static final String EDITOR_FLUSH_INTERVAL_KEY =
+      "de.fu_berlin.inf.dpp.server.editor.flushInterval";
+  private static final String EDITOR_FLUSH_THRESHOLD_KEY =
+      "de.fu_berlin.inf.dpp.server.editor.flushThreshold";
+  private static final String EDITOR_CACHE_SIZE_KEY =
+      "de.fu_berlin.inf.dpp.server.editor.cacheSize";
+
+  private static final long DEFAULT_EDITOR_FLUSH_INTERVAL = 2000;
+  private static final long DEFAULT_EDITOR_FLUSH_THRESHOLD = 64 * 1024;
+  private static final long DEFAULT_EDITOR_CACHE_SIZE = 16 * 1024 * 1024;
 
   /**
    * Returns the JID that the Saros server should use to connect to the XMPP network.
@@ -41,6 +63,51 @@ public class ServerConfig {
     return System.getProperty(WORKSPACE_PATH_KEY);
   }
 
+  /**
+   * Returns the configurations of the server instances to run. Every instance connects with its own
+   * JID, hosts its own session and uses its own workspace.
+   *
+   * <p>The instances are listed by name, separated by commas, in the property <code>
+   * de.fu_berlin.inf.dpp.server.instances</code>. The JID, password and workspace path of an
+   * instance <code>name</code> are read from the properties <code>
+   * de.fu_berlin.inf.dpp.server.instance.name.jid</code>, <code>....password</code> and <code>
+   * ....workspace</code>. If no instances are listed, a single instance named <code>default</code>
+   * is configured by {@link #getJID()}, {@link #getPassword()} and {@link #getWorkspacePath()}.
+   *
+   * @return the configurations of the instances, never empty
+   */
+  public static List<ServerInstanceConfig> getInstances() {
+    final String names = System.getProperty(INSTANCES_KEY);
+
+    final Set<String> instanceNames = new LinkedHashSet<String>();
+
+    if (names != null) {
+      for (String name : names.split(",")) {
+        if (!name.trim().isEmpty()) instanceNames.add(name.trim());
+      }
+    }
+
+    if (instanceNames.isEmpty())
+      return Collections.singletonList(
+          new ServerInstanceConfig(
+              DEFAULT_INSTANCE_NAME, getJID(), getPassword(), getWorkspacePath()));
+
+    final List<ServerInstanceConfig> instances = new ArrayList<ServerInstanceConfig>();
+
+    for (String name : instanceNames) {
+      final String prefix = INSTANCE_KEY_PREFIX + name;
+
+      instances.add(
+          new ServerInstanceConfig(
+              name,
+              System.getProperty(prefix + INSTANCE_JID_SUFFIX),
+              System.getProperty(prefix + INSTANCE_PASSWORD_SUFFIX),
+              System.getProperty(prefix + INSTANCE_WORKSPACE_PATH_SUFFIX)));
+    }
+
+    return instances;
+  }
+
   /**
    * Returns if the user has requested an interactive console.
    *
@@ -52,4 +119,34 @@ public class ServerConfig {
         || value.equalsIgnoreCase("yes")
         || value.equalsIgnoreCase("y");
   }
+
+  /**
+   * Returns the interval in milliseconds in which the content of editors with unsaved changes is
+   * written to disk.
+   *
+   * @return flush interval in milliseconds, defaults to 2000
+   */
+  public static long getEditorFlushInterval() {
+    return Long.getLong(EDITOR_FLUSH_INTERVAL_KEY, DEFAULT_EDITOR_FLUSH_INTERVAL);
+  }
+
+  /**
+   * Returns the number of changed characters after which the content of an editor is written to
+   * disk immediately instead of waiting for the next flush interval.
+   *
+   * @return flush threshold in characters, defaults to 65536
+   */
+  public static long getEditorFlushThreshold() {
+    return Long.getLong(EDITOR_FLUSH_THRESHOLD_KEY, DEFAULT_EDITOR_FLUSH_THRESHOLD);
+  }
+
+  /**
+   * Returns the maximum number of characters of all editors that are kept in memory. Editors which
+   * are open on the side of a session user are kept in memory regardless of this limit.
+   *
+   * @return cache size in characters, defaults to 16 Mi characters
+   */
+  public static long getEditorCacheSize() {
+    return Long.getLong(EDITOR_CACHE_SIZE_KEY, DEFAULT_EDITOR_CACHE_SIZE);
+  }
 }
@@ -36,11 +36,29 @@ import org.picocontainer.MutablePicoContainer;
  * Server implementation of {@link de.fu_berlin.inf.dpp.ISarosContextFactory}. In addition to the
  * core components configured in {@link SarosCoreContextFactory}, this class adds the
  * server-specific components such as implementations of unimplemented core interfaces.
+ *
+ * <p>Each server instance has its own context, which is configured by the {@link
+ * ServerInstanceConfig} of the instance.
  */
 public class ServerContextFactory extends CoreContextFactory {
 
   private static final Logger LOG = Logger.getLogger(ServerContextFactory.class);
 
+  private final ServerInstanceConfig config;
+
+  private final ThreadGroup threadGroup;
+
+  /**
+   * Creates a ServerContextFactory for a server instance.
+   *
+   * @param config the configuration of the instance
+   * @param threadGroup the thread group of the instance
+   */
+  public ServerContextFactory(ServerInstanceConfig config, ThreadGroup threadGroup) {
+    this.config = config;
+    this.threadGroup = threadGroup;
+  }
+
   @Override
   public void createComponents(MutablePicoContainer c) {
     super.createComponents(c);
@@ -71,7 +89,9 @@ public class ServerContextFactory extends CoreContextFactory {
     // Other
     c.addComponent(IRemoteProgressIndicatorFactory.class, NullRemoteProgressIndicatorFactory.class);
 
-    c.addComponent(UISynchronizer.class, ServerUISynchronizerImpl.class);
+    c.addComponent(
+        UISynchronizer.class,
+        new ServerUISynchronizerImpl(threadGroup, "dpp-srv-exec-context-" + config.getName()));
   }
 
   /*
@@ -84,6 +104,7 @@ public class ServerContextFactory extends CoreContextFactory {
   }
 
   private void addAdditionalComponents(MutablePicoContainer c) {
+    c.addComponent(ServerInstanceConfig.class, config);
     // c.addComponent(JoinSessionRequestHandler.class);
     // c.addComponent(ServerFeatureAdvertiser.class);
     c.addComponent(SubscriptionAuthorizer.class);
@@ -91,7 +112,7 @@ public class ServerContextFactory extends CoreContextFactory {
   }
 
   private IWorkspace createWorkspace() {
-    String pathString = ServerConfig.getWorkspacePath();
+    String pathString = config.getWorkspacePath();
 
     if (pathString == null) {
       pathString = createTemporaryWorkspaceFolder();
@@ -105,7 +126,7 @@ public class ServerContextFactory extends CoreContextFactory {
     final Path folderPath;
 
     try {
-      folderPath = Files.createTempDirectory("saros-server-workspace");
+      folderPath = Files.createTempDirectory("saros-server-workspace-" + config.getName());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
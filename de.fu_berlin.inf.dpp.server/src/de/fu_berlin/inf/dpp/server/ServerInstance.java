@@ -0,0 +1,285 @@
+package de.fu_berlin.inf.dpp.server;
+
+import de.fu_berlin.inf.dpp.net.IConnectionManager;
+import de.fu_berlin.inf.dpp.net.ITransferListener;
+import de.fu_berlin.inf.dpp.net.stream.StreamMode;
+import de.fu_berlin.inf.dpp.server.editor.ServerEditorManager;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.session.ISarosSessionManager;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.log4j.Logger;
+
+/**
+ * A server instance, i.e. one XMPP account hosting one session in its own workspace. A server
+ * process can run several instances side by side, each with its own context and therefore its own
+ * components, executors and virtual UI thread.
+ *
+ * <p>All threads of an instance are started in a {@link ThreadGroup} of its own, which is used to
+ * account the resources consumed by the instance:
+ *
+ * <ul>
+ *   <li>the number of live threads and their CPU time,
+ *   <li>the number of bytes allocated by these threads (if supported by the JVM) and the number of
+ *       characters of the editors kept in memory, and
+ *   <li>the number of bytes sent and received by the {@link IConnectionManager}.
+ * </ul>
+ *
+ * All numbers are estimates: the thread group does not contain threads that were created by other
+ * instances or by the server itself on behalf of this instance, and the allocation and CPU time of
+ * threads that already terminated is not included.
+ */
+public class ServerInstance {
+
+  private static final Logger LOG = Logger.getLogger(ServerInstance.class);
+
+  private final ServerInstanceConfig config;
+
+  private final ThreadGroup threadGroup;
+
+  private final ServerLifecycle lifecycle;
+
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final AtomicLong bytesReceived = new AtomicLong();
+
+  private final ITransferListener transferListener =
+      new ITransferListener() {
+        @Override
+        public void sent(
+            StreamMode mode,
+            long sizeCompressed,
+            long sizeUncompressed,
+            long duration,
+            String codec) {
+          bytesSent.addAndGet(sizeCompressed);
+        }
+
+        @Override
+        public void received(
+            StreamMode mode,
+            long sizeCompressed,
+            long sizeUncompressed,
+            long duration,
+            String codec) {
+          bytesReceived.addAndGet(sizeCompressed);
+        }
+      };
+
+  private volatile boolean running;
+
+  /**
+   * Creates a ServerInstance. The instance is not started until {@link #start()} is called.
+   *
+   * @param config the configuration of the instance
+   */
+  public ServerInstance(ServerInstanceConfig config) {
+    this.config = config;
+    this.threadGroup = new ThreadGroup("dpp-srv-instance-" + config.getName());
+    this.lifecycle = new ServerLifecycle(config, threadGroup);
+  }
+
+  /**
+   * Returns the name of the instance.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return config.getName();
+  }
+
+  /**
+   * Starts the instance, i.e. creates its context, connects to the XMPP server and starts the
+   * session. The context is created by a thread of the instance's thread group, so all threads
+   * created by its components belong to this group, too. This method blocks until the instance is
+   * started.
+   */
+  public synchronized void start() {
+    if (running) return;
+
+    final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+    final Thread starter =
+        new Thread(
+            threadGroup,
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  lifecycle.start();
+                } catch (RuntimeException e) {
+                  failure.set(e);
+                }
+              }
+            },
+            "dpp-srv-start-" + config.getName());
+
+    starter.start();
+
+    try {
+      starter.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while starting instance " + getName(), e);
+    }
+
+    if (failure.get() != null) throw failure.get();
+
+    lifecycle
+        .getSarosContext()
+        .getComponent(IConnectionManager.class)
+        .addTransferListener(transferListener);
+
+    running = true;
+
+    LOG.info("started server instance " + config);
+  }
+
+  /** Stops the instance, i.e. stops its session, disconnects and disposes its context. */
+  public synchronized void stop() {
+    if (!running) return;
+
+    running = false;
+
+    lifecycle
+        .getSarosContext()
+        .getComponent(IConnectionManager.class)
+        .removeTransferListener(transferListener);
+
+    lifecycle.stop();
+
+    LOG.info("stopped server instance " + getName());
+  }
+
+  /**
+   * Returns whether the instance is running.
+   *
+   * @return <code>true</code> if the instance is started and not stopped yet
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Returns the number of users of the session of the instance.
+   *
+   * @return the number of session users including the host, or 0 if there is no session
+   */
+  public int getSessionUserCount() {
+    final ISarosSession session = getSession();
+
+    return session == null ? 0 : session.getUsers().size();
+  }
+
+  /**
+   * Returns the estimated number of live threads of the instance.
+   *
+   * @return the number of threads
+   */
+  public int getThreadCount() {
+    return getThreads().length;
+  }
+
+  /**
+   * Returns the CPU time that was consumed by the live threads of the instance.
+   *
+   * @return the CPU time in nanoseconds or -1 if not supported by the JVM
+   */
+  public long getCpuTime() {
+    final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    if (!threadBean.isThreadCpuTimeSupported() || !threadBean.isThreadCpuTimeEnabled()) return -1;
+
+    long cpuTime = 0;
+
+    for (Thread thread : getThreads())
+      cpuTime += Math.max(0, threadBean.getThreadCpuTime(thread.getId()));
+
+    return cpuTime;
+  }
+
+  /**
+   * Returns the number of bytes that were allocated on the heap by the live threads of the
+   * instance.
+   *
+   * @return the number of bytes or -1 if not supported by the JVM
+   */
+  public long getAllocatedBytes() {
+    final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return -1;
+
+    final com.sun.management.ThreadMXBean allocationBean =
+        (com.sun.management.ThreadMXBean) threadBean;
+
+    if (!allocationBean.isThreadAllocatedMemorySupported()
+        || !allocationBean.isThreadAllocatedMemoryEnabled()) return -1;
+
+    long allocated = 0;
+
+    for (Thread thread : getThreads())
+      allocated += Math.max(0, allocationBean.getThreadAllocatedBytes(thread.getId()));
+
+    return allocated;
+  }
+
+  /**
+   * Returns the number of characters of the editors of the session that are kept in memory.
+   *
+   * @return the number of characters, or 0 if there is no session
+   */
+  public long getEditorCharacters() {
+    final ISarosSession session = getSession();
+
+    if (session == null) return 0;
+
+    final ServerEditorManager editorManager = session.getComponent(ServerEditorManager.class);
+
+    return editorManager == null ? 0 : editorManager.getCachedCharacters();
+  }
+
+  /**
+   * Returns the number of bytes that were sent by the instance, as reported to the {@link
+   * ITransferListener transfer listeners} of the {@link IConnectionManager}.
+   *
+   * @return the number of bytes sent
+   */
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  /**
+   * Returns the number of bytes that were received by the instance, as reported to the {@link
+   * ITransferListener transfer listeners} of the {@link IConnectionManager}.
+   *
+   * @return the number of bytes received
+   */
+  public long getBytesReceived() {
+    return bytesReceived.get();
+  }
+
+  private Thread[] getThreads() {
+    // the array must be larger than the number of threads to be sure all threads were enumerated
+    Thread[] threads = new Thread[threadGroup.activeCount() + 8];
+
+    int count;
+
+    while ((count = threadGroup.enumerate(threads, true)) == threads.length)
+      threads = new Thread[threads.length * 2];
+
+    return Arrays.copyOf(threads, count);
+  }
+
+  private ISarosSession getSession() {
+    if (!running) return null;
+
+    try {
+      return lifecycle.getSarosContext().getComponent(ISarosSessionManager.class).getSession();
+    } catch (IllegalStateException e) {
+      // stopped concurrently
+      return null;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package de.fu_berlin.inf.dpp.server;
+
+/**
+ * The configuration of a single server instance, i.e. of one XMPP account hosting one session in
+ * its own workspace.
+ *
+ * @see ServerConfig#getInstances()
+ */
+public final class ServerInstanceConfig {
+
+  private final String name;
+  private final String jid;
+  private final String password;
+  private final String workspacePath;
+
+  /**
+   * Creates a ServerInstanceConfig.
+   *
+   * @param name the name of the instance
+   * @param jid the JID to connect to the XMPP network with, may be <code>null</code>
+   * @param password the password of the JID, may be <code>null</code>
+   * @param workspacePath the path of the workspace directory or <code>null</code> to use a
+   *     temporary directory
+   * @throws NullPointerException if name is <code>null</code>
+   */
+  public ServerInstanceConfig(String name, String jid, String password, String workspacePath) {
+    if (name == null) throw new NullPointerException("name is null");
+
+    this.name = name;
+    this.jid = jid;
+    this.password = password;
+    this.workspacePath = workspacePath;
+  }
+
+  /**
+   * Returns the name of the instance, which is used to tell the instances apart, e.g. in thread
+   * names and on the console.
+   *
+   * @return the name of the instance
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the JID that the instance should use to connect to the XMPP network.
+   *
+   * @return JID to use, or <code>null</code> if not specified
+   */
+  public String getJID() {
+    return jid;
+  }
+
+  /**
+   * Returns the password that the instance should use to authenticate with the XMPP server.
+   *
+   * @return password to use, or <code>null</code> if not specified
+   */
+  public String getPassword() {
+    return password;
+  }
+
+  /**
+   * Returns the path of the directory to use as the workspace of the instance.
+   *
+   * @return the path of the workspace directory to use, or <code>null</code> if a temporary
+   *     directory should be used
+   */
+  public String getWorkspacePath() {
+    return workspacePath;
+  }
+
+  @Override
+  public String toString() {
+    return "ServerInstanceConfig [name="
+        + name
+        + ", jid="
+        + jid
+        + ", workspace="
+        + workspacePath
+        + "]";
+  }
+}
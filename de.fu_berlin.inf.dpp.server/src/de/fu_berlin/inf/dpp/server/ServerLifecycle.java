@@ -17,14 +17,30 @@ import java.util.HashMap;
 import java.util.List;
 import org.apache.log4j.Logger;
 
+/** Creates and disposes the context of a single server instance. */
 public class ServerLifecycle extends AbstractContextLifecycle {
 
   private static final Logger log = Logger.getLogger(ServerLifecycle.class);
 
+  private final ServerInstanceConfig config;
+
+  private final ThreadGroup threadGroup;
+
+  /**
+   * Creates a ServerLifecycle.
+   *
+   * @param config the configuration of the instance
+   * @param threadGroup the thread group of the instance
+   */
+  public ServerLifecycle(ServerInstanceConfig config, ThreadGroup threadGroup) {
+    this.config = config;
+    this.threadGroup = threadGroup;
+  }
+
   @Override
   protected Collection<IContextFactory> additionalContextFactories() {
     List<IContextFactory> factories = new ArrayList<IContextFactory>();
-    factories.add(new ServerContextFactory());
+    factories.add(new ServerContextFactory(config, threadGroup));
     return factories;
   }
 
@@ -48,14 +64,18 @@ public class ServerLifecycle extends AbstractContextLifecycle {
    * the XMPP server and never gets disconnected. Of course this is unrealistic !
    */
   private void connectToXMPPServer(final ContainerContext context) {
-    String jidString = ServerConfig.getJID();
-    String password = ServerConfig.getPassword();
+    String jidString = config.getJID();
+    String password = config.getPassword();
 
     if (jidString == null || password == null) {
       log.fatal(
-          "XMPP credentials are missing! Pass the "
-              + "system properties de.fu_berlin.inf.dpp.server.jid and"
-              + "de.fu_berln.inf.dpp.server.password to the server");
+          "XMPP credentials of instance "
+              + config.getName()
+              + " are missing! Pass the "
+              + "system properties de.fu_berlin.inf.dpp.server.jid and "
+              + "de.fu_berlin.inf.dpp.server.password (or de.fu_berlin.inf.dpp.server.instance."
+              + config.getName()
+              + ".jid and .password) to the server");
       stop();
       System.exit(1);
     }
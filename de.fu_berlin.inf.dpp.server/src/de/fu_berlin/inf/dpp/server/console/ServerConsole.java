@@ -48,13 +48,18 @@ public class ServerConsole implements Runnable {
         output.println("help - Print this help");
         output.println("quit - Quit Saros Server");
       } else {
+        boolean executed = false;
+
         for (ConsoleCommand command : commands) {
           if (command.matches(line)) {
             command.execute(line, output);
+            executed = true;
             break;
           }
         }
-        output.printf("Command '%s' is not known. (Type 'help' for available commands)", line);
+
+        if (!executed)
+          output.printf("Command '%s' is not known. (Type 'help' for available commands)%n", line);
       }
     }
   }
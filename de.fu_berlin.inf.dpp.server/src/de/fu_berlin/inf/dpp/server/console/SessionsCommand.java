@@ -0,0 +1,73 @@
+package de.fu_berlin.inf.dpp.server.console;
+
+import de.fu_berlin.inf.dpp.server.ServerInstance;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Prints the sessions hosted by the server and the resources used by each of them, see {@link
+ * ServerInstance}.
+ */
+public class SessionsCommand extends ConsoleCommand {
+
+  private final List<ServerInstance> instances;
+
+  /**
+   * Creates a SessionsCommand.
+   *
+   * @param instances the instances of the server
+   */
+  public SessionsCommand(List<ServerInstance> instances) {
+    this.instances = instances;
+  }
+
+  @Override
+  public String identifier() {
+    return "sessions";
+  }
+
+  @Override
+  public String help() {
+    return "sessions - Print the hosted sessions and their thread, memory and bandwidth usage";
+  }
+
+  @Override
+  public void execute(String command, PrintStream out) {
+    out.printf(
+        "%-16s %-8s %5s %8s %10s %12s %12s %12s %12s%n",
+        "INSTANCE", "STATE", "USERS", "THREADS", "CPU", "ALLOCATED", "EDITORS", "SENT", "RECEIVED");
+
+    for (ServerInstance instance : instances) {
+      out.printf(
+          "%-16s %-8s %5d %8d %10s %12s %12s %12s %12s%n",
+          instance.getName(),
+          instance.isRunning() ? "running" : "stopped",
+          instance.getSessionUserCount(),
+          instance.getThreadCount(),
+          formatTime(instance.getCpuTime()),
+          formatBytes(instance.getAllocatedBytes()),
+          // the editors store their content as Java strings
+          formatBytes(instance.getEditorCharacters() * 2),
+          formatBytes(instance.getBytesSent()),
+          formatBytes(instance.getBytesReceived()));
+    }
+  }
+
+  static String formatTime(long nanos) {
+    if (nanos < 0) return "n/a";
+
+    return String.format("%.1f s", nanos / 1e9);
+  }
+
+  static String formatBytes(long bytes) {
+    if (bytes < 0) return "n/a";
+
+    if (bytes < 1024) return bytes + " B";
+
+    if (bytes < 1024 * 1024) return String.format("%.1f KiB", bytes / 1024.0);
+
+    if (bytes < 1024L * 1024 * 1024) return String.format("%.1f MiB", bytes / (1024.0 * 1024));
+
+    return String.format("%.1f GiB", bytes / (1024.0 * 1024 * 1024));
+  }
+}
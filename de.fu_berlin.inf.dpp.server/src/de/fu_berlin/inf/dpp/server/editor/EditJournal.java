@@ -0,0 +1,234 @@
+package de.fu_berlin.inf.dpp.server.editor;
+
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import org.apache.log4j.Logger;
+
+/**
+ * Append-only journal of the text edits that were applied to an {@link Editor} since its content
+ * was last written to disk. If the server terminates before the editor is saved, the edits are
+ * replayed the next time an editor for the same file is created.
+ *
+ * <p>The journal starts with a header describing the file content the edits are based on (its
+ * length and {@linkplain String#hashCode() hash code}), so edits are never replayed onto content
+ * that was changed by other means. Every edit is stored as a record protected by a CRC32 checksum;
+ * replaying stops at the first incomplete or corrupted record, which is the record that was being
+ * written when the server terminated.
+ *
+ * <p>Records are handed to the operating system before the edit is applied, but are not forced to
+ * the storage device, i.e. the journal survives a crash of the server process but not necessarily a
+ * crash of the operating system.
+ *
+ * <p>This class is <b>not</b> thread safe.
+ */
+class EditJournal {
+
+  private static final Logger LOG = Logger.getLogger(EditJournal.class);
+
+  private static final int MAGIC = 0x534a524e; // SJRN
+
+  private static final int HEADER_SIZE = 12;
+
+  private final Path path;
+
+  private FileChannel channel;
+
+  /**
+   * Creates an EditJournal that is stored in the given file. The file is not created until the
+   * journal is {@linkplain #open opened}.
+   *
+   * @param path the location of the journal file
+   */
+  EditJournal(Path path) {
+    this.path = path;
+  }
+
+  /**
+   * Creates a new, empty journal for the given base content, replacing an existing journal.
+   *
+   * @param baseLength the length of the content the following edits are applied to
+   * @param baseHash the {@linkplain String#hashCode() hash code} of this content
+   * @throws IOException if the journal file could not be created
+   */
+  void open(int baseLength, int baseHash) throws IOException {
+    close();
+
+    Files.createDirectories(path.getParent());
+
+    channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(baseLength).putInt(baseHash).flip();
+
+    write(header);
+  }
+
+  /**
+   * Returns whether the journal is open, i.e. whether edits can be appended.
+   *
+   * @return <code>true</code> if the journal is open
+   */
+  boolean isOpen() {
+    return channel != null;
+  }
+
+  /**
+   * Appends the given edit to the journal.
+   *
+   * @param edit the edit to append
+   * @throws IOException if writing the record fails
+   * @throws IllegalStateException if the journal is not open
+   */
+  void append(TextEditActivity edit) throws IOException {
+    if (channel == null) throw new IllegalStateException("journal is not open: " + path);
+
+    final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+    try (DataOutputStream out = new DataOutputStream(payload)) {
+      out.writeInt(edit.getOffset());
+      writeString(out, edit.getReplacedText());
+      writeString(out, edit.getText());
+    }
+
+    final byte[] data = payload.toByteArray();
+
+    final CRC32 crc = new CRC32();
+    crc.update(data);
+
+    final ByteBuffer record = ByteBuffer.allocate(8 + data.length);
+    record.putInt(data.length).putInt((int) crc.getValue()).put(data).flip();
+
+    write(record);
+  }
+
+  /** Closes the journal file without deleting it. */
+  void close() {
+    if (channel == null) return;
+
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOG.warn("could not close edit journal " + path, e);
+    } finally {
+      channel = null;
+    }
+  }
+
+  /**
+   * Closes and deletes the journal file.
+   *
+   * @throws IOException if the journal file could not be deleted
+   */
+  void delete() throws IOException {
+    close();
+    Files.deleteIfExists(path);
+  }
+
+  /**
+   * Replays the edits of the journal onto the given content.
+   *
+   * @param content the current content of the file on disk
+   * @return the content with all recoverable edits applied, or <code>null</code> if there is no
+   *     journal, it contains no edits, or it does not belong to the given content
+   * @throws IOException if reading the journal fails
+   */
+  String replay(String content) throws IOException {
+    final InputStream stream;
+
+    try {
+      stream = Files.newInputStream(path);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(stream)) {
+      if (in.readInt() != MAGIC || in.readInt() != content.length()) return null;
+
+      if (in.readInt() != content.hashCode()) return null;
+
+      Rope rope = Rope.of(content);
+      final long size = Files.size(path);
+
+      int edits = 0;
+
+      while (true) {
+        final byte[] data;
+
+        try {
+          final int length = in.readInt();
+          final int checksum = in.readInt();
+
+          if (length < 0 || length > size) break;
+
+          data = new byte[length];
+          in.readFully(data);
+
+          final CRC32 crc = new CRC32();
+          crc.update(data);
+
+          if ((int) crc.getValue() != checksum) break;
+
+        } catch (EOFException e) {
+          break;
+        }
+
+        final DataInputStream record = new DataInputStream(new ByteArrayInputStream(data));
+
+        final int offset = record.readInt();
+        final String replacedText = readString(record);
+        final String text = readString(record);
+
+        if (offset < 0 || offset + replacedText.length() > rope.length()) break;
+
+        rope = rope.delete(offset, replacedText.length()).insert(offset, text);
+
+        edits++;
+      }
+
+      if (edits == 0) return null;
+
+      LOG.info("recovered " + edits + " unsaved edit(s) from journal " + path);
+
+      return rope.toString();
+
+    } catch (EOFException e) {
+      // incomplete header
+      return null;
+    }
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) channel.write(buffer);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
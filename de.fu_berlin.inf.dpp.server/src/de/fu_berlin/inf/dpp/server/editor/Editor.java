@@ -4,19 +4,95 @@ import de.fu_berlin.inf.dpp.activities.TextEditActivity;
 import de.fu_berlin.inf.dpp.filesystem.IFile;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.log4j.Logger;
 
-/** Representation of an open file on the server. Used by {@link ServerEditorManager}. */
+/**
+ * Representation of an open file on the server. Used by {@link ServerEditorManager}.
+ *
+ * <p>The content is kept in an immutable {@link Rope}. Reading or saving the content only takes a
+ * snapshot of the rope while holding the lock of the editor, so edits are not blocked while the
+ * content is converted to a string or written to disk.
+ *
+ * <p>This class is thread safe.
+ */
 public class Editor {
 
+  private static final Logger LOG = Logger.getLogger(Editor.class);
+
   private IFile file;
-  private GapBuffer content;
+  private Rope content;
+
+  private final EditJournal journal;
+
+  /** Serializes the saves, which write the file without holding the lock of the editor. */
+  private final Object saveLock = new Object();
+
+  /** The length and hash code of the content as it was last read from or written to disk. */
+  private int savedLength;
+
+  private int savedHash;
+
+  /** The edits since the content was last written to disk. */
+  private List<TextEditActivity> unsavedEdits = new ArrayList<TextEditActivity>();
+
+  private long unsavedCharacters;
+
+  private boolean dirty;
+
+  /** Whether an unsaved edit could not be recorded in the journal. */
+  private boolean unjournaled;
+
+  private boolean closed;
 
   public Editor(IFile file) throws IOException {
+    this(file, null);
+  }
+
+  /**
+   * Creates an Editor whose unsaved edits are recorded in the given journal file. If the journal
+   * file contains edits from a previous run of the server that were never written to the file, they
+   * are applied and the recovered content is saved immediately.
+   *
+   * @param file the file of the editor
+   * @param journalFile the journal file or <code>null</code> if unsaved edits should not be
+   *     recorded
+   * @throws IOException if reading the file fails
+   */
+  public Editor(IFile file, Path journalFile) throws IOException {
     this.file = file;
 
+    final String savedContent;
+
     try (InputStream input = file.getContents()) {
-      content = new GapBuffer(IOUtils.toString(input));
+      savedContent = IOUtils.toString(input);
+    }
+
+    content = Rope.of(savedContent);
+    savedLength = savedContent.length();
+    savedHash = savedContent.hashCode();
+
+    journal = journalFile != null ? new EditJournal(journalFile) : null;
+
+    if (journal == null) return;
+
+    String recoveredContent = null;
+
+    try {
+      recoveredContent = journal.replay(savedContent);
+    } catch (IOException e) {
+      LOG.warn("could not read edit journal of " + file + ", discarding it", e);
+    }
+
+    if (recoveredContent != null) {
+      content = Rope.of(recoveredContent);
+      save();
+    } else {
+      journal.delete();
     }
   }
 
@@ -36,23 +112,97 @@ public class Editor {
    * @return editor's content
    */
   public String getContent() {
-    return content.toString();
+    return getSnapshot().toString();
+  }
+
+  /**
+   * Returns the editor's current text content. The returned rope is not affected by subsequent
+   * edits.
+   *
+   * @return snapshot of the editor's content
+   */
+  public synchronized Rope getSnapshot() {
+    return content;
   }
 
   /**
    * Applies an editing operation to the editor's content. For performance reasons, the change is
    * not automatically saved to disk; this allows multiple edits to be collected and then written in
-   * one go (by calling {@link #save}).
+   * one go (by calling {@link #save}). If the editor has a journal, the edit is recorded in the
+   * journal before it is applied. Should this fail, {@link #hasUnjournaledChanges()} returns <code>
+   * true</code> and the editor should be saved immediately.
    *
    * @param edit the text edit operation to apply
+   * @return <code>true</code> if the edit was applied, <code>false</code> if the editor was already
+   *     closed, in which case a new editor must be created for the file
    */
-  public void applyTextEdit(TextEditActivity edit) {
-    if (edit.getReplacedText().length() > 0) {
-      content.delete(edit.getOffset(), edit.getReplacedText().length());
-    }
-    if (edit.getText().length() > 0) {
-      content.insert(edit.getOffset(), edit.getText());
+  public synchronized boolean applyTextEdit(TextEditActivity edit) {
+    if (closed) return false;
+
+    /*
+     * Once an edit is missing in the journal, the following edits must not
+     * be recorded either, as replaying them would yield a wrong content.
+     */
+    if (journal != null && !unjournaled) {
+      try {
+        if (!journal.isOpen()) journal.open(savedLength, savedHash);
+
+        journal.append(edit);
+      } catch (IOException e) {
+        LOG.warn("could not record edit in journal of " + file, e);
+        journal.close();
+        unjournaled = true;
+      }
     }
+
+    content =
+        content
+            .delete(edit.getOffset(), edit.getReplacedText().length())
+            .insert(edit.getOffset(), edit.getText());
+
+    unsavedEdits.add(edit);
+    unsavedCharacters += getLength(edit);
+    dirty = true;
+
+    return true;
+  }
+
+  /**
+   * Returns whether the editor contains unsaved changes that were not recorded in its journal and
+   * would be lost if the server terminates.
+   *
+   * @return <code>true</code> if the editor should be saved immediately
+   */
+  public synchronized boolean hasUnjournaledChanges() {
+    return unjournaled;
+  }
+
+  /**
+   * Returns the length of the editor's content.
+   *
+   * @return the number of characters of the content
+   */
+  public synchronized int getLength() {
+    return content.length();
+  }
+
+  /**
+   * Returns whether the content of the editor was changed since it was last written to disk.
+   *
+   * @return <code>true</code> if the editor contains unsaved changes
+   */
+  public synchronized boolean isDirty() {
+    return dirty;
+  }
+
+  /**
+   * Returns the number of characters that were inserted or removed since the content was last
+   * written to disk.
+   *
+   * @return the number of unsaved characters
+   */
+  public synchronized long getUnsavedCharacters() {
+    return unsavedCharacters;
   }
 
   /**
@@ -60,9 +210,128 @@ public class Editor {
    * guaranteed to be atomic - it either succeeds completely or doesn't change the workspace at all
    * (in case an exception is thrown).
    *
+   * <p>The content is streamed to the file from a snapshot, so edits can be applied while the file
+   * is written. Afterwards, the journal of the editor is discarded or, if edits were applied in the
+   * meantime, replaced by a journal of these edits.
+   *
    * @throws IOException if writing the file fails
    */
   public void save() throws IOException {
-    getFile().setContents(IOUtils.toInputStream(content.toString()), true, true);
+    synchronized (saveLock) {
+      final Rope snapshot;
+      final int snapshotEdits;
+
+      synchronized (this) {
+        snapshot = content;
+        snapshotEdits = unsavedEdits.size();
+      }
+
+      getFile().setContents(new ReaderInputStream(snapshot.newReader()), true, true);
+
+      final int snapshotHash = snapshot.textHashCode();
+
+      synchronized (this) {
+        savedLength = snapshot.length();
+        savedHash = snapshotHash;
+
+        unsavedEdits =
+            new ArrayList<TextEditActivity>(
+                unsavedEdits.subList(snapshotEdits, unsavedEdits.size()));
+
+        unsavedCharacters = 0;
+
+        for (TextEditActivity edit : unsavedEdits) unsavedCharacters += getLength(edit);
+
+        dirty = content != snapshot;
+
+        if (!dirty) unjournaled = false;
+
+        if (journal != null) rebaseJournal();
+      }
+    }
+  }
+
+  /**
+   * Writes the editor's content to disk if it contains unsaved changes.
+   *
+   * @throws IOException if writing the file fails
+   * @see #save()
+   */
+  public void saveIfDirty() throws IOException {
+    synchronized (saveLock) {
+      if (isDirty()) save();
+    }
+  }
+
+  /**
+   * Writes unsaved changes to disk and closes the editor. If saving fails, the journal is kept,
+   * i.e. the unsaved changes are recovered the next time an editor for the file is created. Edits
+   * are rejected afterwards.
+   *
+   * @throws IOException if writing the file fails
+   */
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) return;
+
+      closed = true;
+    }
+
+    try {
+      saveIfDirty();
+    } finally {
+      synchronized (this) {
+        if (journal != null) journal.close();
+      }
+    }
+  }
+
+  /**
+   * Discards all unsaved changes and the journal of the editor, e.g. because its file was deleted.
+   * Edits are rejected afterwards.
+   */
+  public void discard() {
+    // wait for a running save, which would otherwise recreate a deleted file
+    synchronized (saveLock) {
+      synchronized (this) {
+        closed = true;
+        dirty = false;
+        unsavedEdits.clear();
+        unsavedCharacters = 0;
+
+        if (journal == null) return;
+
+        try {
+          journal.delete();
+        } catch (IOException e) {
+          LOG.warn("could not delete edit journal of " + file, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Replaces the journal after the content was saved by a journal that contains the edits which
+   * were applied while the content was written.
+   */
+  private void rebaseJournal() {
+    try {
+      journal.delete();
+
+      if (unsavedEdits.isEmpty() || unjournaled) return;
+
+      journal.open(savedLength, savedHash);
+
+      for (TextEditActivity edit : unsavedEdits) journal.append(edit);
+
+    } catch (IOException e) {
+      LOG.warn("could not rebase edit journal of " + file, e);
+      journal.close();
+      unjournaled = true;
+    }
+  }
+
+  private static int getLength(TextEditActivity edit) {
+    return edit.getReplacedText().length() + edit.getText().length();
   }
 }
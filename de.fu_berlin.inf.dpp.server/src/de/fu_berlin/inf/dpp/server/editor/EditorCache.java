@@ -0,0 +1,328 @@
+package de.fu_berlin.inf.dpp.server.editor;
+
+import de.fu_berlin.inf.dpp.activities.SPath;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.apache.log4j.Logger;
+
+/**
+ * Cache of the {@link Editor editors} of the {@link ServerEditorManager}. The cache is not limited
+ * by the number of editors but by the total number of characters of their contents. If the limit is
+ * exceeded, the least recently used editors are {@linkplain Editor#close() closed}, except for the
+ * editors that are pinned, e.g. because a user of the session has them open.
+ *
+ * <p>Looking up an editor does not block lookups of other editors. Concurrent lookups of the same
+ * editor that is not cached yet wait until the first one has read the file, so each file is read
+ * only once. All operations on an editor are synchronized on the editor itself.
+ *
+ * <p>This class is thread safe.
+ */
+final class EditorCache {
+
+  private static final Logger LOG = Logger.getLogger(EditorCache.class);
+
+  /** Creates the editor for a path that is not cached yet. */
+  interface Loader {
+    Editor load(SPath path) throws IOException;
+  }
+
+  private static final class Entry {
+    private final Editor editor;
+    private volatile long lastAccess;
+
+    /** The length of the editor that is included in the size of the cache, guarded by this. */
+    private long countedLength;
+
+    /** Whether the entry was removed and its length subtracted from the cache, guarded by this. */
+    private boolean removed;
+
+    private Entry(Editor editor, long countedLength) {
+      this.editor = editor;
+      this.countedLength = countedLength;
+    }
+  }
+
+  /** Used to wrap the IOException of the loader within {@link ConcurrentMap#computeIfAbsent}. */
+  private static final class LoadException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private LoadException(IOException cause) {
+      super(cause);
+    }
+  }
+
+  private final ConcurrentMap<SPath, Entry> entries = new ConcurrentHashMap<SPath, Entry>();
+
+  private final Loader loader;
+
+  private final long maxCharacters;
+
+  private final AtomicLong clock = new AtomicLong();
+
+  /**
+   * The sum of the counted lengths of all cached editors. The counted length of an editor is its
+   * length when it was loaded or when the cache was last {@linkplain #trim trimmed}.
+   */
+  private final AtomicLong size = new AtomicLong();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Creates an EditorCache.
+   *
+   * @param loader the loader that creates the editors of paths that are not cached
+   * @param maxCharacters the maximum number of characters of all cached editors that are not pinned
+   */
+  EditorCache(Loader loader, long maxCharacters) {
+    this.loader = loader;
+    this.maxCharacters = maxCharacters;
+  }
+
+  /**
+   * Returns the editor for the given path, creating it if it is not cached.
+   *
+   * @param path the path of the editor
+   * @return the editor
+   * @throws IOException if the editor could not be created
+   */
+  Editor get(final SPath path) throws IOException {
+    Entry entry = entries.get(path);
+
+    if (entry != null) {
+      hits.incrementAndGet();
+    } else {
+      try {
+        entry =
+            entries.computeIfAbsent(
+                path,
+                new Function<SPath, Entry>() {
+                  @Override
+                  public Entry apply(SPath key) {
+                    misses.incrementAndGet();
+
+                    try {
+                      final Editor editor = loader.load(key);
+                      final long length = editor.getLength();
+                      size.addAndGet(length);
+                      return new Entry(editor, length);
+                    } catch (IOException e) {
+                      throw new LoadException(e);
+                    }
+                  }
+                });
+      } catch (LoadException e) {
+        throw (IOException) e.getCause();
+      }
+    }
+
+    entry.lastAccess = clock.incrementAndGet();
+
+    return entry.editor;
+  }
+
+  /**
+   * Returns the editor for the given path if it is cached.
+   *
+   * @param path the path of the editor
+   * @return the editor or <code>null</code> if it is not cached
+   */
+  Editor getIfPresent(SPath path) {
+    final Entry entry = entries.get(path);
+
+    return entry != null ? entry.editor : null;
+  }
+
+  /**
+   * Removes the editor for the given path from the cache. The editor is neither saved nor closed.
+   *
+   * @param path the path of the editor
+   * @return the removed editor or <code>null</code> if it was not cached
+   */
+  Editor remove(SPath path) {
+    final Entry entry = entries.remove(path);
+
+    if (entry == null) return null;
+
+    uncount(entry);
+
+    return entry.editor;
+  }
+
+  /**
+   * Removes all editors from the cache. The editors are neither saved nor closed.
+   *
+   * @return the removed editors
+   */
+  List<Editor> clear() {
+    final List<Editor> editors = new ArrayList<Editor>();
+
+    for (SPath path : entries.keySet()) {
+      final Editor editor = remove(path);
+
+      if (editor != null) editors.add(editor);
+    }
+
+    return editors;
+  }
+
+  /**
+   * Returns the paths of all cached editors.
+   *
+   * @return an unmodifiable view of the paths
+   */
+  Set<SPath> paths() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  /**
+   * Returns a snapshot of the cached editors.
+   *
+   * @return the cached editors by their paths
+   */
+  Map<SPath, Editor> snapshot() {
+    final Map<SPath, Editor> result = new HashMap<SPath, Editor>();
+
+    for (Map.Entry<SPath, Entry> entry : entries.entrySet())
+      result.put(entry.getKey(), entry.getValue().editor);
+
+    return result;
+  }
+
+  /**
+   * Returns the current number of characters of all cached editors.
+   *
+   * @return the number of characters
+   */
+  long getCharacters() {
+    long characters = 0;
+
+    for (Entry entry : entries.values()) characters += entry.editor.getLength();
+
+    return characters;
+  }
+
+  /**
+   * Returns whether the cache probably exceeds its limit. As the editors are changed without the
+   * knowledge of the cache, the result is only accurate directly after a {@link #trim}.
+   *
+   * @return <code>true</code> if the cache should be trimmed
+   */
+  boolean isOverLimit() {
+    return size.get() > maxCharacters;
+  }
+
+  /**
+   * Closes the least recently used editors until the size of the cache is within its limit.
+   *
+   * @param pinned the paths of the editors that must not be evicted
+   */
+  synchronized void trim(Set<SPath> pinned) {
+    final List<Map.Entry<SPath, Entry>> candidates = new ArrayList<Map.Entry<SPath, Entry>>();
+
+    long size = 0;
+
+    for (Map.Entry<SPath, Entry> entry : entries.entrySet()) {
+      final long length = entry.getValue().editor.getLength();
+
+      count(entry.getValue(), length);
+      size += length;
+
+      if (!pinned.contains(entry.getKey())) candidates.add(entry);
+    }
+
+    if (size <= maxCharacters) return;
+
+    Collections.sort(
+        candidates,
+        new Comparator<Map.Entry<SPath, Entry>>() {
+          @Override
+          public int compare(Map.Entry<SPath, Entry> a, Map.Entry<SPath, Entry> b) {
+            return Long.compare(a.getValue().lastAccess, b.getValue().lastAccess);
+          }
+        });
+
+    for (Map.Entry<SPath, Entry> candidate : candidates) {
+      if (size <= maxCharacters) break;
+
+      final Entry entry = candidate.getValue();
+
+      if (!entries.remove(candidate.getKey(), entry)) continue;
+
+      size -= uncount(entry);
+      evictions.incrementAndGet();
+
+      try {
+        entry.editor.close();
+      } catch (IOException e) {
+        LOG.error(
+            "Could not save evicted editor of "
+                + candidate.getKey()
+                + ", the changes are kept in its edit journal",
+            e);
+      }
+    }
+  }
+
+  /** Sets the counted length of the given entry to the given length and updates the size. */
+  private void count(Entry entry, long length) {
+    synchronized (entry) {
+      if (entry.removed) return;
+
+      size.addAndGet(length - entry.countedLength);
+      entry.countedLength = length;
+    }
+  }
+
+  /**
+   * Subtracts the counted length of the given removed entry from the size.
+   *
+   * @return the counted length of the entry or 0 if it was already subtracted
+   */
+  private long uncount(Entry entry) {
+    synchronized (entry) {
+      if (entry.removed) return 0;
+
+      entry.removed = true;
+      size.addAndGet(-entry.countedLength);
+
+      return entry.countedLength;
+    }
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  long getEvictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public String toString() {
+    return "EditorCache [editors="
+        + entries.size()
+        + ", hits="
+        + hits.get()
+        + ", misses="
+        + misses.get()
+        + ", evictions="
+        + evictions.get()
+        + "]";
+  }
+}
@@ -0,0 +1,355 @@
+package de.fu_berlin.inf.dpp.server.editor;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Immutable text representation used by {@link Editor} for performant text edits.
+ *
+ * <p>The text is stored in the leaves of a balanced binary tree, each leaf containing at most
+ * {@link #MAX_LEAF_LENGTH} characters. Inserting or deleting text creates a new rope that shares
+ * all unchanged subtrees with the old one, so an edit at any offset takes <i>O(log n)</i> time and
+ * the old rope can still be used, e.g. as a snapshot that is written to disk while the editor is
+ * changed further.
+ *
+ * <p>The tree is kept balanced like an AVL tree, i.e. the depths of the children of a node differ
+ * by at most one.
+ */
+public final class Rope {
+
+  /** The maximum number of characters of a leaf. */
+  static final int MAX_LEAF_LENGTH = 1024;
+
+  private abstract static class Node {
+    final int length;
+    final int depth;
+
+    Node(int length, int depth) {
+      this.length = length;
+      this.depth = depth;
+    }
+  }
+
+  private static final class Leaf extends Node {
+    final String text;
+
+    Leaf(String text) {
+      super(text.length(), 0);
+      this.text = text;
+    }
+  }
+
+  private static final class Concat extends Node {
+    final Node left;
+    final Node right;
+
+    Concat(Node left, Node right) {
+      super(left.length + right.length, Math.max(left.depth, right.depth) + 1);
+      this.left = left;
+      this.right = right;
+    }
+  }
+
+  /** Iterates over the leaves of a tree from left to right. */
+  private static final class LeafIterator implements Iterator<Leaf> {
+    private final Deque<Node> stack = new ArrayDeque<Node>();
+
+    LeafIterator(Node root) {
+      stack.push(root);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty();
+    }
+
+    @Override
+    public Leaf next() {
+      Node node = stack.pop();
+
+      while (node instanceof Concat) {
+        stack.push(((Concat) node).right);
+        node = ((Concat) node).left;
+      }
+
+      return (Leaf) node;
+    }
+  }
+
+  private static final Leaf EMPTY_LEAF = new Leaf("");
+
+  /** The empty rope. */
+  public static final Rope EMPTY = new Rope(EMPTY_LEAF);
+
+  private final Node root;
+
+  private Rope(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns a rope containing the given text.
+   *
+   * @param text the text
+   * @return the rope
+   */
+  public static Rope of(String text) {
+    return text.isEmpty() ? EMPTY : new Rope(build(text, 0, text.length()));
+  }
+
+  /**
+   * Returns the number of characters of this rope.
+   *
+   * @return the length
+   */
+  public int length() {
+    return root.length;
+  }
+
+  /**
+   * Returns the character at the given offset.
+   *
+   * @param offset the offset of the character
+   * @return the character
+   * @throws IndexOutOfBoundsException if the offset is negative or not less than the length
+   */
+  public char charAt(int offset) {
+    if (offset < 0 || offset >= root.length)
+      throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + root.length);
+
+    Node node = root;
+
+    while (node instanceof Concat) {
+      final Concat concat = (Concat) node;
+
+      if (offset < concat.left.length) {
+        node = concat.left;
+      } else {
+        offset -= concat.left.length;
+        node = concat.right;
+      }
+    }
+
+    return ((Leaf) node).text.charAt(offset);
+  }
+
+  /**
+   * Returns a rope with the given text inserted at the given offset.
+   *
+   * @param offset the offset to insert the text at
+   * @param text the text to insert
+   * @return the new rope
+   * @throws IndexOutOfBoundsException if the offset is negative or greater than the length
+   */
+  public Rope insert(int offset, String text) {
+    if (offset < 0 || offset > root.length)
+      throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + root.length);
+
+    if (text.isEmpty()) return this;
+
+    return new Rope(insert(root, offset, text));
+  }
+
+  /**
+   * Returns a rope without the given range of characters.
+   *
+   * @param offset the offset of the first character to delete
+   * @param length the number of characters to delete
+   * @return the new rope
+   * @throws IndexOutOfBoundsException if the range is not within this rope
+   */
+  public Rope delete(int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > root.length)
+      throw new IndexOutOfBoundsException(
+          "offset: " + offset + ", deleted: " + length + ", length: " + root.length);
+
+    if (length == 0) return this;
+
+    if (length == root.length) return EMPTY;
+
+    return new Rope(delete(root, offset, offset + length));
+  }
+
+  /**
+   * Returns the same value as {@link String#hashCode()} of the text of this rope without creating
+   * the string.
+   *
+   * @return the hash code of the text
+   */
+  public int textHashCode() {
+    int h = 0;
+
+    for (final Iterator<Leaf> it = new LeafIterator(root); it.hasNext(); ) {
+      final String text = it.next().text;
+
+      for (int i = 0; i < text.length(); i++) h = 31 * h + text.charAt(i);
+    }
+
+    return h;
+  }
+
+  /**
+   * Returns a reader for the text of this rope. As the rope is immutable, the reader is not
+   * affected by any edits.
+   *
+   * @return the reader
+   */
+  public Reader newReader() {
+    final Iterator<Leaf> iterator = new LeafIterator(root);
+
+    return new Reader() {
+
+      private String current = "";
+      private int position;
+
+      @Override
+      public int read(char[] buffer, int offset, int length) {
+        if (length == 0) return 0;
+
+        while (position == current.length()) {
+          if (!iterator.hasNext()) return -1;
+
+          current = iterator.next().text;
+          position = 0;
+        }
+
+        final int count = Math.min(length, current.length() - position);
+
+        current.getChars(position, position + count, buffer, offset);
+        position += count;
+
+        return count;
+      }
+
+      @Override
+      public void close() {
+        // NOP
+      }
+    };
+  }
+
+  /** For testing purposes only. */
+  int getDepth() {
+    return root.depth;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder(root.length);
+
+    for (final Iterator<Leaf> it = new LeafIterator(root); it.hasNext(); )
+      builder.append(it.next().text);
+
+    return builder.toString();
+  }
+
+  private static Node build(String text, int start, int end) {
+    if (end - start <= MAX_LEAF_LENGTH) return new Leaf(text.substring(start, end));
+
+    final int middle = (start + end) >>> 1;
+
+    return new Concat(build(text, start, middle), build(text, middle, end));
+  }
+
+  private static Node insert(Node node, int offset, String text) {
+    if (node instanceof Leaf) {
+      final String leafText = ((Leaf) node).text;
+
+      if (leafText.length() + text.length() <= MAX_LEAF_LENGTH)
+        return new Leaf(leafText.substring(0, offset) + text + leafText.substring(offset));
+
+      return join(
+          join(leaf(leafText.substring(0, offset)), build(text, 0, text.length())),
+          leaf(leafText.substring(offset)));
+    }
+
+    final Concat concat = (Concat) node;
+
+    if (offset <= concat.left.length) return join(insert(concat.left, offset, text), concat.right);
+
+    return join(concat.left, insert(concat.right, offset - concat.left.length, text));
+  }
+
+  private static Node delete(Node node, int start, int end) {
+    if (start == 0 && end == node.length) return EMPTY_LEAF;
+
+    if (node instanceof Leaf) {
+      final String text = ((Leaf) node).text;
+      return leaf(text.substring(0, start) + text.substring(end));
+    }
+
+    final Concat concat = (Concat) node;
+    final int split = concat.left.length;
+
+    final Node left =
+        start < split ? delete(concat.left, start, Math.min(end, split)) : concat.left;
+
+    final Node right =
+        end > split ? delete(concat.right, Math.max(start - split, 0), end - split) : concat.right;
+
+    return join(left, right);
+  }
+
+  private static Node leaf(String text) {
+    return text.isEmpty() ? EMPTY_LEAF : new Leaf(text);
+  }
+
+  /**
+   * Concatenates the given trees and rebalances the result. Takes <i>O(|depth(left) -
+   * depth(right)|)</i> time.
+   */
+  private static Node join(Node left, Node right) {
+    if (left.length == 0) return right;
+
+    if (right.length == 0) return left;
+
+    if (left instanceof Leaf
+        && right instanceof Leaf
+        && left.length + right.length <= MAX_LEAF_LENGTH)
+      return new Leaf(((Leaf) left).text + ((Leaf) right).text);
+
+    if (left.depth > right.depth + 1) {
+      final Concat concat = (Concat) left;
+      return balance(concat.left, join(concat.right, right));
+    }
+
+    if (right.depth > left.depth + 1) {
+      final Concat concat = (Concat) right;
+      return balance(join(left, concat.left), concat.right);
+    }
+
+    return new Concat(left, right);
+  }
+
+  /**
+   * Concatenates the given balanced trees whose depths differ by at most two, performing a single
+   * or double rotation if necessary.
+   */
+  private static Node balance(Node left, Node right) {
+    if (left.depth > right.depth + 1) {
+      final Concat concat = (Concat) left;
+
+      if (concat.left.depth >= concat.right.depth)
+        return new Concat(concat.left, new Concat(concat.right, right));
+
+      final Concat inner = (Concat) concat.right;
+
+      return new Concat(new Concat(concat.left, inner.left), new Concat(inner.right, right));
+    }
+
+    if (right.depth > left.depth + 1) {
+      final Concat concat = (Concat) right;
+
+      if (concat.right.depth >= concat.left.depth)
+        return new Concat(new Concat(left, concat.left), concat.right);
+
+      final Concat inner = (Concat) concat.left;
+
+      return new Concat(new Concat(left, inner.left), new Concat(inner.right, concat.right));
+    }
+
+    return join(left, right);
+  }
+}
@@ -4,31 +4,154 @@ import de.fu_berlin.inf.dpp.activities.SPath;
 import de.fu_berlin.inf.dpp.activities.TextEditActivity;
 import de.fu_berlin.inf.dpp.editor.IEditorManager;
 import de.fu_berlin.inf.dpp.editor.ISharedEditorListener;
+import de.fu_berlin.inf.dpp.editor.remote.UserEditorStateManager;
 import de.fu_berlin.inf.dpp.editor.text.LineRange;
 import de.fu_berlin.inf.dpp.editor.text.TextSelection;
 import de.fu_berlin.inf.dpp.filesystem.IFile;
 import de.fu_berlin.inf.dpp.filesystem.IProject;
 import de.fu_berlin.inf.dpp.filesystem.IResource;
+import de.fu_berlin.inf.dpp.filesystem.IWorkspace;
+import de.fu_berlin.inf.dpp.server.ServerConfig;
 import de.fu_berlin.inf.dpp.session.User;
+import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
-import java.util.Collections;
-import java.util.HashSet;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import org.apache.commons.collections4.map.LRUMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
+import org.picocontainer.Startable;
 
-/** Server implementation of the {@link IEditorManager} interface */
-public class ServerEditorManager implements IEditorManager {
+/**
+ * Server implementation of the {@link IEditorManager} interface.
+ *
+ * <p>Text edits are not written to disk immediately. Instead, the editors with unsaved changes are
+ * saved periodically (see {@link ServerConfig#getEditorFlushInterval()}), so a burst of edits to
+ * the same file results in a single write. An editor is saved earlier if the amount of its unsaved
+ * changes exceeds a threshold (see {@link ServerConfig#getEditorFlushThreshold()}), and when it is
+ * closed or evicted, when the project is saved, and when the session ends. Until then, the edits
+ * are recorded in a journal per file so that they can be recovered if the server terminates
+ * unexpectedly.
+ *
+ * <p>The editors are kept in an {@link EditorCache} whose size is limited by the number of
+ * characters of the editors (see {@link ServerConfig#getEditorCacheSize()}). Editors that a user of
+ * the session has open are never evicted.
+ */
+public class ServerEditorManager implements IEditorManager, Startable {
 
   private static final Logger LOG = Logger.getLogger(ServerEditorManager.class);
 
-  private Map<SPath, Editor> openEditors = Collections.synchronizedMap(new LRUMap(10));
+  /** Name of the folder in the workspace root that contains the edit journals. */
+  private static final String JOURNAL_FOLDER = ".saros-journal";
+
+  private static final String JOURNAL_EXTENSION = ".journal";
+
+  private final Path journalFolder;
+  private final long flushInterval;
+  private final long flushThreshold;
+
+  private final UserEditorStateManager userEditorStateManager;
+
+  private final EditorCache openEditors;
+
+  private ScheduledExecutorService flushExecutor;
+
   private List<ISharedEditorListener> listeners = new CopyOnWriteArrayList<>();
 
+  /**
+   * Creates a ServerEditorManager which keeps the edit journals in the given workspace.
+   *
+   * @param workspace the workspace of the server
+   * @param userEditorStateManager the editor states of the session users
+   */
+  public ServerEditorManager(IWorkspace workspace, UserEditorStateManager userEditorStateManager) {
+    this(
+        Paths.get(workspace.getLocation().append(JOURNAL_FOLDER).toOSString()),
+        userEditorStateManager,
+        ServerConfig.getEditorFlushInterval(),
+        ServerConfig.getEditorFlushThreshold(),
+        ServerConfig.getEditorCacheSize());
+  }
+
+  /**
+   * Creates a ServerEditorManager.
+   *
+   * @param journalFolder the folder to keep the edit journals in or <code>null</code> to not keep
+   *     any journals
+   * @param userEditorStateManager the editor states of the session users
+   * @param flushInterval the interval in milliseconds in which editors are saved
+   * @param flushThreshold the number of unsaved characters after which an editor is saved
+   *     immediately
+   * @param cacheSize the maximum number of characters of all editors that are not open on the side
+   *     of a session user
+   */
+  ServerEditorManager(
+      Path journalFolder,
+      UserEditorStateManager userEditorStateManager,
+      long flushInterval,
+      long flushThreshold,
+      long cacheSize) {
+    this.journalFolder = journalFolder;
+    this.userEditorStateManager = userEditorStateManager;
+    this.flushInterval = flushInterval;
+    this.flushThreshold = flushThreshold;
+
+    openEditors =
+        new EditorCache(
+            new EditorCache.Loader() {
+              @Override
+              public Editor load(SPath path) throws IOException {
+                return createEditor(path);
+              }
+            },
+            cacheSize);
+  }
+
+  @Override
+  public synchronized void start() {
+    flushExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("dpp-srv-editor-flush", false));
+
+    flushExecutor.scheduleWithFixedDelay(
+        new Runnable() {
+          @Override
+          public void run() {
+            saveAllEditors();
+            openEditors.trim(userEditorStateManager.getOpenEditors());
+          }
+        },
+        flushInterval,
+        flushInterval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (flushExecutor != null) {
+      flushExecutor.shutdown();
+
+      try {
+        if (!flushExecutor.awaitTermination(5, TimeUnit.SECONDS))
+          LOG.warn("periodic saving of editors did not terminate in time");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      flushExecutor = null;
+    }
+
+    for (Editor editor : openEditors.clear()) closeQuietly(editor);
+
+    LOG.debug("editor cache statistics: " + openEditors);
+  }
+
   @Override
   public void openEditor(SPath path, boolean activate) {
     try {
@@ -40,7 +163,7 @@ public class ServerEditorManager implements IEditorManager {
 
   @Override
   public Set<SPath> getOpenEditors() {
-    return openEditors.keySet();
+    return openEditors.paths();
   }
 
   @Override
@@ -54,9 +177,10 @@ public class ServerEditorManager implements IEditorManager {
 
   @Override
   public void saveEditors(IProject project) {
-    // do nothing?
-    // we do not keep dirty editors,
-    // because the LRUMap might close Editors at any time
+    for (Map.Entry<SPath, Editor> entry : openEditors.snapshot().entrySet()) {
+      if (project == null || project.equals(entry.getKey().getProject()))
+        saveQuietly(entry.getValue());
+    }
   }
 
   @Override
@@ -80,8 +204,8 @@ public class ServerEditorManager implements IEditorManager {
   }
 
   /**
-   * Get an existing or create a new Editor for a given path. May remove the least recently used
-   * Editor to free memory.
+   * Get an existing or create a new Editor for a given path. May close the least recently used
+   * Editors to free memory.
    *
    * @param path of the file to open
    * @return Editor of the file
@@ -89,25 +213,29 @@ public class ServerEditorManager implements IEditorManager {
    */
   private Editor getOrCreateEditor(SPath path) throws IOException {
     Editor editor = openEditors.get(path);
-    if (editor == null) {
-      IResource resource = path.getResource();
-      if (resource == null) {
-        throw new NoSuchFileException(path.toString());
-      }
 
-      IFile file = (IFile) resource.getAdapter(IFile.class);
-      if (file == null) {
-        throw new IOException("Not a file: " + path);
-      }
+    if (openEditors.isOverLimit()) openEditors.trim(userEditorStateManager.getOpenEditors());
 
-      editor = new Editor(file);
-      openEditors.put(path, editor);
-    }
     return editor;
   }
 
+  private Editor createEditor(SPath path) throws IOException {
+    IResource resource = path.getResource();
+    if (resource == null) {
+      throw new NoSuchFileException(path.toString());
+    }
+
+    IFile file = (IFile) resource.getAdapter(IFile.class);
+    if (file == null) {
+      throw new IOException("Not a file: " + path);
+    }
+
+    return new Editor(file, getJournalFile(file));
+  }
+
   /**
-   * Executes a text edit activity on the matching editor.
+   * Executes a text edit activity on the matching editor. The change is written to disk
+   * asynchronously unless the editor exceeds the threshold of unsaved changes.
    *
    * @param activity the activity describing the text edit to apply
    */
@@ -115,8 +243,13 @@ public class ServerEditorManager implements IEditorManager {
     SPath path = activity.getPath();
     try {
       Editor editor = getOrCreateEditor(path);
-      editor.applyTextEdit(activity);
-      editor.save();
+
+      // the editor may have been evicted concurrently
+      while (!editor.applyTextEdit(activity)) editor = getOrCreateEditor(path);
+
+      if (editor.getUnsavedCharacters() >= flushThreshold || editor.hasUnjournaledChanges())
+        editor.saveIfDirty();
+
       for (ISharedEditorListener listener : listeners) {
         listener.textEdited(activity);
       }
@@ -126,38 +259,103 @@ public class ServerEditorManager implements IEditorManager {
   }
 
   /**
-   * Updates the mapping of an open editor to a new file path
+   * Writes the content of the editor for the given path to disk if it contains unsaved changes.
+   * Must be called before the file is moved or changed by other means.
+   *
+   * @param path the path of the editor to save
+   */
+  public void saveEditor(SPath path) {
+    Editor editor = openEditors.getIfPresent(path);
+
+    if (editor != null) saveQuietly(editor);
+  }
+
+  /**
+   * Updates the mapping of an open editor to a new file path. The editor is closed and reopened the
+   * next time it is accessed, so it must have been {@linkplain #saveEditor saved} before the file
+   * was moved.
    *
    * @param oldPath the old file path
    * @param newPath the new file path
    */
   public void updateMapping(SPath oldPath, SPath newPath) {
     Editor oldEditor = openEditors.remove(oldPath);
-    openEditors.put(newPath, oldEditor);
+
+    if (oldEditor != null) oldEditor.discard();
   }
 
   @Override
   public void closeEditor(SPath path) {
-    openEditors.remove(path);
+    Editor editor = openEditors.remove(path);
+
+    if (editor != null) closeQuietly(editor);
+  }
+
+  /**
+   * Closes the editor of a deleted file and discards its unsaved changes.
+   *
+   * @param path the path of the deleted file
+   */
+  public void discardEditor(SPath path) {
+    Editor editor = openEditors.remove(path);
+
+    if (editor != null) editor.discard();
   }
 
   /**
-   * Close all editors of files in a specific folder. Helpful if a folder gets deleted.
+   * Close all editors of files in a specific folder and discard their unsaved changes. Helpful if a
+   * folder gets deleted.
    *
    * @param folder path of the folder
    */
   public void closeEditorsInFolder(SPath folder) {
-    synchronized (openEditors) {
-      Set<SPath> keys = openEditors.keySet();
-      Set<SPath> invalidKeys = new HashSet<>();
-      for (SPath path : keys) {
-        if (folder.getFullPath().isPrefixOf(path.getFullPath())) {
-          invalidKeys.add(path);
-        }
-      }
-      for (SPath path : invalidKeys) {
-        closeEditor(path);
+    for (SPath path : openEditors.paths()) {
+      if (folder.getFullPath().isPrefixOf(path.getFullPath())) {
+        discardEditor(path);
       }
     }
   }
+
+  /**
+   * Returns the number of characters of all editors that are currently kept in memory.
+   *
+   * @return the number of characters
+   */
+  public long getCachedCharacters() {
+    return openEditors.getCharacters();
+  }
+
+  /** Writes the content of all editors with unsaved changes to disk. */
+  void saveAllEditors() {
+    saveEditors(null);
+  }
+
+  private Path getJournalFile(IFile file) {
+    if (journalFolder == null) return null;
+
+    return journalFolder.resolve(file.getFullPath().toPortableString() + JOURNAL_EXTENSION);
+  }
+
+  private static void saveQuietly(Editor editor) {
+    try {
+      editor.saveIfDirty();
+    } catch (IOException e) {
+      LOG.error(
+          "Could not save " + editor.getFile() + ", the changes are kept in its edit journal", e);
+    }
+  }
+
+  private static void closeQuietly(Editor editor) {
+    try {
+      editor.close();
+    } catch (IOException e) {
+      LOG.error(
+          "Could not save " + editor.getFile() + ", the changes are kept in its edit journal", e);
+    }
+  }
+
+  /** For testing purposes only. */
+  EditorCache getEditorCache() {
+    return openEditors;
+  }
 }
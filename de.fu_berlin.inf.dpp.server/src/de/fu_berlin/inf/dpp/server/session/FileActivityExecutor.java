@@ -24,7 +24,8 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
    * Creates a FileActivityExecutor.
    *
    * @param session the current session
-   * @param editorManager the editor manager to update the file mapping on a file move
+   * @param editorManager the editor manager to update the open editors on a file creation, move or
+   *     removal
    */
   public FileActivityExecutor(ISarosSession session, ServerEditorManager editorManager) {
 
@@ -65,8 +66,14 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
   }
 
   private void executeFileCreation(FileActivity activity) throws IOException {
-    IFile file = activity.getPath().getFile();
-    file.create(new ByteArrayInputStream(activity.getContent()), true);
+    SPath path = activity.getPath();
+    IFile file = path.getFile();
+    // an open editor would write its stale content back over the new file
+    editorManager.discardEditor(path);
+    // e.g. a consistency recovery sends the whole content of an existing file
+    if (file.exists())
+      file.setContents(new ByteArrayInputStream(activity.getContent()), true, true);
+    else file.create(new ByteArrayInputStream(activity.getContent()), true);
   }
 
   private void executeFileMove(FileActivity activity) throws IOException {
@@ -74,6 +81,8 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
     IFile oldFile = oldPath.getFile();
     SPath newPath = activity.getPath();
     IFile newFile = newPath.getFile();
+    // write unsaved changes before the file is moved
+    editorManager.saveEditor(oldPath);
     oldFile.move(activity.getPath().getFullPath(), true);
     byte[] content = activity.getContent();
     if (content != null) {
@@ -86,7 +95,7 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
   private void executeFileRemoval(FileActivity activity) throws IOException {
     SPath path = activity.getPath();
     IFile file = path.getFile();
-    editorManager.closeEditor(path);
+    editorManager.discardEditor(path);
     file.delete(IResource.NONE);
   }
 }
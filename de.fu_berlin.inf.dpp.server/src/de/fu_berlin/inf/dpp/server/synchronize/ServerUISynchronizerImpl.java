@@ -12,6 +12,9 @@ import org.apache.log4j.Logger;
 /**
  * Server implementation of the {@link UISynchronizer} interface. As the server has no actual "UI
  * thread", this implementation creates a dedicated thread playing the UI thread's role instead.
+ *
+ * <p>Every server instance has its own ServerUISynchronizerImpl, so work that is executed on the
+ * "UI thread" of one instance does not delay the work of another instance.
  */
 @Component(module = "server")
 public class ServerUISynchronizerImpl implements UISynchronizer {
@@ -23,12 +26,23 @@ public class ServerUISynchronizerImpl implements UISynchronizer {
 
   /** Initializes the ServerUISynchronizerImpl. */
   public ServerUISynchronizerImpl() {
+    this(null, "dpp-srv-exec-context");
+  }
+
+  /**
+   * Initializes the ServerUISynchronizerImpl with a thread of the given name and group.
+   *
+   * @param group the thread group of the virtual UI thread or <code>null</code> to use the group of
+   *     the thread that first executes a runnable
+   * @param threadName the name of the virtual UI thread
+   */
+  public ServerUISynchronizerImpl(final ThreadGroup group, final String threadName) {
     executor =
         Executors.newSingleThreadExecutor(
             new ThreadFactory() {
               @Override
               public Thread newThread(Runnable r) {
-                virtualUIThread = new Thread(r, "dpp-srv-exec-context");
+                virtualUIThread = new Thread(group, r, threadName);
                 return virtualUIThread;
               }
             });
@@ -0,0 +1,65 @@
+package de.fu_berlin.inf.dpp.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServerConfigTest {
+
+  private Properties properties;
+
+  @Before
+  public void setUp() {
+    properties = (Properties) System.getProperties().clone();
+  }
+
+  @After
+  public void tearDown() {
+    System.setProperties(properties);
+  }
+
+  @Test
+  public void testDefaultInstance() {
+    System.clearProperty("de.fu_berlin.inf.dpp.server.instances");
+    System.setProperty("de.fu_berlin.inf.dpp.server.jid", "alice@test");
+    System.setProperty("de.fu_berlin.inf.dpp.server.password", "secret");
+    System.clearProperty("de.fu_berlin.inf.dpp.server.workspace");
+
+    List<ServerInstanceConfig> instances = ServerConfig.getInstances();
+
+    assertEquals(1, instances.size());
+    assertEquals("default", instances.get(0).getName());
+    assertEquals("alice@test", instances.get(0).getJID());
+    assertEquals("secret", instances.get(0).getPassword());
+    assertNull(instances.get(0).getWorkspacePath());
+  }
+
+  @Test
+  public void testMultipleInstances() {
+    System.setProperty("de.fu_berlin.inf.dpp.server.instances", " a, b,,a ");
+    System.setProperty("de.fu_berlin.inf.dpp.server.instance.a.jid", "a@test");
+    System.setProperty("de.fu_berlin.inf.dpp.server.instance.a.password", "pa");
+    System.setProperty("de.fu_berlin.inf.dpp.server.instance.a.workspace", "/srv/a");
+    System.setProperty("de.fu_berlin.inf.dpp.server.instance.b.jid", "b@test");
+    System.setProperty("de.fu_berlin.inf.dpp.server.instance.b.password", "pb");
+
+    List<ServerInstanceConfig> instances = ServerConfig.getInstances();
+
+    assertEquals(2, instances.size());
+
+    assertEquals("a", instances.get(0).getName());
+    assertEquals("a@test", instances.get(0).getJID());
+    assertEquals("pa", instances.get(0).getPassword());
+    assertEquals("/srv/a", instances.get(0).getWorkspacePath());
+
+    assertEquals("b", instances.get(1).getName());
+    assertEquals("b@test", instances.get(1).getJID());
+    assertEquals("pb", instances.get(1).getPassword());
+    assertNull(instances.get(1).getWorkspacePath());
+  }
+}
@@ -0,0 +1,152 @@
+package de.fu_berlin.inf.dpp.server.editor;
+
+import static org.easymock.EasyMock.anyBoolean;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
+import de.fu_berlin.inf.dpp.filesystem.IFile;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.net.xmpp.JID;
+import de.fu_berlin.inf.dpp.server.filesystem.ServerPathImpl;
+import de.fu_berlin.inf.dpp.session.User;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EditorTest {
+
+  private final User alice = new User(new JID("alice@test"), true, true, 0, 0);
+
+  private SPath path;
+
+  private Path journalFolder;
+
+  /** The content of the file on disk. */
+  private String diskContent = "Hello World";
+
+  /** Applied to the editor while its content is written to disk. */
+  private Runnable duringSave;
+
+  private IFile file;
+
+  @Before
+  public void setUp() throws Exception {
+    journalFolder = Files.createTempDirectory("saros-test-journal");
+
+    IProject project = createMock(IProject.class);
+    replay(project);
+
+    path = new SPath(project, ServerPathImpl.fromString("file.txt"));
+
+    file = createMock(IFile.class);
+
+    expect(file.getContents())
+        .andAnswer(
+            new IAnswer<InputStream>() {
+              @Override
+              public InputStream answer() throws Throwable {
+                return new ByteArrayInputStream(diskContent.getBytes());
+              }
+            })
+        .anyTimes();
+
+    file.setContents(anyObject(InputStream.class), anyBoolean(), anyBoolean());
+    expectLastCall()
+        .andAnswer(
+            new IAnswer<Object>() {
+              @Override
+              public Object answer() throws Throwable {
+                if (duringSave != null) duringSave.run();
+
+                diskContent = IOUtils.toString((InputStream) getCurrentArguments()[0]);
+                return null;
+              }
+            })
+        .anyTimes();
+
+    replay(file);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(journalFolder.toFile());
+  }
+
+  @Test
+  public void testEditsDuringSaveAreKept() throws Exception {
+    final Path journalFile = journalFolder.resolve("file.txt.journal");
+    final Editor editor = new Editor(file, journalFile);
+
+    editor.applyTextEdit(edit(5, ",", ""));
+
+    duringSave =
+        new Runnable() {
+          @Override
+          public void run() {
+            editor.applyTextEdit(edit(12, "!", ""));
+          }
+        };
+
+    editor.save();
+
+    // the snapshot taken before the concurrent edit was written
+    assertEquals("Hello, World", diskContent);
+    assertEquals("Hello, World!", editor.getContent());
+    assertTrue(editor.isDirty());
+    assertEquals(1, editor.getUnsavedCharacters());
+
+    // the journal now only contains the concurrent edit, based on the saved content
+    assertEquals("Hello, World!", new EditJournal(journalFile).replay(diskContent));
+
+    duringSave = null;
+    editor.saveIfDirty();
+
+    assertEquals("Hello, World!", diskContent);
+    assertFalse(editor.isDirty());
+    assertFalse(Files.exists(journalFile));
+  }
+
+  @Test
+  public void testClosedEditorRejectsEdits() throws Exception {
+    Editor editor = new Editor(file);
+
+    assertTrue(editor.applyTextEdit(edit(0, "x", "")));
+
+    editor.close();
+
+    assertEquals("xHello World", diskContent);
+    assertFalse(editor.applyTextEdit(edit(0, "y", "")));
+    assertEquals("xHello World", editor.getContent());
+  }
+
+  @Test
+  public void testSnapshotIsImmutable() throws Exception {
+    Editor editor = new Editor(file);
+    Rope snapshot = editor.getSnapshot();
+
+    editor.applyTextEdit(edit(0, "", "H"));
+
+    assertEquals("Hello World", snapshot.toString());
+    assertEquals("ello World", editor.getContent());
+  }
+
+  private TextEditActivity edit(int offset, String text, String replacedText) {
+    return new TextEditActivity(alice, offset, text, replacedText, path);
+  }
+}
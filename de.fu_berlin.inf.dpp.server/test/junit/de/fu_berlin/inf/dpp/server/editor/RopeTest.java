@@ -0,0 +1,107 @@
+package de.fu_berlin.inf.dpp.server.editor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Reader;
+import java.util.Random;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class RopeTest {
+
+  @Test
+  public void testEmpty() {
+    assertEquals("", Rope.EMPTY.toString());
+    assertEquals(0, Rope.EMPTY.length());
+    assertSame(Rope.EMPTY, Rope.of(""));
+    assertEquals("abc", Rope.EMPTY.insert(0, "abc").toString());
+    assertSame(Rope.EMPTY, Rope.of("abc").delete(0, 3));
+  }
+
+  @Test
+  public void testEditsAreNotVisibleInSnapshots() {
+    Rope snapshot = Rope.of("Hello World");
+    Rope edited = snapshot.insert(5, ",").delete(0, 1).insert(0, "J");
+
+    assertEquals("Hello World", snapshot.toString());
+    assertEquals("Jello, World", edited.toString());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testInsertOutOfBounds() {
+    Rope.of("abc").insert(4, "x");
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testDeleteOutOfBounds() {
+    Rope.of("abc").delete(2, 2);
+  }
+
+  @Test
+  public void testRandomEditsOnLargeDocument() throws Exception {
+    Random random = new Random(13);
+
+    StringBuilder expected = new StringBuilder();
+
+    for (int i = 0; i < 50000; i++) expected.append((char) ('a' + random.nextInt(26)));
+
+    Rope rope = Rope.of(expected.toString());
+
+    for (int i = 0; i < 5000; i++) {
+      int offset = random.nextInt(expected.length() + 1);
+      int action = random.nextInt(10);
+
+      if (action < 5) {
+        String text = i % 100 == 0 ? repeat('X', 3000) : String.valueOf((char) ('A' + i % 26));
+        expected.insert(offset, text);
+        rope = rope.insert(offset, text);
+      } else {
+        int length =
+            Math.min(expected.length() - offset, 1 + random.nextInt(action == 9 ? 4000 : 3));
+        expected.delete(offset, offset + length);
+        rope = rope.delete(offset, length);
+      }
+
+      assertEquals(expected.length(), rope.length());
+
+      if (i % 500 == 0) assertEquals(expected.toString(), rope.toString());
+    }
+
+    assertEquals(expected.toString(), rope.toString());
+    assertEquals(expected.toString().hashCode(), rope.textHashCode());
+
+    int probe = expected.length() / 3;
+    assertEquals(expected.charAt(probe), rope.charAt(probe));
+
+    try (Reader reader = rope.newReader()) {
+      assertEquals(expected.toString(), IOUtils.toString(reader));
+    }
+
+    // an AVL tree with n nodes has a depth of at most 1.44 * log2(n)
+    int leaves = expected.length() / 16 + 1;
+    assertTrue("rope is unbalanced: " + rope.getDepth(), rope.getDepth() <= 2 * log2(leaves) + 2);
+  }
+
+  @Test
+  public void testTypingDoesNotFragmentTheRope() {
+    Rope rope = Rope.of(repeat('a', 100000));
+
+    for (int i = 0; i < 10000; i++) rope = rope.insert(50000 + i, "b");
+
+    assertTrue("rope is unbalanced: " + rope.getDepth(), rope.getDepth() <= 12);
+  }
+
+  private static int log2(int value) {
+    return 32 - Integer.numberOfLeadingZeros(value);
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder(count);
+
+    for (int i = 0; i < count; i++) builder.append(c);
+
+    return builder.toString();
+  }
+}
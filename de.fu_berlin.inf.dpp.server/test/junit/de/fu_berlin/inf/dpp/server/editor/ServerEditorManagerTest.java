@@ -0,0 +1,295 @@
+package de.fu_berlin.inf.dpp.server.editor;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
+import de.fu_berlin.inf.dpp.editor.remote.UserEditorStateManager;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.filesystem.IWorkspace;
+import de.fu_berlin.inf.dpp.net.xmpp.JID;
+import de.fu_berlin.inf.dpp.server.filesystem.ServerPathImpl;
+import de.fu_berlin.inf.dpp.server.filesystem.ServerWorkspaceImpl;
+import de.fu_berlin.inf.dpp.session.User;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServerEditorManagerTest {
+
+  private static final long NO_INTERVAL = Long.MAX_VALUE / 2;
+
+  private Path workspaceFolder;
+  private Path journalFolder;
+
+  private IWorkspace workspace;
+  private IProject project;
+
+  private SPath path;
+  private Path file;
+  private Path journal;
+
+  private final User alice = new User(new JID("alice@test"), true, true, 0, 0);
+
+  private final Set<SPath> pinned = new HashSet<SPath>();
+
+  private ServerEditorManager editorManager;
+
+  @Before
+  public void setUp() throws Exception {
+    workspaceFolder = Files.createTempDirectory("saros-test-workspace");
+    journalFolder = Files.createTempDirectory("saros-test-journal");
+
+    workspace = new ServerWorkspaceImpl(ServerPathImpl.fromString(workspaceFolder.toString()));
+    project = workspace.getProject("project");
+
+    path = new SPath(project, ServerPathImpl.fromString("file.txt"));
+    file = workspaceFolder.resolve("project").resolve("file.txt");
+    journal = journalFolder.resolve("project").resolve("file.txt.journal");
+
+    Files.createDirectories(file.getParent());
+    write(file, "Hello World");
+  }
+
+  @After
+  public void tearDown() {
+    if (editorManager != null) editorManager.stop();
+
+    FileUtils.deleteQuietly(workspaceFolder.toFile());
+    FileUtils.deleteQuietly(journalFolder.toFile());
+  }
+
+  @Test
+  public void testEditsAreSavedDeferred() throws Exception {
+    editorManager = create(NO_INTERVAL, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    editorManager.applyTextEdit(edit(5, ",", ""));
+    editorManager.applyTextEdit(edit(12, "!", ""));
+
+    assertEquals("Hello, World!", editorManager.getContent(path));
+    assertEquals("Hello World", read(file));
+    assertTrue(Files.exists(journal));
+
+    editorManager.saveEditors(project);
+
+    assertEquals("Hello, World!", read(file));
+    assertFalse(Files.exists(journal));
+  }
+
+  @Test
+  public void testThresholdTriggersSave() throws Exception {
+    editorManager = create(NO_INTERVAL, 3, Long.MAX_VALUE);
+
+    editorManager.applyTextEdit(edit(0, "a", ""));
+    editorManager.applyTextEdit(edit(0, "b", ""));
+
+    assertEquals("Hello World", read(file));
+
+    editorManager.applyTextEdit(edit(0, "c", ""));
+
+    assertEquals("cbaHello World", read(file));
+  }
+
+  @Test
+  public void testPeriodicSave() throws Exception {
+    editorManager = create(10, Long.MAX_VALUE, Long.MAX_VALUE);
+    editorManager.start();
+
+    editorManager.applyTextEdit(edit(0, "x", ""));
+
+    for (int i = 0; i < 500 && !read(file).equals("xHello World"); i++) Thread.sleep(10);
+
+    assertEquals("xHello World", read(file));
+  }
+
+  @Test
+  public void testStopAndCloseSave() throws Exception {
+    editorManager = create(NO_INTERVAL, Long.MAX_VALUE, Long.MAX_VALUE);
+    editorManager.start();
+
+    editorManager.applyTextEdit(edit(0, "x", ""));
+    editorManager.closeEditor(path);
+
+    assertEquals("xHello World", read(file));
+
+    editorManager.applyTextEdit(edit(0, "y", ""));
+    editorManager.stop();
+
+    assertEquals("yxHello World", read(file));
+    assertFalse(Files.exists(journal));
+  }
+
+  @Test
+  public void testCacheIsNotLimitedByEditorCount() throws Exception {
+    editorManager = create(NO_INTERVAL, Long.MAX_VALUE, 1000);
+
+    for (int i = 0; i < 50; i++) editorManager.openEditor(createFile("other" + i, "1234"), false);
+
+    editorManager.openEditor(path, false);
+
+    assertEquals(51, editorManager.getOpenEditors().size());
+    assertEquals(0, editorManager.getEditorCache().getEvictions());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEditorsAreEvicted() throws Exception {
+    editorManager = create(NO_INTERVAL, Long.MAX_VALUE, 20);
+
+    editorManager.applyTextEdit(edit(0, "x", ""));
+
+    SPath first = createFile("first", "12345");
+    SPath second = createFile("second", "12345");
+
+    editorManager.openEditor(first, false);
+    editorManager.openEditor(path, false);
+    editorManager.openEditor(second, false);
+
+    EditorCache cache = editorManager.getEditorCache();
+
+    assertFalse(editorManager.getOpenEditors().contains(first));
+    assertTrue(editorManager.getOpenEditors().contains(path));
+    assertEquals(1, cache.getEvictions());
+
+    editorManager.openEditor(createFile("third", "12345"), false);
+
+    assertFalse(editorManager.getOpenEditors().contains(path));
+    assertEquals(2, cache.getEvictions());
+
+    // the changes of an evicted editor are saved
+    assertEquals("xHello World", read(file));
+    assertEquals("xHello World", editorManager.getContent(path));
+
+    assertEquals(5, cache.getMisses());
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void testPinnedEditorsAreNotEvicted() throws Exception {
+    editorManager = create(NO_INTERVAL, Long.MAX_VALUE, 10);
+
+    pinned.add(path);
+
+    editorManager.applyTextEdit(edit(0, "x", ""));
+
+    SPath other = createFile("other", "12345");
+
+    editorManager.openEditor(other, false);
+
+    assertTrue(editorManager.getOpenEditors().contains(path));
+    assertFalse(editorManager.getOpenEditors().contains(other));
+    assertEquals("Hello World", read(file));
+  }
+
+  @Test
+  public void testCacheSizeDoesNotDriftWhenEditedEditorIsRemoved() throws Exception {
+    editorManager = create(NO_INTERVAL, Long.MAX_VALUE, 20);
+
+    EditorCache cache = editorManager.getEditorCache();
+
+    cache.get(path).applyTextEdit(edit(0, "", "Hello Worl"));
+    cache.remove(path);
+
+    cache.get(createFile("other", "1234567890123456"));
+
+    assertFalse(cache.isOverLimit());
+  }
+
+  @Test
+  public void testDiscardedEditorIsNotSaved() throws Exception {
+    editorManager = create(NO_INTERVAL, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    editorManager.applyTextEdit(edit(0, "x", ""));
+    editorManager.discardEditor(path);
+    editorManager.saveEditors(project);
+
+    assertEquals("Hello World", read(file));
+    assertFalse(Files.exists(journal));
+  }
+
+  @Test
+  public void testRecoverFromJournal() throws Exception {
+    ServerEditorManager crashed = create(NO_INTERVAL, 100, Long.MAX_VALUE);
+
+    crashed.applyTextEdit(edit(5, ",", ""));
+    crashed.applyTextEdit(edit(6, "", " "));
+    crashed.applyTextEdit(edit(6, "--", ""));
+
+    assertEquals("Hello World", read(file));
+
+    editorManager = create(NO_INTERVAL, 100, Long.MAX_VALUE);
+
+    assertEquals("Hello,--World", editorManager.getContent(path));
+    assertEquals("Hello,--World", read(file));
+    assertFalse(Files.exists(journal));
+  }
+
+  @Test
+  public void testIncompleteRecordIsIgnored() throws Exception {
+    ServerEditorManager crashed = create(NO_INTERVAL, 100, Long.MAX_VALUE);
+
+    crashed.applyTextEdit(edit(0, "a", ""));
+    crashed.applyTextEdit(edit(0, "b", ""));
+
+    try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1);
+    }
+
+    editorManager = create(NO_INTERVAL, 100, Long.MAX_VALUE);
+
+    assertEquals("aHello World", editorManager.getContent(path));
+  }
+
+  @Test
+  public void testStaleJournalIsDiscarded() throws Exception {
+    ServerEditorManager crashed = create(NO_INTERVAL, 100, Long.MAX_VALUE);
+
+    crashed.applyTextEdit(edit(0, "a", ""));
+
+    write(file, "changed by someone else");
+
+    editorManager = create(NO_INTERVAL, 100, Long.MAX_VALUE);
+
+    assertEquals("changed by someone else", editorManager.getContent(path));
+    assertFalse(Files.exists(journal));
+  }
+
+  private ServerEditorManager create(long flushInterval, long flushThreshold, long cacheSize) {
+    UserEditorStateManager userEditorStateManager = createMock(UserEditorStateManager.class);
+    expect(userEditorStateManager.getOpenEditors()).andStubReturn(pinned);
+    replay(userEditorStateManager);
+
+    return new ServerEditorManager(
+        journalFolder, userEditorStateManager, flushInterval, flushThreshold, cacheSize);
+  }
+
+  private SPath createFile(String name, String content) throws IOException {
+    write(workspaceFolder.resolve("project").resolve(name), content);
+    return new SPath(project, ServerPathImpl.fromString(name));
+  }
+
+  private TextEditActivity edit(int offset, String text, String replacedText) {
+    return new TextEditActivity(alice, offset, text, replacedText, path);
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,111 @@
+package de.fu_berlin.inf.dpp.server.session;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+
+import de.fu_berlin.inf.dpp.activities.FileActivity;
+import de.fu_berlin.inf.dpp.activities.FileActivity.Purpose;
+import de.fu_berlin.inf.dpp.activities.FileActivity.Type;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.TextEditActivity;
+import de.fu_berlin.inf.dpp.editor.remote.UserEditorStateManager;
+import de.fu_berlin.inf.dpp.filesystem.IProject;
+import de.fu_berlin.inf.dpp.filesystem.IWorkspace;
+import de.fu_berlin.inf.dpp.net.xmpp.JID;
+import de.fu_berlin.inf.dpp.server.editor.ServerEditorManager;
+import de.fu_berlin.inf.dpp.server.filesystem.ServerPathImpl;
+import de.fu_berlin.inf.dpp.server.filesystem.ServerWorkspaceImpl;
+import de.fu_berlin.inf.dpp.session.ISarosSession;
+import de.fu_berlin.inf.dpp.session.User;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileActivityExecutorTest {
+
+  private Path workspaceFolder;
+
+  private IProject project;
+
+  private SPath path;
+  private Path file;
+
+  private final User alice = new User(new JID("alice@test"), true, true, 0, 0);
+
+  private ServerEditorManager editorManager;
+  private FileActivityExecutor executor;
+
+  @Before
+  public void setUp() throws Exception {
+    workspaceFolder = Files.createTempDirectory("saros-test-workspace");
+
+    IWorkspace workspace =
+        new ServerWorkspaceImpl(ServerPathImpl.fromString(workspaceFolder.toString()));
+    project = workspace.getProject("project");
+
+    path = new SPath(project, ServerPathImpl.fromString("file.txt"));
+    file = workspaceFolder.resolve("project").resolve("file.txt");
+
+    Files.createDirectories(file.getParent());
+    Files.write(file, "Hello World".getBytes(StandardCharsets.UTF_8));
+
+    UserEditorStateManager userEditorStateManager = createMock(UserEditorStateManager.class);
+    expect(userEditorStateManager.getOpenEditors()).andStubReturn(Collections.<SPath>emptySet());
+    replay(userEditorStateManager);
+
+    editorManager = new ServerEditorManager(workspace, userEditorStateManager);
+
+    executor = new FileActivityExecutor(createMock(ISarosSession.class), editorManager);
+  }
+
+  @After
+  public void tearDown() {
+    editorManager.stop();
+
+    FileUtils.deleteQuietly(workspaceFolder.toFile());
+  }
+
+  @Test
+  public void testCreationReplacesOpenEditor() throws Exception {
+    editorManager.applyTextEdit(new TextEditActivity(alice, 0, "stale ", "", path));
+
+    executor.receive(
+        new FileActivity(
+            alice,
+            Type.CREATED,
+            Purpose.RECOVERY,
+            path,
+            null,
+            "recovered".getBytes(StandardCharsets.UTF_8),
+            "UTF-8"));
+
+    assertEquals("recovered", editorManager.getContent(path));
+
+    editorManager.saveEditors(project);
+
+    assertEquals("recovered", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testCreationOfUnopenedFile() throws Exception {
+    executor.receive(
+        new FileActivity(
+            alice,
+            Type.CREATED,
+            Purpose.ACTIVITY,
+            path,
+            null,
+            "created".getBytes(StandardCharsets.UTF_8),
+            "UTF-8"));
+
+    assertEquals("created", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    assertEquals("created", editorManager.getContent(path));
+  }
+}
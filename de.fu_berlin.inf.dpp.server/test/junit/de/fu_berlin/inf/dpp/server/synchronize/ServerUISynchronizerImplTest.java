@@ -2,6 +2,7 @@ package de.fu_berlin.inf.dpp.server.synchronize;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import de.fu_berlin.inf.dpp.synchronize.UISynchronizer;
@@ -10,6 +11,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -154,6 +156,40 @@ public class ServerUISynchronizerImplTest {
     assertEquals("third", queue.take());
   }
 
+  @Test
+  public void synchronizersOfDifferentInstancesDoNotBlockEachOther() throws Exception {
+    final ThreadGroup group = new ThreadGroup("test-instance");
+    final UISynchronizer other = new ServerUISynchronizerImpl(group, "test-exec-context");
+    final CountDownLatch release = new CountDownLatch(1);
+
+    synchronizer.asyncExec(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              // Ignore
+            }
+          }
+        });
+
+    final AtomicReference<Thread> otherThread = new AtomicReference<Thread>();
+
+    other.syncExec(
+        new Runnable() {
+          @Override
+          public void run() {
+            otherThread.set(Thread.currentThread());
+          }
+        });
+
+    release.countDown();
+
+    assertEquals("test-exec-context", otherThread.get().getName());
+    assertSame(group, otherThread.get().getThreadGroup());
+  }
+
   private static void sleep(long milliseconds) {
     try {
       Thread.sleep(milliseconds);
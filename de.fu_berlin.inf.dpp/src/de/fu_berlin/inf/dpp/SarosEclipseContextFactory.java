@@ -14,11 +14,11 @@ import de.fu_berlin.inf.dpp.filesystem.EclipsePathFactory;
 import de.fu_berlin.inf.dpp.filesystem.EclipseWorkspaceImpl;
 import de.fu_berlin.inf.dpp.filesystem.EclipseWorkspaceRootImpl;
 import de.fu_berlin.inf.dpp.filesystem.FileContentNotifierBridge;
-import de.fu_berlin.inf.dpp.filesystem.FileSystemChecksumCache;
 import de.fu_berlin.inf.dpp.filesystem.IChecksumCache;
 import de.fu_berlin.inf.dpp.filesystem.IPathFactory;
 import de.fu_berlin.inf.dpp.filesystem.IWorkspace;
 import de.fu_berlin.inf.dpp.filesystem.IWorkspaceRoot;
+import de.fu_berlin.inf.dpp.filesystem.PersistentChecksumCache;
 import de.fu_berlin.inf.dpp.monitoring.remote.EclipseRemoteProgressIndicatorFactoryImpl;
 import de.fu_berlin.inf.dpp.monitoring.remote.IRemoteProgressIndicatorFactory;
 import de.fu_berlin.inf.dpp.preferences.EclipsePreferenceStoreAdapter;
@@ -53,6 +53,9 @@ import org.picocontainer.MutablePicoContainer;
  */
 public class SarosEclipseContextFactory extends AbstractContextFactory {
 
+  /** Name of the file in the plug-in state location that stores the checksums of files. */
+  private static final String CHECKSUM_CACHE_FILE = "checksums.dat";
+
   private final Saros saros;
 
   /**
@@ -87,7 +90,10 @@ public class SarosEclipseContextFactory extends AbstractContextFactory {
        * available after we added all our context stuff or vice versa
        */
       Component.create(
-          IChecksumCache.class, new FileSystemChecksumCache(new FileContentNotifierBridge())),
+          IChecksumCache.class,
+          new PersistentChecksumCache(
+              new FileContentNotifierBridge(),
+              saros.getStateLocation().append(CHECKSUM_CACHE_FILE).toFile())),
       Component.create(IWorkspace.class, new EclipseWorkspaceImpl(ResourcesPlugin.getWorkspace())),
       Component.create(
           IWorkspaceRoot.class,
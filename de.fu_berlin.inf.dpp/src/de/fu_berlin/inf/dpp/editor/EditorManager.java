@@ -41,12 +41,17 @@ import de.fu_berlin.inf.dpp.session.SessionEndReason;
 import de.fu_berlin.inf.dpp.session.User;
 import de.fu_berlin.inf.dpp.session.User.Permission;
 import de.fu_berlin.inf.dpp.synchronize.Blockable;
+import de.fu_berlin.inf.dpp.synchronize.internal.SWTSynchronizer;
 import de.fu_berlin.inf.dpp.ui.util.SWTUtils;
 import de.fu_berlin.inf.dpp.util.Predicate;
 import de.fu_berlin.inf.dpp.util.StackTrace;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import org.apache.commons.lang.ObjectUtils;
@@ -58,7 +63,10 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.jface.text.source.IAnnotationModel;
@@ -102,6 +110,54 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
    */
   private static final Logger LOG = Logger.getLogger(EditorManager.class);
 
+  /**
+   * Whether consecutive remote text edits of the same file are applied in one document rewrite
+   * session. Can be disabled with the system property {@code
+   * de.fu_berlin.inf.dpp.editor.BULK_REMOTE_EDITS}.
+   */
+  private static final boolean BULK_REMOTE_EDITS =
+      Boolean.valueOf(System.getProperty("de.fu_berlin.inf.dpp.editor.BULK_REMOTE_EDITS", "true"));
+
+  /**
+   * Number of edits after which a batch of remote text edits is applied in a document rewrite
+   * session. Starting and stopping a rewrite session costs time proportional to the size of the
+   * document, so small batches (e.g. single keystrokes) are applied without one.
+   */
+  private static final int REWRITE_SESSION_MIN_EDITS =
+      Integer.getInteger("de.fu_berlin.inf.dpp.editor.REWRITE_SESSION_MIN_EDITS", 16);
+
+  /**
+   * Number of inserted and replaced characters after which a batch of remote text edits is applied
+   * in a document rewrite session, see {@link #REWRITE_SESSION_MIN_EDITS}.
+   */
+  private static final int REWRITE_SESSION_MIN_LENGTH =
+      Integer.getInteger("de.fu_berlin.inf.dpp.editor.REWRITE_SESSION_MIN_LENGTH", 4096);
+
+  /**
+   * Consecutive remote text edits of one file. The document provider stays connected until the
+   * batch ends, and the cursor annotations are only updated at the end of the batch. Once the batch
+   * becomes large enough, the remaining edits are applied in a document rewrite session. Listeners
+   * are still informed about every edit immediately, as e.g. the checksums of the consistency
+   * watchdog have to stay in step with the document.
+   */
+  private static final class RemoteEditBatch {
+    private final SPath path;
+    private final IEditorInput input;
+    private final IDocumentProvider provider;
+    private final IDocument document;
+    private final List<TextEditActivity> edits = new ArrayList<TextEditActivity>();
+    private DocumentRewriteSession rewriteSession;
+    private int length;
+
+    private RemoteEditBatch(
+        SPath path, IEditorInput input, IDocumentProvider provider, IDocument document) {
+      this.path = path;
+      this.input = input;
+      this.provider = provider;
+      this.document = document;
+    }
+  }
+
   boolean hasWriteAccess;
 
   boolean isLocked;
@@ -112,6 +168,8 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
 
   private final IPreferenceStore preferenceStore;
 
+  private final SWTSynchronizer synchronizer;
+
   private UserEditorStateManager userEditorStateManager;
 
   private RemoteWriteAccessManager remoteWriteAccessManager;
@@ -133,6 +191,9 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
   /** all files that have connected document providers */
   private final Set<IFile> connectedFiles = new HashSet<IFile>();
 
+  /** the batch of remote text edits that is currently applied, accessed only in the SWT thread */
+  private RemoteEditBatch remoteEditBatch;
+
   private AnnotationModelHelper annotationModelHelper;
   private LocationAnnotationManager locationAnnotationManager;
   private ContributionAnnotationManager contributionAnnotationManager;
@@ -148,6 +209,32 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
         }
       };
 
+  /**
+   * Ends the current batch of remote text edits before any activity other than a text edit of the
+   * same file is executed. As a passive consumer it is notified before the active consumers.
+   */
+  private final IActivityConsumer remoteEditBatchTerminator =
+      new IActivityConsumer() {
+        @Override
+        public void exec(IActivity activity) {
+          if (remoteEditBatch == null) return;
+
+          if (activity instanceof TextEditActivity
+              && remoteEditBatch.path.equals(((TextEditActivity) activity).getPath())) return;
+
+          endRemoteEditBatch();
+        }
+      };
+
+  /** Ends the current batch of remote text edits when the dispatched activities were executed. */
+  private final Runnable remoteEditBatchCompletion =
+      new Runnable() {
+        @Override
+        public void run() {
+          endRemoteEditBatch();
+        }
+      };
+
   private final IActivityConsumer consumer =
       new AbstractActivityConsumer() {
         @Override
@@ -370,9 +457,13 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
         }
       };
 
-  public EditorManager(ISarosSessionManager sessionManager, IPreferenceStore preferenceStore) {
+  public EditorManager(
+      ISarosSessionManager sessionManager,
+      IPreferenceStore preferenceStore,
+      SWTSynchronizer synchronizer) {
 
     this.preferenceStore = preferenceStore;
+    this.synchronizer = synchronizer;
 
     editorPool = new EditorPool(this);
     partListener = new SafePartListener2(LOG, new EditorPartListener(this));
@@ -688,6 +779,8 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
 
     User user = textEdit.getSource();
 
+    final RemoteEditBatch batch = BULK_REMOTE_EDITS ? getRemoteEditBatch(path) : null;
+
     /*
      * Disable documentListener temporarily to avoid being notified of the
      * change, otherwise this would lead to an infinite activity sending,
@@ -695,23 +788,43 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
      */
     editorPool.setDocumentListenerEnabled(false);
 
-    replaceText(path, textEdit.getOffset(), textEdit.getReplacedText(), textEdit.getText(), user);
+    if (batch != null) {
+      addToRewriteSession(batch, textEdit);
+
+      replaceText(
+          path,
+          batch.provider,
+          batch.input,
+          batch.document,
+          textEdit.getOffset(),
+          textEdit.getReplacedText(),
+          textEdit.getText(),
+          user);
+    } else {
+      replaceText(path, textEdit.getOffset(), textEdit.getReplacedText(), textEdit.getText(), user);
+    }
 
     editorPool.setDocumentListenerEnabled(true);
 
+    // cursor annotations are updated when the batch ends
+    if (batch != null) batch.edits.add(textEdit);
+    else updateRemoteCursor(textEdit);
+
+    // inform all registered ISharedEditorListeners about this text edit
+    editorListenerDispatch.textEdited(textEdit);
+  }
+
+  /**
+   * Sets the cursor annotation of the source of the given text edit if the edit ends in the visible
+   * region of a local editor.
+   */
+  private void updateRemoteCursor(TextEditActivity textEdit) {
     /*
      * TODO Find out whether this is actually necessary. If we receive a
      * TextSelectionActivity for each cursor movement, then we don't need to
      * listen for edits as well.
      */
-    /*
-     * If the text edit ends in the visible region of a local editor, set
-     * the cursor annotation.
-     *
-     * TODO Performance optimization in case of batch operation might make
-     * sense. Problem: How to recognize batch operations?
-     */
-    for (IEditorPart editorPart : editorPool.getEditors(path)) {
+    for (IEditorPart editorPart : editorPool.getEditors(textEdit.getPath())) {
       ITextViewer viewer = EditorAPI.getViewer(editorPart);
       if (viewer == null) {
         // No text viewer for the editorPart found.
@@ -723,12 +836,99 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
           && cursorOffset <= viewer.getBottomIndexEndOffset()) {
 
         TextSelection selection = new TextSelection(cursorOffset, 0);
-        locationAnnotationManager.setSelection(editorPart, selection, user);
+        locationAnnotationManager.setSelection(editorPart, selection, textEdit.getSource());
       }
     }
+  }
 
-    // inform all registered ISharedEditorListeners about this text edit
-    editorListenerDispatch.textEdited(textEdit);
+  /**
+   * Returns the batch the remote text edits of the given path are added to. A new batch is started
+   * if there is no batch for this path yet. The batch ends at the latest when the SWT runnable that
+   * executes the dispatched activities returns.
+   *
+   * @return the batch or <code>null</code> if the document of the path is not available
+   */
+  private RemoteEditBatch getRemoteEditBatch(SPath path) {
+    if (remoteEditBatch != null) {
+      if (remoteEditBatch.path.equals(path)) return remoteEditBatch;
+
+      endRemoteEditBatch();
+    }
+
+    IFile file = ((EclipseFileImpl) path.getFile()).getDelegate();
+    FileEditorInput input = new FileEditorInput(file);
+    IDocumentProvider provider = EditorAPI.connect(input);
+
+    if (provider == null) return null;
+
+    IDocument doc = provider.getDocument(input);
+
+    if (doc == null) {
+      provider.disconnect(input);
+      return null;
+    }
+
+    remoteEditBatch = new RemoteEditBatch(path, input, provider, doc);
+
+    return remoteEditBatch;
+  }
+
+  /**
+   * Counts the given text edit for the given batch and starts a rewrite session for the document of
+   * the batch once the batch passes {@link #REWRITE_SESSION_MIN_EDITS} edits or {@link
+   * #REWRITE_SESSION_MIN_LENGTH} characters.
+   */
+  private void addToRewriteSession(RemoteEditBatch batch, TextEditActivity textEdit) {
+    batch.length += textEdit.getText().length() + textEdit.getReplacedText().length();
+
+    if (batch.rewriteSession != null || !(batch.document instanceof IDocumentExtension4)) return;
+
+    if (batch.edits.size() + 1 < REWRITE_SESSION_MIN_EDITS
+        && batch.length < REWRITE_SESSION_MIN_LENGTH) return;
+
+    IDocumentExtension4 document = (IDocumentExtension4) batch.document;
+
+    if (document.getActiveRewriteSession() != null) return;
+
+    batch.rewriteSession = document.startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
+  }
+
+  /**
+   * Ends the current batch of remote text edits, if any. The rewrite session is stopped, the
+   * document provider is disconnected, and the cursor annotations are updated for all edits of the
+   * batch.
+   */
+  private void endRemoteEditBatch() {
+    final RemoteEditBatch batch = remoteEditBatch;
+
+    if (batch == null) return;
+
+    remoteEditBatch = null;
+
+    editorPool.setDocumentListenerEnabled(false);
+
+    try {
+      if (batch.rewriteSession != null)
+        ((IDocumentExtension4) batch.document).stopRewriteSession(batch.rewriteSession);
+    } finally {
+      editorPool.setDocumentListenerEnabled(true);
+      batch.provider.disconnect(batch.input);
+    }
+
+    if (LOG.isTraceEnabled())
+      LOG.trace("applied batch of " + batch.edits.size() + " remote text edits to " + batch.path);
+
+    /*
+     * only the last edit of each user determines the position of the
+     * user's cursor
+     */
+    final Map<User, TextEditActivity> lastEdits = new LinkedHashMap<User, TextEditActivity>();
+
+    for (TextEditActivity textEdit : batch.edits) lastEdits.put(textEdit.getSource(), textEdit);
+
+    if (locationAnnotationManager != null) {
+      for (TextEditActivity textEdit : lastEdits.values()) updateRemoteCursor(textEdit);
+    }
   }
 
   @Override
@@ -1015,52 +1215,70 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
         return;
       }
 
-      // Check if the replaced text is really there.
-      if (LOG.isDebugEnabled()) {
-        String is;
-        try {
-          is = doc.get(offset, replacedText.length());
-          if (!is.equals(replacedText)) {
-            LOG.error(
-                "replaceText should be '"
-                    + StringEscapeUtils.escapeJava(replacedText)
-                    + "' is '"
-                    + StringEscapeUtils.escapeJava(is)
-                    + "'");
-          }
-        } catch (BadLocationException e) {
-          // Ignore, because this is going to fail again just below
-        }
-      }
+      replaceText(path, provider, input, doc, offset, replacedText, text, source);
+    } finally {
+      provider.disconnect(input);
+    }
+  }
 
-      // Try to replace
+  /**
+   * Applies a remote text edit to the given document of a connected document provider.
+   *
+   * @see #replaceText(SPath, int, String, String, User)
+   */
+  private void replaceText(
+      SPath path,
+      IDocumentProvider provider,
+      IEditorInput input,
+      IDocument doc,
+      int offset,
+      String replacedText,
+      String text,
+      User source) {
+
+    // Check if the replaced text is really there.
+    if (LOG.isDebugEnabled()) {
+      String is;
       try {
-        doc.replace(offset, replacedText.length(), text);
+        is = doc.get(offset, replacedText.length());
+        if (!is.equals(replacedText)) {
+          LOG.error(
+              "replaceText should be '"
+                  + StringEscapeUtils.escapeJava(replacedText)
+                  + "' is '"
+                  + StringEscapeUtils.escapeJava(is)
+                  + "'");
+        }
       } catch (BadLocationException e) {
-        LOG.error(
-            String.format(
-                "Could not apply TextEdit at %d-%d of document "
-                    + "with length %d.\nWas supposed to replace"
-                    + " '%s' with '%s'.",
-                offset, offset + replacedText.length(), doc.getLength(), replacedText, text));
-        return;
+        // Ignore, because this is going to fail again just below
       }
+    }
 
-      for (IEditorPart editorPart : editorPool.getEditors(path)) {
+    // Try to replace
+    try {
+      doc.replace(offset, replacedText.length(), text);
+    } catch (BadLocationException e) {
+      LOG.error(
+          String.format(
+              "Could not apply TextEdit at %d-%d of document "
+                  + "with length %d.\nWas supposed to replace"
+                  + " '%s' with '%s'.",
+              offset, offset + replacedText.length(), doc.getLength(), replacedText, text));
+      return;
+    }
 
-        if (editorPart instanceof ITextEditor) {
-          ITextEditor textEditor = (ITextEditor) editorPart;
-          IAnnotationModel model =
-              textEditor.getDocumentProvider().getAnnotationModel(textEditor.getEditorInput());
-          contributionAnnotationManager.insertAnnotation(model, offset, text.length(), source);
-        }
-      }
+    for (IEditorPart editorPart : editorPool.getEditors(path)) {
 
-      IAnnotationModel model = provider.getAnnotationModel(input);
-      contributionAnnotationManager.insertAnnotation(model, offset, text.length(), source);
-    } finally {
-      provider.disconnect(input);
+      if (editorPart instanceof ITextEditor) {
+        ITextEditor textEditor = (ITextEditor) editorPart;
+        IAnnotationModel model =
+            textEditor.getDocumentProvider().getAnnotationModel(textEditor.getEditorInput());
+        contributionAnnotationManager.insertAnnotation(model, offset, text.length(), source);
+      }
     }
+
+    IAnnotationModel model = provider.getAnnotationModel(input);
+    contributionAnnotationManager.insertAnnotation(model, offset, text.length(), source);
   }
 
   /**
@@ -1645,6 +1863,9 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
     session.addListener(sessionListener);
     session.addActivityProducer(this);
     session.addActivityConsumer(consumer, Priority.ACTIVE);
+    session.addActivityConsumer(remoteEditBatchTerminator, Priority.PASSIVE);
+
+    synchronizer.addCompletionHook(remoteEditBatchCompletion);
 
     annotationModelHelper = new AnnotationModelHelper();
     locationAnnotationManager = new LocationAnnotationManager(preferenceStore);
@@ -1678,6 +1899,10 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
 
     if (window != null) window.getPartService().removePartListener(partListener);
 
+    synchronizer.removeCompletionHook(remoteEditBatchCompletion);
+
+    endRemoteEditBatch();
+
     preferenceStore.removePropertyChangeListener(annotationPreferenceListener);
 
     /*
@@ -1700,6 +1925,7 @@ public class EditorManager extends AbstractActivityProducer implements IEditorMa
     session.removeListener(sessionListener);
     session.removeActivityProducer(this);
     session.removeActivityConsumer(consumer);
+    session.removeActivityConsumer(remoteEditBatchTerminator);
     session = null;
 
     annotationModelHelper = null;
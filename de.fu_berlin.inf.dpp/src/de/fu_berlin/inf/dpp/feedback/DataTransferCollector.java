@@ -8,9 +8,11 @@ import de.fu_berlin.inf.dpp.session.ISarosSession;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 /**
  * Collects information about the amount of data transfered with the different {@link StreamMode}s
+ * and compression codecs
  *
  * @author Christopher Oezbek
  */
@@ -30,6 +32,12 @@ public class DataTransferCollector extends AbstractStatisticCollector {
   /** Convenience value of total_size / total_time in KB/s */
   private static final String TRANSFER_STATS_THROUGHPUT_SUFFIX = "average_throughput_kbs";
 
+  private static final String TRANSFER_STATS_CODEC_PREFIX = "codec";
+
+  /** Total size before compression in KB */
+  private static final String TRANSFER_STATS_UNCOMPRESSED_SIZE_SUFFIX =
+      "total_uncompressed_size_kb";
+
   // we currently do not distinguish between sent and received data
   private static class TransferStatisticHolder {
     private long bytesTransferred;
@@ -37,9 +45,18 @@ public class DataTransferCollector extends AbstractStatisticCollector {
     private int count;
   }
 
+  private static class CodecStatisticHolder {
+    private long bytesTransferred;
+    private long bytesUncompressed;
+    private int count;
+  }
+
   private final Map<StreamMode, TransferStatisticHolder> statistic =
       new EnumMap<StreamMode, TransferStatisticHolder>(StreamMode.class);
 
+  private final Map<String, CodecStatisticHolder> codecStatistic =
+      new TreeMap<String, CodecStatisticHolder>();
+
   private final IConnectionManager connectionManager;
 
   private final ITransferListener dataTransferlistener =
@@ -50,7 +67,8 @@ public class DataTransferCollector extends AbstractStatisticCollector {
             final StreamMode mode,
             final long sizeCompressed,
             final long sizeUncompressed,
-            final long duration) {
+            final long duration,
+            final String codec) {
           // see processGatheredData
           synchronized (DataTransferCollector.this) {
             TransferStatisticHolder holder = statistic.get(mode);
@@ -64,6 +82,17 @@ public class DataTransferCollector extends AbstractStatisticCollector {
             holder.transferTime += sizeUncompressed;
             holder.count++;
 
+            CodecStatisticHolder codecHolder = codecStatistic.get(codec);
+
+            if (codecHolder == null) {
+              codecHolder = new CodecStatisticHolder();
+              codecStatistic.put(codec, codecHolder);
+            }
+
+            codecHolder.bytesTransferred += sizeCompressed;
+            codecHolder.bytesUncompressed += sizeUncompressed;
+            codecHolder.count++;
+
             // TODO how to handle overflow ?
           }
         }
@@ -73,9 +102,10 @@ public class DataTransferCollector extends AbstractStatisticCollector {
             final StreamMode mode,
             final long sizeCompressed,
             final long sizeUncompressed,
-            final long duration) {
+            final long duration,
+            final String codec) {
           // TODO differentiate the traffic
-          sent(mode, sizeCompressed, sizeUncompressed, duration);
+          sent(mode, sizeCompressed, sizeUncompressed, duration, codec);
         }
       };
 
@@ -98,6 +128,15 @@ public class DataTransferCollector extends AbstractStatisticCollector {
       storeTransferStatisticForMode(
           mode.toString(), holder.count, holder.bytesTransferred, holder.transferTime);
     }
+
+    for (final Entry<String, CodecStatisticHolder> entry : codecStatistic.entrySet()) {
+
+      final String codec = entry.getKey();
+      final CodecStatisticHolder holder = entry.getValue();
+
+      storeTransferStatisticForCodec(
+          codec, holder.count, holder.bytesTransferred, holder.bytesUncompressed);
+    }
   }
 
   @Override
@@ -128,4 +167,32 @@ public class DataTransferCollector extends AbstractStatisticCollector {
         transferMode,
         TRANSFER_STATS_THROUGHPUT_SUFFIX);
   }
+
+  private void storeTransferStatisticForCodec(
+      final String codec,
+      final int transferEvents,
+      final long totalSize,
+      final long totalUncompressedSize) {
+
+    data.put(
+        KEY_TRANSFER_STATS,
+        transferEvents,
+        TRANSFER_STATS_CODEC_PREFIX,
+        codec,
+        TRANSFER_STATS_EVENT_SUFFIX);
+
+    data.put(
+        KEY_TRANSFER_STATS,
+        totalSize / 1024,
+        TRANSFER_STATS_CODEC_PREFIX,
+        codec,
+        TRANSFER_STATS_SIZE_SUFFIX);
+
+    data.put(
+        KEY_TRANSFER_STATS,
+        totalUncompressedSize / 1024,
+        TRANSFER_STATS_CODEC_PREFIX,
+        codec,
+        TRANSFER_STATS_UNCOMPRESSED_SIZE_SUFFIX);
+  }
 }
@@ -3,17 +3,27 @@ package de.fu_berlin.inf.dpp.synchronize.internal;
 import de.fu_berlin.inf.dpp.annotations.Component;
 import de.fu_berlin.inf.dpp.synchronize.UISynchronizer;
 import de.fu_berlin.inf.dpp.util.StackTrace;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.apache.log4j.Logger;
 import org.eclipse.swt.SWTException;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.PlatformUI;
 
+/**
+ * Executes runnables in the SWT thread of the workbench display.
+ *
+ * <p>Components can register hooks that are run in the SWT thread after each runnable executed by
+ * this synchronizer, e.g. to finish work that was collected while the runnable was executed.
+ */
 @Component(module = "eclipse")
 // TODO rename to EclipseSWTSynchronizer
 public class SWTSynchronizer implements UISynchronizer {
 
   private static final Logger LOG = Logger.getLogger(SWTSynchronizer.class);
 
+  private final List<Runnable> completionHooks = new CopyOnWriteArrayList<Runnable>();
+
   @Override
   public void asyncExec(Runnable runnable) {
     exec(runnable, true);
@@ -31,7 +41,32 @@ public class SWTSynchronizer implements UISynchronizer {
     return Display.getCurrent() != null;
   }
 
-  private void exec(Runnable runnable, boolean async) {
+  /**
+   * Adds a hook that is run in the SWT thread after every runnable executed by this synchronizer.
+   * The hook is run even if the runnable throws an exception.
+   */
+  public void addCompletionHook(Runnable hook) {
+    completionHooks.add(hook);
+  }
+
+  /** Removes the given hook, see {@link #addCompletionHook(Runnable)}. */
+  public void removeCompletionHook(Runnable hook) {
+    completionHooks.remove(hook);
+  }
+
+  private void exec(final Runnable runnable, boolean async) {
+    final Runnable task =
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              runnable.run();
+            } finally {
+              for (Runnable hook : completionHooks) hook.run();
+            }
+          }
+        };
+
     try {
       Display display = getDisplay();
 
@@ -43,8 +78,8 @@ public class SWTSynchronizer implements UISynchronizer {
       // if (display.isDisposed())
       // return;
 
-      if (async) display.asyncExec(runnable);
-      else display.syncExec(runnable);
+      if (async) display.asyncExec(task);
+      else display.syncExec(task);
 
     } catch (SWTException e) {
 
@@ -0,0 +1,7 @@
+#!/bin/bash -e
+
+[ ! -z "$DEBUG_BASH" ] && set -x
+
+cd $WORKSPACE
+
+./gradlew --no-daemon :de.fu_berlin.inf.dpp.core.jmh:jmh :de.fu_berlin.inf.dpp.server.jmh:jmh